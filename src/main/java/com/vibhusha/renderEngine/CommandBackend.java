@@ -0,0 +1,36 @@
+package com.vibhusha.renderEngine;
+
+import java.nio.ByteBuffer;
+
+// Receives the commands of a CommandBuffer as it is replayed, in recording order. Shaders, textures
+// and models are RenderQueue ids. GlCommandBackend turns the commands into GL calls;
+// RecordingCommandBackend only counts and keeps them, to check command streams without a GPU.
+public interface CommandBackend {
+    // The frame's instance matrices in sorted order, [position, limit) of instances, before its commands
+    void uploadInstances(ByteBuffer instances);
+
+    // After the frame's last command
+    void endFrame();
+
+    // Also sets the frame's view and projection matrices
+    void bindShader(int shader);
+
+    void bindTexture(int texture);
+
+    // Also sets the model's vertex decode uniforms on the bound shader
+    void bindModel(int model);
+
+    // Diffuse colour uniform of the bound shader
+    void setColor(float r, float g, float b, float a);
+
+    // Instances [firstInstance, firstInstance + instanceCount) of the frame's instance buffer
+    void drawInstanced(int lod, int firstInstance, int instanceCount);
+
+    void drawSubmeshInstanced(int lod, int submesh, int firstInstance, int instanceCount);
+
+    // A range of the bound model's meshlet index list; the ranges given since the last drawMeshlets
+    // are drawn together for one instance
+    void addMeshletRange(int firstIndex, int indexCount);
+
+    void drawMeshlets(int instance);
+}
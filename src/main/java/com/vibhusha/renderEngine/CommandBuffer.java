@@ -0,0 +1,167 @@
+package com.vibhusha.renderEngine;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+// A stream of draw commands in the engine's own format: 32-bit words in a direct (off-heap) buffer,
+// each command an opcode followed by its operands. Resources are referenced by RenderQueue ids, so the
+// stream holds no Java references, and recording allocates nothing once the buffer has grown to the
+// frame's size. A buffer is recorded by one thread and replayed on another, after the hand-over.
+//
+//   BIND_SHADER shader | BIND_TEXTURE texture | BIND_MODEL model | SET_COLOR r g b a (floats)
+//   DRAW_INSTANCED lod first count | DRAW_SUBMESH lod submesh first count
+//   DRAW_MESHLETS instance rangeCount (firstIndex indexCount) * rangeCount
+public final class CommandBuffer {
+    public static final int BIND_SHADER = 0;
+    public static final int BIND_TEXTURE = 1;
+    public static final int BIND_MODEL = 2;
+    public static final int SET_COLOR = 3;
+    public static final int DRAW_INSTANCED = 4;
+    public static final int DRAW_SUBMESH = 5;
+    public static final int DRAW_MESHLETS = 6;
+    public static final int OPCODE_COUNT = 7;
+
+    private ByteBuffer words;
+    private int size;  // Bytes recorded
+    private int commandCount;
+
+    public CommandBuffer(int initialBytes) {
+        words = BufferUtils.createByteBuffer(Math.max(64, initialBytes));
+    }
+
+    public void reset() {
+        size = 0;
+        commandCount = 0;
+    }
+
+    public void bindShader(int shader) {
+        reserve(2);
+        put(BIND_SHADER);
+        put(shader);
+    }
+
+    public void bindTexture(int texture) {
+        reserve(2);
+        put(BIND_TEXTURE);
+        put(texture);
+    }
+
+    public void bindModel(int model) {
+        reserve(2);
+        put(BIND_MODEL);
+        put(model);
+    }
+
+    public void setColor(float r, float g, float b, float a) {
+        reserve(5);
+        put(SET_COLOR);
+        put(Float.floatToRawIntBits(r));
+        put(Float.floatToRawIntBits(g));
+        put(Float.floatToRawIntBits(b));
+        put(Float.floatToRawIntBits(a));
+    }
+
+    public void drawInstanced(int lod, int firstInstance, int instanceCount) {
+        reserve(4);
+        put(DRAW_INSTANCED);
+        put(lod);
+        put(firstInstance);
+        put(instanceCount);
+    }
+
+    public void drawSubmeshInstanced(int lod, int submesh, int firstInstance, int instanceCount) {
+        reserve(5);
+        put(DRAW_SUBMESH);
+        put(lod);
+        put(submesh);
+        put(firstInstance);
+        put(instanceCount);
+    }
+
+    // The ranges the culler kept for one instance
+    public void drawMeshlets(int instance, MeshletCuller culler) {
+        int ranges = culler.getRangeCount();
+        reserve(3 + ranges * 2);
+        put(DRAW_MESHLETS);
+        put(instance);
+        put(ranges);
+        for (int r = 0; r < ranges; r++) {
+            put(culler.getFirst(r));
+            put(culler.getCount(r));
+        }
+    }
+
+    private void reserve(int wordCount) {
+        int bytes = wordCount * Integer.BYTES;
+        if (size + bytes > words.capacity()) {
+            ByteBuffer grown = BufferUtils.createByteBuffer(Math.max(size + bytes, words.capacity() * 2));
+            grown.put(0, words, 0, size);
+            words = grown;
+        }
+        commandCount++;
+    }
+
+    private void put(int word) {
+        words.putInt(size, word);
+        size += Integer.BYTES;
+    }
+
+    // Calls the backend once per command, in recording order
+    public void replay(CommandBackend backend) {
+        ByteBuffer in = words;
+        int at = 0;
+        while (at < size) {
+            int opcode = in.getInt(at);
+            switch (opcode) {
+                case BIND_SHADER:
+                    backend.bindShader(in.getInt(at + 4));
+                    at += 8;
+                    break;
+                case BIND_TEXTURE:
+                    backend.bindTexture(in.getInt(at + 4));
+                    at += 8;
+                    break;
+                case BIND_MODEL:
+                    backend.bindModel(in.getInt(at + 4));
+                    at += 8;
+                    break;
+                case SET_COLOR:
+                    backend.setColor(in.getFloat(at + 4), in.getFloat(at + 8), in.getFloat(at + 12), in.getFloat(at + 16));
+                    at += 20;
+                    break;
+                case DRAW_INSTANCED:
+                    backend.drawInstanced(in.getInt(at + 4), in.getInt(at + 8), in.getInt(at + 12));
+                    at += 16;
+                    break;
+                case DRAW_SUBMESH:
+                    backend.drawSubmeshInstanced(in.getInt(at + 4), in.getInt(at + 8), in.getInt(at + 12), in.getInt(at + 16));
+                    at += 20;
+                    break;
+                case DRAW_MESHLETS: {
+                    int instance = in.getInt(at + 4), ranges = in.getInt(at + 8);
+                    at += 12;
+                    for (int r = 0; r < ranges; r++, at += 8) {
+                        backend.addMeshletRange(in.getInt(at), in.getInt(at + 4));
+                    }
+                    backend.drawMeshlets(instance);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException(String.format("Unknown command opcode %d at byte %d", opcode, at));
+            }
+        }
+    }
+
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    public int getByteCount() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return words.capacity();
+    }
+}
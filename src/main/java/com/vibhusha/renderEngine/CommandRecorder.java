@@ -0,0 +1,137 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Meshlets;
+import com.vibhusha.utils.Model;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+// Records one contiguous range of a frame's sorted render queue keys: copies the range's instance
+// matrices to the same positions of the frame's instance data and turns its batches into commands.
+// No GL calls, so the ranges of a frame are recorded on worker threads, each by its own recorder,
+// and replayed in order on the GL thread. A range assumes nothing about the state the range before
+// it leaves, so it binds everything its first batch needs; a batch cut by a range boundary becomes
+// two draws. A batch of a model with materials draws its submeshes one after another, each over
+// every instance of the batch.
+final class CommandRecorder {
+    private final CommandBuffer commands = new CommandBuffer(4096);
+    private final RenderStats stats = new RenderStats();
+    private final MeshletCuller meshletCuller = new MeshletCuller();
+    private final Matrix4f world = new Matrix4f();
+    private ByteBuffer viewed;  // The instance data instanceFloats views, recreated when RenderQueue grows it
+    private FloatBuffer instanceFloats;
+    int start;
+    int end;
+
+    // Records keys[start, end); models resolves the keys' model ids, submeshTextures the texture ids of
+    // their submeshes (see RenderQueue)
+    void record(long[] keys, float[] transforms, Model[] models, int[][] submeshTextures, ByteBuffer instances,
+                Matrix4fc viewProjection, Vector3fc eye) {
+        commands.reset();
+        stats.reset();
+        if (viewed != instances) {
+            viewed = instances;
+            instanceFloats = instances.duplicate().clear().order(instances.order()).asFloatBuffer();
+        }
+        for (int i = start; i < end; i++) {
+            int submission = (int) (keys[i] & (RenderQueue.MAX_SUBMISSIONS - 1));
+            instanceFloats.put(i * RenderQueue.MATRIX_FLOATS, transforms, submission * RenderQueue.MATRIX_FLOATS, RenderQueue.MATRIX_FLOATS);
+        }
+
+        int currentShader = -1, currentTexture = -1, currentModel = -1;
+        boolean tinted = false;
+        int batchStart = start;
+        while (batchStart < end) {
+            long batchKey = keys[batchStart] >>> RenderQueue.BATCH_SHIFT;
+            int batchEnd = batchStart + 1;
+            while (batchEnd < end && keys[batchEnd] >>> RenderQueue.BATCH_SHIFT == batchKey) {
+                batchEnd++;
+            }
+
+            int shader = (int) (batchKey >>> 23);
+            int texture = (int) (batchKey >>> 13) & 0x3FF;
+            int modelId = (int) (batchKey >>> 3) & 0x3FF;
+            int lod = (int) batchKey & 0x7;
+            Model model = models[modelId];
+            Meshlets meshlets = lod == 0 ? model.getMeshlets() : null;
+
+            if (shader != currentShader) {
+                commands.bindShader(shader);
+                currentShader = shader;
+                currentModel = -1;  // Decode uniforms belong to the program
+                tinted = true;
+                stats.shaderBinds++;
+            }
+            if (modelId != currentModel) {
+                commands.bindModel(modelId);
+                currentModel = modelId;
+                stats.vaoBinds++;
+            }
+
+            int[] submeshTextureIds = submeshTextures[modelId];
+            if (submeshTextureIds == null) {
+                if (texture != currentTexture) {
+                    commands.bindTexture(texture);
+                    currentTexture = texture;
+                    stats.textureBinds++;
+                }
+                if (tinted) {
+                    commands.setColor(1.0f, 1.0f, 1.0f, 1.0f);
+                    tinted = false;
+                }
+                if (meshlets != null) {
+                    recordMeshlets(keys, transforms, meshlets, -1, batchStart, batchEnd, viewProjection, eye);
+                } else {
+                    commands.drawInstanced(lod, batchStart, batchEnd - batchStart);
+                    stats.drawCalls++;
+                }
+            } else {
+                float[] colors = model.getSubmeshColors();
+                for (int s = 0, submeshCount = model.getSubmeshCount(); s < submeshCount; s++) {
+                    int submeshTexture = submeshTextureIds[s] < 0 ? texture : submeshTextureIds[s];
+                    if (submeshTexture != currentTexture) {
+                        commands.bindTexture(submeshTexture);
+                        currentTexture = submeshTexture;
+                        stats.textureBinds++;
+                    }
+                    commands.setColor(colors[s * 4], colors[s * 4 + 1], colors[s * 4 + 2], colors[s * 4 + 3]);
+                    if (meshlets != null) {
+                        recordMeshlets(keys, transforms, meshlets, s, batchStart, batchEnd, viewProjection, eye);
+                    } else {
+                        commands.drawSubmeshInstanced(lod, s, batchStart, batchEnd - batchStart);
+                        stats.drawCalls++;
+                    }
+                }
+                tinted = true;
+            }
+            stats.instances += batchEnd - batchStart;
+            batchStart = batchEnd;
+        }
+    }
+
+    // Each instance of the batch culled and drawn on its own; submesh -1 covers every meshlet
+    private void recordMeshlets(long[] keys, float[] transforms, Meshlets meshlets, int submesh, int batchStart, int batchEnd,
+                                Matrix4fc viewProjection, Vector3fc eye) {
+        int firstMeshlet = submesh < 0 ? 0 : meshlets.getFirstMeshlet(submesh);
+        int endMeshlet = submesh < 0 ? meshlets.getMeshletCount() : meshlets.getFirstMeshlet(submesh + 1);
+        for (int i = batchStart; i < batchEnd; i++) {
+            int submission = (int) (keys[i] & (RenderQueue.MAX_SUBMISSIONS - 1));
+            world.set(transforms, submission * RenderQueue.MATRIX_FLOATS);
+            if (meshletCuller.cull(meshlets, firstMeshlet, endMeshlet, viewProjection, world, eye, stats) > 0) {
+                commands.drawMeshlets(i, meshletCuller);
+                stats.drawCalls++;
+            }
+        }
+    }
+
+    CommandBuffer getCommands() {
+        return commands;
+    }
+
+    RenderStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,101 @@
+package com.vibhusha.renderEngine;
+
+// Per-frame culling counters, overwritten by every Scene.cull call
+public class CullStats {
+    int objectCount;
+    int visibleCount;
+    int nodesVisited;
+    int objectsTested;
+    int acceptedWithoutTest;
+    int refitNodes;
+    boolean rebuilt;
+    long refitNanos;
+    long cullNanos;
+    int occludedCount;
+    int occluderTriangles;
+    long rasterNanos;
+    long occlusionNanos;
+
+    void reset() {
+        visibleCount = 0;
+        nodesVisited = 0;
+        objectsTested = 0;
+        acceptedWithoutTest = 0;
+        refitNodes = 0;
+        rebuilt = false;
+        refitNanos = 0;
+        cullNanos = 0;
+        occludedCount = 0;
+        occluderTriangles = 0;
+        rasterNanos = 0;
+        occlusionNanos = 0;
+    }
+
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    public int getCulledCount() {
+        return objectCount - visibleCount;
+    }
+
+    public int getNodesVisited() {
+        return nodesVisited;
+    }
+
+    // Objects that needed a plane test in a leaf
+    public int getObjectsTested() {
+        return objectsTested;
+    }
+
+    // Objects accepted because a whole subtree was inside the frustum
+    public int getAcceptedWithoutTest() {
+        return acceptedWithoutTest;
+    }
+
+    public int getRefitNodes() {
+        return refitNodes;
+    }
+
+    public boolean wasRebuilt() {
+        return rebuilt;
+    }
+
+    public long getRefitNanos() {
+        return refitNanos;
+    }
+
+    public long getCullNanos() {
+        return cullNanos;
+    }
+
+    // Frustum-visible objects that OcclusionCuller.filter found hidden behind occluders
+    public int getOccludedCount() {
+        return occludedCount;
+    }
+
+    public int getOccluderTriangles() {
+        return occluderTriangles;
+    }
+
+    public long getRasterNanos() {
+        return rasterNanos;
+    }
+
+    public long getOcclusionNanos() {
+        return occlusionNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("visible %d/%d, nodes %d, tested %d, bulk-accepted %d, refit %d nodes%s in %.3f ms, cull %.3f ms, "
+                        + "occluded %d (%d occluder triangles, raster %.3f ms, test %.3f ms)",
+                visibleCount, objectCount, nodesVisited, objectsTested, acceptedWithoutTest, refitNodes,
+                rebuilt ? " (rebuilt)" : "", refitNanos / 1_000_000.0, cullNanos / 1_000_000.0,
+                occludedCount, occluderTriangles, rasterNanos / 1_000_000.0, occlusionNanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,13 @@
+package com.vibhusha.renderEngine;
+
+// Inner loop of the occlusion rasterizer. VectorDepthKernels uses the Vector API when the incubator
+// module is present (run with --add-modules jdk.incubator.vector), ScalarDepthKernels otherwise. Both
+// evaluate exactly the same float expressions per pixel, so their depth buffers are bit-identical.
+interface DepthKernels {
+    // For pixel centres x = px + i, i in [0, count): where all three edge functions a * x + r are
+    // non-negative, depth[offset + i] = min(depth[offset + i], max(zx * x + rz, zMin))
+    void rasterizeRow(float[] depth, int offset, int count, float px,
+                      float a0, float r0, float a1, float r1, float a2, float r2, float zx, float rz, float zMin);
+
+    String getName();
+}
@@ -0,0 +1,97 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Entity ids: a 24-bit dense index with an 8-bit generation above it. Destroying an entity bumps the
+// generation of its index, so handles kept by other systems stop being alive instead of silently
+// pointing at whatever reuses the index. Freed indices are recycled first in, first out and only once
+// enough of them have piled up, which makes a generation wrap-around practically unreachable.
+public class EntityRegistry {
+    public static final int NULL = -1;
+    public static final int INDEX_BITS = 24;
+    public static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int MIN_FREE_INDICES = 1024;
+
+    private byte[] generations = new byte[1024];
+    private int indexCount;
+    private int aliveCount;
+    private final IntList freeIndices = new IntList();
+    private int freeHead;
+    private final List<ComponentPool> pools = new ArrayList<>();
+
+    // Storage that keeps per-entity data and must drop it when the entity goes away
+    public interface ComponentPool {
+        void remove(int index);
+    }
+
+    public int create() {
+        int index;
+        if (freeIndices.size() - freeHead > MIN_FREE_INDICES) {
+            index = freeIndices.get(freeHead++);
+            if (freeHead > freeIndices.size() / 2) {
+                // Drop the consumed front of the queue
+                int remaining = freeIndices.size() - freeHead;
+                System.arraycopy(freeIndices.array(), freeHead, freeIndices.array(), 0, remaining);
+                freeIndices.setSize(remaining);
+                freeHead = 0;
+            }
+        } else {
+            if (indexCount == INDEX_MASK) {
+                throw new IllegalStateException("Entity registry is limited to " + INDEX_MASK + " entities");
+            }
+            index = indexCount++;
+            if (index == generations.length) {
+                generations = Arrays.copyOf(generations, generations.length * 2);
+            }
+        }
+        aliveCount++;
+        return handle(index, generations[index]);
+    }
+
+    public void destroy(int entity) {
+        if (!isAlive(entity)) {
+            return;
+        }
+        int index = indexOf(entity);
+        for (ComponentPool pool : pools) {
+            pool.remove(index);
+        }
+        generations[index]++;
+        freeIndices.add(index);
+        aliveCount--;
+    }
+
+    public boolean isAlive(int entity) {
+        int index = indexOf(entity);
+        return entity != NULL && index < indexCount && generations[index] == generationOf(entity);
+    }
+
+    public void register(ComponentPool pool) {
+        pools.add(pool);
+    }
+
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    // Upper bound of every index handed out so far, for sizing per-index arrays
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    public static int indexOf(int entity) {
+        return entity & INDEX_MASK;
+    }
+
+    public static byte generationOf(int entity) {
+        return (byte) (entity >>> INDEX_BITS);
+    }
+
+    private static int handle(int index, byte generation) {
+        return (generation & 0xFF) << INDEX_BITS | index;
+    }
+}
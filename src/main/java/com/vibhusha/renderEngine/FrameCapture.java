@@ -0,0 +1,132 @@
+package com.vibhusha.renderEngine;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+// Asynchronous readback of an OffscreenTarget. Each frame is read into the next buffer of a ring of
+// pixel pack buffers with a fence behind it, so glReadPixels returns at once. A buffer is mapped only
+// after its fence has signalled, or when the ring is full and the oldest frame has to be waited for.
+// Mapped pixels (RGBA8, bottom row first) are copied into a FrameWriter buffer and written on the
+// writer's thread; without a writer the frames are read back and dropped.
+public class FrameCapture {
+    public static final int DEFAULT_BUFFER_COUNT = 3;
+    private static final long WAIT_NANOS = 1_000_000_000L;
+
+    private final OffscreenTarget target;
+    private final FrameWriter writer;
+    private final int frameBytes;
+    private final int[] pixelBufferIds;
+    private final long[] fences;
+    private final long[] frameNumbers;
+    private ByteBuffer mapped;
+    private int next;
+    private int pending;
+    private long captured;
+    private long completed;
+    private long stalls;
+
+    public FrameCapture(OffscreenTarget target, FrameWriter writer, int bufferCount) {
+        this.target = target;
+        this.writer = writer;
+        this.frameBytes = target.getWidth() * target.getHeight() * 4;
+        this.pixelBufferIds = new int[bufferCount];
+        this.fences = new long[bufferCount];
+        this.frameNumbers = new long[bufferCount];
+        GL15.glGenBuffers(pixelBufferIds);
+        for (int pixelBufferId : pixelBufferIds) {
+            GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, pixelBufferId);
+            GL15.glBufferData(GL21.GL_PIXEL_PACK_BUFFER, frameBytes, GL15.GL_STREAM_READ);
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+    // Queues the readback of the frame just drawn into the target, then hands on every finished frame
+    public void capture() {
+        if (pending == pixelBufferIds.length) {
+            stalls++;
+            collect(true);
+        }
+        int slot = next;
+        target.bind();
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, pixelBufferIds[slot]);
+        GL11.glReadPixels(0, 0, target.getWidth(), target.getHeight(), GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, 0L);
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        fences[slot] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        frameNumbers[slot] = captured++;
+        next = (next + 1) % pixelBufferIds.length;
+        pending++;
+
+        while (pending > 0 && collect(false)) {
+            // Hand on every frame the GPU has finished
+        }
+    }
+
+    // Waits for and hands on every frame still in flight
+    public void finish() {
+        while (pending > 0) {
+            collect(true);
+        }
+    }
+
+    private boolean collect(boolean wait) {
+        int slot = Math.floorMod(next - pending, pixelBufferIds.length);
+        if (wait) {
+            int status;
+            do {
+                status = GL32.glClientWaitSync(fences[slot], GL32.GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_NANOS);
+            } while (status == GL32.GL_TIMEOUT_EXPIRED);
+            if (status == GL32.GL_WAIT_FAILED) {
+                throw new IllegalStateException("Waiting for a frame readback failed");
+            }
+        } else if (GL32.glClientWaitSync(fences[slot], 0, 0) == GL32.GL_TIMEOUT_EXPIRED) {
+            return false;
+        }
+        GL32.glDeleteSync(fences[slot]);
+        fences[slot] = 0;
+
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, pixelBufferIds[slot]);
+        mapped = GL30.glMapBufferRange(GL21.GL_PIXEL_PACK_BUFFER, 0, frameBytes, GL30.GL_MAP_READ_BIT, mapped);
+        if (mapped == null) {
+            throw new IllegalStateException("Could not map a frame readback buffer");
+        }
+        if (writer != null) {
+            // Blocks while every writer buffer is queued, so a slow disk slows the renderer down
+            FrameWriter.Frame frame = writer.acquire();
+            MemoryUtil.memCopy(MemoryUtil.memAddress(mapped), MemoryUtil.memAddress(frame.getPixels()), frameBytes);
+            writer.submit(frame, frameNumbers[slot]);
+        }
+        GL15.glUnmapBuffer(GL21.GL_PIXEL_PACK_BUFFER);
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        pending--;
+        completed++;
+        return true;
+    }
+
+    public long getCapturedFrames() {
+        return captured;
+    }
+
+    public long getCompletedFrames() {
+        return completed;
+    }
+
+    // Frames that found every pixel buffer in flight and waited for the oldest
+    public long getStalls() {
+        return stalls;
+    }
+
+    public void cleanup() {
+        for (long fence : fences) {
+            if (fence != 0) {
+                GL32.glDeleteSync(fence);
+            }
+        }
+        GL15.glDeleteBuffers(pixelBufferIds);
+    }
+}
@@ -0,0 +1,65 @@
+package com.vibhusha.renderEngine;
+
+import java.util.Arrays;
+
+// Dense ids for the objects one frame's sort keys name, by identity, with the id -> object table
+// the command backend resolves them through. Cleared every frame, so ids never run out over the
+// life of a queue and no reference outlives the frame it was submitted in. Open addressing over
+// identity hash codes, so assigning an id neither boxes nor allocates.
+final class FrameIds<T> {
+    private final T[] objects;
+    private final Object[] slots;
+    private final int[] slotIds;
+    private final String kind;
+    private int count;
+
+    // objects sizes the table: ids run from 0 to objects.length - 1
+    FrameIds(T[] objects, String kind) {
+        this.objects = objects;
+        this.slots = new Object[Integer.highestOneBit(objects.length * 2 - 1) << 1];
+        this.slotIds = new int[slots.length];
+        this.kind = kind;
+    }
+
+    int idOf(T object) {
+        int mask = slots.length - 1;
+        int slot = mix(System.identityHashCode(object)) & mask;
+        while (slots[slot] != null) {
+            if (slots[slot] == object) {
+                return slotIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (count == objects.length) {
+            throw new IllegalStateException("Render queue sort key supports at most " + objects.length + " " + kind + " per frame");
+        }
+        slots[slot] = object;
+        slotIds[slot] = count;
+        objects[count] = object;
+        return count++;
+    }
+
+    // The id -> object table; entries past getCount() are null
+    T[] getObjects() {
+        return objects;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    void clear() {
+        if (count == 0) {
+            return;
+        }
+        Arrays.fill(objects, 0, count, null);
+        Arrays.fill(slots, null);
+        count = 0;
+    }
+
+    // Identity hash codes of objects allocated together differ mostly in their low-entropy bits
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+}
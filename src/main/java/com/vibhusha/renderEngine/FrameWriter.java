@@ -0,0 +1,207 @@
+package com.vibhusha.renderEngine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lwjgl.BufferUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Writes captured frames to a directory on its own thread, as frame-000000.png or frame-000000.rgba
+// (raw RGBA8, top row first, no header). Frames come from a fixed pool of direct buffers: acquire()
+// blocks while every buffer is queued, so a writer that cannot keep up slows the renderer down
+// instead of growing memory. Pixels arrive as OpenGL reads them, bottom row first.
+@Slf4j
+public class FrameWriter implements Runnable {
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    public enum Format {
+        RAW("rgba"),
+        PNG("png");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private final Path directory;
+    private final Format format;
+    private final int width;
+    private final int height;
+    private final BlockingQueue<Frame> free;
+    private final BlockingQueue<Frame> queued;
+    private final Frame end = new Frame(null);
+    private BufferedImage image;
+    private Thread thread;
+    private volatile IOException failure;
+    private volatile long framesWritten;
+    private volatile long bytesWritten;
+    private long acquireWaits;
+
+    public FrameWriter(Path directory, Format format, int width, int height, int bufferCount) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.free = new ArrayBlockingQueue<>(bufferCount);
+        this.queued = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            free.add(new Frame(BufferUtils.createByteBuffer(width * height * 4)));
+        }
+    }
+
+    public void start() {
+        if (format == Format.PNG) {
+            ImageIO.setUseCache(false);  // Encode in memory, not through a temporary file
+            image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+        }
+        thread = new Thread(this, "frame-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Render thread: a free frame buffer of width * height * 4 bytes, waiting for one if necessary
+    public Frame acquire() {
+        if (failure != null) {
+            throw new IllegalStateException("Frame writer failed", failure);
+        }
+        Frame frame = free.poll();
+        if (frame == null) {
+            acquireWaits++;
+            try {
+                frame = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a frame buffer", e);
+            }
+        }
+        return frame;
+    }
+
+    public void submit(Frame frame, long number) {
+        frame.number = number;
+        queued.add(frame);  // Never full, at most every frame plus the end marker is queued
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Frame frame;
+            try {
+                frame = queued.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame == end) {
+                return;
+            }
+            // After a failure frames are only recycled, acquire() reports the error
+            if (failure == null) {
+                try {
+                    write(frame);
+                    framesWritten++;
+                } catch (IOException e) {
+                    log.error(String.format("Writing frame %d failed: %s", frame.number, e));
+                    failure = e;
+                }
+            }
+            free.add(frame);
+        }
+    }
+
+    private void write(Frame frame) throws IOException {
+        Path file = directory.resolve(String.format(Locale.ROOT, "frame-%06d.%s", frame.number, format.extension));
+        ByteBuffer pixels = frame.pixels;
+        int rowBytes = width * 4;
+        if (format == Format.RAW) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (int row = height - 1; row >= 0; row--) {
+                    pixels.limit((row + 1) * rowBytes).position(row * rowBytes);
+                    while (pixels.hasRemaining()) {
+                        channel.write(pixels);
+                    }
+                }
+            }
+            pixels.clear();
+        } else {
+            // RGBA bottom-up into the image's ABGR top-down
+            byte[] abgr = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            for (int row = 0; row < height; row++) {
+                int source = (height - 1 - row) * rowBytes;
+                int target = row * rowBytes;
+                for (int x = 0; x < rowBytes; x += 4) {
+                    abgr[target + x] = pixels.get(source + x + 3);
+                    abgr[target + x + 1] = pixels.get(source + x + 2);
+                    abgr[target + x + 2] = pixels.get(source + x + 1);
+                    abgr[target + x + 3] = pixels.get(source + x);
+                }
+            }
+            if (!ImageIO.write(image, "png", file.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+        bytesWritten += Files.size(file);
+    }
+
+    // Writes every queued frame and stops the thread; rethrows a write failure
+    public void close() throws IOException {
+        if (thread != null) {
+            queued.add(end);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    // Bytes on disk, after PNG compression
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // Frames the renderer had to wait for a free buffer
+    public long getAcquireWaits() {
+        return acquireWaits;
+    }
+
+    public static final class Frame {
+        private final ByteBuffer pixels;
+        private long number;
+
+        private Frame(ByteBuffer pixels) {
+            this.pixels = pixels;
+        }
+
+        public ByteBuffer getPixels() {
+            return pixels;
+        }
+    }
+}
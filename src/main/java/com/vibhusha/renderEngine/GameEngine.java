@@ -1,46 +1,152 @@
 package com.vibhusha.renderEngine;
 
 import com.vibhusha.utils.*;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL30;
 import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.Platform;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
 
+@Slf4j
 public class GameEngine {
+    // -Dengine.trackAllocations=true logs heap bytes allocated per frame on the render thread
+    private static final boolean TRACK_ALLOCATIONS = Boolean.getBoolean("engine.trackAllocations");
+    private static final int ALLOCATION_REPORT_FRAMES = 600;
+    // -Dengine.tickRate=60 runs the simulation on its own thread at a fixed rate, 0 keeps update and render in lockstep
+    private static final int TICK_RATE = Integer.getInteger("engine.tickRate", 0);
+    private static final int FRAME_STATS_WINDOW = 1024;
+    // -Dengine.occlusion=true rasterizes the model's collision mesh as an occluder and culls what it hides
+    private static final boolean OCCLUSION = Boolean.getBoolean("engine.occlusion");
+    private static final int OCCLUSION_WIDTH = 320, OCCLUSION_HEIGHT = 180;
+    // -Dengine.meshlets=true splits the model into meshlets and culls them per frame
+    private static final boolean MESHLETS = Boolean.getBoolean("engine.meshlets");
+    // With -Dengine.profile=true, -Dengine.profile.csv=frames.csv writes the profile summary on exit
+    private static final String PROFILE_CSV = System.getProperty("engine.profile.csv");
+    // -Dengine.terrain=world.vhgt streams terrain chunks from that heightmap around the camera, keeping
+    // at most -Dengine.terrain.budgetMB of them on the GPU
+    private static final String TERRAIN = System.getProperty("engine.terrain");
+    private static final long TERRAIN_BUDGET_MB = Long.getLong("engine.terrain.budgetMB", TerrainStreamer.DEFAULT_BUDGET_BYTES >> 20);
+    // -Dengine.particles=200000 runs a fountain of up to that many particles; -Dengine.particles.sort=true
+    // draws them back to front, -Dengine.particles.mapped=false streams them with glBufferSubData
+    private static final int PARTICLES = Integer.getInteger("engine.particles", 0);
+    private static final boolean PARTICLES_SORT = Boolean.getBoolean("engine.particles.sort");
+    private static final boolean PARTICLES_MAPPED = Boolean.parseBoolean(System.getProperty("engine.particles.mapped", "true"));
+    private static final float MAX_PARTICLE_STEP = 0.1f;
+
+    private static final int UPDATE_SCOPE = Profiler.scope("update");
+    private static final int UPLOADS_SCOPE = Profiler.scope("processUploads");
+    private static final int RELOAD_SCOPE = Profiler.scope("pollReload");
+    private static final int RENDER_SCOPE = Profiler.scope("render");
+    private static final int CULL_SCOPE = Profiler.scope("cull");
+    private static final int TRANSFORMS_SCOPE = Profiler.scope("transforms");
+    private static final int OCCLUSION_SCOPE = Profiler.scope("occlusion");
+    private static final int FLUSH_SCOPE = Profiler.scope("flush");
+    private static final int SWAP_SCOPE = Profiler.scope("swapBuffers");
+    private static final int READBACK_SCOPE = Profiler.scope("readback");
+    private static final int TERRAIN_SCOPE = Profiler.scope("terrain");
+    private static final int PARTICLES_SCOPE = Profiler.scope("particles");
+
+    // -Dengine.headless=true renders -Dengine.headless.frames frames into an offscreen framebuffer of
+    // -Dengine.width x -Dengine.height and reads them back, writing them to -Dengine.headless.output
+    // (png or raw per -Dengine.headless.format) when set, then reports the throughput and exits.
+    // Without a display it uses GLFW's null platform with an OSMesa context (Mesa's software
+    // rasterizer, libOSMesa); -Dengine.headless.context=egl selects surfaceless EGL instead and
+    // =native a hidden window on the current display.
+    private static final boolean HEADLESS = Boolean.getBoolean("engine.headless");
+    private static final int HEADLESS_FRAMES = Integer.getInteger("engine.headless.frames", 600);
+    private static final String HEADLESS_OUTPUT = System.getProperty("engine.headless.output");
+    private static final String HEADLESS_FORMAT = System.getProperty("engine.headless.format", "png");
+    private static final String HEADLESS_CONTEXT = System.getProperty("engine.headless.context",
+            System.getenv("DISPLAY") != null || System.getenv("WAYLAND_DISPLAY") != null ? "native" : "osmesa");
+
     private long window;
-    private int width = 800, height = 600;
+    private int width = Integer.getInteger("engine.width", 800), height = Integer.getInteger("engine.height", 600);
     private boolean running = true;
     private Camera camera;
-    private Model model;
+    private AssetManager assets;
+    private AssetHandle<Model> model;
+    private AssetHandle<Texture> texture;
+    private int modelId;
+    private final Scene scene = new Scene();
+    private final Frustum frustum = new Frustum();
+    private OcclusionCuller occlusion;
+    private OffscreenTarget offscreen;
+    private FrameCapture capture;
+    private FrameWriter frameWriter;
+    private TerrainStreamer terrain;
+    private TerrainRenderer terrainRenderer;
+    private ParticleSystem particles;
+    private ParticleRenderer particleRenderer;
+    private long particleTime;
+    private final Vector3f viewDirection = new Vector3f();
+    private final Matrix4f modelWorld = new Matrix4f();
+    private final EntityRegistry entities = new EntityRegistry();
+    private final TransformPool transforms = new TransformPool(entities);
+    private int modelEntity;
+    private RenderQueue renderQueue;
+    private Material material;
     private Shader shader;
-    private Texture texture;
     private long lastFrameTime;
+    private Simulation simulation;
+    private InputQueue input;
+    private int movementKeys;
+    private final float[] mouseOffset = new float[2];
+    private final float[] pose = new float[5];
+    private final TimingStats frameTimes = new TimingStats(FRAME_STATS_WINDOW);
 
     public void init() {
+        boolean nullPlatform = HEADLESS && !HEADLESS_CONTEXT.equals("native");
+        if (nullPlatform) {
+            GLFW.glfwInitHint(GLFW.GLFW_PLATFORM, GLFW.GLFW_PLATFORM_NULL);
+        }
         if (!GLFW.glfwInit()) {
             throw new IllegalStateException("Unable to initialize GLFW");
         }
 
-        // Set OpenGL version hints for macOS
+        // OpenGL 3.3 core everywhere; macOS only creates core contexts that are forward compatible
         GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MAJOR, 3);
         GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MINOR, 3);
-        GLFW.glfwWindowHint(GLFW.GLFW_OPENGL_FORWARD_COMPAT, GL11.GL_TRUE); // Required for macOS
+        if (Platform.get() == Platform.MACOSX) {
+            GLFW.glfwWindowHint(GLFW.GLFW_OPENGL_FORWARD_COMPAT, GL11.GL_TRUE);
+        }
         GLFW.glfwWindowHint(GLFW.GLFW_OPENGL_PROFILE, GLFW.GLFW_OPENGL_CORE_PROFILE); // Use core profile
+        if (HEADLESS) {
+            GLFW.glfwWindowHint(GLFW.GLFW_VISIBLE, GLFW.GLFW_FALSE);
+            if (nullPlatform) {
+                GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_CREATION_API,
+                        HEADLESS_CONTEXT.equals("egl") ? GLFW.GLFW_EGL_CONTEXT_API : GLFW.GLFW_OSMESA_CONTEXT_API);
+            }
+        }
 
         window = GLFW.glfwCreateWindow(width, height, "OpenGL 3D Engine", MemoryUtil.NULL, MemoryUtil.NULL);
         if (window == MemoryUtil.NULL) {
             throw new RuntimeException("Failed to create GLFW window");
         }
 
-        GLFWVidMode vidMode = GLFW.glfwGetVideoMode(GLFW.glfwGetPrimaryMonitor());
-        GLFW.glfwSetWindowPos(window, (vidMode.width() - width) / 2, (vidMode.height() - height) / 2);
+        if (!HEADLESS) {
+            GLFWVidMode vidMode = GLFW.glfwGetVideoMode(GLFW.glfwGetPrimaryMonitor());
+            GLFW.glfwSetWindowPos(window, (vidMode.width() - width) / 2, (vidMode.height() - height) / 2);
+        }
         GLFW.glfwMakeContextCurrent(window);
-        GLFW.glfwShowWindow(window);
+        if (!HEADLESS) {
+            GLFW.glfwShowWindow(window);
+        }
         GL.createCapabilities();
+        if (HEADLESS) {
+            initHeadless();
+        }
 
         GL11.glEnable(GL11.GL_DEPTH_TEST);
 
@@ -49,22 +155,211 @@ public class GameEngine {
         GL30.glBindVertexArray(vao);
 
         camera = new Camera(0, 0, 3);
+        if (TERRAIN != null) {
+            initTerrain();
+        }
+        if (PARTICLES > 0) {
+            initParticles();
+        }
         lastFrameTime = System.nanoTime();
 
+        // Assets stream in on worker threads, placeholders are drawn until the uploads land
+        assets = new AssetManager();
+        shader = new Shader("shaders/vertex.glsl", "shaders/fragment.glsl");
+        MeshOptions meshOptions = new MeshOptions(VertexFormat.FULL, MeshOptions.DEFAULT_LOD_RATIOS);
+        if (OCCLUSION) {
+            meshOptions = meshOptions.withCollisionMesh();
+        }
+        if (MESHLETS) {
+            meshOptions = meshOptions.withMeshlets();
+        }
+        model = assets.loadModel("assets/obj/cube.obj", meshOptions);
+        texture = assets.loadTexture("assets/textures/texture.png");
+        modelId = scene.add(model.get());
+        modelEntity = entities.create();
+        transforms.add(modelEntity);
+        material = new Material(shader, texture.get());
+        model.getFuture().thenAccept(loaded -> {
+            scene.remove(modelId);
+            modelId = scene.add(loaded);
+        });
+        texture.getFuture().thenAccept(loaded -> material = new Material(shader, loaded));
+        renderQueue = new RenderQueue();
+        if (OCCLUSION) {
+            occlusion = new OcclusionCuller(OCCLUSION_WIDTH, OCCLUSION_HEIGHT);
+            log.info(String.format("Occlusion culling at %dx%d, %s kernels", occlusion.getWidth(), occlusion.getHeight(), occlusion.getKernelName()));
+        }
+
+        if (TICK_RATE > 0) {
+            input = new InputQueue(1024);
+            Camera simulated = new Camera(0, 0, 3);
+            simulated.setPose(camera.getPosition().x(), camera.getPosition().y(), camera.getPosition().z(), camera.getYaw(), camera.getPitch());
+            simulation = new Simulation(simulated, input, TICK_RATE);
+            simulation.start();
+            log.info(String.format("Simulation thread running at %d ticks/s", TICK_RATE));
+        }
+    }
+
+    private void initHeadless() {
+        offscreen = new OffscreenTarget(width, height);
+        if (HEADLESS_OUTPUT != null) {
+            FrameWriter.Format format = FrameWriter.Format.valueOf(HEADLESS_FORMAT.toUpperCase(Locale.ROOT));
+            try {
+                frameWriter = new FrameWriter(Paths.get(HEADLESS_OUTPUT), format, width, height, FrameWriter.DEFAULT_BUFFER_COUNT);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot write frames to " + HEADLESS_OUTPUT, e);
+            }
+            frameWriter.start();
+        }
+        capture = new FrameCapture(offscreen, frameWriter, FrameCapture.DEFAULT_BUFFER_COUNT);
+        log.info(String.format("Headless rendering at %dx%d on %s (%s context)", width, height, GL11.glGetString(GL11.GL_RENDERER), HEADLESS_CONTEXT));
+    }
+
+    // Opens the heightmap and starts above the middle of it
+    private void initTerrain() {
+        HeightmapFile map;
         try {
-            model = ModelLoader.loadOBJ("assets/obj/cube.obj");
+            map = HeightmapFile.open(Paths.get(TERRAIN));
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("Cannot open heightmap " + TERRAIN, e);
         }
-        shader = new Shader("shaders/vertex.glsl", "shaders/fragment.glsl");
-        texture = new Texture("assets/textures/texture.png");
+        terrainRenderer = new TerrainRenderer(map.getTileSize(), TerrainStreamer.lodCountFor(map.getTileSize()));
+        terrain = new TerrainStreamer(map, terrainRenderer, Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                Camera.FAR_PLANE, map.getTileSize() * map.getSpacing() * 2, 1.0f, TERRAIN_BUDGET_MB << 20);
+        float x = map.getWidth() * map.getSpacing() / 2, z = map.getDepth() * map.getSpacing() / 2;
+        camera.setPose(x, map.getHeight(map.getWidth() / 2, map.getDepth() / 2) + 10, z, camera.getYaw(), camera.getPitch());
+        log.info(String.format("Streaming terrain from %s: %dx%d samples in %dx%d chunks, %d LODs, %d MB budget",
+                TERRAIN, map.getWidth(), map.getDepth(), map.getTilesX(), map.getTilesZ(), terrain.getLodCount(), TERRAIN_BUDGET_MB));
+    }
+
+    // A fountain below the model, sized to settle just under PARTICLES live particles
+    private void initParticles() {
+        particles = new ParticleSystem();
+        particles.setDepthSort(PARTICLES_SORT);
+        ParticleEmitter fountain = new ParticleEmitter(PARTICLES, 1);
+        fountain.setPosition(0, -1, 0);
+        fountain.setVelocity(0, 1, 0, 0.3f, 4, 6);
+        fountain.setLifetime(1.0f, 2.0f);
+        fountain.setSize(0.02f);
+        fountain.setColor(0.4f, 0.7f, 1.0f, 0.8f);
+        fountain.setRate(PARTICLES / 1.5f * 0.95f);
+        particles.addEmitter(fountain);
+        particleRenderer = new ParticleRenderer(PARTICLES_MAPPED);
+        particleTime = System.nanoTime();
+        log.info(String.format("Particle fountain of up to %d particles, %s kernels, %s instance buffers%s",
+                PARTICLES, particles.getKernelName(), PARTICLES_MAPPED ? "mapped" : "orphaned", PARTICLES_SORT ? ", depth sorted" : ""));
     }
 
     public void loop() {
+        if (HEADLESS) {
+            renderFrames(HEADLESS_FRAMES);
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedAtReport = TRACK_ALLOCATIONS ? threads.getThreadAllocatedBytes(threadId) : 0;
+        int frames = 0;
+        long frameStart = System.nanoTime();
+
         while (running && !GLFW.glfwWindowShouldClose(window)) {
-            update();
+            Profiler.beginFrame();
+            Profiler.begin(UPDATE_SCOPE);
+            if (simulation != null) {
+                forwardInput();
+                applySnapshot();
+            } else {
+                update();
+            }
+            Profiler.end();
+            Profiler.begin(UPLOADS_SCOPE);
+            assets.processUploads();
+            assets.trim();
+            Profiler.end();
+            Profiler.begin(RELOAD_SCOPE);
+            shader.pollReload();
+            Profiler.end();
+            Profiler.begin(RENDER_SCOPE);
+            render();
+            Profiler.end();
+            Profiler.endFrame();
+
+            long frameEnd = System.nanoTime();
+            frameTimes.record(frameEnd - frameStart);
+            frameStart = frameEnd;
+            if (frameTimes.getCount() == FRAME_STATS_WINDOW) {
+                log.info("Frame time: " + frameTimes.summary());
+                if (Profiler.ENABLED) {
+                    log.info("Profile:\n" + Profiler.summary());
+                }
+                log.info("GPU resources: " + assets.getResources().getStats());
+                if (terrain != null) {
+                    log.info("Terrain: " + terrain.getStats());
+                }
+                if (particles != null) {
+                    log.info("Particles: " + particles.getStats());
+                }
+                if (MESHLETS) {
+                    log.info("Last frame: " + renderQueue.getStats());
+                }
+                frameTimes.clear();
+            }
+
+            if (TRACK_ALLOCATIONS && ++frames == ALLOCATION_REPORT_FRAMES) {
+                long allocated = threads.getThreadAllocatedBytes(threadId);
+                log.info(String.format("Frame allocations: %.1f bytes/frame over %d frames", (allocated - allocatedAtReport) / (double) frames, frames));
+                allocatedAtReport = threads.getThreadAllocatedBytes(threadId);
+                frames = 0;
+            }
+        }
+    }
+
+    // Headless: waits for the assets, renders and reads back frameCount frames, then reports throughput
+    private void renderFrames(int frameCount) {
+        while (!isSettled(model) || !isSettled(texture)) {
+            assets.processUploads();
+            LockSupport.parkNanos(1_000_000L);
+        }
+
+        long start = System.nanoTime();
+        long frameStart = start;
+        for (int frame = 0; frame < frameCount; frame++) {
+            Profiler.beginFrame();
+            Profiler.begin(UPLOADS_SCOPE);
+            assets.processUploads();
+            assets.trim();
+            Profiler.end();
+            Profiler.begin(RENDER_SCOPE);
             render();
+            Profiler.end();
+            Profiler.endFrame();
+
+            long frameEnd = System.nanoTime();
+            frameTimes.record(frameEnd - frameStart);
+            frameStart = frameEnd;
         }
+        long rendered = System.nanoTime();
+        capture.finish();
+        if (frameWriter != null) {
+            try {
+                frameWriter.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Writing frames failed", e);
+            }
+        }
+        long finished = System.nanoTime();
+
+        double seconds = (finished - start) / 1e9;
+        log.info(String.format("Rendered %d frames at %dx%d in %.2f s: %.1f frames/s rendering, %.1f frames/s end to end; frame time %s; %d readback stalls",
+                frameCount, width, height, seconds, frameCount / ((rendered - start) / 1e9), frameCount / seconds, frameTimes.summary(), capture.getStalls()));
+        if (frameWriter != null) {
+            log.info(String.format("Wrote %d %s frames to %s: %.1f MB, %.1f MB/s; the renderer waited for the writer %d times",
+                    frameWriter.getFramesWritten(), frameWriter.getFormat(), frameWriter.getDirectory(), frameWriter.getBytesWritten() / 1e6,
+                    frameWriter.getBytesWritten() / 1e6 / seconds, frameWriter.getAcquireWaits()));
+        }
+    }
+
+    private static boolean isSettled(AssetHandle<?> handle) {
+        return handle.isReady() || handle.isFailed();
     }
 
     private void update() {
@@ -77,6 +372,29 @@ public class GameEngine {
         }
     }
 
+    // Polls GLFW on the window thread and hands the input to the simulation thread
+    private void forwardInput() {
+        GLFW.glfwPollEvents();
+        int keys = Camera.readMovementKeys(window);
+        if (keys != movementKeys && input.offer(InputQueue.MOVEMENT_KEYS, keys, 0, 0)) {
+            movementKeys = keys;
+        }
+        camera.readMouseOffset(window, mouseOffset);
+        if (mouseOffset[0] != 0 || mouseOffset[1] != 0) {
+            input.offer(InputQueue.MOUSE_MOVE, 0, mouseOffset[0], mouseOffset[1]);
+        }
+        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_ESCAPE) == GLFW.GLFW_PRESS) {
+            running = false;
+        }
+    }
+
+    // Places the render camera between the last two simulation ticks
+    private void applySnapshot() {
+        SimulationState state = simulation.latest();
+        state.interpolate(simulation.alpha(state, System.nanoTime()), pose);
+        camera.setPose(pose[0], pose[1], pose[2], pose[3], pose[4]);
+    }
+
     private float getDeltaTime() {
         long currentTime = System.nanoTime();
         float deltaTime = (currentTime - lastFrameTime) / 1_000_000_000.0f;
@@ -85,30 +403,99 @@ public class GameEngine {
     }
 
     private void render() {
+        if (offscreen != null) {
+            offscreen.bind();
+        }
         GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
 
-        shader.bind();
-
-        // Convert the matrices to float arrays and set them as uniforms
-        float[] viewMatrixData = new float[16];
-        camera.getViewMatrix().get(viewMatrixData);  // Fill the array with the view matrix data
-        shader.setUniform("viewMatrix", viewMatrixData);  // Set the uniform
-
-        float[] projectionMatrixData = new float[16];
-        camera.getProjectionMatrix(width, height).get(projectionMatrixData);  // Fill the array with the projection matrix data
-        shader.setUniform("projectionMatrix", projectionMatrixData);  // Set the uniform
+        Profiler.begin(CULL_SCOPE);
+        frustum.update(camera, width, height);
+        IntList visible = scene.cull(frustum);
+        Profiler.end();
+        Profiler.begin(TRANSFORMS_SCOPE);
+        transforms.update(ForkJoinPool.commonPool());
+        Profiler.end();
+        transforms.getWorldMatrix(modelEntity, modelWorld);
+        if (occlusion != null) {
+            Profiler.begin(OCCLUSION_SCOPE);
+            occlusion.begin(camera, width, height);
+            CollisionMesh occluder = model.get().getCollisionMesh();  // Null for the placeholder
+            if (occluder != null) {
+                occlusion.addOccluder(occluder, modelWorld);
+            }
+            occlusion.rasterize(ForkJoinPool.commonPool());
+            occlusion.filter(scene, visible);
+            Profiler.end();
+        }
 
-        texture.bind();
-        model.render();
+        // The demo scene holds one object, placed by modelEntity
+        renderQueue.begin(camera, width, height);
+        for (int i = 0; i < visible.size(); i++) {
+            Model visibleModel = scene.getModel(visible.get(i));
+            renderQueue.submit(visibleModel, material, transforms.getMatrices(), transforms.getSlot(modelEntity),
+                    LodSelector.DEFAULT.select(visibleModel, modelWorld, camera, height));
+        }
+        Profiler.begin(FLUSH_SCOPE);
+        renderQueue.flush(ForkJoinPool.commonPool());
+        Profiler.end();
+        if (terrain != null) {
+            Profiler.begin(TERRAIN_SCOPE);
+            terrain.update(camera.getPosition(), System.nanoTime());
+            terrainRenderer.render(shader, material.getTexture(), camera, width, height, frustum, terrain);
+            Profiler.end();
+        }
+        if (particles != null) {
+            // Transparent, so after everything opaque
+            Profiler.begin(PARTICLES_SCOPE);
+            long now = System.nanoTime();
+            float step = Math.min((now - particleTime) / 1e9f, MAX_PARTICLE_STEP);
+            particleTime = now;
+            particles.setView(camera.getPosition(), camera.getViewMatrix().positiveZ(viewDirection).negate());
+            int count = particles.update(step, ForkJoinPool.commonPool(), particleRenderer.begin(particles.getCapacity()));
+            particleRenderer.draw(camera, width, height, count);
+            Profiler.end();
+        }
         shader.unbind();
 
-        GLFW.glfwSwapBuffers(window);
+        if (capture != null) {
+            Profiler.begin(READBACK_SCOPE);
+            capture.capture();
+            Profiler.end();
+        } else {
+            Profiler.begin(SWAP_SCOPE);
+            GLFW.glfwSwapBuffers(window);
+            Profiler.end();
+        }
     }
 
     public void cleanup() {
-        model.cleanup();
+        if (simulation != null) {
+            simulation.stop();
+        }
+        if (Profiler.ENABLED && PROFILE_CSV != null) {
+            try {
+                Profiler.writeCsv(Paths.get(PROFILE_CSV));
+            } catch (IOException e) {
+                log.warn(String.format("Could not write the profile to %s: %s", PROFILE_CSV, e));
+            }
+        }
+        Profiler.cleanup();
+        if (capture != null) {
+            capture.cleanup();
+            offscreen.cleanup();
+        }
+        renderQueue.cleanup();
+        if (terrain != null) {
+            terrain.cleanup();
+            terrainRenderer.cleanup();
+        }
+        if (particleRenderer != null) {
+            particleRenderer.cleanup();
+        }
+        model.release();
+        texture.release();
+        assets.cleanup();  // Cleans up every asset still cached
         shader.cleanup();
-        texture.cleanup();
         GLFW.glfwDestroyWindow(window);
         GLFW.glfwTerminate();
     }
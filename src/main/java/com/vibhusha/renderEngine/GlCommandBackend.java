@@ -0,0 +1,138 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Model;
+import com.vibhusha.utils.Profiler;
+import com.vibhusha.utils.Shader;
+import com.vibhusha.utils.StandardUniforms;
+import com.vibhusha.utils.Texture;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+// Replays commands as GL calls, on the GL thread. Ids are resolved through RenderQueue's tables and
+// instance ranges point the mat4 attribute at locations 3..6 into the frame's instance buffer, which
+// stays bound to GL_ARRAY_BUFFER from uploadInstances to endFrame.
+final class GlCommandBackend implements CommandBackend {
+    private static final int UNIFORMS_SCOPE = Profiler.scope("uniforms");
+
+    private final Shader[] shaders;
+    private final Texture[] textures;
+    private final Model[] models;
+    private final float[] viewMatrixData;
+    private final float[] projectionMatrixData;
+    private final int instanceVbo;
+    private StandardUniforms uniforms;
+    private Model model;
+    private IntBuffer meshletCounts = BufferUtils.createIntBuffer(256);
+    private PointerBuffer meshletOffsets = BufferUtils.createPointerBuffer(256);
+
+    // The view and projection arrays are read at every shader bind, so they may change between frames
+    GlCommandBackend(Shader[] shaders, Texture[] textures, Model[] models, float[] viewMatrixData, float[] projectionMatrixData) {
+        this.shaders = shaders;
+        this.textures = textures;
+        this.models = models;
+        this.viewMatrixData = viewMatrixData;
+        this.projectionMatrixData = projectionMatrixData;
+        this.instanceVbo = GL15.glGenBuffers();
+    }
+
+    @Override
+    public void uploadInstances(ByteBuffer instances) {
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, instanceVbo);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, instances.capacity(), GL15.GL_STREAM_DRAW);  // Orphan last frame's storage
+        GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, instances);
+    }
+
+    @Override
+    public void endFrame() {
+        GL30.glBindVertexArray(0);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public void bindShader(int id) {
+        Shader shader = shaders[id];
+        shader.bind();
+        uniforms = shader.getStandardUniforms();
+        Profiler.begin(UNIFORMS_SCOPE);
+        uniforms.setCamera(viewMatrixData, projectionMatrixData);
+        Profiler.end();
+    }
+
+    @Override
+    public void bindTexture(int id) {
+        textures[id].bind();
+    }
+
+    @Override
+    public void bindModel(int id) {
+        model = models[id];
+        model.bind();
+        Profiler.begin(UNIFORMS_SCOPE);
+        model.applyDecode(uniforms);
+        Profiler.end();
+    }
+
+    @Override
+    public void setColor(float r, float g, float b, float a) {
+        uniforms.setDiffuseColor(r, g, b, a);
+    }
+
+    @Override
+    public void drawInstanced(int lod, int firstInstance, int instanceCount) {
+        bindInstanceRange(firstInstance);
+        model.drawInstanced(lod, instanceCount);
+    }
+
+    @Override
+    public void drawSubmeshInstanced(int lod, int submesh, int firstInstance, int instanceCount) {
+        bindInstanceRange(firstInstance);
+        model.drawSubmeshInstanced(lod, submesh, instanceCount);
+    }
+
+    @Override
+    public void addMeshletRange(int firstIndex, int indexCount) {
+        if (!meshletCounts.hasRemaining()) {
+            IntBuffer counts = BufferUtils.createIntBuffer(meshletCounts.capacity() * 2);
+            PointerBuffer offsets = BufferUtils.createPointerBuffer(counts.capacity());
+            meshletCounts.flip();
+            meshletOffsets.flip();
+            meshletCounts = counts.put(meshletCounts);
+            meshletOffsets = offsets.put(meshletOffsets);
+        }
+        meshletCounts.put(indexCount);
+        meshletOffsets.put(model.getMeshletIndexOffset(firstIndex));
+    }
+
+    @Override
+    public void drawMeshlets(int instance) {
+        meshletCounts.flip();
+        meshletOffsets.flip();
+        bindInstanceRange(instance);
+        model.drawMeshlets(meshletCounts, meshletOffsets);
+        meshletCounts.clear();
+        meshletOffsets.clear();
+    }
+
+    // Points the mat4 instance attribute of the bound VAO at a range of the instance buffer
+    private static void bindInstanceRange(int firstInstance) {
+        long offset = (long) firstInstance * RenderQueue.MATRIX_BYTES;
+        for (int column = 0; column < 4; column++) {
+            int location = RenderQueue.INSTANCE_MATRIX_LOCATION + column;
+            GL20.glVertexAttribPointer(location, 4, GL11.GL_FLOAT, false, RenderQueue.MATRIX_BYTES, offset + (long) column * 4 * Float.BYTES);
+            GL20.glEnableVertexAttribArray(location);
+            GL33.glVertexAttribDivisor(location, 1);
+        }
+    }
+
+    void cleanup() {
+        GL15.glDeleteBuffers(instanceVbo);
+    }
+}
@@ -0,0 +1,97 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Frustum;
+import com.vibhusha.utils.Meshlets;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.Arrays;
+
+// Culls the meshlets of one model instance on the CPU: bounding spheres against the frustum, normal
+// cones against the view direction. Both tests run in model space, the frustum taken from the
+// instance's model-view-projection matrix and the camera moved by the inverse world matrix. The
+// surviving meshlets come out as ranges of the meshlet index list, neighbours merged, ready for one
+// glMultiDrawElements.
+//
+// Cone tests assume world matrices that only rotate, translate and scale uniformly; for any other
+// matrix only the frustum test is applied.
+public class MeshletCuller {
+    private static final float UNIFORM_SCALE_TOLERANCE = 1e-3f;
+
+    private final Frustum frustum = new Frustum();
+    private final Matrix4f modelViewProjection = new Matrix4f();
+    private final Matrix4f inverseWorld = new Matrix4f();
+    private final Vector3f eye = new Vector3f();
+    private final Vector3f scale = new Vector3f();
+    private int[] firsts = new int[256];
+    private int[] counts = new int[256];
+    private int rangeCount;
+
+    // Culls meshlets firstMeshlet .. endMeshlet - 1 and returns the number of index ranges left;
+    // counters go to stats
+    public int cull(Meshlets meshlets, int firstMeshlet, int endMeshlet, Matrix4fc viewProjection, Matrix4fc world,
+                    Vector3fc cameraPosition, RenderStats stats) {
+        long start = System.nanoTime();
+        frustum.update(viewProjection.mul(world, modelViewProjection));
+        world.getScale(scale);
+        boolean cones = world.determinant3x3() > 0
+                && scale.maxComponent() - scale.minComponent() <= UNIFORM_SCALE_TOLERANCE * scale.maxComponent();
+        if (cones) {
+            world.invertAffine(inverseWorld).transformPosition(eye.set(cameraPosition));
+        }
+
+        float[] bounds = meshlets.getBounds();
+        rangeCount = 0;
+        for (int m = firstMeshlet; m < endMeshlet; m++) {
+            int b = m * Meshlets.BOUNDS_FLOATS;
+            float cx = bounds[b], cy = bounds[b + 1], cz = bounds[b + 2], radius = bounds[b + 3];
+            stats.meshlets++;
+            stats.meshletTriangles += meshlets.getTriangleCount(m);
+            if (!frustum.intersectsSphere(cx, cy, cz, radius)) {
+                stats.meshletsOutside++;
+                continue;
+            }
+            float cutoff = bounds[b + 7];
+            if (cones && cutoff < 1) {
+                // Culled when every direction from the camera into the sphere lies in the back-facing cone
+                float dx = cx - eye.x, dy = cy - eye.y, dz = cz - eye.z;
+                float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+                if (dx * bounds[b + 4] + dy * bounds[b + 5] + dz * bounds[b + 6] >= cutoff * distance + radius) {
+                    stats.meshletsBackfacing++;
+                    continue;
+                }
+            }
+
+            int first = meshlets.getIndexOffset(m), count = meshlets.getIndexCount(m);
+            stats.meshletTrianglesDrawn += count / 3;
+            if (rangeCount > 0 && firsts[rangeCount - 1] + counts[rangeCount - 1] == first) {
+                counts[rangeCount - 1] += count;
+                continue;
+            }
+            if (rangeCount == firsts.length) {
+                firsts = Arrays.copyOf(firsts, rangeCount * 2);
+                counts = Arrays.copyOf(counts, rangeCount * 2);
+            }
+            firsts[rangeCount] = first;
+            counts[rangeCount] = count;
+            rangeCount++;
+        }
+        stats.meshletCullNanos += System.nanoTime() - start;
+        return rangeCount;
+    }
+
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    // First index of range i, a position in the meshlet index list
+    public int getFirst(int range) {
+        return firsts[range];
+    }
+
+    public int getCount(int range) {
+        return counts[range];
+    }
+}
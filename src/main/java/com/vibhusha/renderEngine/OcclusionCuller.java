@@ -0,0 +1,447 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Camera;
+import com.vibhusha.utils.CollisionMesh;
+import com.vibhusha.utils.IntList;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Software occlusion culling. Designated occluder meshes (CollisionMesh geometry, usually a few
+// hundred triangles per wall or building) are rasterized on the CPU into a low-resolution depth
+// buffer, and objects that survived frustum culling are dropped when their bounding box lies behind
+// it. Per frame:
+//   begin(camera, ...)        view-projection from the Camera, clears the occluder list
+//   addOccluder(mesh, world)  per occluder
+//   rasterize(pool)           transform occluders in parallel, clip and bin triangles into tiles,
+//                             rasterize tiles in parallel, then build the max-depth hierarchy
+//   filter(scene, visible)    drops occluded ids from a Scene.cull result
+// Depth is window depth in [0, 1], smaller is nearer, sampled at pixel centres. The buffer is tiled:
+// each TILE_WIDTH x TILE_HEIGHT tile is contiguous so one worker owns it without sharing cache lines.
+// Needs no GL context and runs headless.
+@Slf4j
+public class OcclusionCuller {
+    public static final int TILE_WIDTH = 32;
+    public static final int TILE_HEIGHT = 16;
+    private static final int TILE_SIZE = TILE_WIDTH * TILE_HEIGHT;
+    private static final int SETUP_STRIDE = 13;  // Three edges (a, b, c), depth plane (zx, zy, zc), min depth
+    // Boxes must be this far behind the occluders to be culled, absorbs depth interpolation rounding
+    private static final float DEPTH_EPSILON = 1e-6f;
+
+    private final int width, height;
+    private final int tilesX, tilesY;
+    private final float[] depth;          // Tiled, level 0 of the hierarchy
+    private final float[][] hierarchy;    // Row-major max-depth levels 1.., each half the previous size
+    private final int[] levelWidth, levelHeight;
+    private final DepthKernels kernels;
+
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final float[] boxBounds = new float[6];
+
+    // Occluders of the current frame
+    private int occluderCount;
+    private CollisionMesh[] occluders = new CollisionMesh[16];
+    private Matrix4f[] occluderMatrices = new Matrix4f[16];  // World, then world-view-projection once transformed
+    private float[][] clipPositions = new float[16][];  // x, y, z, w per vertex, reused across frames
+
+    // Set-up triangles and their screen bounds (x0, y0, x1, y1 inclusive pixels)
+    private int triangleCount;
+    private float[] setup = new float[1024 * SETUP_STRIDE];
+    private int[] triangleBounds = new int[1024 * 4];
+    private final IntList[] tileBins;
+    private final float[] clipped = new float[5 * 4];  // Polygon left after clipping one triangle to the near plane
+
+    private int occluderTriangles;
+    private long rasterNanos;
+
+    public OcclusionCuller(int width, int height) {
+        this(width, height, selectKernels());
+    }
+
+    OcclusionCuller(int width, int height, DepthKernels kernels) {
+        this.tilesX = (width + TILE_WIDTH - 1) / TILE_WIDTH;
+        this.tilesY = (height + TILE_HEIGHT - 1) / TILE_HEIGHT;
+        this.width = tilesX * TILE_WIDTH;
+        this.height = tilesY * TILE_HEIGHT;
+        this.kernels = kernels;
+        this.depth = new float[this.width * this.height];
+        this.tileBins = new IntList[tilesX * tilesY];
+        for (int t = 0; t < tileBins.length; t++) {
+            tileBins[t] = new IntList(256);
+        }
+
+        int levels = 1;
+        while ((this.width >> levels) > 0 && (this.height >> levels) > 0) {
+            levels++;
+        }
+        hierarchy = new float[levels][];
+        levelWidth = new int[levels];
+        levelHeight = new int[levels];
+        levelWidth[0] = this.width;
+        levelHeight[0] = this.height;
+        for (int level = 1; level < levels; level++) {
+            levelWidth[level] = (levelWidth[level - 1] + 1) / 2;
+            levelHeight[level] = (levelHeight[level - 1] + 1) / 2;
+            hierarchy[level] = new float[levelWidth[level] * levelHeight[level]];
+        }
+    }
+
+    private static DepthKernels selectKernels() {
+        // -Docclusion.scalar=true forces the scalar loops, e.g. to compare the two
+        if (!Boolean.getBoolean("occlusion.scalar")) {
+            try {
+                return (DepthKernels) Class.forName("com.vibhusha.renderEngine.VectorDepthKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.info("Vector API not available (run with --add-modules jdk.incubator.vector), occlusion culling uses scalar loops");
+            }
+        }
+        return new ScalarDepthKernels();
+    }
+
+    public void begin(Camera camera, int viewportWidth, int viewportHeight) {
+        camera.getProjectionMatrix(viewportWidth, viewportHeight).mul(camera.getViewMatrix(), viewProjection);
+        clearOccluders();
+    }
+
+    public void begin(Matrix4fc viewProjection) {
+        this.viewProjection.set(viewProjection);
+        clearOccluders();
+    }
+
+    private void clearOccluders() {
+        for (int i = 0; i < occluderCount; i++) {
+            occluders[i] = null;
+        }
+        occluderCount = 0;
+    }
+
+    // The mesh is rasterized double-sided, so single-sided walls occlude from both directions
+    public void addOccluder(CollisionMesh mesh, Matrix4fc world) {
+        if (occluderCount == occluders.length) {
+            int capacity = occluderCount * 2;
+            occluders = Arrays.copyOf(occluders, capacity);
+            occluderMatrices = Arrays.copyOf(occluderMatrices, capacity);
+            clipPositions = Arrays.copyOf(clipPositions, capacity);
+        }
+        if (occluderMatrices[occluderCount] == null) {
+            occluderMatrices[occluderCount] = new Matrix4f();
+        }
+        occluders[occluderCount] = mesh;
+        occluderMatrices[occluderCount].set(world);
+        occluderCount++;
+    }
+
+    public void rasterize(ForkJoinPool pool) {
+        long start = System.nanoTime();
+        Arrays.fill(depth, 1.0f);
+        run(pool, occluderCount, this::transformOccluder);
+
+        triangleCount = 0;
+        occluderTriangles = 0;
+        for (IntList bin : tileBins) {
+            bin.clear();
+        }
+        for (int o = 0; o < occluderCount; o++) {
+            setupOccluder(o);
+        }
+
+        run(pool, tileBins.length, this::rasterizeTile);
+        buildHierarchy();
+        rasterNanos = System.nanoTime() - start;
+    }
+
+    // Removes ids whose world bounds are hidden behind the occluders, keeping the order of the rest
+    public void filter(Scene scene, IntList visible) {
+        long start = System.nanoTime();
+        float[] bounds = boxBounds;
+        int kept = 0;
+        for (int i = 0; i < visible.size(); i++) {
+            int id = visible.get(i);
+            scene.getBounds(id, bounds);
+            if (isVisible(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5])) {
+                visible.set(kept++, id);
+            }
+        }
+        CullStats stats = scene.getStats();
+        stats.occludedCount = visible.size() - kept;
+        stats.occluderTriangles = occluderTriangles;
+        stats.rasterNanos = rasterNanos;
+        stats.occlusionNanos = System.nanoTime() - start;
+        visible.setSize(kept);
+    }
+
+    // False only when the whole box is farther than the occluders over every pixel it covers
+    public boolean isVisible(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        Matrix4f m = viewProjection;
+        float sx0 = Float.POSITIVE_INFINITY, sy0 = Float.POSITIVE_INFINITY, sx1 = Float.NEGATIVE_INFINITY, sy1 = Float.NEGATIVE_INFINITY;
+        float nearest = Float.POSITIVE_INFINITY;
+        for (int corner = 0; corner < 8; corner++) {
+            float x = (corner & 1) == 0 ? minX : maxX;
+            float y = (corner & 2) == 0 ? minY : maxY;
+            float z = (corner & 4) == 0 ? minZ : maxZ;
+            float cw = m.m03() * x + m.m13() * y + m.m23() * z + m.m33();
+            float cz = m.m02() * x + m.m12() * y + m.m22() * z + m.m32();
+            if (cz < -cw || cw <= 0) {
+                return true;  // Crosses the near plane, may contain the camera
+            }
+            float inv = 1.0f / cw;
+            float px = ((m.m00() * x + m.m10() * y + m.m20() * z + m.m30()) * inv * 0.5f + 0.5f) * width;
+            float py = ((m.m01() * x + m.m11() * y + m.m21() * z + m.m31()) * inv * 0.5f + 0.5f) * height;
+            sx0 = Math.min(sx0, px);
+            sy0 = Math.min(sy0, py);
+            sx1 = Math.max(sx1, px);
+            sy1 = Math.max(sy1, py);
+            nearest = Math.min(nearest, cz * inv * 0.5f + 0.5f);
+        }
+
+        // Every pixel the projected box touches, not just those whose centres it covers
+        int x0 = Math.max(0, (int) Math.floor(sx0)), y0 = Math.max(0, (int) Math.floor(sy0));
+        int x1 = Math.min(width - 1, (int) Math.floor(sx1)), y1 = Math.min(height - 1, (int) Math.floor(sy1));
+        if (x0 > x1 || y0 > y1) {
+            return true;  // Off screen, left to frustum culling
+        }
+
+        // Coarsest level at which the rectangle spans at most 2 x 2 texels
+        int level = 0;
+        while ((x1 >> level) - (x0 >> level) > 1 || (y1 >> level) - (y0 >> level) > 1) {
+            level++;
+        }
+        float farthest = 0.0f;
+        for (int y = y0 >> level; y <= y1 >> level; y++) {
+            for (int x = x0 >> level; x <= x1 >> level; x++) {
+                farthest = Math.max(farthest, level == 0 ? depth[tiledIndex(x, y)] : hierarchy[level][y * levelWidth[level] + x]);
+            }
+        }
+        return nearest <= farthest + DEPTH_EPSILON;
+    }
+
+    // Depth of one pixel, row 0 at the bottom of the viewport as in window coordinates
+    public float getDepth(int x, int y) {
+        return depth[tiledIndex(x, y)];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getKernelName() {
+        return kernels.getName();
+    }
+
+    public int getOccluderTriangles() {
+        return occluderTriangles;
+    }
+
+    public long getRasterNanos() {
+        return rasterNanos;
+    }
+
+    private int tiledIndex(int x, int y) {
+        int tile = (y / TILE_HEIGHT) * tilesX + x / TILE_WIDTH;
+        return tile * TILE_SIZE + (y % TILE_HEIGHT) * TILE_WIDTH + x % TILE_WIDTH;
+    }
+
+    private void transformOccluder(int o) {
+        float[] positions = occluders[o].getPositions();
+        int vertexCount = positions.length / 3;
+        float[] clip = clipPositions[o];
+        if (clip == null || clip.length < vertexCount * 4) {
+            clip = new float[vertexCount * 4];
+            clipPositions[o] = clip;
+        }
+        Matrix4f m = viewProjection.mul(occluderMatrices[o], occluderMatrices[o]);
+        for (int v = 0; v < vertexCount; v++) {
+            float x = positions[v * 3], y = positions[v * 3 + 1], z = positions[v * 3 + 2];
+            clip[v * 4] = m.m00() * x + m.m10() * y + m.m20() * z + m.m30();
+            clip[v * 4 + 1] = m.m01() * x + m.m11() * y + m.m21() * z + m.m31();
+            clip[v * 4 + 2] = m.m02() * x + m.m12() * y + m.m22() * z + m.m32();
+            clip[v * 4 + 3] = m.m03() * x + m.m13() * y + m.m23() * z + m.m33();
+        }
+    }
+
+    // Rejects triangles outside one frustum plane, clips the rest to the near plane and bins them
+    private void setupOccluder(int o) {
+        int[] indices = occluders[o].getIndices();
+        float[] clip = clipPositions[o];
+        for (int t = 0; t < indices.length; t += 3) {
+            int a = indices[t] * 4, b = indices[t + 1] * 4, c = indices[t + 2] * 4;
+            if (outside(clip, a, b, c, 0, 1) || outside(clip, a, b, c, 0, -1) || outside(clip, a, b, c, 1, 1)
+                    || outside(clip, a, b, c, 1, -1) || outside(clip, a, b, c, 2, -1)) {
+                continue;
+            }
+            int vertices = clipNear(clip, a, b, c);
+            for (int v = 1; v + 1 < vertices; v++) {
+                setupTriangle(0, v * 4, (v + 1) * 4);
+            }
+            occluderTriangles++;
+        }
+    }
+
+    // All three vertices beyond the plane sign * coordinate = w
+    private static boolean outside(float[] clip, int a, int b, int c, int axis, int sign) {
+        return sign * clip[a + axis] > clip[a + 3] && sign * clip[b + axis] > clip[b + 3] && sign * clip[c + axis] > clip[c + 3];
+    }
+
+    // Sutherland-Hodgman against z >= -w, into clipped; returns the vertex count (0, 3 or 4)
+    private int clipNear(float[] clip, int a, int b, int c) {
+        int count = 0;
+        for (int i = 0; i < 3; i++) {
+            int p = i == 0 ? a : i == 1 ? b : c;
+            int q = i == 0 ? b : i == 1 ? c : a;
+            float dp = clip[p + 2] + clip[p + 3], dq = clip[q + 2] + clip[q + 3];
+            if (dp >= 0) {
+                System.arraycopy(clip, p, clipped, count++ * 4, 4);
+            }
+            if ((dp >= 0) != (dq >= 0)) {
+                float s = dp / (dp - dq);
+                for (int k = 0; k < 4; k++) {
+                    clipped[count * 4 + k] = clip[p + k] + (clip[q + k] - clip[p + k]) * s;
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void setupTriangle(int a, int b, int c) {
+        float[] v = clipped;
+        float x0 = screenX(v, a), y0 = screenY(v, a), z0 = windowZ(v, a);
+        float x1 = screenX(v, b), y1 = screenY(v, b), z1 = windowZ(v, b);
+        float x2 = screenX(v, c), y2 = screenY(v, c), z2 = windowZ(v, c);
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if (!(Math.abs(area) > 0)) {
+            return;  // Degenerate or not finite
+        }
+
+        // Pixels whose centres lie inside the triangle's bounding box
+        int px0 = Math.max(0, (int) Math.ceil(Math.min(x0, Math.min(x1, x2)) - 0.5f));
+        int py0 = Math.max(0, (int) Math.ceil(Math.min(y0, Math.min(y1, y2)) - 0.5f));
+        int px1 = Math.min(width - 1, (int) Math.floor(Math.max(x0, Math.max(x1, x2)) - 0.5f));
+        int py1 = Math.min(height - 1, (int) Math.floor(Math.max(y0, Math.max(y1, y2)) - 0.5f));
+        if (px0 > px1 || py0 > py1) {
+            return;
+        }
+
+        if (triangleCount * SETUP_STRIDE == setup.length) {
+            setup = Arrays.copyOf(setup, setup.length * 2);
+            triangleBounds = Arrays.copyOf(triangleBounds, triangleBounds.length * 2);
+        }
+        // Edge functions positive inside whatever the winding
+        float sign = area > 0 ? 1.0f : -1.0f;
+        int s = triangleCount * SETUP_STRIDE;
+        setEdge(s, x1, y1, x2, y2, sign);
+        setEdge(s + 3, x2, y2, x0, y0, sign);
+        setEdge(s + 6, x0, y0, x1, y1, sign);
+        float zx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) / area;
+        float zy = ((z2 - z0) * (x1 - x0) - (z1 - z0) * (x2 - x0)) / area;
+        setup[s + 9] = zx;
+        setup[s + 10] = zy;
+        setup[s + 11] = z0 - zx * x0 - zy * y0;
+        setup[s + 12] = Math.min(z0, Math.min(z1, z2));  // Interpolation never reports a nearer depth than a vertex
+
+        int bounds = triangleCount * 4;
+        triangleBounds[bounds] = px0;
+        triangleBounds[bounds + 1] = py0;
+        triangleBounds[bounds + 2] = px1;
+        triangleBounds[bounds + 3] = py1;
+        for (int ty = py0 / TILE_HEIGHT; ty <= py1 / TILE_HEIGHT; ty++) {
+            for (int tx = px0 / TILE_WIDTH; tx <= px1 / TILE_WIDTH; tx++) {
+                tileBins[ty * tilesX + tx].add(triangleCount);
+            }
+        }
+        triangleCount++;
+    }
+
+    // Edge through (xa, ya) -> (xb, yb): a * x + b * y + c
+    private void setEdge(int offset, float xa, float ya, float xb, float yb, float sign) {
+        setup[offset] = (ya - yb) * sign;
+        setup[offset + 1] = (xb - xa) * sign;
+        setup[offset + 2] = (xa * yb - xb * ya) * sign;
+    }
+
+    private float screenX(float[] v, int offset) {
+        return (v[offset] / v[offset + 3] * 0.5f + 0.5f) * width;
+    }
+
+    private float screenY(float[] v, int offset) {
+        return (v[offset + 1] / v[offset + 3] * 0.5f + 0.5f) * height;
+    }
+
+    private static float windowZ(float[] v, int offset) {
+        return v[offset + 2] / v[offset + 3] * 0.5f + 0.5f;
+    }
+
+    private void rasterizeTile(int tile) {
+        IntList bin = tileBins[tile];
+        int tileX = (tile % tilesX) * TILE_WIDTH, tileY = (tile / tilesX) * TILE_HEIGHT;
+        int base = tile * TILE_SIZE;
+        for (int i = 0; i < bin.size(); i++) {
+            int t = bin.get(i);
+            int s = t * SETUP_STRIDE;
+            int x0 = Math.max(tileX, triangleBounds[t * 4]), y0 = Math.max(tileY, triangleBounds[t * 4 + 1]);
+            int x1 = Math.min(tileX + TILE_WIDTH - 1, triangleBounds[t * 4 + 2]);
+            int y1 = Math.min(tileY + TILE_HEIGHT - 1, triangleBounds[t * 4 + 3]);
+            float px = x0 + 0.5f;
+            for (int y = y0; y <= y1; y++) {
+                float py = y + 0.5f;
+                kernels.rasterizeRow(depth, base + (y - tileY) * TILE_WIDTH + x0 - tileX, x1 - x0 + 1, px,
+                        setup[s], py * setup[s + 1] + setup[s + 2],
+                        setup[s + 3], py * setup[s + 4] + setup[s + 5],
+                        setup[s + 6], py * setup[s + 7] + setup[s + 8],
+                        setup[s + 9], py * setup[s + 10] + setup[s + 11], setup[s + 12]);
+            }
+        }
+    }
+
+    // Level 1 from the tiled pixels, then each level from the previous one; odd edges clamp
+    private void buildHierarchy() {
+        for (int level = 1; level < hierarchy.length; level++) {
+            float[] target = hierarchy[level];
+            int w = levelWidth[level], h = levelHeight[level];
+            int sourceWidth = levelWidth[level - 1], sourceHeight = levelHeight[level - 1];
+            for (int y = 0; y < h; y++) {
+                int sy0 = y * 2, sy1 = Math.min(y * 2 + 1, sourceHeight - 1);
+                for (int x = 0; x < w; x++) {
+                    int sx0 = x * 2, sx1 = Math.min(x * 2 + 1, sourceWidth - 1);
+                    float max;
+                    if (level == 1) {
+                        max = Math.max(Math.max(depth[tiledIndex(sx0, sy0)], depth[tiledIndex(sx1, sy0)]),
+                                Math.max(depth[tiledIndex(sx0, sy1)], depth[tiledIndex(sx1, sy1)]));
+                    } else {
+                        float[] source = hierarchy[level - 1];
+                        max = Math.max(Math.max(source[sy0 * sourceWidth + sx0], source[sy0 * sourceWidth + sx1]),
+                                Math.max(source[sy1 * sourceWidth + sx0], source[sy1 * sourceWidth + sx1]));
+                    }
+                    target[y * w + x] = max;
+                }
+            }
+        }
+    }
+
+    private static void run(ForkJoinPool pool, int count, IntConsumer body) {
+        if (pool == null || count < 2) {
+            for (int i = 0; i < count; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        try {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rasterizing occluders", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Occlusion rasterization failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.vibhusha.renderEngine;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+// Framebuffer object with an RGBA8 colour and a 24-bit depth renderbuffer, so frames can be rendered
+// at any size the driver allows (GL_MAX_RENDERBUFFER_SIZE) without a visible window behind them.
+public class OffscreenTarget {
+    private final int width;
+    private final int height;
+    private final int framebufferId;
+    private final int colorBufferId;
+    private final int depthBufferId;
+
+    public OffscreenTarget(int width, int height) {
+        int maxSize = GL11.glGetInteger(GL30.GL_MAX_RENDERBUFFER_SIZE);
+        if (width <= 0 || height <= 0 || width > maxSize || height > maxSize) {
+            throw new IllegalArgumentException(String.format("Offscreen size %dx%d is outside 1..%d", width, height, maxSize));
+        }
+        this.width = width;
+        this.height = height;
+
+        framebufferId = GL30.glGenFramebuffers();
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, framebufferId);
+        colorBufferId = createRenderbuffer(GL11.GL_RGBA8, GL30.GL_COLOR_ATTACHMENT0);
+        depthBufferId = createRenderbuffer(GL30.GL_DEPTH_COMPONENT24, GL30.GL_DEPTH_ATTACHMENT);
+        int status = GL30.glCheckFramebufferStatus(GL30.GL_FRAMEBUFFER);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+        if (status != GL30.GL_FRAMEBUFFER_COMPLETE) {
+            cleanup();
+            throw new IllegalStateException(String.format("Offscreen framebuffer is incomplete: 0x%X", status));
+        }
+    }
+
+    private int createRenderbuffer(int internalFormat, int attachment) {
+        int renderbufferId = GL30.glGenRenderbuffers();
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, renderbufferId);
+        GL30.glRenderbufferStorage(GL30.GL_RENDERBUFFER, internalFormat, width, height);
+        GL30.glFramebufferRenderbuffer(GL30.GL_FRAMEBUFFER, attachment, GL30.GL_RENDERBUFFER, renderbufferId);
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+        return renderbufferId;
+    }
+
+    // Draw and read framebuffer, viewport covering the whole target
+    public void bind() {
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, framebufferId);
+        GL11.glViewport(0, 0, width, height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void cleanup() {
+        GL30.glDeleteFramebuffers(framebufferId);
+        GL30.glDeleteRenderbuffers(colorBufferId);
+        GL30.glDeleteRenderbuffers(depthBufferId);
+    }
+}
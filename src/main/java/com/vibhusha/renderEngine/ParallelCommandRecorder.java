@@ -0,0 +1,133 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Model;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Splits a frame's sorted keys into one contiguous range per pool thread and records the ranges in
+// parallel, each into its own CommandRecorder, so the instance matrices land in disjoint parts of the
+// instance data. replay() then walks the command buffers in range order, which is the sorted order.
+// Small frames stay on the calling thread: a range is at least MIN_RANGE submissions. Submission and
+// sorting stay on the GL thread; the workers only record slices of the sorted keys. The calling
+// thread records the first range itself and then parks until the last worker range counts down and
+// unparks it, so nobody spins. The per-range Runnables live as long as the recorder; the only
+// allocation per frame is the small task ForkJoinPool.execute wraps each of them in.
+final class ParallelCommandRecorder {
+    static final int MIN_RANGE = 1024;
+
+    private CommandRecorder[] recorders = new CommandRecorder[0];
+    private Runnable[] rangeRunners = new Runnable[0];
+    private RuntimeException[] failures = new RuntimeException[0];  // Read by the caller after pendingRanges reaches 0
+    private final AtomicInteger pendingRanges = new AtomicInteger();
+    private Thread caller;
+    private int rangeCount;
+    // Inputs of the frame being recorded, read by recordRange
+    private long[] keys;
+    private float[] transforms;
+    private Model[] models;
+    private int[][] submeshTextures;
+    private ByteBuffer instances;
+    private Matrix4fc viewProjection;
+    private Vector3fc eye;
+
+    // Records keys[0, count); a null pool records on the calling thread. Returns the number of ranges.
+    int record(ForkJoinPool pool, long[] keys, int count, float[] transforms, Model[] models, int[][] submeshTextures,
+               ByteBuffer instances, Matrix4fc viewProjection, Vector3fc eye) {
+        int parallelism = pool == null ? 1 : pool.getParallelism();
+        rangeCount = Math.max(1, Math.min(parallelism, count / MIN_RANGE));
+        if (recorders.length < rangeCount) {
+            CommandRecorder[] grown = new CommandRecorder[rangeCount];
+            Runnable[] grownRunners = new Runnable[rangeCount];
+            System.arraycopy(recorders, 0, grown, 0, recorders.length);
+            System.arraycopy(rangeRunners, 0, grownRunners, 0, rangeRunners.length);
+            for (int r = recorders.length; r < rangeCount; r++) {
+                grown[r] = new CommandRecorder();
+                int range = r;
+                grownRunners[r] = () -> runRange(range);
+            }
+            recorders = grown;
+            rangeRunners = grownRunners;
+            failures = new RuntimeException[rangeCount];
+        }
+        for (int r = 0; r < rangeCount; r++) {
+            recorders[r].start = (int) ((long) count * r / rangeCount);
+            recorders[r].end = (int) ((long) count * (r + 1) / rangeCount);
+        }
+        this.keys = keys;
+        this.transforms = transforms;
+        this.models = models;
+        this.submeshTextures = submeshTextures;
+        this.instances = instances;
+        this.viewProjection = viewProjection;
+        this.eye = eye;
+
+        caller = Thread.currentThread();
+        pendingRanges.set(rangeCount - 1);
+        for (int r = 1; r < rangeCount; r++) {
+            failures[r] = null;
+            pool.execute(rangeRunners[r]);
+        }
+        // Every range finishes before anything is rethrown, so no worker still writes the buffers
+        RuntimeException failure = null;
+        try {
+            recordRange(0);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // Parks again only on a spurious wakeup
+        while (pendingRanges.get() > 0) {
+            LockSupport.park(this);
+        }
+        for (int r = 1; r < rangeCount && failure == null; r++) {
+            failure = failures[r];
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Render command recording failed", failure);
+        }
+        return rangeCount;
+    }
+
+    private void recordRange(int range) {
+        recorders[range].record(keys, transforms, models, submeshTextures, instances, viewProjection, eye);
+    }
+
+    // A worker range; the last one to finish wakes the caller
+    private void runRange(int range) {
+        try {
+            recordRange(range);
+        } catch (RuntimeException e) {
+            failures[range] = e;
+        } finally {
+            if (pendingRanges.decrementAndGet() == 0) {
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+
+    // The recorded ranges, in order
+    void replay(CommandBackend backend) {
+        for (int r = 0; r < rangeCount; r++) {
+            recorders[r].getCommands().replay(backend);
+        }
+    }
+
+    // Adds the draw, bind and meshlet counters of every range to stats
+    void addStats(RenderStats stats) {
+        for (int r = 0; r < rangeCount; r++) {
+            stats.add(recorders[r].getStats());
+        }
+    }
+
+    int getRangeCount() {
+        return rangeCount;
+    }
+
+    CommandBuffer getCommands(int range) {
+        return recorders[range].getCommands();
+    }
+}
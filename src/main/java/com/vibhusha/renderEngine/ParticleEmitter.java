@@ -0,0 +1,148 @@
+package com.vibhusha.renderEngine;
+
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.SplittableRandom;
+
+// A source of particles with its own ParticlePool. Spawns `rate` particles per second at its position,
+// moving in a cone of half-angle `spread` around `direction` at a speed in [minSpeed, maxSpeed], each
+// living between minLife and maxLife seconds. Gravity and drag apply to all of its particles. Spawning
+// is deterministic for a given seed and sequence of time steps. Updated by ParticleSystem.
+public class ParticleEmitter {
+    private final ParticlePool pool;
+    private final SplittableRandom random;
+    private final Vector3f position = new Vector3f();
+    private final Vector3f direction = new Vector3f(0, 1, 0);
+    private final Vector3f tangent = new Vector3f(1, 0, 0);
+    private final Vector3f bitangent = new Vector3f(0, 0, -1);
+    private final Vector3f gravity = new Vector3f(0, -9.81f, 0);
+    private float cosSpread = 1.0f;
+    private float minSpeed = 1.0f, maxSpeed = 1.0f;
+    private float minLife = 1.0f, maxLife = 1.0f;
+    private float size = 0.05f;
+    private int color = 0xFFFFFFFF;
+    private float drag;
+    private float rate;
+    private float pending;  // Fraction of a particle carried to the next step
+
+    public ParticleEmitter(int maxParticles, long seed) {
+        pool = new ParticlePool(maxParticles);
+        random = new SplittableRandom(seed);
+    }
+
+    public ParticlePool getPool() {
+        return pool;
+    }
+
+    public void setPosition(float x, float y, float z) {
+        position.set(x, y, z);
+    }
+
+    public Vector3fc getPosition() {
+        return position;
+    }
+
+    // Particles per second
+    public void setRate(float rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Negative emission rate " + rate);
+        }
+        this.rate = rate;
+    }
+
+    // Launch velocity: a random direction within spreadRadians of direction, a random speed in [minSpeed, maxSpeed]
+    public void setVelocity(float x, float y, float z, float spreadRadians, float minSpeed, float maxSpeed) {
+        direction.set(x, y, z);
+        if (!direction.isFinite() || direction.lengthSquared() == 0) {
+            throw new IllegalArgumentException("Emitter direction must be a non-zero vector");
+        }
+        direction.normalize();
+        // Any basis around the direction will do, the cone is symmetric
+        if (Math.abs(direction.y) < 0.99f) {
+            tangent.set(0, 1, 0).cross(direction).normalize();
+        } else {
+            tangent.set(1, 0, 0).cross(direction).normalize();
+        }
+        direction.cross(tangent, bitangent);
+        cosSpread = (float) Math.cos(Math.min(Math.PI, Math.max(0, spreadRadians)));
+        this.minSpeed = minSpeed;
+        this.maxSpeed = Math.max(minSpeed, maxSpeed);
+    }
+
+    public void setLifetime(float minSeconds, float maxSeconds) {
+        if (!(minSeconds > 0)) {
+            throw new IllegalArgumentException("Particle lifetime must be positive: " + minSeconds);
+        }
+        minLife = minSeconds;
+        maxLife = Math.max(minSeconds, maxSeconds);
+    }
+
+    // Half the width of a particle's quad, world units
+    public void setSize(float size) {
+        this.size = size;
+    }
+
+    // Components in [0, 1]; alpha fades to zero over each particle's lifetime
+    public void setColor(float r, float g, float b, float a) {
+        color = toByte(r) | toByte(g) << 8 | toByte(b) << 16 | toByte(a) << 24;
+    }
+
+    private static int toByte(float value) {
+        return Math.round(Math.max(0.0f, Math.min(1.0f, value)) * 255.0f);
+    }
+
+    public void setGravity(float x, float y, float z) {
+        gravity.set(x, y, z);
+    }
+
+    public Vector3fc getGravity() {
+        return gravity;
+    }
+
+    // Fraction of the velocity lost per second is 1 - exp(-drag)
+    public void setDrag(float drag) {
+        this.drag = drag;
+    }
+
+    public float getDrag() {
+        return drag;
+    }
+
+    // Mean lifetime times rate: the particle count the emitter settles at, capacity permitting
+    public float getSteadyStateCount() {
+        return rate * (minLife + maxLife) / 2;
+    }
+
+    // Spawns this step's particles at the end of the pool and returns how many it could not fit. Each
+    // is born at a random moment within the step, so a stream does not come out in clumps.
+    int emit(float dt) {
+        pending += rate * dt;
+        int wanted = (int) pending;
+        pending -= wanted;
+        int spawn = Math.min(wanted, pool.capacity - pool.count);
+        for (int n = 0; n < spawn; n++) {
+            int i = pool.count++;
+            float cos = 1 - (float) random.nextDouble() * (1 - cosSpread);
+            float sin = (float) Math.sqrt(Math.max(0.0f, 1 - cos * cos));
+            double phi = random.nextDouble() * 2 * Math.PI;
+            float a = sin * (float) Math.cos(phi), b = sin * (float) Math.sin(phi);
+            float speed = minSpeed + (float) random.nextDouble() * (maxSpeed - minSpeed);
+            float x = (direction.x * cos + tangent.x * a + bitangent.x * b) * speed;
+            float y = (direction.y * cos + tangent.y * a + bitangent.y * b) * speed;
+            float z = (direction.z * cos + tangent.z * a + bitangent.z * b) * speed;
+            float born = (float) random.nextDouble() * dt;  // Time already lived before this step
+            pool.vx[i] = x;
+            pool.vy[i] = y;
+            pool.vz[i] = z;
+            pool.px[i] = position.x + x * born;
+            pool.py[i] = position.y + y * born;
+            pool.pz[i] = position.z + z * born;
+            pool.age[i] = born;
+            pool.life[i] = minLife + (float) random.nextDouble() * (maxLife - minLife);
+            pool.size[i] = size;
+            pool.color[i] = color;
+        }
+        return wanted - spawn;
+    }
+}
@@ -0,0 +1,12 @@
+package com.vibhusha.renderEngine;
+
+// Integration step of the particle update. VectorParticleKernels uses the Vector API when the
+// incubator module is present (run with --add-modules jdk.incubator.vector), ScalarParticleKernels
+// otherwise. Both evaluate exactly the same float expressions per particle, so they are bit-identical.
+interface ParticleKernels {
+    // For particles [from, to) of the pool: v = (v + g) * damping, p = p + v * dt, age = age + dt, where g
+    // is the velocity gravity adds over one step (gravity * dt)
+    void integrate(ParticlePool pool, int from, int to, float dt, float gx, float gy, float gz, float damping);
+
+    String getName();
+}
@@ -0,0 +1,85 @@
+package com.vibhusha.renderEngine;
+
+// Particle state of one ParticleEmitter in struct-of-arrays primitive storage, fixed capacity. Live
+// particles are packed in [0, count); a dead particle is overwritten by the last live one
+// (swap-remove), so the order changes as particles die. The arrays are read and written directly by
+// ParticleSystem and the ParticleKernels.
+public final class ParticlePool {
+    final int capacity;
+    int count;
+    final float[] px, py, pz;
+    final float[] vx, vy, vz;
+    final float[] age;
+    final float[] life;
+    final float[] size;   // Half the width of the quad, world units
+    final int[] color;    // RGBA8, red in the lowest byte
+
+    ParticlePool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Particle pool capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        px = new float[capacity];
+        py = new float[capacity];
+        pz = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        vz = new float[capacity];
+        age = new float[capacity];
+        life = new float[capacity];
+        size = new float[capacity];
+        color = new int[capacity];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public float getX(int particle) {
+        return px[particle];
+    }
+
+    public float getY(int particle) {
+        return py[particle];
+    }
+
+    public float getZ(int particle) {
+        return pz[particle];
+    }
+
+    public float getAge(int particle) {
+        return age[particle];
+    }
+
+    public float getLife(int particle) {
+        return life[particle];
+    }
+
+    // Removes the particle, the last live one takes its slot
+    public void remove(int particle) {
+        if (particle < 0 || particle >= count) {
+            throw new IndexOutOfBoundsException("Particle " + particle + " of " + count);
+        }
+        int last = --count;
+        if (particle != last) {
+            move(last, particle);
+        }
+    }
+
+    void move(int from, int to) {
+        px[to] = px[from];
+        py[to] = py[from];
+        pz[to] = pz[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        vz[to] = vz[from];
+        age[to] = age[from];
+        life[to] = life[from];
+        size[to] = size[from];
+        color[to] = color[from];
+    }
+}
@@ -0,0 +1,153 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Camera;
+import com.vibhusha.utils.Profiler;
+import com.vibhusha.utils.Shader;
+import com.vibhusha.utils.StandardUniforms;
+import lombok.extern.slf4j.Slf4j;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+// Draws a ParticleSystem as camera-facing quads, all particles in one instanced draw. The instance
+// records are written by ParticleSystem.update straight into GL memory: BUFFER_COUNT buffers are used
+// round robin, each mapped with GL_MAP_INVALIDATE_BUFFER_BIT, so if the GPU is still reading one the
+// driver orphans its storage rather than stalling. Unmapped (mapped = false), the records go to a CPU
+// buffer and are streamed with glBufferData(null) + glBufferSubData, as RenderQueue does for its
+// instance matrices.
+//
+// begin() hands out the buffer to update into, draw() unmaps or uploads it and draws.
+@Slf4j
+public class ParticleRenderer {
+    public static final int BUFFER_COUNT = 3;
+    private static final int CORNER_LOCATION = 0;
+    private static final int POSITION_SIZE_LOCATION = 1;
+    private static final int COLOR_LOCATION = 2;
+
+    private final Shader shader;
+    private final StandardUniforms uniforms;
+    private final boolean mapped;
+    private final int quadVbo;
+    private final int[] vaos = new int[BUFFER_COUNT];
+    private final int[] vbos = new int[BUFFER_COUNT];
+    private final long[] sizes = new long[BUFFER_COUNT];
+    private int current;
+    private ByteBuffer mapping;
+    private ByteBuffer staging;
+    private final float[] viewMatrixData = new float[16];
+    private final float[] projectionMatrixData = new float[16];
+
+    public ParticleRenderer(boolean mapped) {
+        this.mapped = mapped;
+        shader = new Shader("shaders/particle_vertex.glsl", "shaders/particle_fragment.glsl");
+        uniforms = shader.getStandardUniforms();
+        FloatBuffer corners = BufferUtils.createFloatBuffer(8);
+        corners.put(new float[]{-1, -1, 1, -1, -1, 1, 1, 1}).flip();
+        quadVbo = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, quadVbo);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, corners, GL15.GL_STATIC_DRAW);
+
+        // One VAO per buffer, so switching buffers is a bind rather than new attribute pointers
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            vaos[i] = GL30.glGenVertexArrays();
+            vbos[i] = GL15.glGenBuffers();
+            GL30.glBindVertexArray(vaos[i]);
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, quadVbo);
+            GL20.glVertexAttribPointer(CORNER_LOCATION, 2, GL11.GL_FLOAT, false, 0, 0);
+            GL20.glEnableVertexAttribArray(CORNER_LOCATION);
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbos[i]);
+            GL20.glVertexAttribPointer(POSITION_SIZE_LOCATION, 4, GL11.GL_FLOAT, false, ParticleSystem.INSTANCE_BYTES, 0);
+            GL20.glEnableVertexAttribArray(POSITION_SIZE_LOCATION);
+            GL33.glVertexAttribDivisor(POSITION_SIZE_LOCATION, 1);
+            GL20.glVertexAttribPointer(COLOR_LOCATION, 4, GL11.GL_UNSIGNED_BYTE, true, ParticleSystem.INSTANCE_BYTES, 4 * Float.BYTES);
+            GL20.glEnableVertexAttribArray(COLOR_LOCATION);
+            GL33.glVertexAttribDivisor(COLOR_LOCATION, 1);
+        }
+        GL30.glBindVertexArray(0);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    // Next buffer of the ring, with room for maxParticles records, to pass to ParticleSystem.update
+    public ByteBuffer begin(int maxParticles) {
+        current = (current + 1) % BUFFER_COUNT;
+        long bytes = (long) Math.max(1, maxParticles) * ParticleSystem.INSTANCE_BYTES;
+        if (!mapped) {
+            if (staging == null || staging.capacity() < bytes) {
+                staging = staging == null ? MemoryUtil.memAlloc((int) bytes) : MemoryUtil.memRealloc(staging, (int) bytes);
+            }
+            return staging;
+        }
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbos[current]);
+        if (sizes[current] < bytes) {
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, bytes, GL15.GL_STREAM_DRAW);
+            sizes[current] = bytes;
+        }
+        mapping = GL30.glMapBufferRange(GL15.GL_ARRAY_BUFFER, 0, bytes,
+                GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_BUFFER_BIT | GL30.GL_MAP_UNSYNCHRONIZED_BIT, mapping);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        if (mapping == null) {
+            throw new IllegalStateException("Could not map the particle instance buffer");
+        }
+        return mapping;
+    }
+
+    // Draws the first count records written into the buffer from begin()
+    public void draw(Camera camera, int width, int height, int count) {
+        int bytes = count * ParticleSystem.INSTANCE_BYTES;
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbos[current]);
+        if (mapped) {
+            if (!GL15.glUnmapBuffer(GL15.GL_ARRAY_BUFFER)) {
+                // The storage was lost while mapped (e.g. a mode switch), the records are undefined
+                log.warn("Particle instance buffer was corrupted while mapped, skipping a frame of particles");
+                count = 0;
+            }
+        } else if (count > 0) {
+            staging.position(0).limit(bytes);
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, staging.capacity(), GL15.GL_STREAM_DRAW);  // Orphan last frame's storage
+            GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0, staging);
+            staging.clear();
+        }
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        Profiler.count(Profiler.UPLOADED_BYTES, count > 0 ? bytes : 0);
+        if (count == 0) {
+            return;
+        }
+
+        shader.bind();
+        camera.getViewMatrix().get(viewMatrixData);
+        camera.getProjectionMatrix(width, height).get(projectionMatrixData);
+        uniforms.setCamera(viewMatrixData, projectionMatrixData);
+        // Blended over the opaque scene, depth tested but not written
+        GL11.glEnable(GL11.GL_BLEND);
+        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        GL11.glDepthMask(false);
+        GL30.glBindVertexArray(vaos[current]);
+        Profiler.count(Profiler.STATE_CHANGES, 2);
+        GL31.glDrawArraysInstanced(GL11.GL_TRIANGLE_STRIP, 0, 4, count);
+        Profiler.count(Profiler.DRAW_CALLS, 1);
+        GL30.glBindVertexArray(0);
+        GL11.glDepthMask(true);
+        GL11.glDisable(GL11.GL_BLEND);
+        shader.unbind();
+    }
+
+    public void cleanup() {
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            GL30.glDeleteVertexArrays(vaos[i]);
+            GL15.glDeleteBuffers(vbos[i]);
+        }
+        GL15.glDeleteBuffers(quadVbo);
+        shader.cleanup();
+        if (staging != null) {
+            MemoryUtil.memFree(staging);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.vibhusha.renderEngine;
+
+// Counters of the last ParticleSystem.update. Render thread only.
+public class ParticleStats {
+    int emitters;
+    int tasks;
+    int particles;      // Live after the update
+    int capacity;
+    int spawned;
+    int died;
+    int dropped;        // Wanted to spawn, pool full
+    int moved;          // Particles and records moved to close the gaps left by dead ones
+    boolean sorted;
+    long instanceBytes;
+    long updateNanos;   // Whole update, including the sort
+    long sortNanos;
+
+    void reset() {
+        emitters = 0;
+        tasks = 0;
+        particles = 0;
+        capacity = 0;
+        spawned = 0;
+        died = 0;
+        dropped = 0;
+        moved = 0;
+        sorted = false;
+        instanceBytes = 0;
+        updateNanos = 0;
+        sortNanos = 0;
+    }
+
+    public int getEmitters() {
+        return emitters;
+    }
+
+    public int getTasks() {
+        return tasks;
+    }
+
+    public int getParticles() {
+        return particles;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSpawned() {
+        return spawned;
+    }
+
+    public int getDied() {
+        return died;
+    }
+
+    public int getDropped() {
+        return dropped;
+    }
+
+    public int getMoved() {
+        return moved;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    public long getInstanceBytes() {
+        return instanceBytes;
+    }
+
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    public long getSortNanos() {
+        return sortNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d particles in %d emitters (%d tasks), %d spawned, %d died, %d dropped, %d moved; %.1f KB instances%s; update %.3f ms%s",
+                particles, capacity, emitters, tasks, spawned, died, dropped, moved, instanceBytes / 1024.0, sorted ? " depth sorted" : "",
+                updateNanos / 1e6, sorted ? String.format(" (sort %.3f ms)", sortNanos / 1e6) : "");
+    }
+}
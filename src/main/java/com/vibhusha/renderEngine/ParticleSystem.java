@@ -0,0 +1,457 @@
+package com.vibhusha.renderEngine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Steps every ParticleEmitter once per frame and writes the live particles as instance records for a
+// single instanced draw (ParticleRenderer). Each emitter's pool is cut into chunks of CHUNK_SIZE
+// particles that update in parallel: a chunk integrates with ParticleKernels, swap-removes its dead
+// within the chunk and writes its survivors' records straight into the target buffer, at the
+// particle's own index. The gaps the dead leave between chunks, and between emitters in the target
+// buffer, are closed afterwards by moving particles from the end, one move per dead particle.
+//
+// With depth sorting on, the records are written after the update instead, farthest first along the
+// view direction, so alpha blending composites them correctly. The sort is a parallel radix sort of
+// the depths, linear in the particle count.
+//
+// Instance record, INSTANCE_BYTES: position xyz and size as floats (native byte order), then RGBA8
+// with the alpha faded by the fraction of life left.
+@Slf4j
+public class ParticleSystem {
+    public static final int INSTANCE_BYTES = 20;
+    private static final int INSTANCE_INTS = INSTANCE_BYTES / Integer.BYTES;
+    static final int CHUNK_SIZE = 16384;
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private final List<ParticleEmitter> emitters = new ArrayList<>();
+    private final ParticleKernels kernels;
+    private final ParticleStats stats = new ParticleStats();
+    private final Vector3f eye = new Vector3f();
+    private final Vector3f forward = new Vector3f(0, 0, -1);
+    private boolean depthSort;
+    private int particleCount;
+
+    // Per task: a range of one emitter's pool
+    private int taskCount;
+    private int[] taskEmitter = new int[64];
+    private int[] taskStart = new int[64];
+    private int[] taskLive = new int[64];
+    private int[] taskEnd = new int[64];
+    // Per emitter, one more for the end: its pool, first task and range of instance records
+    private ParticlePool[] pools = new ParticlePool[8];
+    private int[] firstTask = new int[8];
+    private int[] recordStart = new int[8];
+    private int[] recordLive = new int[8];
+    private int[] recordEnd = new int[8];
+    // Depth sort: (depth, packed index) keys, radix sorted with one digit histogram per task, and the
+    // records staged in packed order so the sorted write reads one record per key
+    private long[] sortKeys = new long[0];
+    private int[] staged = new int[0];
+    private long[] sortScratch = new long[0];
+    private int[][] histograms = new int[0][];
+    private int sortShift;
+
+    // The update in progress, read by the tasks
+    private float dt;
+    private ByteBuffer target;
+    private boolean writeRecords;
+    private boolean littleEndian;
+    private ParticlePool movingPool;
+    private int movingBase;
+    private final IntConsumer integrateTask = this::integrate;
+    private final IntConsumer depthTask = this::computeDepthKeys;
+    private final IntConsumer countTask = this::countDigits;
+    private final IntConsumer scatterTask = this::scatterDigits;
+    private final IntConsumer writeTask = this::writeSorted;
+    private final Mover particleMover = this::moveParticle;
+    private final Mover recordMover = this::moveRecord;
+
+    private interface Mover {
+        void move(int from, int to);
+    }
+
+    public ParticleSystem() {
+        this(selectKernels());
+    }
+
+    ParticleSystem(ParticleKernels kernels) {
+        this.kernels = kernels;
+    }
+
+    static ParticleKernels selectKernels() {
+        // -Dparticles.scalar=true forces the scalar loops, e.g. to compare the two
+        if (!Boolean.getBoolean("particles.scalar")) {
+            try {
+                return (ParticleKernels) Class.forName("com.vibhusha.renderEngine.VectorParticleKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.info("Vector API not available (run with --add-modules jdk.incubator.vector), particles use scalar loops");
+            }
+        }
+        return new ScalarParticleKernels();
+    }
+
+    public void addEmitter(ParticleEmitter emitter) {
+        emitters.add(emitter);
+    }
+
+    public void removeEmitter(ParticleEmitter emitter) {
+        emitters.remove(emitter);
+    }
+
+    public List<ParticleEmitter> getEmitters() {
+        return emitters;
+    }
+
+    // Records the instance buffer must hold: the capacity of every pool
+    public int getCapacity() {
+        long capacity = 0;
+        for (ParticleEmitter emitter : emitters) {
+            capacity += emitter.getPool().capacity;
+        }
+        if (capacity > Integer.MAX_VALUE / INSTANCE_BYTES) {
+            throw new IllegalStateException("Particle pools hold " + capacity + " particles, too many for one instance buffer");
+        }
+        return (int) capacity;
+    }
+
+    public void setDepthSort(boolean depthSort) {
+        this.depthSort = depthSort;
+    }
+
+    public boolean isDepthSort() {
+        return depthSort;
+    }
+
+    // Camera position and unit view direction the depth sort orders by
+    public void setView(Vector3fc eye, Vector3fc forward) {
+        this.eye.set(eye);
+        this.forward.set(forward);
+    }
+
+    // Spawns, moves and retires particles over dt seconds and, unless instances is null, writes the
+    // live ones as records [0, count) of instances, which must have room for getCapacity() records.
+    // A null pool updates on the calling thread. Returns the number of live particles.
+    public int update(float dt, ForkJoinPool pool, ByteBuffer instances) {
+        long start = System.nanoTime();
+        stats.reset();
+        int capacity = getCapacity();
+        if (instances != null && instances.capacity() < capacity * INSTANCE_BYTES) {
+            throw new IllegalArgumentException(String.format("Instance buffer of %d bytes cannot hold %d particles", instances.capacity(), capacity));
+        }
+        this.dt = dt;
+        target = instances;
+        writeRecords = instances != null && !depthSort;
+        littleEndian = instances != null && instances.order() == ByteOrder.LITTLE_ENDIAN;
+
+        // Spawn, then cut the pools into tasks; every particle alive in this step reserves a record
+        int emitterCount = emitters.size();
+        if (firstTask.length <= emitterCount) {
+            int length = (emitterCount + 1) * 2;
+            pools = Arrays.copyOf(pools, length);
+            firstTask = Arrays.copyOf(firstTask, length);
+            recordStart = Arrays.copyOf(recordStart, length);
+            recordLive = Arrays.copyOf(recordLive, length);
+            recordEnd = Arrays.copyOf(recordEnd, length);
+        }
+        taskCount = 0;
+        int records = 0;
+        for (int e = 0; e < emitterCount; e++) {
+            ParticleEmitter emitter = emitters.get(e);
+            ParticlePool particles = emitter.getPool();
+            int before = particles.count;
+            stats.dropped += emitter.emit(dt);
+            stats.spawned += particles.count - before;
+            pools[e] = particles;
+            firstTask[e] = taskCount;
+            recordStart[e] = records;
+            for (int from = 0; from < particles.count; from += CHUNK_SIZE) {
+                addTask(e, from, Math.min(particles.count, from + CHUNK_SIZE));
+            }
+            records += particles.count;
+            recordEnd[e] = records;
+        }
+        firstTask[emitterCount] = taskCount;
+        stats.tasks = taskCount;
+        run(pool, taskCount, integrateTask);
+
+        // Close the gaps between chunks, then between the emitters' records
+        particleCount = 0;
+        for (int e = 0; e < emitterCount; e++) {
+            ParticlePool particles = pools[e];
+            int before = particles.count;
+            movingPool = particles;
+            movingBase = recordStart[e];
+            particles.count = pack(taskStart, taskLive, taskEnd, firstTask[e], firstTask[e + 1] - firstTask[e], particleMover);
+            stats.died += before - particles.count;
+            recordLive[e] = particles.count;
+            particleCount += particles.count;
+        }
+        movingPool = null;
+        if (writeRecords) {
+            pack(recordStart, recordLive, recordEnd, 0, emitterCount, recordMover);
+        }
+        if (instances != null && depthSort) {
+            sort(pool, emitterCount);
+        }
+
+        target = null;
+        Arrays.fill(pools, 0, emitterCount, null);
+        stats.emitters = emitterCount;
+        stats.particles = particleCount;
+        stats.capacity = capacity;
+        stats.instanceBytes = instances != null ? (long) particleCount * INSTANCE_BYTES : 0;
+        stats.updateNanos = System.nanoTime() - start;
+        return particleCount;
+    }
+
+    private void addTask(int emitter, int from, int to) {
+        if (taskCount == taskStart.length) {
+            int length = taskCount * 2;
+            taskEmitter = Arrays.copyOf(taskEmitter, length);
+            taskStart = Arrays.copyOf(taskStart, length);
+            taskLive = Arrays.copyOf(taskLive, length);
+            taskEnd = Arrays.copyOf(taskEnd, length);
+        }
+        taskEmitter[taskCount] = emitter;
+        taskStart[taskCount] = from;
+        taskEnd[taskCount] = to;
+        taskCount++;
+    }
+
+    private void integrate(int task) {
+        int e = taskEmitter[task];
+        ParticleEmitter emitter = emitters.get(e);
+        ParticlePool particles = pools[e];
+        Vector3fc gravity = emitter.getGravity();
+        float damping = (float) Math.exp(-emitter.getDrag() * dt);
+        int from = taskStart[task], to = taskEnd[task];
+        kernels.integrate(particles, from, to, dt, gravity.x() * dt, gravity.y() * dt, gravity.z() * dt, damping);
+
+        // Swap-remove within the chunk, the survivors' records go out as they are reached
+        float[] age = particles.age, life = particles.life;
+        int base = recordStart[e];
+        for (int i = from; i < to; ) {
+            if (age[i] >= life[i]) {
+                particles.move(--to, i);
+                continue;
+            }
+            if (writeRecords) {
+                writeRecord(particles, i, base + i);
+            }
+            i++;
+        }
+        taskLive[task] = to - from;
+    }
+
+    // Segments [start, end) hold their live elements in [start, start + live) and follow each other
+    // without gaps. Moves elements from the back of the last segments into the gaps of the first ones
+    // until all are packed from the first segment's start, and returns the end of the packed range.
+    private int pack(int[] start, int[] live, int[] end, int first, int segments, Mover mover) {
+        if (segments == 0) {
+            return 0;
+        }
+        int c = first, s = first + segments - 1;
+        while (true) {
+            while (c < s && start[c] + live[c] == end[c]) {
+                c++;
+            }
+            while (s > c && live[s] == 0) {
+                s--;
+            }
+            if (c == s) {
+                return start[c] + live[c];
+            }
+            mover.move(start[s] + --live[s], start[c] + live[c]++);
+            stats.moved++;
+        }
+    }
+
+    private void moveParticle(int from, int to) {
+        movingPool.move(from, to);
+        if (writeRecords) {
+            moveRecord(movingBase + from, movingBase + to);
+        }
+    }
+
+    private void moveRecord(int from, int to) {
+        int source = from * INSTANCE_BYTES, destination = to * INSTANCE_BYTES;
+        target.putLong(destination, target.getLong(source));
+        target.putLong(destination + 8, target.getLong(source + 8));
+        target.putInt(destination + 16, target.getInt(source + 16));
+    }
+
+    private void writeRecord(ParticlePool particles, int i, int record) {
+        ByteBuffer out = target;
+        int offset = record * INSTANCE_BYTES;
+        out.putFloat(offset, particles.px[i]);
+        out.putFloat(offset + 4, particles.py[i]);
+        out.putFloat(offset + 8, particles.pz[i]);
+        out.putFloat(offset + 12, particles.size[i]);
+        int rgba = fadedColor(particles, i);
+        out.putInt(offset + 16, littleEndian ? rgba : Integer.reverseBytes(rgba));
+    }
+
+    private static int fadedColor(ParticlePool particles, int i) {
+        int color = particles.color[i];
+        float fade = 1 - particles.age[i] / particles.life[i];
+        return (color & 0x00FFFFFF) | (int) ((color >>> 24) * fade) << 24;
+    }
+
+    // Keys of (depth, packed index) over the compacted pools, sorted, then written back in order
+    private void sort(ForkJoinPool pool, int emitterCount) {
+        long start = System.nanoTime();
+        if (sortKeys.length < particleCount) {
+            int length = Math.max(particleCount, sortKeys.length + sortKeys.length / 2);
+            sortKeys = new long[length];
+            sortScratch = new long[length];
+            staged = new int[length * INSTANCE_INTS];
+        }
+        // Re-cut the packed pools; recordStart becomes each emitter's first packed index
+        taskCount = 0;
+        int records = 0;
+        for (int e = 0; e < emitterCount; e++) {
+            recordStart[e] = records;
+            for (int from = 0; from < pools[e].count; from += CHUNK_SIZE) {
+                addTask(e, from, Math.min(pools[e].count, from + CHUNK_SIZE));
+            }
+            records += pools[e].count;
+        }
+        run(pool, taskCount, depthTask);
+        radixSort(pool);
+        run(pool, (particleCount + CHUNK_SIZE - 1) / CHUNK_SIZE, writeTask);
+        stats.sorted = true;
+        stats.sortNanos = System.nanoTime() - start;
+    }
+
+    private void computeDepthKeys(int task) {
+        ParticlePool particles = pools[taskEmitter[task]];
+        int base = recordStart[taskEmitter[task]];
+        float ex = eye.x, ey = eye.y, ez = eye.z, fx = forward.x, fy = forward.y, fz = forward.z;
+        for (int i = taskStart[task]; i < taskEnd[task]; i++) {
+            float x = particles.px[i], y = particles.py[i], z = particles.pz[i];
+            int bits = Float.floatToRawIntBits((x - ex) * fx + (y - ey) * fy + (z - ez) * fz);
+            int ordered = bits ^ ((bits >> 31) | 0x80000000);  // Unsigned int order matches the float order
+            sortKeys[base + i] = (long) ~ordered << 32 | (base + i);  // Ascending keys: farthest first
+            int s = (base + i) * INSTANCE_INTS;
+            staged[s] = Float.floatToRawIntBits(x);
+            staged[s + 1] = Float.floatToRawIntBits(y);
+            staged[s + 2] = Float.floatToRawIntBits(z);
+            staged[s + 3] = Float.floatToRawIntBits(particles.size[i]);
+            staged[s + 4] = fadedColor(particles, i);
+        }
+    }
+
+    // LSD radix sort on the depth half of the keys, RADIX_BITS a pass. Each task counts the digits of
+    // its chunk, then scatters the chunk to the offsets of its digits; stable, so equal depths keep
+    // index order. Passes where every key has the same digit are skipped.
+    private void radixSort(ForkJoinPool pool) {
+        int tasks = (particleCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (histograms.length < tasks) {
+            int oldLength = histograms.length;
+            histograms = Arrays.copyOf(histograms, Math.max(tasks, oldLength * 2));
+            for (int t = oldLength; t < histograms.length; t++) {
+                histograms[t] = new int[RADIX];
+            }
+        }
+        for (sortShift = 32; sortShift < 64; sortShift += RADIX_BITS) {
+            run(pool, tasks, countTask);
+            // Digit-major prefix sum, so within a digit the tasks keep their order
+            int offset = 0;
+            boolean single = false;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int digitStart = offset;
+                for (int t = 0; t < tasks; t++) {
+                    int n = histograms[t][digit];
+                    histograms[t][digit] = offset;
+                    offset += n;
+                }
+                single |= offset - digitStart == particleCount;
+            }
+            if (single) {
+                continue;
+            }
+            run(pool, tasks, scatterTask);
+            long[] sorted = sortScratch;
+            sortScratch = sortKeys;
+            sortKeys = sorted;
+        }
+    }
+
+    private void countDigits(int task) {
+        int[] histogram = histograms[task];
+        Arrays.fill(histogram, 0);
+        long[] keys = sortKeys;
+        int shift = sortShift;
+        for (int k = task * CHUNK_SIZE, end = Math.min(particleCount, k + CHUNK_SIZE); k < end; k++) {
+            histogram[(int) (keys[k] >>> shift) & (RADIX - 1)]++;
+        }
+    }
+
+    private void scatterDigits(int task) {
+        int[] offsets = histograms[task];
+        long[] keys = sortKeys, sorted = sortScratch;
+        int shift = sortShift;
+        for (int k = task * CHUNK_SIZE, end = Math.min(particleCount, k + CHUNK_SIZE); k < end; k++) {
+            long key = keys[k];
+            sorted[offsets[(int) (key >>> shift) & (RADIX - 1)]++] = key;
+        }
+    }
+
+    private void writeSorted(int task) {
+        ByteBuffer out = target;
+        int from = task * CHUNK_SIZE, to = Math.min(particleCount, from + CHUNK_SIZE);
+        for (int k = from; k < to; k++) {
+            int s = (int) sortKeys[k] * INSTANCE_INTS, offset = k * INSTANCE_BYTES;
+            out.putInt(offset, staged[s]);
+            out.putInt(offset + 4, staged[s + 1]);
+            out.putInt(offset + 8, staged[s + 2]);
+            out.putInt(offset + 12, staged[s + 3]);
+            out.putInt(offset + 16, littleEndian ? staged[s + 4] : Integer.reverseBytes(staged[s + 4]));
+        }
+    }
+
+    private static void run(ForkJoinPool pool, int count, IntConsumer task) {
+        if (pool == null || count <= 1) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        invoke(pool, () -> IntStream.range(0, count).parallel().forEach(task));
+    }
+
+    private static void invoke(ForkJoinPool pool, Runnable work) {
+        try {
+            pool.submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while updating particles", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Particle update failed", e.getCause());
+        }
+    }
+
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    public ParticleStats getStats() {
+        return stats;
+    }
+
+    public String getKernelName() {
+        return kernels.getName();
+    }
+}
@@ -0,0 +1,195 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.IntList;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// A backend without GL: counts the commands replayed into it and keeps every draw with the state it
+// was issued under, so command streams can be checked (see CommandBenchmark) without a GPU. Meshlet
+// draws are kept as one instance with submesh -1 and their range count.
+public class RecordingCommandBackend implements CommandBackend {
+    private static final int DRAW_INTS = 12;
+
+    private final long[] commandCounts = new long[CommandBuffer.OPCODE_COUNT];
+    private final IntList draws = new IntList(1024 * DRAW_INTS);
+    private long instances;
+    private long meshletRanges;
+    private long uploadedBytes;
+    private int frames;
+    private int shader = -1;
+    private int texture = -1;
+    private int model = -1;
+    private final float[] color = {1, 1, 1, 1};
+    private int pendingRanges;
+
+    public void reset() {
+        Arrays.fill(commandCounts, 0);
+        draws.clear();
+        instances = 0;
+        meshletRanges = 0;
+        uploadedBytes = 0;
+        frames = 0;
+        shader = -1;
+        texture = -1;
+        model = -1;
+        Arrays.fill(color, 1);
+        pendingRanges = 0;
+    }
+
+    @Override
+    public void uploadInstances(ByteBuffer instances) {
+        uploadedBytes += instances.remaining();
+    }
+
+    @Override
+    public void endFrame() {
+        frames++;
+    }
+
+    @Override
+    public void bindShader(int shader) {
+        commandCounts[CommandBuffer.BIND_SHADER]++;
+        this.shader = shader;
+    }
+
+    @Override
+    public void bindTexture(int texture) {
+        commandCounts[CommandBuffer.BIND_TEXTURE]++;
+        this.texture = texture;
+    }
+
+    @Override
+    public void bindModel(int model) {
+        commandCounts[CommandBuffer.BIND_MODEL]++;
+        this.model = model;
+    }
+
+    @Override
+    public void setColor(float r, float g, float b, float a) {
+        commandCounts[CommandBuffer.SET_COLOR]++;
+        color[0] = r;
+        color[1] = g;
+        color[2] = b;
+        color[3] = a;
+    }
+
+    @Override
+    public void drawInstanced(int lod, int firstInstance, int instanceCount) {
+        commandCounts[CommandBuffer.DRAW_INSTANCED]++;
+        addDraw(lod, 0, firstInstance, instanceCount, 0);
+    }
+
+    @Override
+    public void drawSubmeshInstanced(int lod, int submesh, int firstInstance, int instanceCount) {
+        commandCounts[CommandBuffer.DRAW_SUBMESH]++;
+        addDraw(lod, submesh, firstInstance, instanceCount, 0);
+    }
+
+    @Override
+    public void addMeshletRange(int firstIndex, int indexCount) {
+        pendingRanges++;
+    }
+
+    @Override
+    public void drawMeshlets(int instance) {
+        commandCounts[CommandBuffer.DRAW_MESHLETS]++;
+        meshletRanges += pendingRanges;
+        addDraw(0, -1, instance, 1, pendingRanges);
+        pendingRanges = 0;
+    }
+
+    private void addDraw(int lod, int submesh, int firstInstance, int instanceCount, int ranges) {
+        if (shader < 0 || texture < 0 || model < 0) {
+            throw new IllegalStateException(String.format("Draw of instances %d..%d before a shader, texture and model were bound",
+                    firstInstance, firstInstance + instanceCount - 1));
+        }
+        draws.add(shader, texture, model);
+        draws.add(lod, submesh, firstInstance);
+        draws.add(instanceCount, ranges);
+        for (float channel : color) {
+            draws.add(Float.floatToRawIntBits(channel));
+        }
+        instances += instanceCount;
+    }
+
+    // Commands of one opcode, e.g. CommandBuffer.BIND_SHADER
+    public long getCommandCount(int opcode) {
+        return commandCounts[opcode];
+    }
+
+    public long getCommandCount() {
+        long total = 0;
+        for (long count : commandCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public int getDrawCount() {
+        return draws.size() / DRAW_INTS;
+    }
+
+    public int getDrawShader(int draw) {
+        return draws.get(draw * DRAW_INTS);
+    }
+
+    public int getDrawTexture(int draw) {
+        return draws.get(draw * DRAW_INTS + 1);
+    }
+
+    public int getDrawModel(int draw) {
+        return draws.get(draw * DRAW_INTS + 2);
+    }
+
+    public int getDrawLod(int draw) {
+        return draws.get(draw * DRAW_INTS + 3);
+    }
+
+    // -1 for meshlet draws
+    public int getDrawSubmesh(int draw) {
+        return draws.get(draw * DRAW_INTS + 4);
+    }
+
+    public int getDrawFirstInstance(int draw) {
+        return draws.get(draw * DRAW_INTS + 5);
+    }
+
+    public int getDrawInstanceCount(int draw) {
+        return draws.get(draw * DRAW_INTS + 6);
+    }
+
+    public int getDrawMeshletRanges(int draw) {
+        return draws.get(draw * DRAW_INTS + 7);
+    }
+
+    // Diffuse colour channel (0..3 for RGBA) the draw was issued with
+    public float getDrawColor(int draw, int channel) {
+        return Float.intBitsToFloat(draws.get(draw * DRAW_INTS + 8 + channel));
+    }
+
+    public long getInstances() {
+        return instances;
+    }
+
+    public long getMeshletRanges() {
+        return meshletRanges;
+    }
+
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    // Frames ended since the last reset
+    public int getFrameCount() {
+        return frames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d commands: %d shader, %d texture, %d model binds, %d colours, %d instanced + %d submesh + %d meshlet draws; %d instances, %d meshlet ranges",
+                getCommandCount(), commandCounts[CommandBuffer.BIND_SHADER], commandCounts[CommandBuffer.BIND_TEXTURE],
+                commandCounts[CommandBuffer.BIND_MODEL], commandCounts[CommandBuffer.SET_COLOR], commandCounts[CommandBuffer.DRAW_INSTANCED],
+                commandCounts[CommandBuffer.DRAW_SUBMESH], commandCounts[CommandBuffer.DRAW_MESHLETS], instances, meshletRanges);
+    }
+}
@@ -0,0 +1,200 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Camera;
+import com.vibhusha.utils.Material;
+import com.vibhusha.utils.Model;
+import com.vibhusha.utils.Profiler;
+import com.vibhusha.utils.Shader;
+import com.vibhusha.utils.Texture;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+// Collects (mesh, material, transform) submissions for a frame, sorts them by a packed 64-bit key
+// and draws each run of identical mesh + material + LOD as one instanced draw. Per-instance model
+// matrices are streamed into one orphaned buffer and read by vertex.glsl at locations 3..6.
+// A model with MTL materials is one key like any other: its batch draws the submeshes in turn, each
+// with its own texture (or the material's, without a map_Kd) and colour, so any number of them fit.
+// At LOD 0, models loaded with meshlets are drawn per instance instead: MeshletCuller drops the
+// meshlets outside the frustum or facing away, while recording, and the rest go out as one multi-draw.
+// flush() records the sorted frame as CommandBuffers on worker threads (see ParallelCommandRecorder)
+// and replays them through GlCommandBackend, the only part that makes GL calls, or through any other
+// CommandBackend given to the package-private constructor.
+//
+// Sort key, most significant first (the sign bit stays clear):
+//   shader 7 | texture 10 | VAO 10 | LOD 3 | depth 13 | transform index 20
+public class RenderQueue {
+    public static final int INSTANCE_MATRIX_LOCATION = 3;
+    static final int MATRIX_FLOATS = 16;
+    static final int MATRIX_BYTES = MATRIX_FLOATS * Float.BYTES;
+    static final int MAX_SUBMISSIONS = 1 << 20;
+    private static final int DEPTH_LEVELS = (1 << 13) - 1;
+    static final int BATCH_SHIFT = 33;  // Everything above depth and transform index
+    private static final int RECORD_SCOPE = Profiler.scope("recordCommands");
+    private static final int UPLOAD_SCOPE = Profiler.scope("instanceUpload");
+
+    // Assigned per frame and cleared after it, so the limits are distinct objects within one frame
+    private final FrameIds<Shader> shaders = new FrameIds<>(new Shader[1 << 7], "shaders");
+    private final FrameIds<Texture> textures = new FrameIds<>(new Texture[1 << 10], "textures");
+    private final FrameIds<Model> models = new FrameIds<>(new Model[1 << 10], "models");
+    // Per model id: the texture id of each submesh, -1 where the batch's texture applies; null without materials
+    private final int[][] submeshTextures = new int[1 << 10][];
+    private final int[][] submeshTextureArrays = new int[1 << 10][];  // Kept across frames, reused
+
+    private int count;
+    private long[] keys = new long[1024];
+    private float[] transforms = new float[1024 * MATRIX_FLOATS];
+
+    private ByteBuffer instanceData = BufferUtils.createByteBuffer(1024 * MATRIX_BYTES);
+
+    private final float[] viewMatrixData = new float[16];
+    private final float[] projectionMatrixData = new float[16];
+    private final Vector3f eye = new Vector3f();
+    private final RenderStats stats = new RenderStats();
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final ParallelCommandRecorder recording = new ParallelCommandRecorder();
+    private final CommandBackend backend;
+    private final GlCommandBackend glBackend;  // Null when replaying into another backend
+
+    public RenderQueue() {
+        glBackend = new GlCommandBackend(shaders.getObjects(), textures.getObjects(), models.getObjects(), viewMatrixData, projectionMatrixData);
+        backend = glBackend;
+    }
+
+    // Replays every frame into backend instead of GL, e.g. a RecordingCommandBackend
+    RenderQueue(CommandBackend backend) {
+        this.backend = backend;
+        this.glBackend = null;
+    }
+
+    public void begin(Camera camera, int width, int height) {
+        count = 0;
+        clearIds();
+        stats.reset();
+        camera.getViewMatrix().get(viewMatrixData);
+        camera.getProjectionMatrix(width, height).get(projectionMatrixData);
+        eye.set(camera.getPosition());
+        camera.getProjectionMatrix(width, height).mul(camera.getViewMatrix(), viewProjection);
+    }
+
+    public void submit(Model model, Material material, Matrix4fc transform, int lod) {
+        int transformIndex = reserveTransform();
+        transform.get(transforms, transformIndex * MATRIX_FLOATS);
+        submit(model, material, transformIndex, lod);
+    }
+
+    // Reads the column-major world matrix at matrixIndex, e.g. from TransformPool.getMatrices()
+    public void submit(Model model, Material material, FloatBuffer matrices, int matrixIndex, int lod) {
+        int transformIndex = reserveTransform();
+        matrices.get(matrixIndex * MATRIX_FLOATS, transforms, transformIndex * MATRIX_FLOATS, MATRIX_FLOATS);
+        submit(model, material, transformIndex, lod);
+    }
+
+    private int reserveTransform() {
+        if (count == MAX_SUBMISSIONS) {
+            throw new IllegalStateException("Render queue is limited to " + MAX_SUBMISSIONS + " submissions per frame");
+        }
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            transforms = Arrays.copyOf(transforms, transforms.length * 2);
+        }
+        return count;
+    }
+
+    private void submit(Model model, Material material, int transformIndex, int lod) {
+        int modelCount = models.getCount();
+        int modelId = models.idOf(model);
+        if (modelId == modelCount && model.hasMaterials()) {
+            assignSubmeshTextures(modelId, model);
+        }
+
+        // Front to back within a state bucket, to help early depth rejection
+        int translation = transformIndex * MATRIX_FLOATS + 12;
+        float dx = transforms[translation] - eye.x, dy = transforms[translation + 1] - eye.y, dz = transforms[translation + 2] - eye.z;
+        float depth = Math.min(1.0f, (float) Math.sqrt(dx * dx + dy * dy + dz * dz) / Camera.FAR_PLANE);
+
+        keys[count++] = (long) shaders.idOf(material.getShader()) << 56
+                | (long) textures.idOf(material.getTexture()) << 46
+                | (long) modelId << 36
+                | (long) Math.min(lod, 7) << 33
+                | (long) (depth * DEPTH_LEVELS) << 20
+                | transformIndex;
+        stats.submissions++;
+    }
+
+    // Once per model and frame, so the recorders resolve submesh textures without touching the id tables
+    private void assignSubmeshTextures(int modelId, Model model) {
+        int submeshCount = model.getSubmeshCount();
+        int[] ids = submeshTextureArrays[modelId];
+        if (ids == null || ids.length < submeshCount) {
+            ids = new int[submeshCount];
+            submeshTextureArrays[modelId] = ids;
+        }
+        for (int s = 0; s < submeshCount; s++) {
+            Texture texture = model.getSubmeshTexture(s);
+            ids[s] = texture == null ? -1 : textures.idOf(texture);
+        }
+        submeshTextures[modelId] = ids;
+    }
+
+    public void flush() {
+        flush(null);
+    }
+
+    // Records the frame's commands on the pool (null records on this thread), then uploads the instance
+    // matrices and replays the commands here, on the GL thread
+    public void flush(ForkJoinPool pool) {
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(keys, 0, count);
+
+        // Instance data in sorted order, so each batch reads a contiguous range
+        int bytes = count * MATRIX_BYTES;
+        if (instanceData.capacity() < bytes) {
+            // Rewritten every frame, so nothing to carry over
+            instanceData = BufferUtils.createByteBuffer(Math.max(bytes, instanceData.capacity() * 2));
+        }
+        Profiler.begin(RECORD_SCOPE);
+        recording.record(pool, keys, count, transforms, models.getObjects(), submeshTextures, instanceData, viewProjection, eye);
+        recording.addStats(stats);
+        Profiler.end();
+
+        Profiler.begin(UPLOAD_SCOPE);
+        instanceData.position(0).limit(bytes);
+        backend.uploadInstances(instanceData);
+        Profiler.count(Profiler.UPLOADED_BYTES, bytes);
+        instanceData.clear();
+        stats.instanceBytes = bytes;
+        Profiler.end();
+
+        recording.replay(backend);
+        backend.endFrame();
+        count = 0;
+        clearIds();
+    }
+
+    // Drops the frame's references, so models and textures cleaned up since are not kept reachable
+    private void clearIds() {
+        Arrays.fill(submeshTextures, 0, models.getCount(), null);
+        shaders.clear();
+        textures.clear();
+        models.clear();
+    }
+
+    public RenderStats getStats() {
+        return stats;
+    }
+
+    public void cleanup() {
+        if (glBackend != null) {
+            glBackend.cleanup();
+        }
+    }
+}
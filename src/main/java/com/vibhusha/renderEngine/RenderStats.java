@@ -0,0 +1,122 @@
+package com.vibhusha.renderEngine;
+
+// Per-frame counters of the render queue, reset by RenderQueue.begin
+public class RenderStats {
+    int submissions;
+    int drawCalls;
+    int instances;
+    int shaderBinds;
+    int textureBinds;
+    int vaoBinds;
+    long instanceBytes;
+    // Meshlet culling, over every instance drawn through meshlets
+    int meshlets;
+    int meshletsOutside;
+    int meshletsBackfacing;
+    long meshletTriangles;
+    long meshletTrianglesDrawn;
+    long meshletCullNanos;
+
+    void reset() {
+        submissions = 0;
+        drawCalls = 0;
+        instances = 0;
+        shaderBinds = 0;
+        textureBinds = 0;
+        vaoBinds = 0;
+        instanceBytes = 0;
+        meshlets = 0;
+        meshletsOutside = 0;
+        meshletsBackfacing = 0;
+        meshletTriangles = 0;
+        meshletTrianglesDrawn = 0;
+        meshletCullNanos = 0;
+    }
+
+    // Merges the counters of a part of the frame, e.g. one recorded command range
+    void add(RenderStats other) {
+        submissions += other.submissions;
+        drawCalls += other.drawCalls;
+        instances += other.instances;
+        shaderBinds += other.shaderBinds;
+        textureBinds += other.textureBinds;
+        vaoBinds += other.vaoBinds;
+        instanceBytes += other.instanceBytes;
+        meshlets += other.meshlets;
+        meshletsOutside += other.meshletsOutside;
+        meshletsBackfacing += other.meshletsBackfacing;
+        meshletTriangles += other.meshletTriangles;
+        meshletTrianglesDrawn += other.meshletTrianglesDrawn;
+        meshletCullNanos += other.meshletCullNanos;
+    }
+
+    public int getSubmissions() {
+        return submissions;
+    }
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public int getInstances() {
+        return instances;
+    }
+
+    public int getShaderBinds() {
+        return shaderBinds;
+    }
+
+    public int getTextureBinds() {
+        return textureBinds;
+    }
+
+    public int getVaoBinds() {
+        return vaoBinds;
+    }
+
+    public int getBinds() {
+        return shaderBinds + textureBinds + vaoBinds;
+    }
+
+    public long getInstanceBytes() {
+        return instanceBytes;
+    }
+
+    public int getMeshlets() {
+        return meshlets;
+    }
+
+    // Meshlets whose bounding sphere is outside the frustum
+    public int getMeshletsOutside() {
+        return meshletsOutside;
+    }
+
+    // Meshlets whose normal cone faces away from the camera
+    public int getMeshletsBackfacing() {
+        return meshletsBackfacing;
+    }
+
+    public long getMeshletTriangles() {
+        return meshletTriangles;
+    }
+
+    public long getMeshletTrianglesDrawn() {
+        return meshletTrianglesDrawn;
+    }
+
+    public long getMeshletCullNanos() {
+        return meshletCullNanos;
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%d submissions -> %d draw calls, %d instances, binds: %d shader, %d texture, %d VAO, %d instance bytes",
+                submissions, drawCalls, instances, shaderBinds, textureBinds, vaoBinds, instanceBytes);
+        if (meshlets == 0) {
+            return summary;
+        }
+        return summary + String.format("; meshlets: %d tested, %d outside, %d back-facing, %d/%d triangles drawn (%.1f%%) in %.3f ms",
+                meshlets, meshletsOutside, meshletsBackfacing, meshletTrianglesDrawn, meshletTriangles,
+                100.0 * meshletTrianglesDrawn / meshletTriangles, meshletCullNanos / 1e6);
+    }
+}
@@ -0,0 +1,19 @@
+package com.vibhusha.renderEngine;
+
+final class ScalarDepthKernels implements DepthKernels {
+    @Override
+    public void rasterizeRow(float[] depth, int offset, int count, float px,
+                             float a0, float r0, float a1, float r1, float a2, float r2, float zx, float rz, float zMin) {
+        for (int i = 0; i < count; i++) {
+            float x = px + i;
+            if (x * a0 + r0 >= 0 && x * a1 + r1 >= 0 && x * a2 + r2 >= 0) {
+                depth[offset + i] = Math.min(depth[offset + i], Math.max(x * zx + rz, zMin));
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,30 @@
+package com.vibhusha.renderEngine;
+
+final class ScalarParticleKernels implements ParticleKernels {
+    @Override
+    public void integrate(ParticlePool pool, int from, int to, float dt, float gx, float gy, float gz, float damping) {
+        integrateTail(pool, from, to, dt, gx, gy, gz, damping);
+    }
+
+    // Also the remainder loop of VectorParticleKernels
+    static void integrateTail(ParticlePool pool, int from, int to, float dt, float gx, float gy, float gz, float damping) {
+        float[] px = pool.px, py = pool.py, pz = pool.pz;
+        float[] vx = pool.vx, vy = pool.vy, vz = pool.vz;
+        float[] age = pool.age;
+        for (int i = from; i < to; i++) {
+            float x = (vx[i] + gx) * damping, y = (vy[i] + gy) * damping, z = (vz[i] + gz) * damping;
+            vx[i] = x;
+            vy[i] = y;
+            vz[i] = z;
+            px[i] = px[i] + x * dt;
+            py[i] = py[i] + y * dt;
+            pz[i] = pz[i] + z * dt;
+            age[i] = age[i] + dt;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,562 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Frustum;
+import com.vibhusha.utils.IntList;
+import com.vibhusha.utils.Model;
+
+import java.util.Arrays;
+
+// Flat scene of models with world-space bounds, culled against the camera frustum through a BVH.
+// Bounds live in struct-of-arrays primitive storage: per object id for updates, and a copy in BVH
+// leaf order so leaves are tested over contiguous arrays. Moving objects refits only the dirty
+// path to the root; adding or removing objects (or heavy degradation) triggers a rebuild.
+public class Scene {
+    private static final int LEAF_SIZE = 8;
+    private static final int BIN_COUNT = 16;
+    private static final float REBUILD_GROWTH = 2.0f;
+
+    // Per object id
+    private int capacity = 1024;
+    private int idCount;
+    private float[] minX = new float[capacity], minY = new float[capacity], minZ = new float[capacity];
+    private float[] maxX = new float[capacity], maxY = new float[capacity], maxZ = new float[capacity];
+    private Model[] models = new Model[capacity];
+    private boolean[] alive = new boolean[capacity];
+    private int[] slotOf = new int[capacity];
+    private int[] leafOf = new int[capacity];
+    private final IntList freeIds = new IntList();
+    private int objectCount;
+
+    // Per slot, in BVH leaf order
+    private int slotCount;
+    private int[] slotObject = new int[0];
+    private float[] sMinX = new float[0], sMinY = new float[0], sMinZ = new float[0];
+    private float[] sMaxX = new float[0], sMaxY = new float[0], sMaxZ = new float[0];
+    private float[] sCenterX = new float[0], sCenterY = new float[0], sCenterZ = new float[0], sRadius = new float[0];
+
+    // BVH nodes; children are always allocated after their parent and every node covers a contiguous slot range
+    private int nodeCount;
+    private float[] nMinX = new float[0], nMinY = new float[0], nMinZ = new float[0];
+    private float[] nMaxX = new float[0], nMaxY = new float[0], nMaxZ = new float[0];
+    private int[] nLeft = new int[0], nParent = new int[0], nFirst = new int[0], nCount = new int[0];
+    private boolean[] nDirty = new boolean[0];
+    private final IntList dirtyLeaves = new IntList();
+    private final IntList refitScratch = new IntList();
+    private boolean structureDirty = true;
+    private float rootAreaAtBuild;
+
+    private final float[] binLeftArea = new float[BIN_COUNT];
+    private final int[] binLeftCount = new int[BIN_COUNT];
+    private final float[] binAccumulator = new float[6];
+
+    private int[] stack = new int[128];
+    private final IntList visible = new IntList(1024);
+    private final CullStats stats = new CullStats();
+
+    public int add(Model model) {
+        float[] b = model.getBounds();
+        return add(model, b[0], b[1], b[2], b[3], b[4], b[5]);
+    }
+
+    public int add(Model model, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int id;
+        if (freeIds.size() > 0) {
+            id = freeIds.get(freeIds.size() - 1);
+            freeIds.setSize(freeIds.size() - 1);
+        } else {
+            if (idCount == capacity) {
+                grow();
+            }
+            id = idCount++;
+        }
+        models[id] = model;
+        alive[id] = true;
+        objectCount++;
+        writeBounds(id, minX, minY, minZ, maxX, maxY, maxZ);
+        structureDirty = true;
+        return id;
+    }
+
+    public void remove(int id) {
+        if (!alive[id]) {
+            return;
+        }
+        alive[id] = false;
+        models[id] = null;
+        freeIds.add(id);
+        objectCount--;
+        structureDirty = true;
+    }
+
+    // Moves an object; only its leaf and that leaf's ancestors are refit on the next update
+    public void setBounds(int id, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        writeBounds(id, minX, minY, minZ, maxX, maxY, maxZ);
+        if (structureDirty) {
+            return;
+        }
+        int slot = slotOf[id];
+        copyToSlot(id, slot);
+        int leaf = leafOf[id];
+        if (!nDirty[leaf]) {
+            nDirty[leaf] = true;
+            dirtyLeaves.add(leaf);
+        }
+    }
+
+    public Model getModel(int id) {
+        return models[id];
+    }
+
+    // World bounds of an object: minX, minY, minZ, maxX, maxY, maxZ
+    public void getBounds(int id, float[] out) {
+        out[0] = minX[id];
+        out[1] = minY[id];
+        out[2] = minZ[id];
+        out[3] = maxX[id];
+        out[4] = maxY[id];
+        out[5] = maxZ[id];
+    }
+
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    public CullStats getStats() {
+        return stats;
+    }
+
+    public void rebuild() {
+        structureDirty = true;
+    }
+
+    // Brings the BVH up to date with every add, remove and move since the last call
+    public void update() {
+        long start = System.nanoTime();
+        if (structureDirty) {
+            build();
+            stats.rebuilt = true;
+        } else if (dirtyLeaves.size() > 0) {
+            refit();
+            if (nodeCount > 0 && surfaceArea(0) > rootAreaAtBuild * REBUILD_GROWTH) {
+                // Objects spread out a lot since the last build, the tree no longer fits them well
+                structureDirty = true;
+            }
+        }
+        stats.refitNanos = System.nanoTime() - start;
+    }
+
+    // Ids of objects whose bounds intersect the frustum. The returned list is reused by the next call.
+    public IntList cull(Frustum frustum) {
+        stats.reset();
+        update();
+        long start = System.nanoTime();
+        stats.objectCount = objectCount;
+        visible.clear();
+        visible.ensureCapacity(slotCount);
+        if (nodeCount == 0) {
+            stats.cullNanos = System.nanoTime() - start;
+            return visible;
+        }
+
+        float[] planes = frustum.getPlanes();
+        int[] out = visible.array();
+        int visibleCount = 0;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = Frustum.ALL_PLANES;
+
+        while (top > 0) {
+            int mask = stack[--top];
+            int node = stack[--top];
+            stats.nodesVisited++;
+
+            int straddling = frustum.classifyAabb(nMinX[node], nMinY[node], nMinZ[node], nMaxX[node], nMaxY[node], nMaxZ[node], mask);
+            if (straddling < 0) {
+                continue;
+            }
+            int first = nFirst[node];
+            int count = nCount[node];
+            if (straddling == 0) {
+                // Whole subtree inside: its slots are contiguous, copy them without testing
+                System.arraycopy(slotObject, first, out, visibleCount, count);
+                visibleCount += count;
+                stats.acceptedWithoutTest += count;
+            } else if (nLeft[node] < 0) {
+                visibleCount = testLeaf(planes, first, count, out, visibleCount);
+                stats.objectsTested += count;
+            } else {
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                int left = nLeft[node];
+                stack[top++] = left + 1;
+                stack[top++] = straddling;
+                stack[top++] = left;
+                stack[top++] = straddling;
+            }
+        }
+
+        visible.setSize(visibleCount);
+        stats.visibleCount = visibleCount;
+        stats.cullNanos = System.nanoTime() - start;
+        return visible;
+    }
+
+    // Branch-light test of contiguous slots against all six planes: sphere and box must both be inside
+    private int testLeaf(float[] planes, int first, int count, int[] out, int outCount) {
+        for (int s = first; s < first + count; s++) {
+            float x0 = sMinX[s], y0 = sMinY[s], z0 = sMinZ[s], x1 = sMaxX[s], y1 = sMaxY[s], z1 = sMaxZ[s];
+            float cx = sCenterX[s], cy = sCenterY[s], cz = sCenterZ[s], r = sRadius[s];
+            boolean inside = true;
+            for (int p = 0; p < Frustum.PLANE_COUNT * 4; p += 4) {
+                float nx = planes[p], ny = planes[p + 1], nz = planes[p + 2], d = planes[p + 3];
+                float far = Math.max(nx * x0, nx * x1) + Math.max(ny * y0, ny * y1) + Math.max(nz * z0, nz * z1) + d;
+                float sphere = nx * cx + ny * cy + nz * cz + d + r;
+                inside &= far >= 0 & sphere >= 0;
+            }
+            out[outCount] = slotObject[s];
+            outCount += inside ? 1 : 0;
+        }
+        return outCount;
+    }
+
+    private void build() {
+        structureDirty = false;
+        dirtyLeaves.clear();
+        slotCount = objectCount;
+        ensureSlotCapacity(slotCount);
+        int n = 0;
+        for (int id = 0; id < idCount; id++) {
+            if (alive[id]) {
+                slotObject[n++] = id;
+            }
+        }
+
+        ensureNodeCapacity(Math.max(1, 4 * slotCount / LEAF_SIZE));
+        nodeCount = 0;
+        if (slotCount == 0) {
+            return;
+        }
+
+        int[] work = new int[64];
+        int top = 0;
+        int root = allocateNode(-1, 0, slotCount);
+        work[top++] = root;
+        int[] binCounts = new int[BIN_COUNT];
+        float[] binBounds = new float[BIN_COUNT * 6];
+
+        while (top > 0) {
+            int node = work[--top];
+            int first = nFirst[node];
+            int count = nCount[node];
+            computeNodeBoundsFromObjects(node, first, count);
+            if (count <= LEAF_SIZE) {
+                nLeft[node] = -1;
+                continue;
+            }
+
+            int mid = splitBinned(first, count, binCounts, binBounds);
+            int left = allocateNode(node, first, mid - first);
+            allocateNode(node, mid, first + count - mid);
+            nLeft[node] = left;
+
+            if (top + 2 > work.length) {
+                work = Arrays.copyOf(work, work.length * 2);
+            }
+            work[top++] = left;
+            work[top++] = left + 1;
+        }
+
+        for (int s = 0; s < slotCount; s++) {
+            int id = slotObject[s];
+            slotOf[id] = s;
+            copyToSlot(id, s);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            if (nLeft[node] < 0) {
+                for (int s = nFirst[node]; s < nFirst[node] + nCount[node]; s++) {
+                    leafOf[slotObject[s]] = node;
+                }
+            }
+        }
+        rootAreaAtBuild = surfaceArea(0);
+    }
+
+    // Partitions slotObject[first, first + count) by the lowest-SAH bin boundary on the longest centroid axis
+    private int splitBinned(int first, int count, int[] binCounts, float[] binBounds) {
+        float cMinX = Float.POSITIVE_INFINITY, cMinY = Float.POSITIVE_INFINITY, cMinZ = Float.POSITIVE_INFINITY;
+        float cMaxX = Float.NEGATIVE_INFINITY, cMaxY = Float.NEGATIVE_INFINITY, cMaxZ = Float.NEGATIVE_INFINITY;
+        for (int s = first; s < first + count; s++) {
+            int id = slotObject[s];
+            float x = minX[id] + maxX[id], y = minY[id] + maxY[id], z = minZ[id] + maxZ[id];
+            cMinX = Math.min(cMinX, x);
+            cMaxX = Math.max(cMaxX, x);
+            cMinY = Math.min(cMinY, y);
+            cMaxY = Math.max(cMaxY, y);
+            cMinZ = Math.min(cMinZ, z);
+            cMaxZ = Math.max(cMaxZ, z);
+        }
+        float ex = cMaxX - cMinX, ey = cMaxY - cMinY, ez = cMaxZ - cMinZ;
+        int axis = ex >= ey && ex >= ez ? 0 : (ey >= ez ? 1 : 2);
+        float axisMin = axis == 0 ? cMinX : axis == 1 ? cMinY : cMinZ;
+        float extent = axis == 0 ? ex : axis == 1 ? ey : ez;
+        if (extent <= 0) {
+            return first + count / 2;
+        }
+        float scale = BIN_COUNT / extent;
+
+        Arrays.fill(binCounts, 0);
+        for (int b = 0; b < BIN_COUNT; b++) {
+            resetBounds(binBounds, b);
+        }
+        for (int s = first; s < first + count; s++) {
+            int id = slotObject[s];
+            int bin = binOf(id, axis, axisMin, scale);
+            binCounts[bin]++;
+            includeBounds(binBounds, bin, id);
+        }
+
+        // Sweep the bins to find the boundary with the lowest surface area heuristic cost
+        float[] leftArea = binLeftArea;
+        int[] leftCount = binLeftCount;
+        float[] acc = binAccumulator;
+        resetBounds(acc, 0);
+        int accCount = 0;
+        for (int b = 0; b < BIN_COUNT - 1; b++) {
+            merge(acc, binBounds, b);
+            accCount += binCounts[b];
+            leftArea[b] = area(acc);
+            leftCount[b] = accCount;
+        }
+        resetBounds(acc, 0);
+        accCount = 0;
+        float bestCost = Float.POSITIVE_INFINITY;
+        int bestBin = -1;
+        for (int b = BIN_COUNT - 1; b > 0; b--) {
+            merge(acc, binBounds, b);
+            accCount += binCounts[b];
+            if (leftCount[b - 1] == 0 || accCount == 0) {
+                continue;
+            }
+            float cost = leftArea[b - 1] * leftCount[b - 1] + area(acc) * accCount;
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestBin = b - 1;
+            }
+        }
+        if (bestBin < 0) {
+            return first + count / 2;
+        }
+
+        int i = first;
+        int j = first + count - 1;
+        while (i <= j) {
+            if (binOf(slotObject[i], axis, axisMin, scale) <= bestBin) {
+                i++;
+            } else {
+                int t = slotObject[i];
+                slotObject[i] = slotObject[j];
+                slotObject[j--] = t;
+            }
+        }
+        return i;
+    }
+
+    private int binOf(int id, int axis, float axisMin, float scale) {
+        float c = axis == 0 ? minX[id] + maxX[id] : axis == 1 ? minY[id] + maxY[id] : minZ[id] + maxZ[id];
+        return Math.min(BIN_COUNT - 1, (int) ((c - axisMin) * scale));
+    }
+
+    private void refit() {
+        // Mark every ancestor of a dirty leaf, then refit bottom-up (children have higher indices)
+        refitScratch.clear();
+        for (int i = 0; i < dirtyLeaves.size(); i++) {
+            int node = dirtyLeaves.get(i);
+            refitScratch.add(node);
+            int parent = nParent[node];
+            while (parent >= 0 && !nDirty[parent]) {
+                nDirty[parent] = true;
+                refitScratch.add(parent);
+                parent = nParent[parent];
+            }
+        }
+        int[] nodes = refitScratch.array();
+        Arrays.sort(nodes, 0, refitScratch.size());
+        for (int i = refitScratch.size() - 1; i >= 0; i--) {
+            int node = nodes[i];
+            if (nLeft[node] < 0) {
+                computeNodeBoundsFromSlots(node);
+            } else {
+                int l = nLeft[node], r = l + 1;
+                nMinX[node] = Math.min(nMinX[l], nMinX[r]);
+                nMinY[node] = Math.min(nMinY[l], nMinY[r]);
+                nMinZ[node] = Math.min(nMinZ[l], nMinZ[r]);
+                nMaxX[node] = Math.max(nMaxX[l], nMaxX[r]);
+                nMaxY[node] = Math.max(nMaxY[l], nMaxY[r]);
+                nMaxZ[node] = Math.max(nMaxZ[l], nMaxZ[r]);
+            }
+            nDirty[node] = false;
+        }
+        stats.refitNodes = refitScratch.size();
+        dirtyLeaves.clear();
+    }
+
+    private int allocateNode(int parent, int first, int count) {
+        if (nodeCount == nMinX.length) {
+            ensureNodeCapacity(nodeCount * 2);
+        }
+        int node = nodeCount++;
+        nParent[node] = parent;
+        nFirst[node] = first;
+        nCount[node] = count;
+        nLeft[node] = -1;
+        nDirty[node] = false;
+        return node;
+    }
+
+    private void computeNodeBoundsFromObjects(int node, int first, int count) {
+        float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY, z0 = Float.POSITIVE_INFINITY;
+        float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY, z1 = Float.NEGATIVE_INFINITY;
+        for (int s = first; s < first + count; s++) {
+            int id = slotObject[s];
+            x0 = Math.min(x0, minX[id]);
+            y0 = Math.min(y0, minY[id]);
+            z0 = Math.min(z0, minZ[id]);
+            x1 = Math.max(x1, maxX[id]);
+            y1 = Math.max(y1, maxY[id]);
+            z1 = Math.max(z1, maxZ[id]);
+        }
+        setNodeBounds(node, x0, y0, z0, x1, y1, z1);
+    }
+
+    private void computeNodeBoundsFromSlots(int node) {
+        float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY, z0 = Float.POSITIVE_INFINITY;
+        float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY, z1 = Float.NEGATIVE_INFINITY;
+        for (int s = nFirst[node]; s < nFirst[node] + nCount[node]; s++) {
+            x0 = Math.min(x0, sMinX[s]);
+            y0 = Math.min(y0, sMinY[s]);
+            z0 = Math.min(z0, sMinZ[s]);
+            x1 = Math.max(x1, sMaxX[s]);
+            y1 = Math.max(y1, sMaxY[s]);
+            z1 = Math.max(z1, sMaxZ[s]);
+        }
+        setNodeBounds(node, x0, y0, z0, x1, y1, z1);
+    }
+
+    private void setNodeBounds(int node, float x0, float y0, float z0, float x1, float y1, float z1) {
+        nMinX[node] = x0;
+        nMinY[node] = y0;
+        nMinZ[node] = z0;
+        nMaxX[node] = x1;
+        nMaxY[node] = y1;
+        nMaxZ[node] = z1;
+    }
+
+    private float surfaceArea(int node) {
+        float dx = nMaxX[node] - nMinX[node], dy = nMaxY[node] - nMinY[node], dz = nMaxZ[node] - nMinZ[node];
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private void writeBounds(int id, float x0, float y0, float z0, float x1, float y1, float z1) {
+        minX[id] = x0;
+        minY[id] = y0;
+        minZ[id] = z0;
+        maxX[id] = x1;
+        maxY[id] = y1;
+        maxZ[id] = z1;
+    }
+
+    private void copyToSlot(int id, int s) {
+        sMinX[s] = minX[id];
+        sMinY[s] = minY[id];
+        sMinZ[s] = minZ[id];
+        sMaxX[s] = maxX[id];
+        sMaxY[s] = maxY[id];
+        sMaxZ[s] = maxZ[id];
+        float hx = (maxX[id] - minX[id]) * 0.5f, hy = (maxY[id] - minY[id]) * 0.5f, hz = (maxZ[id] - minZ[id]) * 0.5f;
+        sCenterX[s] = minX[id] + hx;
+        sCenterY[s] = minY[id] + hy;
+        sCenterZ[s] = minZ[id] + hz;
+        sRadius[s] = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+    }
+
+    private static void resetBounds(float[] bounds, int index) {
+        int b = index * 6;
+        bounds[b] = bounds[b + 1] = bounds[b + 2] = Float.POSITIVE_INFINITY;
+        bounds[b + 3] = bounds[b + 4] = bounds[b + 5] = Float.NEGATIVE_INFINITY;
+    }
+
+    private void includeBounds(float[] bounds, int index, int id) {
+        int b = index * 6;
+        bounds[b] = Math.min(bounds[b], minX[id]);
+        bounds[b + 1] = Math.min(bounds[b + 1], minY[id]);
+        bounds[b + 2] = Math.min(bounds[b + 2], minZ[id]);
+        bounds[b + 3] = Math.max(bounds[b + 3], maxX[id]);
+        bounds[b + 4] = Math.max(bounds[b + 4], maxY[id]);
+        bounds[b + 5] = Math.max(bounds[b + 5], maxZ[id]);
+    }
+
+    private static void merge(float[] acc, float[] bounds, int index) {
+        int b = index * 6;
+        for (int k = 0; k < 3; k++) {
+            acc[k] = Math.min(acc[k], bounds[b + k]);
+            acc[k + 3] = Math.max(acc[k + 3], bounds[b + k + 3]);
+        }
+    }
+
+    private static float area(float[] b) {
+        if (b[0] > b[3]) {
+            return 0;
+        }
+        float dx = b[3] - b[0], dy = b[4] - b[1], dz = b[5] - b[2];
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private void grow() {
+        capacity *= 2;
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        minZ = Arrays.copyOf(minZ, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        maxZ = Arrays.copyOf(maxZ, capacity);
+        models = Arrays.copyOf(models, capacity);
+        alive = Arrays.copyOf(alive, capacity);
+        slotOf = Arrays.copyOf(slotOf, capacity);
+        leafOf = Arrays.copyOf(leafOf, capacity);
+    }
+
+    private void ensureSlotCapacity(int count) {
+        if (slotObject.length >= count) {
+            return;
+        }
+        slotObject = new int[count];
+        sMinX = new float[count];
+        sMinY = new float[count];
+        sMinZ = new float[count];
+        sMaxX = new float[count];
+        sMaxY = new float[count];
+        sMaxZ = new float[count];
+        sCenterX = new float[count];
+        sCenterY = new float[count];
+        sCenterZ = new float[count];
+        sRadius = new float[count];
+    }
+
+    private void ensureNodeCapacity(int count) {
+        if (nMinX.length >= count) {
+            return;
+        }
+        nMinX = Arrays.copyOf(nMinX, count);
+        nMinY = Arrays.copyOf(nMinY, count);
+        nMinZ = Arrays.copyOf(nMinZ, count);
+        nMaxX = Arrays.copyOf(nMaxX, count);
+        nMaxY = Arrays.copyOf(nMaxY, count);
+        nMaxZ = Arrays.copyOf(nMaxZ, count);
+        nLeft = Arrays.copyOf(nLeft, count);
+        nParent = Arrays.copyOf(nParent, count);
+        nFirst = Arrays.copyOf(nFirst, count);
+        nCount = Arrays.copyOf(nCount, count);
+        nDirty = Arrays.copyOf(nDirty, count);
+    }
+}
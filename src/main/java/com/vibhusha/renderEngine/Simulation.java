@@ -0,0 +1,140 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Camera;
+import com.vibhusha.utils.InputQueue;
+import com.vibhusha.utils.TimingStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Fixed-timestep simulation on its own thread. Input arrives through an InputQueue, each tick's
+// result is published through a SnapshotExchange, and the render thread interpolates between the
+// last two ticks. Simulation cost therefore never lands in frame time, and movement no longer
+// depends on the frame rate.
+@Slf4j
+public class Simulation implements Runnable {
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    private static final int STATS_WINDOW = 1024;
+
+    private final Camera camera;
+    private final InputQueue input;
+    private final SnapshotExchange snapshots = new SnapshotExchange();
+    private final long tickNanos;
+    private final float tickSeconds;
+    private final InputQueue.Handler inputHandler = this::onInput;
+
+    private final TimingStats tickJitter = new TimingStats(STATS_WINDOW);
+    private final TimingStats tickCost = new TimingStats(STATS_WINDOW);
+    private final float[] previousPose = new float[SimulationState.POSE_SIZE];
+
+    private volatile boolean running = true;
+    private Thread thread;
+    private long tick;
+    private int movementKeys;
+    private long droppedTicks;
+
+    public Simulation(Camera camera, InputQueue input, int ticksPerSecond) {
+        this.camera = camera;
+        this.input = input;
+        this.tickNanos = 1_000_000_000L / ticksPerSecond;
+        this.tickSeconds = 1.0f / ticksPerSecond;
+    }
+
+    public void start() {
+        long now = System.nanoTime();
+        publish(now);  // The renderer always has a state to read
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long scheduled = System.nanoTime() + tickNanos;
+        while (running) {
+            long now = System.nanoTime();
+            if (now < scheduled) {
+                LockSupport.parkNanos(scheduled - now);
+                continue;
+            }
+            tickJitter.record(now - scheduled);
+
+            step();
+            publish(scheduled);
+            tickCost.record(System.nanoTime() - now);
+            scheduled += tickNanos;
+
+            // After a long stall, skip ahead rather than running a burst of catch-up ticks
+            long behind = (System.nanoTime() - scheduled) / tickNanos;
+            if (behind > MAX_CATCH_UP_TICKS) {
+                scheduled += behind * tickNanos;
+                droppedTicks += behind;
+            }
+
+            if (tickJitter.getCount() == STATS_WINDOW) {
+                log.info(String.format("Tick jitter: %s; tick cost: %s; dropped ticks: %d", tickJitter.summary(), tickCost.summary(), droppedTicks));
+                tickJitter.clear();
+                tickCost.clear();
+            }
+        }
+    }
+
+    private void step() {
+        previousPose[0] = camera.getPosition().x();
+        previousPose[1] = camera.getPosition().y();
+        previousPose[2] = camera.getPosition().z();
+        previousPose[3] = camera.getYaw();
+        previousPose[4] = camera.getPitch();
+
+        input.drain(inputHandler);
+        camera.applyMovement(movementKeys, tickSeconds);
+        tick++;
+    }
+
+    private void onInput(int type, int code, float x, float y) {
+        switch (type) {
+            case InputQueue.MOVEMENT_KEYS -> movementKeys = code;
+            case InputQueue.MOUSE_MOVE -> camera.rotate(x, y);
+            default -> { }
+        }
+    }
+
+    private void publish(long timeNanos) {
+        SimulationState state = snapshots.back();
+        state.tick = tick;
+        state.timeNanos = timeNanos;
+        state.pose[0] = camera.getPosition().x();
+        state.pose[1] = camera.getPosition().y();
+        state.pose[2] = camera.getPosition().z();
+        state.pose[3] = camera.getYaw();
+        state.pose[4] = camera.getPitch();
+        if (tick == 0) {
+            System.arraycopy(state.pose, 0, state.previousPose, 0, SimulationState.POSE_SIZE);
+        } else {
+            System.arraycopy(previousPose, 0, state.previousPose, 0, SimulationState.POSE_SIZE);
+        }
+        snapshots.publish();
+    }
+
+    // Render thread: latest state and how far the current time is past it, in ticks (0..1)
+    public SimulationState latest() {
+        return snapshots.latest();
+    }
+
+    public float alpha(SimulationState state, long nowNanos) {
+        float alpha = (nowNanos - state.timeNanos) / (float) tickNanos;
+        return Math.max(0.0f, Math.min(1.0f, alpha));
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
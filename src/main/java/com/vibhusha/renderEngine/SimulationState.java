@@ -0,0 +1,28 @@
+package com.vibhusha.renderEngine;
+
+// One published simulation tick: the camera pose after the tick and the pose one tick earlier,
+// so the renderer can interpolate without holding on to older snapshots.
+public class SimulationState {
+    long tick;
+    long timeNanos;  // Scheduled time of this tick
+    final float[] pose = new float[POSE_SIZE];
+    final float[] previousPose = new float[POSE_SIZE];
+
+    // x, y, z, yaw, pitch
+    static final int POSE_SIZE = 5;
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    // Pose at alpha between the previous tick (0) and this tick (1), out = {x, y, z, yaw, pitch}
+    public void interpolate(float alpha, float[] out) {
+        for (int i = 0; i < POSE_SIZE; i++) {
+            out[i] = previousPose[i] + (pose[i] - previousPose[i]) * alpha;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.vibhusha.renderEngine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lock-free triple buffer between the simulation thread (writer) and the render thread (reader).
+// The writer fills its back buffer and swaps it with the shared middle one; the reader swaps the
+// middle buffer into its front slot only when a newer one was published. Neither side ever waits.
+public class SnapshotExchange {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final SimulationState[] buffers = {new SimulationState(), new SimulationState(), new SimulationState()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;   // Owned by the writer
+    private int front = 2;  // Owned by the reader
+
+    // Writer side: the buffer to fill for the next publish
+    public SimulationState back() {
+        return buffers[back];
+    }
+
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    // Reader side: the most recently published state, or the previous one if nothing new arrived
+    public SimulationState latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return buffers[front];
+    }
+}
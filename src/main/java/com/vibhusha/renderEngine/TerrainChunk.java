@@ -0,0 +1,34 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.GpuResource;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+
+// The GPU copy of one terrain chunk: its own VAO and vertex buffer, drawn with the index buffer its
+// LOD shares with every other chunk, which this chunk does not own
+public class TerrainChunk implements GpuResource {
+    private final int vaoId;
+    private final int vboId;
+    private final long byteSize;
+
+    public TerrainChunk(int vaoId, int vboId, long byteSize) {
+        this.vaoId = vaoId;
+        this.vboId = vboId;
+        this.byteSize = byteSize;
+    }
+
+    public int getVaoId() {
+        return vaoId;
+    }
+
+    @Override
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    @Override
+    public void cleanup() {
+        GL30.glDeleteVertexArrays(vaoId);
+        GL15.glDeleteBuffers(vboId);
+    }
+}
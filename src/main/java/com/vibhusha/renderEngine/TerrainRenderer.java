@@ -0,0 +1,136 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Camera;
+import com.vibhusha.utils.Frustum;
+import com.vibhusha.utils.GpuResource;
+import com.vibhusha.utils.Profiler;
+import com.vibhusha.utils.Shader;
+import com.vibhusha.utils.StandardUniforms;
+import com.vibhusha.utils.Texture;
+import com.vibhusha.utils.VertexEncoder;
+import com.vibhusha.utils.VertexFormat;
+import com.vibhusha.utils.VertexLayout;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+// Uploads and draws the chunks of a TerrainStreamer. Every LOD has one index buffer holding its
+// TerrainTopology, shared by all chunks of that LOD; a chunk is drawn with one glMultiDrawElements
+// over the interior and the edge variant each neighbour needs. Terrain vertices are world-space FULL
+// vertices, so the model matrix and the decode uniforms are identities.
+public class TerrainRenderer implements TerrainStreamer.Uploader {
+    private static final int RANGE_COUNT = 1 + TerrainTopology.EDGE_COUNT;
+
+    private final TerrainTopology[] topologies;
+    private final int[] indexBuffers;
+    private final VertexLayout layout = VertexFormat.FULL.createLayout();
+    private final IntBuffer counts = BufferUtils.createIntBuffer(RANGE_COUNT);
+    private final PointerBuffer offsets = BufferUtils.createPointerBuffer(RANGE_COUNT);
+    private final float[] viewMatrixData = new float[16];
+    private final float[] projectionMatrixData = new float[16];
+    private int drawnChunks;
+    private int culledChunks;
+
+    public TerrainRenderer(int tileSize, int lodCount) {
+        if ((tileSize + 1) * (tileSize + 1) > 0x10000) {
+            throw new IllegalArgumentException("Terrain tiles of " + tileSize + " samples need more than 16-bit indices");
+        }
+        topologies = new TerrainTopology[lodCount];
+        indexBuffers = new int[lodCount];
+        for (int lod = 0; lod < lodCount; lod++) {
+            topologies[lod] = new TerrainTopology(tileSize >> lod, lodCount - lod);
+            // Uploaded through GL_ARRAY_BUFFER so no VAO's element binding changes
+            indexBuffers[lod] = GL15.glGenBuffers();
+            ByteBuffer indices = topologies[lod].toShortIndices();
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, indexBuffers[lod]);
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+            Profiler.count(Profiler.UPLOADED_BYTES, indices.remaining());
+        }
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public GpuResource upload(int lod, ByteBuffer vertices) {
+        int vaoId = GL30.glGenVertexArrays();
+        GL30.glBindVertexArray(vaoId);
+        int vboId = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboId);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertices, GL15.GL_STATIC_DRAW);
+        layout.apply();
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffers[lod]);
+        GL30.glBindVertexArray(0);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        Profiler.count(Profiler.UPLOADED_BYTES, vertices.remaining());
+        return new TerrainChunk(vaoId, vboId, vertices.remaining());
+    }
+
+    // Draws the streamer's current draw list, skipping chunks outside the frustum
+    public void render(Shader shader, Texture texture, Camera camera, int width, int height, Frustum frustum, TerrainStreamer streamer) {
+        drawnChunks = 0;
+        culledChunks = 0;
+        if (streamer.getDrawCount() == 0) {
+            return;
+        }
+        shader.bind();
+        camera.getViewMatrix().get(viewMatrixData);
+        camera.getProjectionMatrix(width, height).get(projectionMatrixData);
+        StandardUniforms uniforms = shader.getStandardUniforms();
+        uniforms.setCamera(viewMatrixData, projectionMatrixData);
+        uniforms.setDecode(VertexEncoder.IDENTITY_DECODE, false);
+        uniforms.setDiffuseColor(1.0f, 1.0f, 1.0f, 1.0f);
+        texture.bind();
+        // No instance buffer: identity model matrix (locations 3-6), current attribute values are not VAO state
+        for (int column = 0; column < 4; column++) {
+            GL20.glVertexAttrib4f(3 + column, column == 0 ? 1 : 0, column == 1 ? 1 : 0, column == 2 ? 1 : 0, column == 3 ? 1 : 0);
+        }
+
+        for (int i = 0; i < streamer.getDrawCount(); i++) {
+            float[] bounds = streamer.getDrawBounds(i);
+            if (frustum.classifyAabb(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5], Frustum.ALL_PLANES) < 0) {
+                culledChunks++;
+                continue;
+            }
+            TerrainTopology topology = topologies[streamer.getDrawLod(i)];
+            int edges = streamer.getDrawEdges(i);
+            counts.clear();
+            offsets.clear();
+            counts.put(topology.getInteriorCount());
+            offsets.put(0);
+            for (int edge = 0; edge < TerrainTopology.EDGE_COUNT; edge++) {
+                int ratioLog = (edges >>> (edge * 4)) & 0xF;
+                counts.put(topology.getEdgeCount(edge, ratioLog));
+                offsets.put((long) topology.getEdgeOffset(edge, ratioLog) * Short.BYTES);
+            }
+            counts.flip();
+            offsets.flip();
+
+            GL30.glBindVertexArray(((TerrainChunk) streamer.getDrawResource(i)).getVaoId());
+            Profiler.count(Profiler.STATE_CHANGES, 1);
+            GL14.glMultiDrawElements(GL11.GL_TRIANGLES, counts, GL11.GL_UNSIGNED_SHORT, offsets);
+            Profiler.count(Profiler.DRAW_CALLS, 1);
+            drawnChunks++;
+        }
+        GL30.glBindVertexArray(0);
+    }
+
+    public int getDrawnChunks() {
+        return drawnChunks;
+    }
+
+    public int getCulledChunks() {
+        return culledChunks;
+    }
+
+    public void cleanup() {
+        for (int indexBuffer : indexBuffers) {
+            GL15.glDeleteBuffers(indexBuffer);
+        }
+    }
+}
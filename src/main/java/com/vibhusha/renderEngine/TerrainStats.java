@@ -0,0 +1,142 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.TimingStats;
+
+// Terrain streaming counters. The per-frame fields are overwritten by every TerrainStreamer.update,
+// the totals and latency windows accumulate. Render thread only.
+public class TerrainStats {
+    private static final int WINDOW = 1024;
+
+    // Last frame
+    int wantedChunks;
+    int residentWanted;   // Wanted chunks drawn at the wanted LOD
+    int fallbackChunks;   // Drawn at another LOD while the wanted one builds
+    int holes;            // Wanted chunks with nothing to draw
+    int uploads;
+    long streamingNanos;  // Render-thread time spent in update()
+    // Cache
+    int residentChunks;
+    long residentBytes;
+    long budgetBytes;
+    int pendingBuilds;
+    // Totals
+    long frames;
+    long hitchFrames;
+    long requests;
+    long prefetches;
+    long cancelled;
+    long evictions;
+    long failed;
+    long overBudgetFrames;
+    long firstFrameNanos;
+    long lastFrameNanos;
+    final TimingStats buildLatency = new TimingStats(WINDOW);  // Request to resident
+    final TimingStats buildCost = new TimingStats(WINDOW);     // Worker time meshing one chunk
+
+    void beginFrame() {
+        wantedChunks = 0;
+        residentWanted = 0;
+        fallbackChunks = 0;
+        holes = 0;
+        uploads = 0;
+    }
+
+    public int getWantedChunks() {
+        return wantedChunks;
+    }
+
+    public int getResidentWanted() {
+        return residentWanted;
+    }
+
+    public int getFallbackChunks() {
+        return fallbackChunks;
+    }
+
+    public int getHoles() {
+        return holes;
+    }
+
+    public int getUploads() {
+        return uploads;
+    }
+
+    public long getStreamingNanos() {
+        return streamingNanos;
+    }
+
+    public int getResidentChunks() {
+        return residentChunks;
+    }
+
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public int getPendingBuilds() {
+        return pendingBuilds;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    // Frames with a hole in the terrain or streaming work over the hitch threshold
+    public long getHitchFrames() {
+        return hitchFrames;
+    }
+
+    public double getHitchesPerSecond() {
+        double seconds = (lastFrameNanos - firstFrameNanos) / 1e9;
+        return seconds > 0 ? hitchFrames / seconds : 0;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    // Requests made for the predicted camera position rather than the current one
+    public long getPrefetches() {
+        return prefetches;
+    }
+
+    // Queued builds dropped because the camera moved away before a worker took them
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    // Frames whose drawn and predicted chunks alone exceeded the budget
+    public long getOverBudgetFrames() {
+        return overBudgetFrames;
+    }
+
+    public TimingStats getBuildLatency() {
+        return buildLatency;
+    }
+
+    public TimingStats getBuildCost() {
+        return buildCost;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d wanted chunks resident, %d fallback, %d holes; cache %d chunks (%.1f / %.1f MB), %d pending, %d evictions; "
+                        + "%d requests (%d prefetch, %d cancelled, %d failed); build latency p50 %.1f ms, p99 %.1f ms, cost p50 %.2f ms; "
+                        + "%.2f hitches/s over %d frames",
+                residentWanted, wantedChunks, fallbackChunks, holes, residentChunks, residentBytes / 1048576.0, budgetBytes / 1048576.0,
+                pendingBuilds, evictions, requests, prefetches, cancelled, failed, buildLatency.getPercentileMillis(0.5),
+                buildLatency.getPercentileMillis(0.99), buildCost.getPercentileMillis(0.5), getHitchesPerSecond(), frames);
+    }
+}
@@ -0,0 +1,569 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.GpuResource;
+import com.vibhusha.utils.HeightmapFile;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Vector3fc;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pages terrain chunks in and out around the camera. One chunk per heightmap tile; chunks within
+// viewDistance are wanted, at LOD 0 within lodDistance and one level coarser every time the distance
+// doubles. Missing chunks are meshed on worker threads (nearest first) and uploaded on the render
+// thread under a time budget. The chunks the camera will want on its way to where the smoothed
+// velocity puts it lookaheadSeconds from now are requested as well, at a lower priority and only as
+// far as they fit into the budget next to the chunks in use.
+//
+// Resident chunks form an LRU list under a byte budget; the chunks drawn or predicted in the current
+// frame are never evicted. A wanted chunk that is not resident yet is drawn at the nearest resident
+// LOD of the same cell. Neighbours drawn at different LODs are stitched through TerrainTopology's
+// edge variants.
+//
+// update() and everything else runs on the render thread and allocates only when it requests a build.
+@Slf4j
+public class TerrainStreamer {
+    public static final long DEFAULT_BUDGET_BYTES = 256L << 20;
+    public static final long DEFAULT_UPLOAD_BUDGET_NANOS = 2_000_000L;
+    // A frame with a hole or with more streaming work than this counts as a hitch
+    public static final long HITCH_NANOS = 4_000_000L;
+    static final int VERTEX_BYTES = 8 * Float.BYTES;  // VertexFormat.FULL
+    private static final float UV_SAMPLES = 16.0f;     // Samples per texture repeat
+    private static final float VELOCITY_SMOOTHING = 0.2f;
+    private static final int QUEUED = 0, RUNNING = 1, CANCELLED = 2;
+
+    // Creates the GPU copy of a finished chunk; vertices are FULL format, laid out for TerrainTopology
+    public interface Uploader {
+        GpuResource upload(int lod, ByteBuffer vertices);
+    }
+
+    private final HeightmapFile map;
+    private final Uploader uploader;
+    private final int tileSize;
+    private final int chunksX;
+    private final int chunksZ;
+    private final int lodCount;
+    private final float chunkSize;
+    private final float viewDistance;
+    private final float lodDistance;
+    private final float lookaheadSeconds;
+    private final long budgetBytes;
+    private final long uploadBudgetNanos;
+    private final int maxPending;
+    private final ThreadPoolExecutor workers;
+    private final ConcurrentLinkedQueue<Build> finished = new ConcurrentLinkedQueue<>();
+    private final TerrainStats stats = new TerrainStats();
+
+    // Indexed by slot = cell * lodCount + lod, cell = cz * chunksX + cx
+    private final Chunk[] chunks;
+    private final Build[] builds;
+    private final boolean[] failed;
+    private final List<Build> pending = new ArrayList<>();
+    private Chunk head;  // Most recently used
+    private Chunk tail;
+    private long residentBytes;
+    private long pendingBytes;
+    private long usedBytes;  // Resident chunks drawn or predicted this frame
+    private int residentCount;
+    private long sequence;
+
+    // Per cell, for stitching: the frame it was last drawn in and at which LOD
+    private final int[] drawnFrame;
+    private final byte[] drawnLod;
+    private Chunk[] drawChunks = new Chunk[256];
+    private int[] drawEdges = new int[256];
+    private int drawCount;
+
+    private int frame;
+    private long previousNanos;
+    private float previousX, previousZ;
+    private float velocityX, velocityZ;
+
+    public TerrainStreamer(HeightmapFile map, Uploader uploader, float viewDistance) {
+        this(map, uploader, Math.max(1, Runtime.getRuntime().availableProcessors() - 1), viewDistance,
+                map.getTileSize() * map.getSpacing() * 2, 1.0f, DEFAULT_BUDGET_BYTES);
+    }
+
+    public TerrainStreamer(HeightmapFile map, Uploader uploader, int workerCount, float viewDistance, float lodDistance,
+                           float lookaheadSeconds, long budgetBytes) {
+        this.map = map;
+        this.uploader = uploader;
+        this.tileSize = map.getTileSize();
+        this.chunksX = map.getTilesX();
+        this.chunksZ = map.getTilesZ();
+        this.lodCount = lodCountFor(tileSize);
+        this.chunkSize = tileSize * map.getSpacing();
+        this.viewDistance = viewDistance;
+        this.lodDistance = lodDistance;
+        this.lookaheadSeconds = lookaheadSeconds;
+        this.budgetBytes = budgetBytes;
+        this.uploadBudgetNanos = DEFAULT_UPLOAD_BUDGET_NANOS;
+        this.maxPending = 64 * workerCount;
+        int cells = chunksX * chunksZ;
+        this.chunks = new Chunk[cells * lodCount];
+        this.builds = new Build[cells * lodCount];
+        this.failed = new boolean[cells * lodCount];
+        this.drawnFrame = new int[cells];
+        this.drawnLod = new byte[cells];
+        stats.budgetBytes = budgetBytes;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "terrain-mesher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // LOD levels of a tile: halving the grid until TerrainTopology.MIN_QUADS quads are left
+    public static int lodCountFor(int tileSize) {
+        if (tileSize < TerrainTopology.MIN_QUADS || Integer.bitCount(tileSize) != 1) {
+            throw new IllegalArgumentException("Terrain tiles must be a power of two of at least " + TerrainTopology.MIN_QUADS + " samples, not " + tileSize);
+        }
+        return Integer.numberOfTrailingZeros(tileSize) - Integer.numberOfTrailingZeros(TerrainTopology.MIN_QUADS) + 1;
+    }
+
+    public void update(Vector3fc cameraPosition, long nowNanos) {
+        long start = System.nanoTime();
+        float x = cameraPosition.x(), z = cameraPosition.z();
+        frame++;
+        stats.beginFrame();
+        if (stats.frames == 0) {
+            stats.firstFrameNanos = nowNanos;
+        } else if (nowNanos > previousNanos) {
+            float seconds = (nowNanos - previousNanos) / 1e9f;
+            velocityX += VELOCITY_SMOOTHING * ((x - previousX) / seconds - velocityX);
+            velocityZ += VELOCITY_SMOOTHING * ((z - previousZ) / seconds - velocityZ);
+        }
+        previousX = x;
+        previousZ = z;
+        previousNanos = nowNanos;
+
+        uploadFinished(start);
+        drawCount = 0;
+        usedBytes = 0;
+        visitCells(x, z, x, z, false);
+        visitCells(x, z, x + velocityX * lookaheadSeconds, z + velocityZ * lookaheadSeconds, true);
+        cancelStale();
+        evict();
+        stitch();
+
+        stats.residentChunks = residentCount;
+        stats.residentBytes = residentBytes;
+        stats.pendingBuilds = pending.size();
+        stats.streamingNanos = System.nanoTime() - start;
+        if (stats.holes > 0 || stats.streamingNanos > HITCH_NANOS) {
+            stats.hitchFrames++;
+        }
+        stats.lastFrameNanos = nowNanos;
+        stats.frames++;
+    }
+
+    // Uploads finished builds until the budget is spent, at least one per frame
+    private void uploadFinished(long start) {
+        Build build;
+        while ((stats.uploads == 0 || System.nanoTime() - start < uploadBudgetNanos) && (build = finished.poll()) != null) {
+            removePending(build);
+            if (build.failure != null) {
+                failed[build.slot] = true;
+                stats.failed++;
+                log.error(String.format("Meshing terrain chunk %d,%d LOD %d failed: %s", build.cx, build.cz, build.lod, build.failure));
+                continue;
+            }
+            GpuResource resource = uploader.upload(build.lod, build.vertices);
+            Chunk chunk = new Chunk(build.slot, build.cx, build.cz, build.lod, resource, build.bounds);
+            chunks[build.slot] = chunk;
+            linkHead(chunk);
+            residentBytes += chunk.bytes;
+            residentCount++;
+            stats.buildLatency.record(System.nanoTime() - build.requestNanos);
+            stats.buildCost.record(build.buildNanos);
+            stats.uploads++;
+        }
+    }
+
+    // Cells within viewDistance of the path from (x0, z0) to (x1, z1): the wanted cells around the camera
+    // for a point, with prefetch the cells the camera will want until it reaches its predicted position
+    private void visitCells(float x0, float z0, float x1, float z1, boolean prefetch) {
+        int minX = Math.max(0, (int) Math.floor((Math.min(x0, x1) - viewDistance) / chunkSize));
+        int maxX = Math.min(chunksX - 1, (int) Math.floor((Math.max(x0, x1) + viewDistance) / chunkSize));
+        int minZ = Math.max(0, (int) Math.floor((Math.min(z0, z1) - viewDistance) / chunkSize));
+        int maxZ = Math.min(chunksZ - 1, (int) Math.floor((Math.max(z0, z1) + viewDistance) / chunkSize));
+        float pathX = x1 - x0, pathZ = z1 - z0;
+        float pathLengthSquared = pathX * pathX + pathZ * pathZ;
+        for (int cz = minZ; cz <= maxZ; cz++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                // The point of the path nearest the chunk's centre, then the ground-plane distance from it to the chunk's square
+                float x = x0, z = z0;
+                if (pathLengthSquared > 0) {
+                    float t = ((cx + 0.5f) * chunkSize - x0) * pathX + ((cz + 0.5f) * chunkSize - z0) * pathZ;
+                    t = Math.max(0, Math.min(1, t / pathLengthSquared));
+                    x += t * pathX;
+                    z += t * pathZ;
+                }
+                float dx = Math.max(0, Math.max(cx * chunkSize - x, x - (cx + 1) * chunkSize));
+                float dz = Math.max(0, Math.max(cz * chunkSize - z, z - (cz + 1) * chunkSize));
+                float distance = (float) Math.sqrt(dx * dx + dz * dz);
+                if (distance > viewDistance) {
+                    continue;
+                }
+                int cell = cz * chunksX + cx;
+                int lod = lodFor(distance);
+                int slot = cell * lodCount + lod;
+                if (prefetch) {
+                    if (chunks[slot] != null) {
+                        touch(chunks[slot]);
+                    } else if (builds[slot] != null || usedBytes + pendingBytes + chunkBytes(lod) <= budgetBytes) {
+                        request(slot, cx, cz, lod, viewDistance + distance, true);
+                    }
+                    continue;
+                }
+
+                stats.wantedChunks++;
+                Chunk chunk = chunks[slot];
+                if (chunk != null) {
+                    stats.residentWanted++;
+                } else {
+                    request(slot, cx, cz, lod, distance, false);
+                    chunk = fallback(cell, lod);
+                    if (chunk == null) {
+                        stats.holes++;
+                        continue;
+                    }
+                    stats.fallbackChunks++;
+                }
+                touch(chunk);
+                drawnFrame[cell] = frame;
+                drawnLod[cell] = (byte) chunk.lod;
+                if (drawCount == drawChunks.length) {
+                    drawChunks = Arrays.copyOf(drawChunks, drawCount * 2);
+                    drawEdges = Arrays.copyOf(drawEdges, drawCount * 2);
+                }
+                drawChunks[drawCount++] = chunk;
+            }
+        }
+    }
+
+    private long chunkBytes(int lod) {
+        long side = (tileSize >> lod) + 1;
+        return side * side * VERTEX_BYTES;
+    }
+
+    private int lodFor(float distance) {
+        if (distance < lodDistance) {
+            return 0;
+        }
+        int lod = 1 + (int) Math.floor(Math.log(distance / lodDistance) / Math.log(2));
+        return Math.min(lodCount - 1, lod);
+    }
+
+    // Nearest resident LOD of the cell, coarser levels first since they cover the same ground cheaper
+    private Chunk fallback(int cell, int lod) {
+        for (int l = lod + 1; l < lodCount; l++) {
+            if (chunks[cell * lodCount + l] != null) {
+                return chunks[cell * lodCount + l];
+            }
+        }
+        for (int l = lod - 1; l >= 0; l--) {
+            if (chunks[cell * lodCount + l] != null) {
+                return chunks[cell * lodCount + l];
+            }
+        }
+        return null;
+    }
+
+    private void request(int slot, int cx, int cz, int lod, float priority, boolean prefetch) {
+        Build build = builds[slot];
+        if (build != null) {
+            build.wantedFrame = frame;
+            return;
+        }
+        if (failed[slot] || pending.size() >= maxPending) {
+            return;
+        }
+        build = new Build(this, slot, cx, cz, lod, priority, sequence++);
+        build.wantedFrame = frame;
+        build.pendingIndex = pending.size();
+        pending.add(build);
+        builds[slot] = build;
+        pendingBytes += chunkBytes(lod);
+        workers.execute(build);
+        stats.requests++;
+        if (prefetch) {
+            stats.prefetches++;
+        }
+    }
+
+    // Drops queued builds that neither the camera nor the prediction wanted this frame
+    private void cancelStale() {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            Build build = pending.get(i);
+            if (build.wantedFrame != frame && build.state.compareAndSet(QUEUED, CANCELLED)) {
+                workers.remove(build);
+                removePending(build);
+                stats.cancelled++;
+            }
+        }
+    }
+
+    private void removePending(Build build) {
+        builds[build.slot] = null;
+        pendingBytes -= chunkBytes(build.lod);
+        Build last = pending.remove(pending.size() - 1);
+        if (last != build) {
+            pending.set(build.pendingIndex, last);
+            last.pendingIndex = build.pendingIndex;
+        }
+    }
+
+    // Least recently used first; stops at the first chunk used this frame, all later ones are too
+    private void evict() {
+        while (residentBytes > budgetBytes && tail != null) {
+            Chunk victim = tail;
+            if (victim.usedFrame == frame) {
+                stats.overBudgetFrames++;
+                return;
+            }
+            unlink(victim);
+            chunks[victim.slot] = null;
+            victim.resource.cleanup();
+            residentBytes -= victim.bytes;
+            residentCount--;
+            stats.evictions++;
+        }
+    }
+
+    // Per drawn chunk and edge: how many levels coarser the neighbour across it is drawn
+    private void stitch() {
+        for (int i = 0; i < drawCount; i++) {
+            Chunk chunk = drawChunks[i];
+            drawEdges[i] = edgeRatio(chunk, chunk.cx, chunk.cz - 1, TerrainTopology.EDGE_MIN_Z)
+                    | edgeRatio(chunk, chunk.cx + 1, chunk.cz, TerrainTopology.EDGE_MAX_X)
+                    | edgeRatio(chunk, chunk.cx, chunk.cz + 1, TerrainTopology.EDGE_MAX_Z)
+                    | edgeRatio(chunk, chunk.cx - 1, chunk.cz, TerrainTopology.EDGE_MIN_X);
+        }
+    }
+
+    private int edgeRatio(Chunk chunk, int cx, int cz, int edge) {
+        if (cx < 0 || cz < 0 || cx >= chunksX || cz >= chunksZ) {
+            return 0;
+        }
+        int cell = cz * chunksX + cx;
+        if (drawnFrame[cell] != frame || drawnLod[cell] <= chunk.lod) {
+            return 0;
+        }
+        return (drawnLod[cell] - chunk.lod) << (edge * 4);
+    }
+
+    private void touch(Chunk chunk) {
+        if (chunk.usedFrame != frame) {
+            usedBytes += chunk.bytes;
+        }
+        chunk.usedFrame = frame;
+        if (chunk != head) {
+            unlink(chunk);
+            linkHead(chunk);
+        }
+    }
+
+    private void linkHead(Chunk chunk) {
+        chunk.previous = null;
+        chunk.next = head;
+        if (head != null) {
+            head.previous = chunk;
+        }
+        head = chunk;
+        if (tail == null) {
+            tail = chunk;
+        }
+    }
+
+    private void unlink(Chunk chunk) {
+        if (chunk.previous != null) {
+            chunk.previous.next = chunk.next;
+        } else {
+            head = chunk.next;
+        }
+        if (chunk.next != null) {
+            chunk.next.previous = chunk.previous;
+        } else {
+            tail = chunk.previous;
+        }
+        chunk.previous = null;
+        chunk.next = null;
+    }
+
+    // World-space FULL vertices of a chunk at one LOD (positions, uvs, normals), with its bounds
+    static ByteBuffer buildVertices(HeightmapFile map, int cx, int cz, int lod, float[] bounds) {
+        int tileSize = map.getTileSize();
+        int step = 1 << lod;
+        int quads = tileSize >> lod;
+        float spacing = map.getSpacing();
+        ByteBuffer vertices = BufferUtils.createByteBuffer((quads + 1) * (quads + 1) * VERTEX_BYTES);
+        float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        int offset = 0;
+        for (int j = 0; j <= quads; j++) {
+            int sz = cz * tileSize + j * step;
+            for (int i = 0; i <= quads; i++) {
+                int sx = cx * tileSize + i * step;
+                float y = map.getHeight(sx, sz);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+                // Full-resolution slopes at every LOD, so shared edge vertices agree on their normal
+                float slopeX = (map.getHeight(sx + 1, sz) - map.getHeight(sx - 1, sz)) / (2 * spacing);
+                float slopeZ = (map.getHeight(sx, sz + 1) - map.getHeight(sx, sz - 1)) / (2 * spacing);
+                float inverseLength = 1.0f / (float) Math.sqrt(slopeX * slopeX + 1 + slopeZ * slopeZ);
+                vertices.putFloat(offset, sx * spacing)
+                        .putFloat(offset + 4, y)
+                        .putFloat(offset + 8, sz * spacing)
+                        .putFloat(offset + 12, sx / UV_SAMPLES)
+                        .putFloat(offset + 16, sz / UV_SAMPLES)
+                        .putFloat(offset + 20, -slopeX * inverseLength)
+                        .putFloat(offset + 24, inverseLength)
+                        .putFloat(offset + 28, -slopeZ * inverseLength);
+                offset += VERTEX_BYTES;
+            }
+        }
+        bounds[0] = cx * tileSize * spacing;
+        bounds[1] = minY;
+        bounds[2] = cz * tileSize * spacing;
+        bounds[3] = (cx + 1) * tileSize * spacing;
+        bounds[4] = maxY;
+        bounds[5] = (cz + 1) * tileSize * spacing;
+        return vertices;
+    }
+
+    // Chunks to draw this frame, valid until the next update()
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public GpuResource getDrawResource(int index) {
+        return drawChunks[index].resource;
+    }
+
+    public int getDrawLod(int index) {
+        return drawChunks[index].lod;
+    }
+
+    // Four 4-bit fields, TerrainTopology edge e at bits 4e: levels the neighbour across it is coarser
+    public int getDrawEdges(int index) {
+        return drawEdges[index];
+    }
+
+    // World-space bounds: minX, minY, minZ, maxX, maxY, maxZ
+    public float[] getDrawBounds(int index) {
+        return drawChunks[index].bounds;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getLodCount() {
+        return lodCount;
+    }
+
+    public HeightmapFile getMap() {
+        return map;
+    }
+
+    public TerrainStats getStats() {
+        return stats;
+    }
+
+    // Stops the workers and cleans up every resident chunk
+    public void cleanup() {
+        workers.shutdownNow();
+        for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+            chunk.resource.cleanup();
+            chunks[chunk.slot] = null;
+        }
+        head = null;
+        tail = null;
+        residentBytes = 0;
+        residentCount = 0;
+        finished.clear();
+    }
+
+    private static final class Chunk {
+        private final int slot;
+        private final int cx;
+        private final int cz;
+        private final int lod;
+        private final GpuResource resource;
+        private final long bytes;
+        private final float[] bounds;
+        private int usedFrame;
+        private Chunk previous;
+        private Chunk next;
+
+        Chunk(int slot, int cx, int cz, int lod, GpuResource resource, float[] bounds) {
+            this.slot = slot;
+            this.cx = cx;
+            this.cz = cz;
+            this.lod = lod;
+            this.resource = resource;
+            this.bytes = resource.getByteSize();
+            this.bounds = bounds;
+        }
+    }
+
+    // One chunk to mesh; ordered by priority (distance) so the nearest chunks are built first
+    private static final class Build implements Runnable, Comparable<Build> {
+        private final TerrainStreamer streamer;
+        private final int slot;
+        private final int cx;
+        private final int cz;
+        private final int lod;
+        private final float priority;
+        private final long order;
+        private final long requestNanos = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final float[] bounds = new float[6];
+        private int wantedFrame;   // Render thread only
+        private int pendingIndex;  // Render thread only
+        private ByteBuffer vertices;
+        private long buildNanos;
+        private RuntimeException failure;
+
+        Build(TerrainStreamer streamer, int slot, int cx, int cz, int lod, float priority, long order) {
+            this.streamer = streamer;
+            this.slot = slot;
+            this.cx = cx;
+            this.cz = cz;
+            this.lod = lod;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                vertices = buildVertices(streamer.map, cx, cz, lod, bounds);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            buildNanos = System.nanoTime() - start;
+            streamer.finished.add(this);  // Publishes the fields above to the render thread
+        }
+
+        @Override
+        public int compareTo(Build other) {
+            int byPriority = Float.compare(priority, other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.vibhusha.renderEngine;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+// Index topology shared by every terrain chunk of one LOD: a grid of n x n quads over (n + 1)^2
+// vertices, vertex (i, j) at index j * (n + 1) + i, i along x and j along z.
+//
+// The grid is split into an interior (quads 1..n-2 in both directions) and four one-quad-deep edge
+// strips. Each strip has a variant per neighbour ratio 2^k, which only uses every 2^k-th outer vertex:
+// exactly the vertices of a neighbour k levels coarser, so drawing the interior plus the variant each
+// neighbour needs leaves no T-junctions and no cracks. The strips meet the interior and each other on
+// the diagonals (0, 0)-(1, 1) etc., which every variant shares.
+public class TerrainTopology {
+    public static final int EDGE_MIN_Z = 0;
+    public static final int EDGE_MAX_X = 1;
+    public static final int EDGE_MAX_Z = 2;
+    public static final int EDGE_MIN_X = 3;
+    public static final int EDGE_COUNT = 4;
+    // Smallest grid still split into interior and edge strips
+    public static final int MIN_QUADS = 4;
+
+    private final int quads;
+    private final int ratioCount;
+    private final int[] indices;
+    private final int interiorCount;
+    private final int[] edgeOffsets;  // [edge * ratioCount + k]
+    private final int[] edgeCounts;
+    private int size;
+
+    // ratioCount variants per edge: neighbours up to ratioCount - 1 levels coarser
+    public TerrainTopology(int quads, int ratioCount) {
+        if (quads < MIN_QUADS || Integer.bitCount(quads) != 1) {
+            throw new IllegalArgumentException("Terrain grids need a power of two of at least " + MIN_QUADS + " quads, not " + quads);
+        }
+        if (1 << (ratioCount - 1) > quads) {
+            throw new IllegalArgumentException(String.format("%d edge variants need more than %d quads", ratioCount, quads));
+        }
+        this.quads = quads;
+        this.ratioCount = ratioCount;
+        int stripTriangles = 2 * quads;  // Upper bound for any ratio
+        this.indices = new int[3 * (2 * (quads - 2) * (quads - 2) + EDGE_COUNT * ratioCount * stripTriangles)];
+        this.edgeOffsets = new int[EDGE_COUNT * ratioCount];
+        this.edgeCounts = new int[EDGE_COUNT * ratioCount];
+
+        for (int j = 1; j < quads - 1; j++) {
+            for (int i = 1; i < quads - 1; i++) {
+                triangle(i, j, i, j + 1, i + 1, j);
+                triangle(i + 1, j, i, j + 1, i + 1, j + 1);
+            }
+        }
+        interiorCount = size;
+        for (int edge = 0; edge < EDGE_COUNT; edge++) {
+            for (int k = 0; k < ratioCount; k++) {
+                edgeOffsets[edge * ratioCount + k] = size;
+                strip(edge, 1 << k);
+                edgeCounts[edge * ratioCount + k] = size - edgeOffsets[edge * ratioCount + k];
+            }
+        }
+    }
+
+    // Zips the outer row (every ratio-th vertex, 0..n) to the inner row (1..n-1), always advancing the
+    // row whose next segment has the lower midpoint
+    private void strip(int edge, int ratio) {
+        int outerLast = quads / ratio;  // Outer vertices are t = 0, ratio, ..., n
+        int innerLast = quads - 2;      // Inner vertices are t = 1 .. n - 1
+        int a = 0, b = 0;
+        while (a < outerLast || b < innerLast) {
+            boolean advanceOuter;
+            if (a == outerLast) {
+                advanceOuter = false;
+            } else if (b == innerLast) {
+                advanceOuter = true;
+            } else {
+                // Compare 2 * midpoints to stay in integers
+                advanceOuter = (2 * a + 1) * ratio <= 2 * (b + 1) + 1;
+            }
+            if (advanceOuter) {
+                edgeTriangle(edge, a * ratio, 0, (a + 1) * ratio, 0, b + 1, 1);
+                a++;
+            } else {
+                edgeTriangle(edge, a * ratio, 0, b + 1, 1, b + 2, 1);
+                b++;
+            }
+        }
+    }
+
+    // (t, depth) along an edge, depth 0 on the chunk border and 1 one quad inwards
+    private void edgeTriangle(int edge, int t0, int d0, int t1, int d1, int t2, int d2) {
+        triangle(edgeI(edge, t0, d0), edgeJ(edge, t0, d0), edgeI(edge, t1, d1), edgeJ(edge, t1, d1), edgeI(edge, t2, d2), edgeJ(edge, t2, d2));
+    }
+
+    private int edgeI(int edge, int t, int d) {
+        switch (edge) {
+            case EDGE_MIN_X:
+                return d;
+            case EDGE_MAX_X:
+                return quads - d;
+            default:
+                return t;
+        }
+    }
+
+    private int edgeJ(int edge, int t, int d) {
+        switch (edge) {
+            case EDGE_MIN_Z:
+                return d;
+            case EDGE_MAX_Z:
+                return quads - d;
+            default:
+                return t;
+        }
+    }
+
+    // Emitted counter-clockwise seen from +y, so every triangle faces up
+    private void triangle(int i0, int j0, int i1, int j1, int i2, int j2) {
+        int up = (j1 - j0) * (i2 - i0) - (i1 - i0) * (j2 - j0);
+        if (up == 0) {
+            throw new IllegalStateException("Degenerate terrain triangle");
+        }
+        int v0 = vertex(i0, j0), v1 = vertex(i1, j1), v2 = vertex(i2, j2);
+        indices[size++] = v0;
+        indices[size++] = up > 0 ? v1 : v2;
+        indices[size++] = up > 0 ? v2 : v1;
+    }
+
+    private int vertex(int i, int j) {
+        return j * (quads + 1) + i;
+    }
+
+    // Unsigned 16-bit indices, interior first then every edge variant
+    public ByteBuffer toShortIndices() {
+        ByteBuffer data = BufferUtils.createByteBuffer(size * Short.BYTES);
+        for (int i = 0; i < size; i++) {
+            data.putShort(i * Short.BYTES, (short) indices[i]);
+        }
+        return data;
+    }
+
+    public int getQuads() {
+        return quads;
+    }
+
+    public int getVertexCount() {
+        return (quads + 1) * (quads + 1);
+    }
+
+    public int getRatioCount() {
+        return ratioCount;
+    }
+
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public int getIndexCount() {
+        return size;
+    }
+
+    public int getInteriorCount() {
+        return interiorCount;
+    }
+
+    // First index and index count of an edge strip whose neighbour is ratioLog levels coarser
+    public int getEdgeOffset(int edge, int ratioLog) {
+        return edgeOffsets[edge * ratioCount + ratioLog];
+    }
+
+    public int getEdgeCount(int edge, int ratioLog) {
+        return edgeCounts[edge * ratioCount + ratioLog];
+    }
+}
@@ -0,0 +1,396 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.IntList;
+import org.joml.Matrix4f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Transform component: position, rotation (unit quaternion), scale and parent per entity, kept in
+// struct-of-arrays primitive storage. Slots are sorted in depth-first order, so every root's subtree
+// is one contiguous range with parents ahead of their children. Roots are packed into groups of at
+// least GROUP_SIZE slots; groups share no parents, so update() processes the dirty ones in parallel.
+// World matrices are written column-major into a direct buffer, one mat4 per slot, which can be
+// uploaded as an instance buffer as is. Changing the hierarchy re-sorts the slots on the next update.
+public class TransformPool implements EntityRegistry.ComponentPool {
+    public static final int MATRIX_FLOATS = 16;
+    private static final int GROUP_SIZE = 4096;
+    private static final int PARALLEL_THRESHOLD = 2 * GROUP_SIZE;
+
+    private final EntityRegistry registry;
+    private int[] slotOf = new int[1024];  // By entity index, -1 without a transform
+
+    // Per slot
+    private int capacity = 1024;
+    private int count;
+    private int[] entity = new int[capacity];
+    private int[] parent = new int[capacity];  // Parent entity handle or NULL
+    private float[] px = new float[capacity], py = new float[capacity], pz = new float[capacity];
+    private float[] qx = new float[capacity], qy = new float[capacity], qz = new float[capacity], qw = new float[capacity];
+    private float[] sx = new float[capacity], sy = new float[capacity], sz = new float[capacity];
+    private boolean[] localDirty = new boolean[capacity];
+    private boolean[] worldDirty = new boolean[capacity];
+    private FloatBuffer matrices = BufferUtils.createFloatBuffer(capacity * MATRIX_FLOATS);
+
+    // Valid while the order is clean
+    private boolean orderDirty;
+    private int[] parentSlot = new int[capacity];
+    private int[] groupOf = new int[capacity];
+    private final IntList groupStarts = new IntList();
+    private boolean[] groupDirty = new boolean[0];
+    private final IntList dirtyGroups = new IntList();
+    private final IntConsumer updateGroup = g -> updateGroup(dirtyGroups.get(g));
+
+    public TransformPool(EntityRegistry registry) {
+        this.registry = registry;
+        Arrays.fill(slotOf, -1);
+        registry.register(this);
+    }
+
+    // Identity transform at the root of the hierarchy
+    public void add(int entity) {
+        if (!registry.isAlive(entity)) {
+            throw new IllegalArgumentException("Entity " + entity + " is not alive");
+        }
+        int index = EntityRegistry.indexOf(entity);
+        if (index >= slotOf.length) {
+            int oldLength = slotOf.length;
+            slotOf = Arrays.copyOf(slotOf, Math.max(index + 1, oldLength * 2));
+            Arrays.fill(slotOf, oldLength, slotOf.length, -1);
+        }
+        if (slotOf[index] >= 0) {
+            return;
+        }
+        if (count == capacity) {
+            grow(capacity * 2);
+        }
+        int slot = count++;
+        slotOf[index] = slot;
+        this.entity[slot] = entity;
+        parent[slot] = EntityRegistry.NULL;
+        px[slot] = py[slot] = pz[slot] = 0.0f;
+        qx[slot] = qy[slot] = qz[slot] = 0.0f;
+        qw[slot] = 1.0f;
+        sx[slot] = sy[slot] = sz[slot] = 1.0f;
+        localDirty[slot] = true;
+        orderDirty = true;
+    }
+
+    // Called by the registry when an entity is destroyed. Its children become roots.
+    @Override
+    public void remove(int index) {
+        if (index >= slotOf.length || slotOf[index] < 0) {
+            return;
+        }
+        int slot = slotOf[index];
+        int last = --count;
+        if (slot != last) {
+            copySlot(last, slot);
+            slotOf[EntityRegistry.indexOf(entity[slot])] = slot;
+        }
+        slotOf[index] = -1;
+        orderDirty = true;
+    }
+
+    public boolean has(int entity) {
+        int index = EntityRegistry.indexOf(entity);
+        return registry.isAlive(entity) && index < slotOf.length && slotOf[index] >= 0;
+    }
+
+    public void setPosition(int entity, float x, float y, float z) {
+        int slot = slotOf(entity);
+        px[slot] = x;
+        py[slot] = y;
+        pz[slot] = z;
+        markDirty(slot);
+    }
+
+    // Unit quaternion
+    public void setRotation(int entity, float x, float y, float z, float w) {
+        int slot = slotOf(entity);
+        qx[slot] = x;
+        qy[slot] = y;
+        qz[slot] = z;
+        qw[slot] = w;
+        markDirty(slot);
+    }
+
+    public void setScale(int entity, float x, float y, float z) {
+        int slot = slotOf(entity);
+        sx[slot] = x;
+        sy[slot] = y;
+        sz[slot] = z;
+        markDirty(slot);
+    }
+
+    // Local transform is kept, so the child moves with its new parent. NULL detaches.
+    public void setParent(int entity, int newParent) {
+        int slot = slotOf(entity);
+        if (newParent != EntityRegistry.NULL) {
+            // Walk up from the new parent, reaching the child would close a cycle
+            for (int ancestor = newParent; ancestor != EntityRegistry.NULL; ancestor = parent[slotOf(ancestor)]) {
+                if (ancestor == entity) {
+                    throw new IllegalArgumentException("Entity " + newParent + " is a descendant of " + entity);
+                }
+            }
+        }
+        parent[slot] = newParent;
+        localDirty[slot] = true;
+        orderDirty = true;
+    }
+
+    public int getParent(int entity) {
+        return parent[slotOf(entity)];
+    }
+
+    // Recomputes the world matrices of changed transforms and their descendants. A null pool updates
+    // on the calling thread.
+    public void update(ForkJoinPool pool) {
+        if (orderDirty) {
+            sortHierarchy();
+        }
+        dirtyGroups.clear();
+        for (int g = 0; g < groupDirty.length; g++) {
+            if (groupDirty[g]) {
+                dirtyGroups.add(g);
+            }
+        }
+        int dirtyCount = dirtyGroups.size();
+        if (pool == null || dirtyCount == 1 || count < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < dirtyCount; i++) {
+                updateGroup.accept(i);
+            }
+            return;
+        }
+        try {
+            pool.submit(() -> IntStream.range(0, dirtyCount).parallel().forEach(updateGroup)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while updating transforms", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Transform update failed", e.getCause());
+        }
+    }
+
+    // Column-major world matrices in slot order, valid up to getCount() after update()
+    public FloatBuffer getMatrices() {
+        return matrices;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // Matrix index of the entity in getMatrices(); changes when the hierarchy is re-sorted
+    public int getSlot(int entity) {
+        return slotOf(entity);
+    }
+
+    public int getEntity(int slot) {
+        return entity[slot];
+    }
+
+    public Matrix4f getWorldMatrix(int entity, Matrix4f dest) {
+        return dest.set(slotOf(entity) * MATRIX_FLOATS, matrices);
+    }
+
+    // Translation * rotation * scale relative to the parent, composed by JOML
+    public Matrix4f getLocalMatrix(int entity, Matrix4f dest) {
+        int slot = slotOf(entity);
+        return dest.translationRotateScale(px[slot], py[slot], pz[slot], qx[slot], qy[slot], qz[slot], qw[slot],
+                sx[slot], sy[slot], sz[slot]);
+    }
+
+    private int slotOf(int entity) {
+        if (!has(entity)) {
+            throw new IllegalArgumentException("Entity " + entity + " has no transform");
+        }
+        return slotOf[EntityRegistry.indexOf(entity)];
+    }
+
+    private void markDirty(int slot) {
+        localDirty[slot] = true;
+        if (!orderDirty) {
+            groupDirty[groupOf[slot]] = true;
+        }
+    }
+
+    // Slots only read their own parent, which lies earlier in the same group
+    private void updateGroup(int group) {
+        int end = groupStarts.get(group + 1);
+        for (int slot = groupStarts.get(group); slot < end; slot++) {
+            int p = parentSlot[slot];
+            boolean dirty = localDirty[slot] || (p >= 0 && worldDirty[p]);
+            worldDirty[slot] = dirty;
+            if (dirty) {
+                localDirty[slot] = false;
+                computeWorld(slot, p);
+            }
+        }
+        groupDirty[group] = false;
+    }
+
+    // world = parent * translation * rotation * scale, affine so the parent's bottom row is skipped
+    private void computeWorld(int slot, int parentSlot) {
+        float x = qx[slot], y = qy[slot], z = qz[slot], w = qw[slot];
+        float xx = x * x, yy = y * y, zz = z * z;
+        float xy = x * y, xz = x * z, yz = y * z, wx = w * x, wy = w * y, wz = w * z;
+        float a00 = (1 - 2 * (yy + zz)) * sx[slot], a10 = 2 * (xy + wz) * sx[slot], a20 = 2 * (xz - wy) * sx[slot];
+        float a01 = 2 * (xy - wz) * sy[slot], a11 = (1 - 2 * (xx + zz)) * sy[slot], a21 = 2 * (yz + wx) * sy[slot];
+        float a02 = 2 * (xz + wy) * sz[slot], a12 = 2 * (yz - wx) * sz[slot], a22 = (1 - 2 * (xx + yy)) * sz[slot];
+        float a03 = px[slot], a13 = py[slot], a23 = pz[slot];
+
+        FloatBuffer m = matrices;
+        int out = slot * MATRIX_FLOATS;
+        if (parentSlot >= 0) {
+            int in = parentSlot * MATRIX_FLOATS;
+            float p00 = m.get(in), p10 = m.get(in + 1), p20 = m.get(in + 2);
+            float p01 = m.get(in + 4), p11 = m.get(in + 5), p21 = m.get(in + 6);
+            float p02 = m.get(in + 8), p12 = m.get(in + 9), p22 = m.get(in + 10);
+            float p03 = m.get(in + 12), p13 = m.get(in + 13), p23 = m.get(in + 14);
+            float b00 = p00 * a00 + p01 * a10 + p02 * a20, b10 = p10 * a00 + p11 * a10 + p12 * a20, b20 = p20 * a00 + p21 * a10 + p22 * a20;
+            float b01 = p00 * a01 + p01 * a11 + p02 * a21, b11 = p10 * a01 + p11 * a11 + p12 * a21, b21 = p20 * a01 + p21 * a11 + p22 * a21;
+            float b02 = p00 * a02 + p01 * a12 + p02 * a22, b12 = p10 * a02 + p11 * a12 + p12 * a22, b22 = p20 * a02 + p21 * a12 + p22 * a22;
+            float b03 = p00 * a03 + p01 * a13 + p02 * a23 + p03;
+            float b13 = p10 * a03 + p11 * a13 + p12 * a23 + p13;
+            float b23 = p20 * a03 + p21 * a13 + p22 * a23 + p23;
+            a00 = b00; a10 = b10; a20 = b20;
+            a01 = b01; a11 = b11; a21 = b21;
+            a02 = b02; a12 = b12; a22 = b22;
+            a03 = b03; a13 = b13; a23 = b23;
+        }
+        m.put(out, a00).put(out + 1, a10).put(out + 2, a20).put(out + 3, 0.0f);
+        m.put(out + 4, a01).put(out + 5, a11).put(out + 6, a21).put(out + 7, 0.0f);
+        m.put(out + 8, a02).put(out + 9, a12).put(out + 10, a22).put(out + 11, 0.0f);
+        m.put(out + 12, a03).put(out + 13, a13).put(out + 14, a23).put(out + 15, 1.0f);
+    }
+
+    // Depth-first order from each root, keeping the previous relative order of roots and siblings.
+    // Matrices move with their slots, so only transforms that were already dirty are recomputed.
+    private void sortHierarchy() {
+        int[] oldParent = new int[count];
+        int[] childCounts = new int[count + 1];
+        for (int slot = 0; slot < count; slot++) {
+            int p = parent[slot];
+            if (p != EntityRegistry.NULL && !has(p)) {
+                // The parent was destroyed or lost its transform
+                parent[slot] = p = EntityRegistry.NULL;
+                localDirty[slot] = true;
+            }
+            oldParent[slot] = p == EntityRegistry.NULL ? -1 : slotOf[EntityRegistry.indexOf(p)];
+            if (oldParent[slot] >= 0) {
+                childCounts[oldParent[slot] + 1]++;
+            }
+        }
+        for (int slot = 0; slot < count; slot++) {
+            childCounts[slot + 1] += childCounts[slot];
+        }
+        int[] children = new int[count];
+        int[] fill = Arrays.copyOf(childCounts, count);
+        for (int slot = 0; slot < count; slot++) {
+            if (oldParent[slot] >= 0) {
+                children[fill[oldParent[slot]]++] = slot;
+            }
+        }
+
+        int[] order = new int[count];
+        int[] newSlot = new int[count];
+        int[] stack = new int[count];
+        int ordered = 0;
+        for (int root = 0; root < count; root++) {
+            if (oldParent[root] >= 0) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int slot = stack[--top];
+                newSlot[slot] = ordered;
+                order[ordered++] = slot;
+                for (int c = childCounts[slot + 1] - 1; c >= childCounts[slot]; c--) {
+                    stack[top++] = children[c];
+                }
+            }
+        }
+
+        permute(order);
+        if (parentSlot.length < capacity) {
+            parentSlot = new int[capacity];
+            groupOf = new int[capacity];
+        }
+        groupStarts.clear();
+        for (int slot = 0; slot < count; slot++) {
+            int old = order[slot];
+            parentSlot[slot] = oldParent[old] < 0 ? -1 : newSlot[oldParent[old]];
+            slotOf[EntityRegistry.indexOf(entity[slot])] = slot;
+            if (parentSlot[slot] < 0 && (groupStarts.size() == 0 || slot - groupStarts.get(groupStarts.size() - 1) >= GROUP_SIZE)) {
+                groupStarts.add(slot);
+            }
+            groupOf[slot] = groupStarts.size() - 1;
+        }
+        int groupCount = groupStarts.size();
+        groupStarts.add(count);
+        groupDirty = new boolean[groupCount];
+        for (int slot = 0; slot < count; slot++) {
+            if (localDirty[slot]) {
+                groupDirty[groupOf[slot]] = true;
+            }
+        }
+        orderDirty = false;
+    }
+
+    // Rearranges every per-slot array so that new slot i holds old slot order[i]
+    private void permute(int[] order) {
+        int[] newEntity = new int[capacity], newParent = new int[capacity];
+        float[][] fields = {px, py, pz, qx, qy, qz, qw, sx, sy, sz};
+        float[][] newFields = new float[fields.length][capacity];
+        boolean[] newDirty = new boolean[capacity];
+        FloatBuffer newMatrices = BufferUtils.createFloatBuffer(capacity * MATRIX_FLOATS);
+        for (int slot = 0; slot < count; slot++) {
+            int old = order[slot];
+            newEntity[slot] = entity[old];
+            newParent[slot] = parent[old];
+            for (int f = 0; f < fields.length; f++) {
+                newFields[f][slot] = fields[f][old];
+            }
+            newDirty[slot] = localDirty[old];
+            newMatrices.put(slot * MATRIX_FLOATS, matrices, old * MATRIX_FLOATS, MATRIX_FLOATS);
+        }
+        entity = newEntity;
+        parent = newParent;
+        px = newFields[0]; py = newFields[1]; pz = newFields[2];
+        qx = newFields[3]; qy = newFields[4]; qz = newFields[5]; qw = newFields[6];
+        sx = newFields[7]; sy = newFields[8]; sz = newFields[9];
+        localDirty = newDirty;
+        matrices = newMatrices;
+    }
+
+    private void copySlot(int from, int to) {
+        entity[to] = entity[from];
+        parent[to] = parent[from];
+        px[to] = px[from]; py[to] = py[from]; pz[to] = pz[from];
+        qx[to] = qx[from]; qy[to] = qy[from]; qz[to] = qz[from]; qw[to] = qw[from];
+        sx[to] = sx[from]; sy[to] = sy[from]; sz[to] = sz[from];
+        localDirty[to] = true;
+        matrices.put(to * MATRIX_FLOATS, matrices, from * MATRIX_FLOATS, MATRIX_FLOATS);
+    }
+
+    private void grow(int newCapacity) {
+        capacity = newCapacity;
+        entity = Arrays.copyOf(entity, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        px = Arrays.copyOf(px, capacity); py = Arrays.copyOf(py, capacity); pz = Arrays.copyOf(pz, capacity);
+        qx = Arrays.copyOf(qx, capacity); qy = Arrays.copyOf(qy, capacity); qz = Arrays.copyOf(qz, capacity); qw = Arrays.copyOf(qw, capacity);
+        sx = Arrays.copyOf(sx, capacity); sy = Arrays.copyOf(sy, capacity); sz = Arrays.copyOf(sz, capacity);
+        localDirty = Arrays.copyOf(localDirty, capacity);
+        worldDirty = new boolean[capacity];
+        FloatBuffer grown = BufferUtils.createFloatBuffer(capacity * MATRIX_FLOATS);
+        grown.put(0, matrices, 0, count * MATRIX_FLOATS);
+        matrices = grown;
+    }
+}
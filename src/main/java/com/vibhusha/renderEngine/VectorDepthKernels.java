@@ -0,0 +1,34 @@
+package com.vibhusha.renderEngine;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Loaded by name only, so the engine still runs when jdk.incubator.vector is not resolved
+final class VectorDepthKernels implements DepthKernels {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final FloatVector LANE_INDEX = FloatVector.zero(SPECIES).addIndex(1);
+
+    @Override
+    public void rasterizeRow(float[] depth, int offset, int count, float px,
+                             float a0, float r0, float a1, float r1, float a2, float r2, float zx, float rz, float zMin) {
+        for (int i = 0; i < count; i += SPECIES.length()) {
+            FloatVector x = LANE_INDEX.add(px + i);
+            VectorMask<Float> covered = SPECIES.indexInRange(i, count)
+                    .and(x.mul(a0).add(r0).compare(VectorOperators.GE, 0))
+                    .and(x.mul(a1).add(r1).compare(VectorOperators.GE, 0))
+                    .and(x.mul(a2).add(r2).compare(VectorOperators.GE, 0));
+            if (!covered.anyTrue()) {
+                continue;
+            }
+            FloatVector z = x.mul(zx).add(rz).max(zMin);
+            FloatVector.fromArray(SPECIES, depth, offset + i, covered).min(z).intoArray(depth, offset + i, covered);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + SPECIES.length() + "x float";
+    }
+}
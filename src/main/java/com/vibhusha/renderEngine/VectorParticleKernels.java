@@ -0,0 +1,35 @@
+package com.vibhusha.renderEngine;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// Loaded by name only, so the engine still runs when jdk.incubator.vector is not resolved
+final class VectorParticleKernels implements ParticleKernels {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void integrate(ParticlePool pool, int from, int to, float dt, float gx, float gy, float gz, float damping) {
+        float[] px = pool.px, py = pool.py, pz = pool.pz;
+        float[] vx = pool.vx, vy = pool.vy, vz = pool.vz;
+        float[] age = pool.age;
+        int i = from;
+        for (int end = from + SPECIES.loopBound(to - from); i < end; i += SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(SPECIES, vx, i).add(gx).mul(damping);
+            FloatVector y = FloatVector.fromArray(SPECIES, vy, i).add(gy).mul(damping);
+            FloatVector z = FloatVector.fromArray(SPECIES, vz, i).add(gz).mul(damping);
+            x.intoArray(vx, i);
+            y.intoArray(vy, i);
+            z.intoArray(vz, i);
+            FloatVector.fromArray(SPECIES, px, i).add(x.mul(dt)).intoArray(px, i);
+            FloatVector.fromArray(SPECIES, py, i).add(y.mul(dt)).intoArray(py, i);
+            FloatVector.fromArray(SPECIES, pz, i).add(z.mul(dt)).intoArray(pz, i);
+            FloatVector.fromArray(SPECIES, age, i).add(dt).intoArray(age, i);
+        }
+        ScalarParticleKernels.integrateTail(pool, i, to, dt, gx, gy, gz, damping);
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + SPECIES.length() + "x float";
+    }
+}
@@ -0,0 +1,68 @@
+package com.vibhusha.utils;
+
+import java.util.concurrent.CompletableFuture;
+
+// An asset that is still streaming in. get() returns the placeholder until the GL thread has
+// uploaded the real asset; the future completes on the GL thread, so callbacks may use GL directly.
+// The handle holds a reference in AssetManager's resource cache until release().
+public class AssetHandle<T extends GpuResource> {
+    private final String name;
+    private final T placeholder;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private volatile T asset;
+    private ResourceCache.Handle<T> resource;  // Guarded by this
+    private boolean released;
+
+    AssetHandle(String name, T placeholder) {
+        this.name = name;
+        this.placeholder = placeholder;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public T get() {
+        T loaded = asset;
+        return loaded != null ? loaded : placeholder;
+    }
+
+    public boolean isReady() {
+        return asset != null;
+    }
+
+    public boolean isFailed() {
+        return future.isCompletedExceptionally();
+    }
+
+    public CompletableFuture<T> getFuture() {
+        return future;
+    }
+
+    // Drops the cache reference, the asset may be evicted at the next trim and get() returns the
+    // placeholder again. Safe from any thread, also while the asset is still streaming in.
+    public synchronized void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        asset = null;
+        if (resource != null) {
+            resource.release();
+        }
+    }
+
+    synchronized void complete(ResourceCache.Handle<T> loaded) {
+        if (released) {
+            loaded.release();
+            return;
+        }
+        resource = loaded;
+        asset = loaded.get();
+        future.complete(asset);
+    }
+
+    void fail(Throwable error) {
+        future.completeExceptionally(error);
+    }
+}
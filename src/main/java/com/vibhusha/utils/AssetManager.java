@@ -0,0 +1,326 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Streams models and textures in the background. Workers do file I/O, parsing and decoding into
+// off-heap staging buffers and hand the results to the GL thread through a bounded queue (a full
+// queue makes the workers wait). processUploads() runs on the GL thread once per frame and stops
+// after the configured time budget, so streaming never stalls a frame for long.
+// Uploaded assets go into a GpuResourceCache under the VRAM budget: loading an asset that is resident,
+// or already streaming, shares that copy instead of loading another. Create it and request assets on
+// the GL thread.
+@Slf4j
+public class AssetManager {
+    public static final long DEFAULT_UPLOAD_BUDGET_NANOS = 2_000_000L;
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private final ExecutorService workers;
+    private final BlockingQueue<PendingUpload<?, ?>> uploads;
+    private final long uploadBudgetNanos;
+    private final StreamingStats stats = new StreamingStats();
+    private final GpuResourceCache resources;
+    private final Map<String, Load<?>> loading = new HashMap<>();  // GL thread only
+
+    private final Model placeholderModel;
+    private final Texture placeholderTexture;
+
+    public AssetManager() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), DEFAULT_QUEUE_CAPACITY, DEFAULT_UPLOAD_BUDGET_NANOS,
+                GpuResourceCache.DEFAULT_BUDGET_BYTES);
+    }
+
+    // Must be created on the GL thread, the placeholders are uploaded immediately
+    public AssetManager(int workerCount, int queueCapacity, long uploadBudgetNanos, long resourceBudgetBytes) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, task -> {
+            Thread thread = new Thread(task, "asset-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.uploads = new ArrayBlockingQueue<>(queueCapacity);
+        this.uploadBudgetNanos = uploadBudgetNanos;
+        this.resources = new GpuResourceCache(resourceBudgetBytes);
+        this.placeholderModel = ModelLoader.createOpenGLModel(VertexEncoder.encode(createPlaceholderCube(), VertexFormat.FULL));
+        this.placeholderTexture = createPlaceholderTexture();
+    }
+
+    public AssetHandle<Model> loadModel(String filePath, MeshOptions options) {
+        String key = GpuResourceCache.modelKey(filePath, options);
+        return acquire(key, filePath, placeholderModel, () -> streamModel(key, filePath, options));
+    }
+
+    public AssetHandle<Texture> loadTexture(String resourcePath) {
+        String key = GpuResourceCache.textureKey(resourcePath);
+        return acquire(key, resourcePath, placeholderTexture, () -> streamTexture(key, resourcePath));
+    }
+
+    public WeakAsset<Model> weakModel(String filePath, MeshOptions options) {
+        String key = GpuResourceCache.modelKey(filePath, options);
+        return new WeakAsset<>(this, key, placeholderModel, () -> streamModel(key, filePath, options));
+    }
+
+    public WeakAsset<Texture> weakTexture(String resourcePath) {
+        String key = GpuResourceCache.textureKey(resourcePath);
+        return new WeakAsset<>(this, key, placeholderTexture, () -> streamTexture(key, resourcePath));
+    }
+
+    private Load<Model> streamModel(String key, String filePath, MeshOptions options) {
+        return stream(key, filePath,
+                () -> ModelLoader.loadModelSource(filePath, options),
+                ModelLoader::createOpenGLModel,
+                ModelSource::getByteCount,
+                ModelSource::free);  // Mesh buffers are direct or mapped and go with the ModelSource
+    }
+
+    private Load<Texture> streamTexture(String key, String resourcePath) {
+        return stream(key, resourcePath,
+                () -> Texture.decode(resourcePath),
+                Texture::new,
+                TextureImage::getByteCount,
+                TextureImage::free);
+    }
+
+    // A resident asset completes the handle at once; otherwise the handle waits for the asset to stream in
+    private <T extends GpuResource> AssetHandle<T> acquire(String key, String name, T placeholder, Supplier<Load<T>> stream) {
+        AssetHandle<T> handle = new AssetHandle<>(name, placeholder);
+        ResourceCache.Handle<T> resident = resources.acquireIfResident(key);
+        if (resident != null) {
+            handle.complete(resident);
+        } else {
+            stream.get().waiting.add(handle);
+        }
+        return handle;
+    }
+
+    // Starts streaming key in, unless it already is
+    @SuppressWarnings("unchecked")
+    private <S, T extends GpuResource> Load<T> stream(String key, String name, Loader<S> loader, Function<S, T> upload,
+                                                      ToLongFunction<S> size, Consumer<S> release) {
+        Load<T> load = (Load<T>) loading.get(key);
+        if (load != null) {
+            return load;
+        }
+        load = new Load<>(key, name);
+        loading.put(key, load);
+        Load<T> target = load;
+        stats.requested.incrementAndGet();
+        workers.execute(() -> {
+            PendingUpload<S, T> pending;
+            try {
+                S staged = loader.load();
+                stats.decoded.incrementAndGet();
+                pending = new PendingUpload<>(target, staged, null, upload, size.applyAsLong(staged), release);
+            } catch (Exception e) {
+                stats.failed.incrementAndGet();
+                pending = new PendingUpload<>(target, null, e, upload, 0, release);
+            }
+            try {
+                uploads.put(pending);
+            } catch (InterruptedException e) {
+                if (pending.staged != null) {
+                    release.accept(pending.staged);
+                }
+                Thread.currentThread().interrupt();
+            }
+        });
+        return load;
+    }
+
+    // GL thread, once per frame: uploads finished payloads until the time budget is spent.
+    // At least one upload runs per call so a single large asset still makes progress.
+    public void processUploads() {
+        long start = System.nanoTime();
+        int count = 0;
+        PendingUpload<?, ?> pending;
+        while ((count == 0 || System.nanoTime() - start < uploadBudgetNanos) && (pending = uploads.poll()) != null) {
+            pending.run();
+            count++;
+        }
+        stats.frameUploads = count;
+        stats.frameUploadNanos = count == 0 ? 0 : System.nanoTime() - start;
+        stats.queueDepth = uploads.size();
+        if (count > 0) {
+            log.info(String.format("Streamed %d asset(s) in %.2f ms: %s", count, stats.frameUploadNanos / 1_000_000.0, stats));
+        }
+    }
+
+    // GL thread, once per frame: applies handle releases and evicts unreferenced assets down to the budget
+    public void trim() {
+        resources.trim();
+    }
+
+    public StreamingStats getStats() {
+        return stats;
+    }
+
+    public GpuResourceCache getResources() {
+        return resources;
+    }
+
+    public Model getPlaceholderModel() {
+        return placeholderModel;
+    }
+
+    public Texture getPlaceholderTexture() {
+        return placeholderTexture;
+    }
+
+    // Stops the workers, frees staged payloads that were never uploaded and cleans up every cached asset
+    public void cleanup() {
+        workers.shutdownNow();
+        PendingUpload<?, ?> pending;
+        while ((pending = uploads.poll()) != null) {
+            pending.discard();
+        }
+        loading.clear();
+        resources.cleanup();
+        placeholderModel.cleanup();
+        placeholderTexture.cleanup();
+    }
+
+    private interface Loader<S> {
+        S load() throws Exception;
+    }
+
+    // One asset streaming in and the handles waiting for it; weak assets only wait for the cache entry
+    private static final class Load<T extends GpuResource> {
+        private final String key;
+        private final String name;
+        private final List<AssetHandle<T>> waiting = new ArrayList<>();
+
+        Load(String key, String name) {
+            this.key = key;
+            this.name = name;
+        }
+    }
+
+    private final class PendingUpload<S, T extends GpuResource> {
+        private final Load<T> load;
+        private final S staged;
+        private final Exception error;
+        private final Function<S, T> upload;
+        private final long bytes;
+        private final Consumer<S> release;
+
+        PendingUpload(Load<T> load, S staged, Exception error, Function<S, T> upload, long bytes, Consumer<S> release) {
+            this.load = load;
+            this.staged = staged;
+            this.error = error;
+            this.upload = upload;
+            this.bytes = bytes;
+            this.release = release;
+        }
+
+        void run() {
+            loading.remove(load.key);
+            if (error != null) {
+                log.error(String.format("Failed to load %s, keeping the placeholder: %s", load.name, error));
+                fail(error);
+                return;
+            }
+            T asset;
+            try {
+                asset = upload.apply(staged);
+            } catch (RuntimeException e) {
+                stats.failed.incrementAndGet();
+                log.error(String.format("Failed to upload %s, keeping the placeholder: %s", load.name, e));
+                fail(e);
+                return;
+            } finally {
+                release.accept(staged);
+            }
+            stats.uploaded++;
+            stats.bytesUploaded += bytes;
+
+            if (asset.getByteSize() > resources.getBudget()) {
+                log.warn(String.format("%s takes %.1f MB, more than the whole GPU resource budget of %.1f MB; it stays resident only while referenced",
+                        load.name, asset.getByteSize() / 1048576.0, resources.getBudget() / 1048576.0));
+            }
+            // The first handle inserts the upload into the cache, the others share it
+            for (AssetHandle<T> handle : load.waiting) {
+                handle.complete(resources.acquire(load.key, asset));
+            }
+            if (load.waiting.isEmpty()) {
+                resources.add(load.key, asset);
+            }
+        }
+
+        private void fail(Exception e) {
+            for (AssetHandle<T> handle : load.waiting) {
+                handle.fail(e);
+            }
+        }
+
+        void discard() {
+            if (staged != null) {
+                release.accept(staged);
+            }
+        }
+    }
+
+    // 2x2 magenta/grey checker, obviously not a real texture
+    private static Texture createPlaceholderTexture() {
+        ByteBuffer pixels = MemoryUtil.memAlloc(2 * 2 * 4);
+        for (int pixel = 0; pixel < 4; pixel++) {
+            boolean magenta = pixel == 0 || pixel == 3;
+            pixels.put((byte) (magenta ? 0xFF : 0x80)).put((byte) (magenta ? 0x00 : 0x80)).put((byte) (magenta ? 0xFF : 0x80)).put((byte) 0xFF);
+        }
+        pixels.flip();
+        TextureImage image = new TextureImage(2, 2, pixels);
+        Texture texture = new Texture(image);
+        image.free();
+        return texture;
+    }
+
+    // Unit cube centred on the origin with per-face normals and texture coordinates
+    private static MeshData createPlaceholderCube() {
+        float[] vertices = new float[24 * MeshData.FLOATS_PER_VERTEX];
+        int[] indices = new int[36];
+        int v = 0, i = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int u = (axis + 1) % 3, w = (axis + 2) % 3;
+                int base = v / MeshData.FLOATS_PER_VERTEX;
+                for (int corner = 0; corner < 4; corner++) {
+                    float cu = (corner == 1 || corner == 2) ? 0.5f : -0.5f;
+                    float cw = corner >= 2 ? 0.5f : -0.5f;
+                    float[] position = new float[3];
+                    position[axis] = 0.5f * sign;
+                    position[u] = cu;
+                    position[w] = cw * sign;
+                    vertices[v++] = position[0];
+                    vertices[v++] = position[1];
+                    vertices[v++] = position[2];
+                    vertices[v++] = cu + 0.5f;
+                    vertices[v++] = cw + 0.5f;
+                    vertices[v++] = axis == 0 ? sign : 0;
+                    vertices[v++] = axis == 1 ? sign : 0;
+                    vertices[v++] = axis == 2 ? sign : 0;
+                }
+                indices[i++] = base;
+                indices[i++] = base + 1;
+                indices[i++] = base + 2;
+                indices[i++] = base;
+                indices[i++] = base + 2;
+                indices[i++] = base + 3;
+            }
+        }
+        return new MeshData(vertices, indices, 24);
+    }
+}
@@ -0,0 +1,371 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+// Pure-Java BC1 (DXT1) and BC3 (DXT5) encoder and decoder for RGBA8 images.
+// Colour endpoints come from the principal axis of each 4x4 block, inset slightly and then refined
+// once by least squares against the chosen palette indices; BC3 alpha uses the 8-value mode between
+// the block's min and max alpha. Rows of blocks are encoded in parallel.
+public class BlockCompressor {
+    private static final int BLOCK_ROWS_PER_TASK = 8;
+    private static final int PARALLEL_THRESHOLD = 256 * 256;
+
+    // Compresses every level of an RGBA8 image into new off-heap buffers
+    public static TextureImage compress(TextureImage image, TextureCompression compression) {
+        TextureImage[] mipmaps = image.getMipmaps();
+        TextureImage[] compressed = new TextureImage[mipmaps.length + 1];
+        for (int level = 0; level < compressed.length; level++) {
+            TextureImage source = level == 0 ? image : mipmaps[level - 1];
+            ByteBuffer blocks = MemoryUtil.memAlloc(compression.byteCount(source.getWidth(), source.getHeight()));
+            encode(source.getPixels(), source.getWidth(), source.getHeight(), compression, blocks);
+            compressed[level] = new TextureImage(source.getWidth(), source.getHeight(), blocks, compression, true);
+        }
+        compressed[0].setMipmaps(Arrays.copyOfRange(compressed, 1, compressed.length));
+        return compressed[0];
+    }
+
+    // Back to RGBA8 in new off-heap buffers, for drivers without S3TC
+    public static TextureImage decompress(TextureImage image) {
+        TextureImage[] mipmaps = image.getMipmaps();
+        TextureImage[] decoded = new TextureImage[mipmaps.length + 1];
+        for (int level = 0; level < decoded.length; level++) {
+            TextureImage source = level == 0 ? image : mipmaps[level - 1];
+            ByteBuffer rgba = MemoryUtil.memAlloc(source.getWidth() * source.getHeight() * 4);
+            decode(source.getPixels(), source.getWidth(), source.getHeight(), source.getCompression(), rgba);
+            decoded[level] = new TextureImage(source.getWidth(), source.getHeight(), rgba);
+        }
+        decoded[0].setMipmaps(Arrays.copyOfRange(decoded, 1, decoded.length));
+        return decoded[0];
+    }
+
+    public static void encode(ByteBuffer rgba, int width, int height, TextureCompression compression, ByteBuffer out) {
+        encode(rgba, width, height, compression, out, ForkJoinPool.commonPool());
+    }
+
+    // Writes compression.byteCount(width, height) bytes at out[0..], leaving position and limit untouched
+    public static void encode(ByteBuffer rgba, int width, int height, TextureCompression compression, ByteBuffer out, ForkJoinPool pool) {
+        if (!compression.isCompressed()) {
+            throw new IllegalArgumentException("Not a block-compressed format: " + compression);
+        }
+        int blocksX = (width + 3) / 4;
+        int blocksY = (height + 3) / 4;
+        int blockBytes = compression.getBlockBytes();
+        int tasks = (blocksY + BLOCK_ROWS_PER_TASK - 1) / BLOCK_ROWS_PER_TASK;
+        TextureConverter.run(pool, (long) width * height >= PARALLEL_THRESHOLD, tasks, task -> {
+            int[] block = new int[64];
+            byte[] row = new byte[blocksX * blockBytes];
+            int end = Math.min(blocksY, (task + 1) * BLOCK_ROWS_PER_TASK);
+            for (int by = task * BLOCK_ROWS_PER_TASK; by < end; by++) {
+                for (int bx = 0; bx < blocksX; bx++) {
+                    loadBlock(rgba, width, height, bx, by, block);
+                    int o = bx * blockBytes;
+                    if (compression == TextureCompression.BC3) {
+                        encodeAlphaBlock(block, row, o);
+                        o += 8;
+                    }
+                    encodeColorBlock(block, row, o);
+                }
+                out.put(by * row.length, row, 0, row.length);
+            }
+        });
+    }
+
+    // Edge blocks repeat the last column and row
+    private static void loadBlock(ByteBuffer rgba, int width, int height, int bx, int by, int[] block) {
+        for (int py = 0; py < 4; py++) {
+            int y = Math.min(by * 4 + py, height - 1);
+            for (int px = 0; px < 4; px++) {
+                int x = Math.min(bx * 4 + px, width - 1);
+                int source = (y * width + x) * 4;
+                int target = (py * 4 + px) * 4;
+                for (int c = 0; c < 4; c++) {
+                    block[target + c] = rgba.get(source + c) & 0xFF;
+                }
+            }
+        }
+    }
+
+    private static void encodeColorBlock(int[] block, byte[] out, int o) {
+        // Mean and covariance of the 16 colours
+        float meanR = 0, meanG = 0, meanB = 0;
+        for (int i = 0; i < 16; i++) {
+            meanR += block[i * 4];
+            meanG += block[i * 4 + 1];
+            meanB += block[i * 4 + 2];
+        }
+        meanR /= 16;
+        meanG /= 16;
+        meanB /= 16;
+        float rr = 0, rg = 0, rb = 0, gg = 0, gb = 0, bb = 0;
+        for (int i = 0; i < 16; i++) {
+            float r = block[i * 4] - meanR, g = block[i * 4 + 1] - meanG, b = block[i * 4 + 2] - meanB;
+            rr += r * r;
+            rg += r * g;
+            rb += r * b;
+            gg += g * g;
+            gb += g * b;
+            bb += b * b;
+        }
+
+        // Principal axis by power iteration
+        float ax = 1, ay = 1, az = 1;
+        for (int iteration = 0; iteration < 8; iteration++) {
+            float x = rr * ax + rg * ay + rb * az;
+            float y = rg * ax + gg * ay + gb * az;
+            float z = rb * ax + gb * ay + bb * az;
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length < 1e-6f) {
+                break;
+            }
+            ax = x / length;
+            ay = y / length;
+            az = z / length;
+        }
+
+        float minT = Float.MAX_VALUE, maxT = -Float.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            float t = (block[i * 4] - meanR) * ax + (block[i * 4 + 1] - meanG) * ay + (block[i * 4 + 2] - meanB) * az;
+            minT = Math.min(minT, t);
+            maxT = Math.max(maxT, t);
+        }
+        // Inset by 1/16 of the range, the extremes are reached by the interpolated entries anyway
+        float inset = (maxT - minT) / 16;
+        maxT -= inset;
+        minT += inset;
+        int c0 = pack565(meanR + ax * maxT, meanG + ay * maxT, meanB + az * maxT);
+        int c1 = pack565(meanR + ax * minT, meanG + ay * minT, meanB + az * minT);
+
+        int[] palette = new int[12];
+        int[] indices = new int[16];
+        int error = fitIndices(block, c0, c1, palette, indices);
+
+        // One least-squares refinement of both endpoints against the chosen indices
+        float aa = 0, ab = 0, bbSum = 0, axR = 0, axG = 0, axB = 0, bxR = 0, bxG = 0, bxB = 0;
+        for (int i = 0; i < 16; i++) {
+            float alpha = WEIGHTS[indices[i]];
+            float beta = 1 - alpha;
+            aa += alpha * alpha;
+            ab += alpha * beta;
+            bbSum += beta * beta;
+            axR += alpha * block[i * 4];
+            axG += alpha * block[i * 4 + 1];
+            axB += alpha * block[i * 4 + 2];
+            bxR += beta * block[i * 4];
+            bxG += beta * block[i * 4 + 1];
+            bxB += beta * block[i * 4 + 2];
+        }
+        float det = aa * bbSum - ab * ab;
+        if (Math.abs(det) > 1e-6f) {
+            float inv = 1 / det;
+            int r0 = pack565((axR * bbSum - bxR * ab) * inv, (axG * bbSum - bxG * ab) * inv, (axB * bbSum - bxB * ab) * inv);
+            int r1 = pack565((bxR * aa - axR * ab) * inv, (bxG * aa - axG * ab) * inv, (bxB * aa - axB * ab) * inv);
+            int[] refinedIndices = new int[16];
+            int refinedError = fitIndices(block, r0, r1, palette, refinedIndices);
+            if (refinedError < error) {
+                c0 = r0;
+                c1 = r1;
+                System.arraycopy(refinedIndices, 0, indices, 0, 16);
+            } else {
+                fitIndices(block, c0, c1, palette, indices);
+            }
+        }
+
+        // Four-colour mode needs c0 > c1: swapping the endpoints swaps indices 0<->1 and 2<->3
+        if (c0 < c1) {
+            int swap = c0;
+            c0 = c1;
+            c1 = swap;
+            for (int i = 0; i < 16; i++) {
+                indices[i] ^= 1;
+            }
+        } else if (c0 == c1) {
+            Arrays.fill(indices, 0);
+        }
+
+        out[o] = (byte) c0;
+        out[o + 1] = (byte) (c0 >> 8);
+        out[o + 2] = (byte) c1;
+        out[o + 3] = (byte) (c1 >> 8);
+        int bits = 0;
+        for (int i = 0; i < 16; i++) {
+            bits |= indices[i] << (i * 2);
+        }
+        out[o + 4] = (byte) bits;
+        out[o + 5] = (byte) (bits >> 8);
+        out[o + 6] = (byte) (bits >> 16);
+        out[o + 7] = (byte) (bits >> 24);
+    }
+
+    // Weight of c0 for each four-colour palette index
+    private static final float[] WEIGHTS = {1.0f, 0.0f, 2.0f / 3.0f, 1.0f / 3.0f};
+
+    // Nearest four-colour palette entry per pixel, returns the summed squared error
+    private static int fitIndices(int[] block, int c0, int c1, int[] palette, int[] indices) {
+        colorPalette(c0, c1, true, palette);
+        int error = 0;
+        for (int i = 0; i < 16; i++) {
+            int best = 0, bestDistance = Integer.MAX_VALUE;
+            for (int p = 0; p < 4; p++) {
+                int dr = block[i * 4] - palette[p * 3], dg = block[i * 4 + 1] - palette[p * 3 + 1], db = block[i * 4 + 2] - palette[p * 3 + 2];
+                int distance = dr * dr + dg * dg + db * db;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = p;
+                }
+            }
+            indices[i] = best;
+            error += bestDistance;
+        }
+        return error;
+    }
+
+    private static void colorPalette(int c0, int c1, boolean fourColors, int[] palette) {
+        expand565(c0, palette, 0);
+        expand565(c1, palette, 3);
+        for (int c = 0; c < 3; c++) {
+            if (fourColors) {
+                palette[6 + c] = (2 * palette[c] + palette[3 + c]) / 3;
+                palette[9 + c] = (palette[c] + 2 * palette[3 + c]) / 3;
+            } else {
+                palette[6 + c] = (palette[c] + palette[3 + c]) / 2;
+                palette[9 + c] = 0;
+            }
+        }
+    }
+
+    private static int pack565(float r, float g, float b) {
+        int r5 = Math.round(Math.max(0, Math.min(255, r)) * 31 / 255);
+        int g6 = Math.round(Math.max(0, Math.min(255, g)) * 63 / 255);
+        int b5 = Math.round(Math.max(0, Math.min(255, b)) * 31 / 255);
+        return r5 << 11 | g6 << 5 | b5;
+    }
+
+    private static void expand565(int color, int[] out, int o) {
+        int r = color >> 11 & 31, g = color >> 5 & 63, b = color & 31;
+        out[o] = r << 3 | r >> 2;
+        out[o + 1] = g << 2 | g >> 4;
+        out[o + 2] = b << 3 | b >> 2;
+    }
+
+    private static void encodeAlphaBlock(int[] block, byte[] out, int o) {
+        int min = 255, max = 0;
+        for (int i = 0; i < 16; i++) {
+            min = Math.min(min, block[i * 4 + 3]);
+            max = Math.max(max, block[i * 4 + 3]);
+        }
+        out[o] = (byte) max;
+        out[o + 1] = (byte) min;
+        long bits = 0;
+        if (max > min) {
+            // 8-value mode (a0 > a1): index 0 = max, 1 = min, 2..7 interpolate from max towards min
+            int[] palette = new int[8];
+            alphaPalette(max, min, palette);
+            for (int i = 0; i < 16; i++) {
+                int alpha = block[i * 4 + 3];
+                int best = 0, bestDistance = Integer.MAX_VALUE;
+                for (int p = 0; p < 8; p++) {
+                    int distance = Math.abs(alpha - palette[p]);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = p;
+                    }
+                }
+                bits |= (long) best << (i * 3);
+            }
+        }
+        for (int i = 0; i < 6; i++) {
+            out[o + 2 + i] = (byte) (bits >> (i * 8));
+        }
+    }
+
+    private static void alphaPalette(int a0, int a1, int[] palette) {
+        palette[0] = a0;
+        palette[1] = a1;
+        if (a0 > a1) {
+            for (int i = 2; i < 8; i++) {
+                palette[i] = ((8 - i) * a0 + (i - 1) * a1) / 7;
+            }
+        } else {
+            for (int i = 2; i < 6; i++) {
+                palette[i] = ((6 - i) * a0 + (i - 1) * a1) / 5;
+            }
+            palette[6] = 0;
+            palette[7] = 255;
+        }
+    }
+
+    // Reference decoder, used to measure encoding quality without a GPU
+    public static void decode(ByteBuffer blocks, int width, int height, TextureCompression compression, ByteBuffer rgba) {
+        int blocksX = (width + 3) / 4;
+        int blocksY = (height + 3) / 4;
+        int blockBytes = compression.getBlockBytes();
+        int[] palette = new int[12];
+        int[] alphas = new int[8];
+        for (int by = 0; by < blocksY; by++) {
+            for (int bx = 0; bx < blocksX; bx++) {
+                int o = (by * blocksX + bx) * blockBytes;
+                long alphaBits = 0;
+                if (compression == TextureCompression.BC3) {
+                    alphaPalette(blocks.get(o) & 0xFF, blocks.get(o + 1) & 0xFF, alphas);
+                    for (int i = 0; i < 6; i++) {
+                        alphaBits |= (long) (blocks.get(o + 2 + i) & 0xFF) << (i * 8);
+                    }
+                    o += 8;
+                }
+                int c0 = (blocks.get(o) & 0xFF) | (blocks.get(o + 1) & 0xFF) << 8;
+                int c1 = (blocks.get(o + 2) & 0xFF) | (blocks.get(o + 3) & 0xFF) << 8;
+                // BC3 colour blocks always use four colours
+                boolean fourColors = c0 > c1 || compression == TextureCompression.BC3;
+                colorPalette(c0, c1, fourColors, palette);
+                int bits = (blocks.get(o + 4) & 0xFF) | (blocks.get(o + 5) & 0xFF) << 8
+                        | (blocks.get(o + 6) & 0xFF) << 16 | (blocks.get(o + 7) & 0xFF) << 24;
+
+                for (int i = 0; i < 16; i++) {
+                    int x = bx * 4 + (i & 3), y = by * 4 + (i >> 2);
+                    if (x >= width || y >= height) {
+                        continue;
+                    }
+                    int index = bits >>> (i * 2) & 3;
+                    int target = (y * width + x) * 4;
+                    rgba.put(target, (byte) palette[index * 3]);
+                    rgba.put(target + 1, (byte) palette[index * 3 + 1]);
+                    rgba.put(target + 2, (byte) palette[index * 3 + 2]);
+                    int alpha;
+                    if (compression == TextureCompression.BC3) {
+                        alpha = alphas[(int) (alphaBits >>> (i * 3) & 7)];
+                    } else {
+                        alpha = !fourColors && index == 3 ? 0 : 255;
+                    }
+                    rgba.put(target + 3, (byte) alpha);
+                }
+            }
+        }
+    }
+
+    // Peak signal-to-noise ratio in dB over RGB (and alpha when requested)
+    public static double psnr(ByteBuffer expected, ByteBuffer actual, int width, int height, boolean includeAlpha) {
+        int channels = includeAlpha ? 4 : 3;
+        double sum = 0;
+        for (int i = 0; i < width * height; i++) {
+            for (int c = 0; c < channels; c++) {
+                int delta = (expected.get(i * 4 + c) & 0xFF) - (actual.get(i * 4 + c) & 0xFF);
+                sum += delta * delta;
+            }
+        }
+        double mse = sum / ((double) width * height * channels);
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255.0 * 255.0 / mse);
+    }
+
+    public static boolean isOpaque(ByteBuffer rgba, int width, int height) {
+        for (int i = 0; i < width * height; i++) {
+            if (rgba.get(i * 4 + 3) != (byte) 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package com.vibhusha.utils;
+
+// Per-thread scratch and result state for TriangleBvh queries. Reuse one instance per thread: after
+// the first few queries have sized the traversal stack and the overlap list, queries allocate nothing.
+public class BvhQuery {
+    int[] stack = new int[64];
+    float[] stackDistance = new float[64];
+    final float[] box = new float[9];  // Triangle corners relative to the query box centre
+    final IntList overlaps = new IntList(64);
+
+    float distance;
+    int triangle = -1;
+    float u, v;
+
+    void ensureStack(int depth) {
+        if (stack.length < depth + 2) {
+            stack = new int[depth + 2];
+            stackDistance = new float[depth + 2];
+        }
+    }
+
+    // Ray parameter or sweep distance of the closest hit, in units of the query direction's length
+    public float getDistance() {
+        return distance;
+    }
+
+    // Original triangle index (position in the mesh's index list / 3) of the closest hit, -1 on a miss
+    public int getTriangle() {
+        return triangle;
+    }
+
+    // Barycentric coordinates of a ray hit: point = (1 - u - v) * v0 + u * v1 + v * v2
+    public float getU() {
+        return u;
+    }
+
+    public float getV() {
+        return v;
+    }
+
+    // Triangles found by the last overlap query
+    public IntList getOverlaps() {
+        return overlaps;
+    }
+}
@@ -0,0 +1,52 @@
+package com.vibhusha.utils;
+
+// Counters of a ResourceCache, updated on the owner thread
+public class CacheStats {
+    long hits;
+    long misses;
+    long evictions;
+    long reloads;
+    long evictedBytes;
+    long residentBytes;
+    long budgetBytes;
+    int entryCount;
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // Misses caused by a weak handle whose resource had been evicted
+    public long getReloads() {
+        return reloads;
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d resident (%.1f / %.1f MB), %d hits, %d misses, %d reloads, %d evictions (%.1f MB)",
+                entryCount, residentBytes / 1048576.0, budgetBytes / 1048576.0, hits, misses, reloads, evictions, evictedBytes / 1048576.0);
+    }
+}
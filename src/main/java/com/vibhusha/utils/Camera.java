@@ -1,13 +1,28 @@
 package com.vibhusha.utils;
 
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.DoubleBuffer;
 
 public class Camera {
+    public static final float FOV = (float) Math.toRadians(45.0);
+    public static final float NEAR_PLANE = 0.1f;
+    public static final float FAR_PLANE = 100.0f;
+
+    public static final int MOVE_FORWARD = 1;
+    public static final int MOVE_BACK = 1 << 1;
+    public static final int MOVE_LEFT = 1 << 2;
+    public static final int MOVE_RIGHT = 1 << 3;
+    public static final int MOVE_UP = 1 << 4;
+    public static final int MOVE_DOWN = 1 << 5;
+
+    private static final int MOUSE_SCOPE = Profiler.scope("Camera.processMouseMovement");
+
     private Vector3f position;
     private Vector3f front;
     private Vector3f up;
@@ -19,6 +34,15 @@ public class Camera {
     private float sensitivity = 0.1f;
     private boolean firstMouse = true;
     private double lastX, lastY;
+    private final float[] mouseOffset = new float[2];
+
+    // Cached matrices, the view is rebuilt only after the camera moved or turned
+    private final Matrix4f viewMatrix = new Matrix4f();
+    private final Matrix4f projectionMatrix = new Matrix4f();
+    private final Matrix4f inverseViewProjection = new Matrix4f();
+    private boolean viewDirty = true;
+    private boolean inverseDirty = true;
+    private int projectionWidth, projectionHeight;
 
     public Camera(float startX, float startY, float startZ) {
         this.position = new Vector3f(startX, startY, startZ);
@@ -32,29 +56,50 @@ public class Camera {
     }
 
     public void processInput(long window, float deltaTime) {
+        applyMovement(readMovementKeys(window), deltaTime);
+    }
+
+    // Bit mask of the held movement keys (MOVE_* flags)
+    public static int readMovementKeys(long window) {
+        int keys = 0;
+        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_W) == GLFW.GLFW_PRESS) keys |= MOVE_FORWARD;
+        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_S) == GLFW.GLFW_PRESS) keys |= MOVE_BACK;
+        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_A) == GLFW.GLFW_PRESS) keys |= MOVE_LEFT;
+        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_D) == GLFW.GLFW_PRESS) keys |= MOVE_RIGHT;
+        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_SPACE) == GLFW.GLFW_PRESS) keys |= MOVE_UP;
+        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_LEFT_SHIFT) == GLFW.GLFW_PRESS) keys |= MOVE_DOWN;
+        return keys;
+    }
+
+    public void applyMovement(int keys, float deltaTime) {
         float speed = 2.5f * deltaTime;
 
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_W) == GLFW.GLFW_PRESS) {
-            position.add(front.mul(speed, new Vector3f()));
-        }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_S) == GLFW.GLFW_PRESS) {
-            position.sub(front.mul(speed, new Vector3f()));
-        }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_A) == GLFW.GLFW_PRESS) {
-            position.sub(right.mul(speed, new Vector3f()));
-        }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_D) == GLFW.GLFW_PRESS) {
-            position.add(right.mul(speed, new Vector3f()));
-        }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_SPACE) == GLFW.GLFW_PRESS) {
-            position.add(up.mul(speed, new Vector3f()));
-        }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_LEFT_SHIFT) == GLFW.GLFW_PRESS) {
-            position.sub(up.mul(speed, new Vector3f()));
-        }
+        if ((keys & MOVE_FORWARD) != 0) move(front, speed);
+        if ((keys & MOVE_BACK) != 0) move(front, -speed);
+        if ((keys & MOVE_LEFT) != 0) move(right, -speed);
+        if ((keys & MOVE_RIGHT) != 0) move(right, speed);
+        if ((keys & MOVE_UP) != 0) move(up, speed);
+        if ((keys & MOVE_DOWN) != 0) move(up, -speed);
+    }
+
+    // position += direction * distance, in place
+    public void move(Vector3f direction, float distance) {
+        position.fma(distance, direction);
+        viewDirty = true;
+        inverseDirty = true;
     }
 
     public void processMouseMovement(long window) {
+        Profiler.begin(MOUSE_SCOPE);
+        readMouseOffset(window, mouseOffset);
+        if (mouseOffset[0] != 0 || mouseOffset[1] != 0) {
+            rotate(mouseOffset[0], mouseOffset[1]);
+        }
+        Profiler.end();
+    }
+
+    // Cursor movement since the last call, scaled by the sensitivity: offset = {yaw, pitch}
+    public void readMouseOffset(long window, float[] offset) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             DoubleBuffer xPos = stack.mallocDouble(1);
             DoubleBuffer yPos = stack.mallocDouble(1);
@@ -69,20 +114,22 @@ public class Camera {
                 firstMouse = false;
             }
 
-            float xOffset = (float) (x - lastX) * sensitivity;
-            float yOffset = (float) (lastY - y) * sensitivity; // Reversed since y-coordinates go from bottom to top
+            offset[0] = (float) (x - lastX) * sensitivity;
+            offset[1] = (float) (lastY - y) * sensitivity; // Reversed since y-coordinates go from bottom to top
             lastX = x;
             lastY = y;
+        }
+    }
 
-            yaw += xOffset;
-            pitch += yOffset;
+    public void rotate(float yawOffset, float pitchOffset) {
+        yaw += yawOffset;
+        pitch += pitchOffset;
 
-            // Limit the pitch to avoid flipping the camera
-            if (pitch > 89.0f) pitch = 89.0f;
-            if (pitch < -89.0f) pitch = -89.0f;
+        // Limit the pitch to avoid flipping the camera
+        if (pitch > 89.0f) pitch = 89.0f;
+        if (pitch < -89.0f) pitch = -89.0f;
 
-            updateCameraVectors();
-        }
+        updateCameraVectors();
     }
 
     private void updateCameraVectors() {
@@ -93,13 +140,79 @@ public class Camera {
 
         right.set(front).cross(worldUp).normalize();
         up.set(right).cross(front).normalize();
+        viewDirty = true;
+        inverseDirty = true;
+    }
+
+    // The returned matrix is owned by the camera and changes as it moves
+    public Matrix4fc getViewMatrix() {
+        if (viewDirty) {
+            viewMatrix.setLookAt(position.x, position.y, position.z,
+                    position.x + front.x, position.y + front.y, position.z + front.z,
+                    up.x, up.y, up.z);
+            viewDirty = false;
+        }
+        return viewMatrix;
+    }
+
+    public Matrix4fc getProjectionMatrix(int width, int height) {
+        if (width != projectionWidth || height != projectionHeight) {
+            projectionMatrix.setPerspective(FOV, (float) width / height, NEAR_PLANE, FAR_PLANE);
+            projectionWidth = width;
+            projectionHeight = height;
+            inverseDirty = true;
+        }
+        return projectionMatrix;
+    }
+
+    // World-space ray through a window pixel (GLFW cursor coordinates, y down): origin on the near
+    // plane, direction normalized. Returns false if the view-projection cannot be inverted.
+    public boolean screenRay(double x, double y, int width, int height, Vector3f origin, Vector3f direction) {
+        Matrix4fc projection = getProjectionMatrix(width, height);
+        Matrix4fc view = getViewMatrix();
+        if (inverseDirty) {
+            projection.mul(view, inverseViewProjection).invert();
+            inverseDirty = false;
+        }
+        float ndcX = (float) (2.0 * x / width - 1.0);
+        float ndcY = (float) (1.0 - 2.0 * y / height);
+        inverseViewProjection.transformProject(ndcX, ndcY, -1.0f, origin);
+        inverseViewProjection.transformProject(ndcX, ndcY, 1.0f, direction);
+        direction.sub(origin);
+        if (!direction.isFinite() || direction.lengthSquared() == 0.0f) {
+            return false;
+        }
+        direction.normalize();
+        return true;
+    }
+
+    // Read-only view of the position, move the camera through move() so the view matrix stays current
+    public Vector3fc getPosition() {
+        return position;
+    }
+
+    public float getYaw() {
+        return yaw;
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    // Places the camera directly, e.g. from an interpolated simulation snapshot
+    public void setPose(float x, float y, float z, float yaw, float pitch) {
+        position.set(x, y, z);
+        this.yaw = yaw;
+        this.pitch = pitch;
+        updateCameraVectors();
     }
 
-    public Matrix4f getViewMatrix() {
-        return new Matrix4f().lookAt(position, position.add(front, new Vector3f()), up);
+    public Vector3f getFront() {
+        return front;
     }
 
-    public Matrix4f getProjectionMatrix(int width, int height) {
-        return new Matrix4f().perspective((float) Math.toRadians(45.0), (float) width / height, 0.1f, 100.0f);
+    // Vertical field of view in radians
+    public float getFov() {
+        return FOV;
     }
 }
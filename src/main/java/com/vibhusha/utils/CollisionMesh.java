@@ -0,0 +1,43 @@
+package com.vibhusha.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+// CPU-side copy of a model's full-detail geometry with a triangle BVH over it, for picking and
+// collision. Everything is in model space: transform rays and shapes by the inverse world matrix
+// before querying, and hit distances back by the matrix scale.
+public class CollisionMesh {
+    private final float[] positions;  // xyz per vertex
+    private final int[] indices;      // three per triangle, LOD 0 only
+    private final TriangleBvh bvh;
+
+    public CollisionMesh(float[] positions, int[] indices, ForkJoinPool pool) {
+        this.positions = positions;
+        this.indices = indices;
+        this.bvh = TriangleBvh.build(positions, indices, pool);
+    }
+
+    // Decodes positions and the LOD 0 index range of an encoded mesh
+    public static CollisionMesh fromBuffers(MeshBuffers mesh, ForkJoinPool pool) {
+        return new CollisionMesh(mesh.decodePositions(), mesh.readIndices(mesh.getLodOffsets()[0], mesh.getLodCounts()[0]), pool);
+    }
+
+    public float[] getPositions() {
+        return positions;
+    }
+
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public TriangleBvh getBvh() {
+        return bvh;
+    }
+
+    public int getTriangleCount() {
+        return indices.length / 3;
+    }
+
+    public long getByteCount() {
+        return (long) positions.length * Float.BYTES + (long) indices.length * Integer.BYTES + bvh.getByteCount();
+    }
+}
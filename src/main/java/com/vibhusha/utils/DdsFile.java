@@ -0,0 +1,122 @@
+package com.vibhusha.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Block-compressed texture cache in the DDS layout (DXT1/DXT5 four-CC, full mip chain), so standard
+// tools can open it. The SHA-256 of the source image sits in the header's reserved words followed by
+// a marker; files without it, or with another hash, are treated as stale.
+//
+//   "DDS " | 124-byte header | level 0 blocks | level 1 blocks | ...
+public class DdsFile {
+    public static final String EXTENSION = ".dds";
+
+    private static final int MAGIC = 0x20534444;  // "DDS "
+    private static final int HEADER_SIZE = 124;
+    private static final int DATA_OFFSET = 4 + HEADER_SIZE;
+    private static final int HASH_OFFSET = 32;    // dwReserved1[0..7]
+    private static final int MARKER_OFFSET = 64;  // dwReserved1[8]
+    private static final int MARKER = 0x48534556; // "VESH": the hash above is ours
+    private static final int HASH_LENGTH = 32;
+
+    private static final int DDSD_CAPS = 0x1, DDSD_HEIGHT = 0x2, DDSD_WIDTH = 0x4, DDSD_PIXELFORMAT = 0x1000;
+    private static final int DDSD_MIPMAPCOUNT = 0x20000, DDSD_LINEARSIZE = 0x80000;
+    private static final int DDPF_FOURCC = 0x4;
+    private static final int DDSCAPS_COMPLEX = 0x8, DDSCAPS_TEXTURE = 0x1000, DDSCAPS_MIPMAP = 0x400000;
+
+    // Maps the file and returns levels that alias the mapping, or null if it was made from other source content
+    public static TextureImage map(Path path, byte[] sourceHash) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.limit() < DATA_OFFSET || mapped.getInt(0) != MAGIC || mapped.getInt(4) != HEADER_SIZE) {
+                throw new IOException("Not a DDS file: " + path);
+            }
+            byte[] hash = new byte[HASH_LENGTH];
+            mapped.get(HASH_OFFSET, hash);
+            if (mapped.getInt(MARKER_OFFSET) != MARKER || !Arrays.equals(hash, sourceHash)) {
+                return null;
+            }
+
+            int height = mapped.getInt(12);
+            int width = mapped.getInt(16);
+            int levelCount = Math.max(1, mapped.getInt(28));
+            byte[] fourCC = new byte[4];
+            mapped.get(84, fourCC);
+            TextureCompression compression = TextureCompression.fromFourCC(new String(fourCC, StandardCharsets.US_ASCII));
+            if (compression == null) {
+                throw new IOException("Unsupported DDS pixel format " + new String(fourCC, StandardCharsets.US_ASCII) + ": " + path);
+            }
+
+            TextureImage[] levels = new TextureImage[levelCount];
+            int offset = DATA_OFFSET;
+            for (int level = 0; level < levelCount; level++) {
+                int levelWidth = Math.max(1, width >> level);
+                int levelHeight = Math.max(1, height >> level);
+                int size = compression.byteCount(levelWidth, levelHeight);
+                if (offset + size > mapped.limit()) {
+                    throw new IOException("Truncated DDS file: " + path);
+                }
+                levels[level] = new TextureImage(levelWidth, levelHeight, mapped.slice(offset, size), compression, false);
+                offset += size;
+            }
+            levels[0].setMipmaps(Arrays.copyOfRange(levels, 1, levelCount));
+            return levels[0];
+        }
+    }
+
+    // Writes to a temporary file first so readers never observe a half-written texture
+    public static void write(Path path, TextureImage image, byte[] sourceHash) throws IOException {
+        TextureCompression compression = image.getCompression();
+        if (!compression.isCompressed()) {
+            throw new IllegalArgumentException("Only block-compressed images can be written as DDS");
+        }
+        int levelCount = image.getMipmaps().length + 1;
+
+        ByteBuffer header = ByteBuffer.allocate(DATA_OFFSET).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC)
+                .putInt(4, HEADER_SIZE)
+                .putInt(8, DDSD_CAPS | DDSD_HEIGHT | DDSD_WIDTH | DDSD_PIXELFORMAT | DDSD_MIPMAPCOUNT | DDSD_LINEARSIZE)
+                .putInt(12, image.getHeight())
+                .putInt(16, image.getWidth())
+                .putInt(20, compression.byteCount(image.getWidth(), image.getHeight()))
+                .putInt(28, levelCount)
+                .put(HASH_OFFSET, sourceHash, 0, HASH_LENGTH)
+                .putInt(MARKER_OFFSET, MARKER)
+                .putInt(76, 32)  // Pixel format size
+                .putInt(80, DDPF_FOURCC)
+                .put(84, compression.getFourCC().getBytes(StandardCharsets.US_ASCII))
+                .putInt(108, DDSCAPS_TEXTURE | (levelCount > 1 ? DDSCAPS_COMPLEX | DDSCAPS_MIPMAP : 0));
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = writeFully(channel, header, 0);
+                position = writeFully(channel, image.getPixels().duplicate().clear(), position);
+                for (TextureImage mipmap : image.getMipmaps()) {
+                    position = writeFully(channel, mipmap.getPixels().duplicate().clear(), position);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+        return position;
+    }
+}
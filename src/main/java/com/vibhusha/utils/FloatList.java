@@ -0,0 +1,89 @@
+package com.vibhusha.utils;
+
+import java.util.Arrays;
+
+// Growable float array used by the loaders so large meshes never box a component
+public class FloatList {
+    private float[] data;
+    private int size;
+
+    public FloatList() {
+        this(64);
+    }
+
+    public FloatList(int initialCapacity) {
+        data = new float[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(float value) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    public void add(float x, float y) {
+        if (size + 2 > data.length) {
+            grow(size + 2);
+        }
+        data[size++] = x;
+        data[size++] = y;
+    }
+
+    public void add(float x, float y, float z) {
+        if (size + 3 > data.length) {
+            grow(size + 3);
+        }
+        data[size++] = x;
+        data[size++] = y;
+        data[size++] = z;
+    }
+
+    public void addAll(FloatList other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.data, 0, data, size, other.size);
+        size += other.size;
+    }
+
+    public float get(int index) {
+        return data[index];
+    }
+
+    public void set(int index, float value) {
+        data[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Grows or shrinks the logical size, new elements are left as they are in the backing array
+    public void setSize(int newSize) {
+        ensureCapacity(newSize);
+        size = newSize;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            grow(capacity);
+        }
+    }
+
+    // Direct access to the backing array, valid up to size()
+    public float[] array() {
+        return data;
+    }
+
+    public float[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, data.length + (data.length >> 1));
+        data = Arrays.copyOf(data, newCapacity);
+    }
+}
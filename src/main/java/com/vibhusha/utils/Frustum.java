@@ -0,0 +1,74 @@
+package com.vibhusha.utils;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+
+// Six normalized clip planes (nx, ny, nz, d) extracted from a view-projection matrix.
+// A point p is inside a plane when nx * px + ny * py + nz * pz + d >= 0.
+public class Frustum {
+    public static final int PLANE_COUNT = 6;
+    public static final int ALL_PLANES = (1 << PLANE_COUNT) - 1;
+
+    private final float[] planes = new float[PLANE_COUNT * 4];
+    private final Matrix4f viewProjection = new Matrix4f();
+
+    public void update(Camera camera, int width, int height) {
+        update(camera.getProjectionMatrix(width, height).mul(camera.getViewMatrix(), viewProjection));
+    }
+
+    // Gribb/Hartmann extraction: each plane is row 3 plus or minus one of rows 0..2
+    public void update(Matrix4fc m) {
+        setPlane(0, m.m03() + m.m00(), m.m13() + m.m10(), m.m23() + m.m20(), m.m33() + m.m30());  // Left
+        setPlane(1, m.m03() - m.m00(), m.m13() - m.m10(), m.m23() - m.m20(), m.m33() - m.m30());  // Right
+        setPlane(2, m.m03() + m.m01(), m.m13() + m.m11(), m.m23() + m.m21(), m.m33() + m.m31());  // Bottom
+        setPlane(3, m.m03() - m.m01(), m.m13() - m.m11(), m.m23() - m.m21(), m.m33() - m.m31());  // Top
+        setPlane(4, m.m03() + m.m02(), m.m13() + m.m12(), m.m23() + m.m22(), m.m33() + m.m32());  // Near
+        setPlane(5, m.m03() - m.m02(), m.m13() - m.m12(), m.m23() - m.m22(), m.m33() - m.m32());  // Far
+    }
+
+    private void setPlane(int index, float a, float b, float c, float d) {
+        float invLength = 1.0f / (float) Math.sqrt(a * a + b * b + c * c);
+        planes[index * 4] = a * invLength;
+        planes[index * 4 + 1] = b * invLength;
+        planes[index * 4 + 2] = c * invLength;
+        planes[index * 4 + 3] = d * invLength;
+    }
+
+    // Direct access for tight culling loops: plane i is planes[i * 4 .. i * 4 + 3]
+    public float[] getPlanes() {
+        return planes;
+    }
+
+    public boolean intersectsSphere(float x, float y, float z, float radius) {
+        for (int i = 0; i < PLANE_COUNT; i++) {
+            int p = i * 4;
+            if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Tests the box against the planes in mask. Returns -1 when the box is fully outside one plane,
+    // otherwise the subset of mask the box still straddles (0 means fully inside).
+    public int classifyAabb(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, int mask) {
+        int straddling = 0;
+        for (int i = 0; i < PLANE_COUNT; i++) {
+            if ((mask & (1 << i)) == 0) {
+                continue;
+            }
+            int p = i * 4;
+            float nx = planes[p], ny = planes[p + 1], nz = planes[p + 2], d = planes[p + 3];
+            // Farthest corner along the normal decides "outside", the nearest decides "inside"
+            float far = Math.max(nx * minX, nx * maxX) + Math.max(ny * minY, ny * maxY) + Math.max(nz * minZ, nz * maxZ) + d;
+            if (far < 0) {
+                return -1;
+            }
+            float near = Math.min(nx * minX, nx * maxX) + Math.min(ny * minY, ny * maxY) + Math.min(nz * minZ, nz * maxZ) + d;
+            if (near < 0) {
+                straddling |= 1 << i;
+            }
+        }
+        return straddling;
+    }
+}
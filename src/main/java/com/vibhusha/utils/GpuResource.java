@@ -0,0 +1,9 @@
+package com.vibhusha.utils;
+
+// Something that occupies GPU memory and is released with cleanup() on the GL thread
+public interface GpuResource {
+    // Bytes of GPU storage: vertex and index buffers, or every texture level
+    long getByteSize();
+
+    void cleanup();
+}
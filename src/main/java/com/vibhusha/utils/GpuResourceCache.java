@@ -0,0 +1,92 @@
+package com.vibhusha.utils;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+
+// Shared models and textures under one VRAM budget, keyed by canonical resource path and load options,
+// so loading the same asset twice hands out the resident copy. The cache never loads anything itself:
+// AssetManager streams misses in on its workers and hands the uploads over. Create and use it on the
+// GL thread, which is also where evicted resources are cleaned up.
+public class GpuResourceCache {
+    // -Dresource.budget.mb=512
+    public static final long DEFAULT_BUDGET_BYTES = Long.getLong("resource.budget.mb", 512) << 20;
+
+    private final ResourceCache<GpuResource> cache;
+
+    public GpuResourceCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public GpuResourceCache(long budgetBytes) {
+        cache = new ResourceCache<>(budgetBytes);
+    }
+
+    // Strong handle when the asset is resident, null when it has to be streamed in
+    public <T extends GpuResource> ResourceCache.Handle<T> acquireIfResident(String key) {
+        return cache.acquireIfResident(key);
+    }
+
+    public <T extends GpuResource> T getIfResident(String key) {
+        return cache.getIfResident(key);
+    }
+
+    // Takes over a streamed upload and references it; when key became resident meanwhile, the resident
+    // copy is referenced and the upload is left to the caller
+    public <T extends GpuResource> ResourceCache.Handle<T> acquire(String key, T uploaded) {
+        return cache.acquire(key, () -> uploaded);
+    }
+
+    // Takes over a streamed upload nobody references, e.g. one only weak assets asked for
+    public void add(String key, GpuResource uploaded) {
+        cache.put(key, uploaded);
+    }
+
+    public boolean isResident(String key) {
+        return cache.isResident(key);
+    }
+
+    // Once per frame: applies releases from other threads and evicts down to the budget
+    public void trim() {
+        cache.trim();
+    }
+
+    public long getBudget() {
+        return cache.getBudget();
+    }
+
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    // Cleans up every cached resource, referenced or not
+    public void cleanup() {
+        cache.clear();
+    }
+
+    public static String modelKey(String filePath, MeshOptions options) {
+        return "model:" + canonical(filePath) + "#" + options.getKey() + (options.keepsCollisionMesh() ? "#collision" : "")
+                + (options.buildsMeshlets() ? "#meshlets" : "");
+    }
+
+    public static String textureKey(String resourcePath) {
+        return "texture:" + canonical(resourcePath);
+    }
+
+    // The same file reached through different relative paths or links maps to one key
+    static String canonical(String resourcePath) {
+        URL url = GpuResourceCache.class.getClassLoader().getResource(resourcePath);
+        if (url == null) {
+            return resourcePath;
+        }
+        if (!"file".equals(url.getProtocol())) {
+            return url.toExternalForm();
+        }
+        try {
+            return Path.of(url.toURI()).toRealPath().toString();
+        } catch (IOException | URISyntaxException e) {
+            return url.toExternalForm();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GLCapabilities;
+
+// GPU time of whole frames through GL_TIME_ELAPSED queries. Results are read a few frames later from
+// a small ring of query objects, so polling never stalls the pipeline. GL thread only.
+public class GpuTimer {
+    private static final int LATENCY = 4;
+
+    private final int[] queries = new int[LATENCY];
+    private int next;
+    private int pending;
+    private long lastNanos = -1;
+
+    private GpuTimer() {
+        GL15.glGenQueries(queries);
+    }
+
+    // Null when the context has no timer queries (GL 3.3 or ARB_timer_query)
+    public static GpuTimer create() {
+        GLCapabilities caps = GL.getCapabilities();
+        return caps.OpenGL33 || caps.GL_ARB_timer_query ? new GpuTimer() : null;
+    }
+
+    public void begin() {
+        if (pending == LATENCY) {
+            // Every query is still in flight; skip this frame rather than wait
+            return;
+        }
+        GL15.glBeginQuery(GL33.GL_TIME_ELAPSED, queries[next]);
+    }
+
+    public void end() {
+        if (pending == LATENCY) {
+            return;
+        }
+        GL15.glEndQuery(GL33.GL_TIME_ELAPSED);
+        next = (next + 1) % LATENCY;
+        pending++;
+    }
+
+    // GPU nanoseconds of the oldest finished frame, or -1 when none finished since the last call
+    public long poll() {
+        if (pending == 0) {
+            return -1;
+        }
+        int oldest = Math.floorMod(next - pending, LATENCY);
+        if (GL15.glGetQueryObjecti(queries[oldest], GL15.GL_QUERY_RESULT_AVAILABLE) == GL15.GL_FALSE) {
+            return -1;
+        }
+        lastNanos = GL33.glGetQueryObjecti64(queries[oldest], GL15.GL_QUERY_RESULT);
+        pending--;
+        return lastNanos;
+    }
+
+    // Most recent result, -1 before the first one
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public void cleanup() {
+        GL15.glDeleteQueries(queries);
+    }
+}
@@ -0,0 +1,170 @@
+package com.vibhusha.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Tiled heightmap (.vhgt), memory-mapped so a world far larger than the heap can be paged in by the OS
+// as chunks are meshed. Little-endian:
+//
+//   header (64 bytes) | tiles, row-major by tile z then tile x
+//
+// Each tile holds tileSize x tileSize unsigned 16-bit samples, row-major, so one terrain chunk reads one
+// contiguous range of the file. A sample's height is value * heightScale; samples are spacing apart.
+// Files over 2 GB are mapped as several segments, each a whole number of tiles.
+public class HeightmapFile {
+    public static final int MAGIC = 0x54474856;  // "VHGT"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".vhgt";
+
+    private static final int HEADER_SIZE = 64;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final int width;
+    private final int depth;
+    private final int tileSize;
+    private final float spacing;
+    private final float heightScale;
+    private final int tilesX;
+    private final int tilesPerSegment;
+    private final int tileBytes;
+    private final MappedByteBuffer[] segments;
+
+    // Samples as a function of integer sample coordinates, in world units
+    public interface HeightSource {
+        float height(int x, int z);
+    }
+
+    private HeightmapFile(int width, int depth, int tileSize, float spacing, float heightScale, MappedByteBuffer[] segments, int tilesPerSegment) {
+        this.width = width;
+        this.depth = depth;
+        this.tileSize = tileSize;
+        this.spacing = spacing;
+        this.heightScale = heightScale;
+        this.tilesX = width / tileSize;
+        this.tileBytes = tileSize * tileSize * Short.BYTES;
+        this.segments = segments;
+        this.tilesPerSegment = tilesPerSegment;
+    }
+
+    public static HeightmapFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a heightmap file: " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported heightmap file version " + header.getInt(4) + ": " + path);
+            }
+            int width = header.getInt(8);
+            int depth = header.getInt(12);
+            int tileSize = header.getInt(16);
+            float spacing = header.getFloat(20);
+            float heightScale = header.getFloat(24);
+            if (tileSize <= 0 || width <= 0 || depth <= 0 || width % tileSize != 0 || depth % tileSize != 0) {
+                throw new IOException(String.format("Bad heightmap dimensions %dx%d, tile %d: %s", width, depth, tileSize, path));
+            }
+
+            long tileBytes = (long) tileSize * tileSize * Short.BYTES;
+            long tileCount = (long) (width / tileSize) * (depth / tileSize);
+            if (channel.size() < HEADER_SIZE + tileCount * tileBytes) {
+                throw new IOException("Truncated heightmap file: " + path);
+            }
+            int tilesPerSegment = (int) Math.max(1, Math.min(tileCount, MAX_SEGMENT_BYTES / tileBytes));
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((tileCount + tilesPerSegment - 1) / tilesPerSegment)];
+            for (int s = 0; s < segments.length; s++) {
+                long firstTile = (long) s * tilesPerSegment;
+                long tiles = Math.min(tilesPerSegment, tileCount - firstTile);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + firstTile * tileBytes, tiles * tileBytes);
+                segments[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new HeightmapFile(width, depth, tileSize, spacing, heightScale, segments, tilesPerSegment);
+        }
+    }
+
+    // Samples the source tile by tile into a new file; heights are quantized to heightScale steps
+    public static void write(Path path, int width, int depth, int tileSize, float spacing, float heightScale, HeightSource source) throws IOException {
+        if (tileSize <= 0 || width % tileSize != 0 || depth % tileSize != 0) {
+            throw new IllegalArgumentException(String.format("Heightmap size %dx%d is not a multiple of the tile size %d", width, depth, tileSize));
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, width).putInt(12, depth).putInt(16, tileSize)
+                    .putFloat(20, spacing).putFloat(24, heightScale);
+            writeFully(channel, header);
+
+            ByteBuffer tile = ByteBuffer.allocateDirect(tileSize * tileSize * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int tz = 0; tz < depth / tileSize; tz++) {
+                for (int tx = 0; tx < width / tileSize; tx++) {
+                    tile.clear();
+                    for (int z = 0; z < tileSize; z++) {
+                        for (int x = 0; x < tileSize; x++) {
+                            float value = source.height(tx * tileSize + x, tz * tileSize + z) / heightScale;
+                            tile.putShort((short) Math.max(0, Math.min(0xFFFF, Math.round(value))));
+                        }
+                    }
+                    tile.flip();
+                    writeFully(channel, tile);
+                }
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Height in world units; coordinates outside the map are clamped to its edge. Safe from any thread.
+    public float getHeight(int x, int z) {
+        x = Math.max(0, Math.min(width - 1, x));
+        z = Math.max(0, Math.min(depth - 1, z));
+        int tile = (z / tileSize) * tilesX + x / tileSize;
+        int offset = (tile % tilesPerSegment) * tileBytes + ((z % tileSize) * tileSize + x % tileSize) * Short.BYTES;
+        return (segments[tile / tilesPerSegment].getShort(offset) & 0xFFFF) * heightScale;
+    }
+
+    // Samples along x
+    public int getWidth() {
+        return width;
+    }
+
+    // Samples along z
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    public int getTilesZ() {
+        return depth / tileSize;
+    }
+
+    // World distance between neighbouring samples
+    public float getSpacing() {
+        return spacing;
+    }
+
+    public float getHeightScale() {
+        return heightScale;
+    }
+
+    public long getByteCount() {
+        return HEADER_SIZE + (long) tileBytes * tilesX * getTilesZ();
+    }
+}
@@ -0,0 +1,62 @@
+package com.vibhusha.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-producer single-consumer ring of input events, lock-free and allocation-free.
+// The window thread offers events after polling GLFW, the simulation thread drains them once per tick.
+public class InputQueue {
+    public static final int MOVEMENT_KEYS = 1;  // code: Camera.MOVE_* mask of held keys
+    public static final int MOUSE_MOVE = 2;     // x, y: yaw and pitch offsets in degrees
+
+    public interface Handler {
+        void onEvent(int type, int code, float x, float y);
+    }
+
+    private final int mask;
+    private final int[] types;
+    private final int[] codes;
+    private final float[] xs;
+    private final float[] ys;
+
+    // head: next slot to read (consumer), tail: next slot to write (producer)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public InputQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Input queue capacity must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        types = new int[capacity];
+        codes = new int[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+    }
+
+    // Returns false when the queue is full, the event is dropped
+    public boolean offer(int type, int code, float x, float y) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        int slot = (int) t & mask;
+        types[slot] = type;
+        codes[slot] = code;
+        xs[slot] = x;
+        ys[slot] = y;
+        tail.lazySet(t + 1);  // Release: the slot is written before it becomes visible
+        return true;
+    }
+
+    // Delivers every event queued so far, returns how many
+    public int drain(Handler handler) {
+        long h = head.get();
+        long t = tail.get();
+        for (long i = h; i < t; i++) {
+            int slot = (int) i & mask;
+            handler.onEvent(types[slot], codes[slot], xs[slot], ys[slot]);
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+}
@@ -0,0 +1,89 @@
+package com.vibhusha.utils;
+
+import java.util.Arrays;
+
+// Growable int array used by the loaders so index streams never box an element
+public class IntList {
+    private int[] data;
+    private int size;
+
+    public IntList() {
+        this(64);
+    }
+
+    public IntList(int initialCapacity) {
+        data = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(int value) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    public void add(int x, int y) {
+        if (size + 2 > data.length) {
+            grow(size + 2);
+        }
+        data[size++] = x;
+        data[size++] = y;
+    }
+
+    public void add(int x, int y, int z) {
+        if (size + 3 > data.length) {
+            grow(size + 3);
+        }
+        data[size++] = x;
+        data[size++] = y;
+        data[size++] = z;
+    }
+
+    public void addAll(IntList other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.data, 0, data, size, other.size);
+        size += other.size;
+    }
+
+    public int get(int index) {
+        return data[index];
+    }
+
+    public void set(int index, int value) {
+        data[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Grows or shrinks the logical size, new elements are left as they are in the backing array
+    public void setSize(int newSize) {
+        ensureCapacity(newSize);
+        size = newSize;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            grow(capacity);
+        }
+    }
+
+    // Direct access to the backing array, valid up to size()
+    public int[] array() {
+        return data;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, data.length + (data.length >> 1));
+        data = Arrays.copyOf(data, newCapacity);
+    }
+}
@@ -0,0 +1,54 @@
+package com.vibhusha.utils;
+
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+
+// Picks a LOD from the projected screen-space height of an object's bounding sphere
+public class LodSelector {
+    public static final LodSelector DEFAULT = new LodSelector(300.0f, 120.0f, 50.0f);
+
+    // thresholds[i]: minimum projected height in pixels for LOD i, anything smaller uses the next LOD
+    private final float[] thresholds;
+
+    public LodSelector(float... thresholds) {
+        this.thresholds = thresholds.clone();
+    }
+
+    // world places the model: its bounds centre is transformed and the radius scaled by the largest
+    // axis scale, so scaled and moved instances pick their LOD from what is actually on screen
+    public int select(Model model, Matrix4fc world, Camera camera, int viewportHeight) {
+        float[] b = model.getBounds();
+        float x = (b[0] + b[3]) * 0.5f, y = (b[1] + b[4]) * 0.5f, z = (b[2] + b[5]) * 0.5f;
+        float dx = b[3] - b[0], dy = b[4] - b[1], dz = b[5] - b[2];
+        float radius = (float) Math.sqrt(dx * dx + dy * dy + dz * dz) * 0.5f;
+        float cx = world.m00() * x + world.m10() * y + world.m20() * z + world.m30();
+        float cy = world.m01() * x + world.m11() * y + world.m21() * z + world.m31();
+        float cz = world.m02() * x + world.m12() * y + world.m22() * z + world.m32();
+        float scale = (float) Math.sqrt(Math.max(world.m00() * world.m00() + world.m01() * world.m01() + world.m02() * world.m02(),
+                Math.max(world.m10() * world.m10() + world.m11() * world.m11() + world.m12() * world.m12(),
+                        world.m20() * world.m20() + world.m21() * world.m21() + world.m22() * world.m22())));
+        return Math.min(select(cx, cy, cz, radius * scale, camera, viewportHeight), model.getLodCount() - 1);
+    }
+
+    public int select(float centerX, float centerY, float centerZ, float radius, Camera camera, int viewportHeight) {
+        float size = projectedSize(centerX, centerY, centerZ, radius, camera, viewportHeight);
+        for (int i = 0; i < thresholds.length; i++) {
+            if (size >= thresholds[i]) {
+                return i;
+            }
+        }
+        return thresholds.length;
+    }
+
+    // Height in pixels covered by the sphere's diameter under the camera's perspective projection
+    public static float projectedSize(float centerX, float centerY, float centerZ, float radius, Camera camera, int viewportHeight) {
+        Vector3fc eye = camera.getPosition();
+        float dx = centerX - eye.x(), dy = centerY - eye.y(), dz = centerZ - eye.z();
+        float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (distance <= radius) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float tanHalfFov = (float) Math.tan(camera.getFov() * 0.5f);
+        return radius / (distance * tanHalfFov) * viewportHeight;
+    }
+}
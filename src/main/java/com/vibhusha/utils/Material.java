@@ -0,0 +1,20 @@
+package com.vibhusha.utils;
+
+// The shader and texture a mesh is drawn with
+public class Material {
+    private final Shader shader;
+    private final Texture texture;
+
+    public Material(Shader shader, Texture texture) {
+        this.shader = shader;
+        this.texture = texture;
+    }
+
+    public Shader getShader() {
+        return shader;
+    }
+
+    public Texture getTexture() {
+        return texture;
+    }
+}
@@ -0,0 +1,150 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.ByteBuffer;
+
+// Upload-ready vertex and index bytes plus the metadata needed to bind them.
+// The buffers may be heap-allocated copies or slices of a memory-mapped cache file.
+public class MeshBuffers {
+    private final ByteBuffer vertexData;
+    private final ByteBuffer indexData;
+    private final int vertexCount;
+    private final int indexCount;
+    private final int indexType;
+    private final VertexFormat format;
+    private final VertexLayout layout;
+    private final float[] decode;
+    private final float[] bounds;
+    private final int[] lodOffsets;
+    private final int[] lodCounts;
+    private final SubmeshTable submeshes;
+
+    public MeshBuffers(ByteBuffer vertexData, ByteBuffer indexData, int vertexCount, int indexCount,
+                       int indexType, VertexFormat format, float[] decode, float[] bounds) {
+        this(vertexData, indexData, vertexCount, indexCount, indexType, format, decode, bounds,
+                new int[]{0}, new int[]{indexCount});
+    }
+
+    public MeshBuffers(ByteBuffer vertexData, ByteBuffer indexData, int vertexCount, int indexCount,
+                       int indexType, VertexFormat format, float[] decode, float[] bounds,
+                       int[] lodOffsets, int[] lodCounts) {
+        this(vertexData, indexData, vertexCount, indexCount, indexType, format, decode, bounds, lodOffsets, lodCounts,
+                SubmeshTable.single(lodOffsets, lodCounts));
+    }
+
+    public MeshBuffers(ByteBuffer vertexData, ByteBuffer indexData, int vertexCount, int indexCount,
+                       int indexType, VertexFormat format, float[] decode, float[] bounds,
+                       int[] lodOffsets, int[] lodCounts, SubmeshTable submeshes) {
+        this.vertexData = vertexData;
+        this.indexData = indexData;
+        this.vertexCount = vertexCount;
+        this.indexCount = indexCount;
+        this.indexType = indexType;
+        this.format = format;
+        this.layout = format.createLayout();
+        this.decode = decode;
+        this.bounds = bounds;
+        this.lodOffsets = lodOffsets;
+        this.lodCounts = lodCounts;
+        this.submeshes = submeshes;
+    }
+
+    // Packs an indexed mesh as full-precision floats, with 16-bit indices when they fit
+    public static MeshBuffers fromMesh(MeshData mesh) {
+        return VertexEncoder.encode(mesh, VertexFormat.FULL);
+    }
+
+    static int indexTypeFor(MeshData mesh) {
+        return mesh.fitsShortIndices() ? GL11.GL_UNSIGNED_SHORT : GL11.GL_UNSIGNED_INT;
+    }
+
+    static ByteBuffer packIndices(MeshData mesh) {
+        int[] indices = mesh.getIndices();
+        if (mesh.fitsShortIndices()) {
+            // Half the index bandwidth when every vertex fits in an unsigned short
+            ByteBuffer indexData = BufferUtils.createByteBuffer(indices.length * Short.BYTES);
+            for (int i = 0; i < indices.length; i++) {
+                indexData.putShort(i * Short.BYTES, (short) indices[i]);
+            }
+            return indexData;
+        }
+        ByteBuffer indexData = BufferUtils.createByteBuffer(indices.length * Integer.BYTES);
+        indexData.asIntBuffer().put(indices);
+        return indexData;
+    }
+
+    // Model-space xyz of every vertex, decoded from the vertex format
+    public float[] decodePositions() {
+        int base = vertexData.position();
+        float[] positions = new float[vertexCount * 3];
+        float[] position = new float[3];
+        for (int i = 0; i < vertexCount; i++) {
+            VertexEncoder.decodePosition(vertexData, base + i * format.getStride() + format.getPositionOffset(), format, decode, position);
+            System.arraycopy(position, 0, positions, i * 3, 3);
+        }
+        return positions;
+    }
+
+    // count indices starting at index first, widened to ints
+    public int[] readIndices(int first, int count) {
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = indexType == GL11.GL_UNSIGNED_SHORT
+                    ? Short.toUnsignedInt(indexData.getShort(indexData.position() + (first + i) * Short.BYTES))
+                    : indexData.getInt(indexData.position() + (first + i) * Integer.BYTES);
+        }
+        return indices;
+    }
+
+    public ByteBuffer getVertexData() {
+        return vertexData;
+    }
+
+    public ByteBuffer getIndexData() {
+        return indexData;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    public int getIndexType() {
+        return indexType;
+    }
+
+    public VertexFormat getFormat() {
+        return format;
+    }
+
+    public VertexLayout getLayout() {
+        return layout;
+    }
+
+    // Position offset xyz, position scale xyz, uv offset xy, uv scale xy (see VertexEncoder)
+    public float[] getDecode() {
+        return decode;
+    }
+
+    // minX, minY, minZ, maxX, maxY, maxZ
+    public float[] getBounds() {
+        return bounds;
+    }
+
+    public int[] getLodOffsets() {
+        return lodOffsets;
+    }
+
+    public int[] getLodCounts() {
+        return lodCounts;
+    }
+
+    public SubmeshTable getSubmeshes() {
+        return submeshes;
+    }
+}
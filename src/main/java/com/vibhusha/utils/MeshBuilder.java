@@ -0,0 +1,163 @@
+package com.vibhusha.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Turns parsed OBJ corners into an indexed mesh: identical (v, vt, vn) triples share one vertex,
+// triangles are grouped by material into submeshes, then triangles and vertices are reordered for
+// the post-transform cache (within each submesh) and vertex fetch (across the whole mesh).
+public class MeshBuilder {
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    public static MeshData build(ObjData data) throws IOException {
+        return build(data, true);
+    }
+
+    public static MeshData build(ObjData data, boolean optimize) throws IOException {
+        int cornerCount = data.getCornerCount();
+        int[] corners = data.corners.array();
+        int positionCount = data.getPositionCount();
+        int textureCount = data.getTexCoordCount();
+        int normalCount = data.getNormalCount();
+
+        // Open-addressing table of unique vertex ids (+1, 0 marks an empty slot)
+        int capacity = Integer.highestOneBit(Math.max(cornerCount, 8) * 2 - 1) << 1;
+        int mask = capacity - 1;
+        int[] table = new int[capacity];
+        IntList uniqueKeys = new IntList(Math.max(cornerCount, 1));
+        int[] indices = new int[cornerCount];
+
+        for (int i = 0; i < cornerCount; i++) {
+            int v = corners[i * 3];
+            int vt = corners[i * 3 + 1];
+            int vn = corners[i * 3 + 2];
+            if (v < 0 || v >= positionCount || vt >= textureCount || vn >= normalCount) {
+                throw new IOException("OBJ face references a missing vertex attribute at corner " + i);
+            }
+
+            int slot = hash(v, vt, vn) & mask;
+            while (true) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    uniqueKeys.add(v, vt, vn);
+                    int id = uniqueKeys.size() / 3 - 1;
+                    table[slot] = id + 1;
+                    indices[i] = id;
+                    break;
+                }
+                int[] keys = uniqueKeys.array();
+                int base = (entry - 1) * 3;
+                if (keys[base] == v && keys[base + 1] == vt && keys[base + 2] == vn) {
+                    indices[i] = entry - 1;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        int vertexCount = uniqueKeys.size() / 3;
+        float acmrBefore = MeshOptimizer.computeAcmr(indices, vertexCount, DEFAULT_CACHE_SIZE);
+        IntList submeshCounts = new IntList();
+        String[] materials = groupByMaterial(data, indices, submeshCounts);
+
+        int[] vertexOrder = null;
+        if (optimize) {
+            int[] localIds = new int[vertexCount];
+            Arrays.fill(localIds, -1);
+            int offset = 0;
+            for (int s = 0; s < materials.length; s++) {
+                int count = submeshCounts.get(s);
+                int[] range = Arrays.copyOfRange(indices, offset, offset + count);
+                int[] globals = MeshOptimizer.compactVertices(range, localIds);
+                int[] optimized = MeshOptimizer.optimizeVertexCache(range, globals.length, DEFAULT_CACHE_SIZE);
+                for (int i = 0; i < count; i++) {
+                    indices[offset + i] = globals[optimized[i]];
+                }
+                offset += count;
+            }
+            vertexOrder = MeshOptimizer.optimizeVertexFetch(indices, vertexCount);
+        }
+
+        int[] submeshOffsets = new int[materials.length];
+        for (int s = 1; s < materials.length; s++) {
+            submeshOffsets[s] = submeshOffsets[s - 1] + submeshCounts.get(s - 1);
+        }
+        SubmeshTable submeshes = new SubmeshTable(data.materialLibraries.toArray(new String[0]), materials,
+                submeshOffsets, submeshCounts.toArray());
+
+        float[] vertices = assembleVertices(data, uniqueKeys.array(), vertexCount, vertexOrder);
+        MeshData mesh = new MeshData(vertices, indices, vertexCount, new int[]{0}, new int[]{indices.length}, submeshes);
+        mesh.setAcmr(acmrBefore, MeshOptimizer.computeAcmr(indices, vertexCount, DEFAULT_CACHE_SIZE));
+        return mesh;
+    }
+
+    // Stable counting sort of the triangles by material slot, in place. Returns the material name of
+    // each non-empty submesh and appends its index count to counts.
+    private static String[] groupByMaterial(ObjData data, int[] indices, IntList counts) {
+        int[] slots = data.triangleMaterialSlots();
+        int[] starts = new int[data.materialNames.size() + 2];
+        for (int slot : slots) {
+            starts[slot + 1]++;
+        }
+
+        List<String> materials = new ArrayList<>();
+        for (int slot = 0; slot + 1 < starts.length; slot++) {
+            if (starts[slot + 1] > 0 || (slot == 0 && slots.length == 0)) {
+                materials.add(slot == 0 ? "" : data.materialNames.get(slot - 1));
+                counts.add(starts[slot + 1] * 3);
+            }
+            starts[slot + 1] += starts[slot];
+        }
+        if (materials.size() == 1) {
+            return materials.toArray(new String[0]);
+        }
+
+        int[] source = indices.clone();
+        for (int t = 0; t < slots.length; t++) {
+            int target = starts[slots[t]]++;
+            System.arraycopy(source, t * 3, indices, target * 3, 3);
+        }
+        return materials.toArray(new String[0]);
+    }
+
+    // vertexOrder[newIndex] = old vertex id, or null to keep the dedup order
+    private static float[] assembleVertices(ObjData data, int[] keys, int vertexCount, int[] vertexOrder) {
+        float[] positions = data.positions.array();
+        float[] textures = data.texCoords.array();
+        float[] normals = data.normals.array();
+        float[] vertices = new float[vertexCount * MeshData.FLOATS_PER_VERTEX];
+
+        for (int i = 0; i < vertexCount; i++) {
+            int source = vertexOrder == null ? i : vertexOrder[i];
+            int v = keys[source * 3];
+            int vt = keys[source * 3 + 1];
+            int vn = keys[source * 3 + 2];
+            int out = i * MeshData.FLOATS_PER_VERTEX;
+
+            vertices[out] = positions[v * 3];
+            vertices[out + 1] = positions[v * 3 + 1];
+            vertices[out + 2] = positions[v * 3 + 2];
+
+            // Missing attributes (v or v//vn faces) are left zeroed
+            if (vt >= 0) {
+                vertices[out + 3] = textures[vt * 2];
+                vertices[out + 4] = textures[vt * 2 + 1];
+            }
+            if (vn >= 0) {
+                vertices[out + 5] = normals[vn * 3];
+                vertices[out + 6] = normals[vn * 3 + 1];
+                vertices[out + 7] = normals[vn * 3 + 2];
+            }
+        }
+        return vertices;
+    }
+
+    private static int hash(int v, int vt, int vn) {
+        int h = v * 0x9E3779B1;
+        h = (h ^ (h >>> 15) ^ vt) * 0x85EBCA77;
+        h = (h ^ (h >>> 13) ^ vn) * 0xC2B2AE3D;
+        return h ^ (h >>> 16);
+    }
+}
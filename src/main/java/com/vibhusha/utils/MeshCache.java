@@ -0,0 +1,165 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// On-disk cache of precompiled meshes keyed by the SHA-256 of the source file's content and the
+// options only, so a moved or copied source still hits. Entries are named <options key>-<content hash>.vmsh.
+// A small <source name>-<path hash>.idx per source lists the entry it last stored or hit for each options
+// key; moving to a new one removes the old entry once no index refers to it. Entries written by another file
+// format version are treated as misses and overwritten.
+@Slf4j
+public class MeshCache {
+    public static final String DIRECTORY_PROPERTY = "mesh.cache.dir";
+    private static final String DEFAULT_DIRECTORY = ".cache/meshes";
+    private static final String INDEX_EXTENSION = ".idx";
+
+    private static MeshCache defaultCache;
+
+    private final Path directory;
+
+    public MeshCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // Cache configured by -Dmesh.cache.dir, or null when the property is set to an empty string
+    public static synchronized MeshCache getDefault() {
+        if (defaultCache == null) {
+            String dir = System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY);
+            if (dir.isEmpty()) {
+                return null;
+            }
+            defaultCache = new MeshCache(Path.of(dir));
+        }
+        return defaultCache;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public static byte[] hash(Path source) throws IOException {
+        MessageDigest digest = digest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    public Path entryFor(MeshOptions options, byte[] hash) {
+        return directory.resolve(options.getKey() + "-" + HexFormat.of().formatHex(hash) + MeshFile.EXTENSION);
+    }
+
+    // Records which entry each options key last produced for this source, so a new entry can retire the old one
+    Path indexFor(Path source) {
+        String path = source.toAbsolutePath().normalize().toString();
+        byte[] pathHash = digest().digest(path.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(source.getFileName() + "-" + HexFormat.of().formatHex(pathHash, 0, 8) + INDEX_EXTENSION);
+    }
+
+    // The mapped mesh for this exact source content, or null on a miss. A hit also becomes the entry the
+    // source's index lists, so a source that only ever hit an entry built from another path retires it too.
+    public MeshBuffers load(Path source, MeshOptions options, byte[] hash) {
+        Path entry = entryFor(options, hash);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try {
+            if (!Arrays.equals(hash, MeshFile.readSourceHash(entry))) {
+                return null;
+            }
+            MeshBuffers mesh = MeshFile.map(entry);
+            index(source, options, entry);
+            return mesh;
+        } catch (IOException e) {
+            log.warn(String.format("Ignoring unreadable mesh cache entry %s: %s", entry, e));
+            return null;
+        }
+    }
+
+    public void store(Path source, MeshOptions options, byte[] hash, MeshBuffers mesh) throws IOException {
+        Path entry = entryFor(options, hash);
+        MeshFile.write(entry, mesh, hash);
+        index(source, options, entry);
+    }
+
+    private void index(Path source, MeshOptions options, Path entry) throws IOException {
+        Path index = indexFor(source);
+        Map<String, String> entries = readIndex(index);
+        String name = entry.getFileName().toString();
+        String previous = entries.put(options.getKey(), name);
+        if (name.equals(previous)) {
+            return;
+        }
+        writeIndex(index, entries);
+        if (previous != null && !isIndexed(previous)) {
+            Files.deleteIfExists(directory.resolve(previous));
+        }
+    }
+
+    // Another source with the same content may still use the entry
+    private boolean isIndexed(String entry) throws IOException {
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(directory, "*" + INDEX_EXTENSION)) {
+            for (Path index : indexes) {
+                if (readIndex(index).containsValue(entry)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // One "<options key> <entry file name>" line per options key
+    private static Map<String, String> readIndex(Path index) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        if (Files.isRegularFile(index)) {
+            for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+                int space = line.indexOf(' ');
+                if (space > 0) {
+                    entries.put(line.substring(0, space), line.substring(space + 1));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void writeIndex(Path index, Map<String, String> entries) throws IOException {
+        StringBuilder text = new StringBuilder();
+        entries.forEach((key, entry) -> text.append(key).append(' ').append(entry).append('\n'));
+        Path temp = Files.createTempFile(index.getParent(), index.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
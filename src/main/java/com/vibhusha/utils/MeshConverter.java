@@ -0,0 +1,82 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Offline batch converter: precompiles OBJ files into the mesh cache so the engine never parses text at startup.
+//   java -cp engine.jar com.vibhusha.utils.MeshConverter [--compact] [--lods 1,0.5,0.25,0.1] <cache dir> <obj file or directory>...
+// Without flags it converts with the options GameEngine loads meshes with, so the engine finds the entries.
+@Slf4j
+public class MeshConverter {
+
+    public static void main(String[] args) throws IOException {
+        int first = 0;
+        VertexFormat format = VertexFormat.FULL;
+        float[] lodRatios = MeshOptions.DEFAULT_LOD_RATIOS;
+        while (first < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--compact")) {
+                format = VertexFormat.COMPACT;
+                first++;
+            } else if (args[first].equals("--lods") && first + 1 < args.length) {
+                String[] ratios = args[first + 1].split(",");
+                lodRatios = new float[ratios.length];
+                for (int i = 0; i < ratios.length; i++) {
+                    lodRatios[i] = Float.parseFloat(ratios[i]);
+                }
+                first += 2;
+            } else {
+                break;
+            }
+        }
+        if (args.length - first < 2) {
+            System.err.println("Usage: MeshConverter [--compact] [--lods 1,0.5,0.25,0.1] <cache dir> <obj file or directory>...");
+            System.exit(1);
+        }
+        MeshOptions options = new MeshOptions(format, lodRatios);
+
+        MeshCache cache = new MeshCache(Path.of(args[first]));
+        int converted = 0;
+        int upToDate = 0;
+        for (int i = first + 1; i < args.length; i++) {
+            for (Path source : findObjFiles(Path.of(args[i]))) {
+                if (convert(cache, source, options)) {
+                    converted++;
+                } else {
+                    upToDate++;
+                }
+            }
+        }
+        log.info(String.format("Converted %d mesh(es), %d already up to date", converted, upToDate));
+    }
+
+    // Returns false when the cache already holds this exact source content
+    public static boolean convert(MeshCache cache, Path source, MeshOptions options) throws IOException {
+        byte[] hash = MeshCache.hash(source);
+        if (cache.load(source, options, hash) != null) {
+            return false;
+        }
+
+        long startTime = System.nanoTime();
+        MeshBuffers mesh = ModelLoader.buildMeshBuffers(ModelLoader.readOBJ(source), options, source.toString());
+        cache.store(source, options, hash, mesh);
+        log.info(String.format("%s: %d vertices, %d LOD(s) in %.1f ms", source, mesh.getVertexCount(),
+                mesh.getLodCounts().length, (System.nanoTime() - startTime) / 1_000_000.0));
+        return true;
+    }
+
+    private static List<Path> findObjFiles(Path root) throws IOException {
+        if (Files.isRegularFile(root)) {
+            return List.of(root);
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().toLowerCase().endsWith(".obj"))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.vibhusha.utils;
+
+// Indexed, interleaved mesh ready for upload (position xyz, uv, normal xyz per vertex)
+public class MeshData {
+    public static final int FLOATS_PER_VERTEX = 8;
+
+    private final float[] vertices;
+    private final int[] indices;
+    private final int vertexCount;
+    private final int[] lodOffsets;
+    private final int[] lodCounts;
+    private final SubmeshTable submeshes;
+    private float acmrBefore;
+    private float acmrAfter;
+
+    public MeshData(float[] vertices, int[] indices, int vertexCount) {
+        this(vertices, indices, vertexCount, new int[]{0}, new int[]{indices.length});
+    }
+
+    // LOD i draws lodCounts[i] indices starting at lodOffsets[i], all sharing one vertex buffer
+    public MeshData(float[] vertices, int[] indices, int vertexCount, int[] lodOffsets, int[] lodCounts) {
+        this(vertices, indices, vertexCount, lodOffsets, lodCounts, SubmeshTable.single(lodOffsets, lodCounts));
+    }
+
+    public MeshData(float[] vertices, int[] indices, int vertexCount, int[] lodOffsets, int[] lodCounts, SubmeshTable submeshes) {
+        this.vertices = vertices;
+        this.indices = indices;
+        this.vertexCount = vertexCount;
+        this.lodOffsets = lodOffsets;
+        this.lodCounts = lodCounts;
+        this.submeshes = submeshes;
+    }
+
+    public float[] getVertices() {
+        return vertices;
+    }
+
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getIndexCount() {
+        return indices.length;
+    }
+
+    // Triangles in the full-detail LOD
+    public int getTriangleCount() {
+        return lodCounts[0] / 3;
+    }
+
+    public int getLodCount() {
+        return lodOffsets.length;
+    }
+
+    public int[] getLodOffsets() {
+        return lodOffsets;
+    }
+
+    public int[] getLodCounts() {
+        return lodCounts;
+    }
+
+    public SubmeshTable getSubmeshes() {
+        return submeshes;
+    }
+
+    // 16-bit indices are enough when every vertex is addressable by an unsigned short
+    public boolean fitsShortIndices() {
+        return vertexCount <= 0x10000;
+    }
+
+    // Axis-aligned bounds of the positions: minX, minY, minZ, maxX, maxY, maxZ
+    public float[] computeBounds() {
+        float[] bounds = {
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY
+        };
+        for (int i = 0; i < vertexCount; i++) {
+            int base = i * FLOATS_PER_VERTEX;
+            for (int axis = 0; axis < 3; axis++) {
+                float value = vertices[base + axis];
+                bounds[axis] = Math.min(bounds[axis], value);
+                bounds[axis + 3] = Math.max(bounds[axis + 3], value);
+            }
+        }
+        if (vertexCount == 0) {
+            return new float[6];
+        }
+        return bounds;
+    }
+
+    public float getAcmrBefore() {
+        return acmrBefore;
+    }
+
+    public float getAcmrAfter() {
+        return acmrAfter;
+    }
+
+    void setAcmr(float before, float after) {
+        this.acmrBefore = before;
+        this.acmrAfter = after;
+    }
+}
@@ -0,0 +1,223 @@
+package com.vibhusha.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Precompiled binary mesh (.vmsh). Little-endian, laid out so the vertex and index blocks can be
+// handed to glBufferData straight from a memory mapping:
+//
+//   header (fixed 176 bytes) | attribute descriptors (20 bytes each) | LOD ranges (8 bytes each)
+//   | MTL library and material names (length-prefixed UTF-8, 4-byte aligned)
+//   | submesh ranges (8 bytes per LOD per submesh) | pad | vertex block | pad | index block
+public class MeshFile {
+    public static final int MAGIC = 0x48534D56;  // "VMSH"
+    public static final int VERSION = 4;
+    public static final String EXTENSION = ".vmsh";
+
+    private static final int FIXED_HEADER_SIZE = 176;
+    private static final int ATTRIBUTE_SIZE = 20;
+    private static final int LOD_SIZE = 8;
+    private static final int BLOCK_ALIGNMENT = 16;
+    private static final int HASH_LENGTH = 32;
+
+    // Reads only the header and returns the source hash, or null if the file is from another format version
+    public static byte[] readSourceHash(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < FIXED_HEADER_SIZE) {
+                return null;
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                return null;
+            }
+            byte[] hash = new byte[HASH_LENGTH];
+            header.get(56, hash);
+            return hash;
+        }
+    }
+
+    // Maps the file and returns buffers that alias the mapping, nothing is copied
+    public static MeshBuffers map(Path path) throws IOException {
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IOException("Mesh files can only be mapped on little-endian platforms");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.limit() < FIXED_HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a mesh file: " + path);
+            }
+            if (mapped.getInt(4) != VERSION) {
+                throw new IOException("Unsupported mesh file version " + mapped.getInt(4) + ": " + path);
+            }
+
+            int vertexCount = mapped.getInt(12);
+            int indexCount = mapped.getInt(16);
+            int indexType = mapped.getInt(20);
+            int stride = mapped.getInt(24);
+            int attributeCount = mapped.getInt(28);
+            float[] bounds = new float[6];
+            for (int i = 0; i < 6; i++) {
+                bounds[i] = mapped.getFloat(32 + i * Float.BYTES);
+            }
+            long vertexOffset = mapped.getLong(88);
+            long vertexLength = mapped.getLong(96);
+            long indexOffset = mapped.getLong(104);
+            long indexLength = mapped.getLong(112);
+            if (vertexOffset + vertexLength > mapped.limit() || indexOffset + indexLength > mapped.limit()) {
+                throw new IOException("Truncated mesh file: " + path);
+            }
+
+            float[] decode = new float[VertexEncoder.DECODE_PARAMETER_COUNT];
+            for (int i = 0; i < decode.length; i++) {
+                decode[i] = mapped.getFloat(120 + i * Float.BYTES);
+            }
+            VertexFormat format = VertexFormat.fromId(mapped.getInt(160));
+
+            VertexLayout.Attribute[] attributes = new VertexLayout.Attribute[attributeCount];
+            for (int i = 0; i < attributeCount; i++) {
+                int base = FIXED_HEADER_SIZE + i * ATTRIBUTE_SIZE;
+                attributes[i] = new VertexLayout.Attribute(mapped.getInt(base), mapped.getInt(base + 4),
+                        mapped.getInt(base + 8), mapped.getInt(base + 12) != 0, mapped.getInt(base + 16));
+            }
+            if (!new VertexLayout(stride, attributes).equals(format.createLayout())) {
+                throw new IOException("Vertex layout does not match format " + format + ": " + path);
+            }
+
+            int lodCount = mapped.getInt(164);
+            int[] lodOffsets = new int[lodCount];
+            int[] lodCounts = new int[lodCount];
+            for (int i = 0; i < lodCount; i++) {
+                int base = FIXED_HEADER_SIZE + attributeCount * ATTRIBUTE_SIZE + i * LOD_SIZE;
+                lodOffsets[i] = mapped.getInt(base);
+                lodCounts[i] = mapped.getInt(base + 4);
+            }
+
+            int submeshCount = mapped.getInt(168);
+            int libraryCount = mapped.getInt(172);
+            int position = FIXED_HEADER_SIZE + attributeCount * ATTRIBUTE_SIZE + lodCount * LOD_SIZE;
+            String[] libraries = new String[libraryCount];
+            String[] materials = new String[submeshCount];
+            for (int i = 0; i < libraryCount + submeshCount; i++) {
+                int length = mapped.getInt(position);
+                byte[] name = new byte[length];
+                mapped.get(position + Integer.BYTES, name);
+                position += Integer.BYTES + ((length + 3) & -4);
+                if (i < libraryCount) {
+                    libraries[i] = new String(name, StandardCharsets.UTF_8);
+                } else {
+                    materials[i - libraryCount] = new String(name, StandardCharsets.UTF_8);
+                }
+            }
+            int[] submeshOffsets = new int[lodCount * submeshCount];
+            int[] submeshCounts = new int[lodCount * submeshCount];
+            for (int i = 0; i < submeshOffsets.length; i++) {
+                submeshOffsets[i] = mapped.getInt(position + i * LOD_SIZE);
+                submeshCounts[i] = mapped.getInt(position + i * LOD_SIZE + 4);
+            }
+
+            ByteBuffer vertexData = mapped.slice((int) vertexOffset, (int) vertexLength).order(ByteOrder.nativeOrder());
+            ByteBuffer indexData = mapped.slice((int) indexOffset, (int) indexLength).order(ByteOrder.nativeOrder());
+            return new MeshBuffers(vertexData, indexData, vertexCount, indexCount, indexType, format, decode, bounds,
+                    lodOffsets, lodCounts, new SubmeshTable(libraries, materials, submeshOffsets, submeshCounts));
+        }
+    }
+
+    // Writes to a temporary file first so readers never observe a half-written mesh
+    public static void write(Path path, MeshBuffers mesh, byte[] sourceHash) throws IOException {
+        VertexLayout layout = mesh.getLayout();
+        ByteBuffer vertexData = mesh.getVertexData().duplicate();
+        ByteBuffer indexData = mesh.getIndexData().duplicate();
+        vertexData.clear();
+        indexData.clear();
+
+        int lodCount = mesh.getLodOffsets().length;
+        SubmeshTable submeshes = mesh.getSubmeshes();
+        int submeshCount = submeshes.getSubmeshCount();
+        String[] libraries = submeshes.getLibraries();
+        byte[][] names = new byte[libraries.length + submeshCount][];
+        long namesSize = 0;
+        for (int i = 0; i < names.length; i++) {
+            String name = i < libraries.length ? libraries[i] : submeshes.getMaterial(i - libraries.length);
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+            namesSize += Integer.BYTES + ((names[i].length + 3) & -4);
+        }
+        long headerSize = FIXED_HEADER_SIZE + (long) layout.getAttributeCount() * ATTRIBUTE_SIZE + (long) lodCount * LOD_SIZE
+                + namesSize + (long) lodCount * submeshCount * LOD_SIZE;
+        long vertexOffset = align(headerSize);
+        long indexOffset = align(vertexOffset + vertexData.remaining());
+
+        ByteBuffer header = ByteBuffer.allocate((int) vertexOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt((int) headerSize)
+                .putInt(mesh.getVertexCount())
+                .putInt(mesh.getIndexCount())
+                .putInt(mesh.getIndexType())
+                .putInt(layout.getStride())
+                .putInt(layout.getAttributeCount());
+        for (float bound : mesh.getBounds()) {
+            header.putFloat(bound);
+        }
+        header.put(sourceHash, 0, HASH_LENGTH);
+        header.putLong(vertexOffset).putLong(vertexData.remaining())
+                .putLong(indexOffset).putLong(indexData.remaining());
+        for (float value : mesh.getDecode()) {
+            header.putFloat(value);
+        }
+        header.putInt(mesh.getFormat().getId()).putInt(lodCount).putInt(submeshCount).putInt(libraries.length);
+        for (int i = 0; i < layout.getAttributeCount(); i++) {
+            VertexLayout.Attribute attribute = layout.getAttribute(i);
+            header.putInt(attribute.getLocation())
+                    .putInt(attribute.getSize())
+                    .putInt(attribute.getType())
+                    .putInt(attribute.isNormalized() ? 1 : 0)
+                    .putInt(attribute.getOffset());
+        }
+        for (int i = 0; i < lodCount; i++) {
+            header.putInt(mesh.getLodOffsets()[i]).putInt(mesh.getLodCounts()[i]);
+        }
+        for (byte[] name : names) {
+            header.putInt(name.length).put(name);
+            header.position((header.position() + 3) & -4);
+        }
+        for (int lod = 0; lod < lodCount; lod++) {
+            for (int s = 0; s < submeshCount; s++) {
+                header.putInt(submeshes.getOffset(lod, s)).putInt(submeshes.getCount(lod, s));
+            }
+        }
+        header.clear();
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, header, 0);
+                writeFully(channel, vertexData, vertexOffset);
+                writeFully(channel, indexData, indexOffset);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + BLOCK_ALIGNMENT - 1) & -BLOCK_ALIGNMENT;
+    }
+}
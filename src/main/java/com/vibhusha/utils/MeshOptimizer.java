@@ -0,0 +1,159 @@
+package com.vibhusha.utils;
+
+import java.util.Arrays;
+
+// Index and vertex reordering for GPU cache efficiency
+public class MeshOptimizer {
+
+    // Average cache miss ratio (transformed vertices per triangle) for a FIFO cache of the given size
+    public static float computeAcmr(int[] indices, int vertexCount, int cacheSize) {
+        if (indices.length == 0) {
+            return 0.0f;
+        }
+        // A vertex is resident while fewer than cacheSize misses happened since it was inserted
+        int[] insertedAt = new int[vertexCount];
+        Arrays.fill(insertedAt, -cacheSize - 1);
+        int misses = 0;
+        for (int index : indices) {
+            if (misses - insertedAt[index] > cacheSize) {
+                insertedAt[index] = misses++;
+            }
+        }
+        return misses / (float) (indices.length / 3);
+    }
+
+    // Tipsify (Sander, Nehab and Barczak 2007): linear time triangle reordering for a cache of the given size
+    public static int[] optimizeVertexCache(int[] indices, int vertexCount, int cacheSize) {
+        int triangleCount = indices.length / 3;
+
+        // Vertex -> triangle adjacency in CSR form
+        int[] live = new int[vertexCount];
+        for (int index : indices) {
+            live[index]++;
+        }
+        int[] offsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] = offsets[v] + live[v];
+        }
+        int[] adjacency = new int[indices.length];
+        int[] fill = new int[vertexCount];
+        for (int i = 0; i < indices.length; i++) {
+            int v = indices[i];
+            adjacency[offsets[v] + fill[v]++] = i / 3;
+        }
+
+        int[] cacheTime = new int[vertexCount];
+        boolean[] emitted = new boolean[triangleCount];
+        int[] deadEnd = new int[indices.length];
+        int deadEndSize = 0;
+        int[] candidates = new int[indices.length];
+        int[] output = new int[indices.length];
+        int outputSize = 0;
+
+        int timestamp = cacheSize + 1;
+        int cursor = 1;
+        int fanning = vertexCount > 0 ? 0 : -1;
+
+        while (fanning >= 0) {
+            int candidateCount = 0;
+            for (int a = offsets[fanning]; a < offsets[fanning + 1]; a++) {
+                int t = adjacency[a];
+                if (emitted[t]) {
+                    continue;
+                }
+                emitted[t] = true;
+                for (int c = 0; c < 3; c++) {
+                    int v = indices[t * 3 + c];
+                    output[outputSize++] = v;
+                    deadEnd[deadEndSize++] = v;
+                    candidates[candidateCount++] = v;
+                    live[v]--;
+                    if (timestamp - cacheTime[v] > cacheSize) {
+                        cacheTime[v] = timestamp++;
+                    }
+                }
+            }
+
+            // Prefer the candidate that is still cached and will stay cached while its fan is emitted
+            int next = -1;
+            int best = -1;
+            for (int i = 0; i < candidateCount; i++) {
+                int v = candidates[i];
+                if (live[v] <= 0) {
+                    continue;
+                }
+                int priority = 0;
+                if (timestamp - cacheTime[v] + 2 * live[v] <= cacheSize) {
+                    priority = timestamp - cacheTime[v];
+                }
+                if (priority > best) {
+                    best = priority;
+                    next = v;
+                }
+            }
+
+            if (next == -1) {
+                while (deadEndSize > 0 && next == -1) {
+                    int v = deadEnd[--deadEndSize];
+                    if (live[v] > 0) {
+                        next = v;
+                    }
+                }
+                while (next == -1 && cursor < vertexCount) {
+                    if (live[cursor] > 0) {
+                        next = cursor;
+                    }
+                    cursor++;
+                }
+            }
+            fanning = next;
+        }
+        return output;
+    }
+
+    // Renumbers the vertices a submesh references to 0..n-1 in first-use order, rewriting indices in
+    // place, so per-submesh passes size their arrays to the submesh rather than the whole mesh.
+    // localIds maps global -> local ids; it must hold -1 for every vertex and is restored before
+    // returning, so one array serves every submesh. Returns local -> global.
+    public static int[] compactVertices(int[] indices, int[] localIds) {
+        IntList globals = new IntList(Math.max(indices.length / 2, 1));
+        for (int i = 0; i < indices.length; i++) {
+            int v = indices[i];
+            if (localIds[v] < 0) {
+                localIds[v] = globals.size();
+                globals.add(v);
+            }
+            indices[i] = localIds[v];
+        }
+        int[] result = globals.toArray();
+        for (int v : result) {
+            localIds[v] = -1;
+        }
+        return result;
+    }
+
+    // Renumbers vertices in first-use order, rewriting indices in place.
+    // Returns the permutation newIndex -> oldIndex used to reorder the vertex data.
+    public static int[] optimizeVertexFetch(int[] indices, int vertexCount) {
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int[] order = new int[vertexCount];
+        int next = 0;
+        for (int i = 0; i < indices.length; i++) {
+            int v = indices[i];
+            if (remap[v] == -1) {
+                remap[v] = next;
+                order[next++] = v;
+            }
+            indices[i] = remap[v];
+        }
+        // Unreferenced vertices go to the end so the vertex count is unchanged
+        for (int v = 0; v < vertexCount; v++) {
+            if (remap[v] == -1) {
+                remap[v] = next;
+                order[next++] = v;
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,80 @@
+package com.vibhusha.utils;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+// How a mesh is processed at load time. Part of the mesh cache key, so different options never share an entry;
+// the collision and meshlet flags only decide what is derived from it afterwards and do not change the cached file.
+public class MeshOptions {
+    public static final MeshOptions DEFAULT = new MeshOptions(VertexFormat.FULL);
+    public static final float[] DEFAULT_LOD_RATIOS = {1.0f, 0.5f, 0.25f, 0.1f};
+
+    private final VertexFormat format;
+    private final float[] lodRatios;
+    private final boolean collisionMesh;
+    private final boolean meshlets;
+
+    // lodRatios are triangle fractions of the full mesh, the first one normally 1.0
+    public MeshOptions(VertexFormat format, float... lodRatios) {
+        this.format = format;
+        this.lodRatios = lodRatios.length == 0 ? new float[]{1.0f} : lodRatios.clone();
+        this.collisionMesh = false;
+        this.meshlets = false;
+    }
+
+    private MeshOptions(VertexFormat format, float[] lodRatios, boolean collisionMesh, boolean meshlets) {
+        this.format = format;
+        this.lodRatios = lodRatios;
+        this.collisionMesh = collisionMesh;
+        this.meshlets = meshlets;
+    }
+
+    // Same options, also keeping a CollisionMesh with the loaded Model
+    public MeshOptions withCollisionMesh() {
+        return new MeshOptions(format, lodRatios, true, meshlets);
+    }
+
+    // Same options, also splitting LOD 0 into Meshlets the render queue culls per frame
+    public MeshOptions withMeshlets() {
+        return new MeshOptions(format, lodRatios, collisionMesh, true);
+    }
+
+    public boolean keepsCollisionMesh() {
+        return collisionMesh;
+    }
+
+    public boolean buildsMeshlets() {
+        return meshlets;
+    }
+
+    public VertexFormat getFormat() {
+        return format;
+    }
+
+    public float[] getLodRatios() {
+        return lodRatios.clone();
+    }
+
+    public boolean hasLods() {
+        return lodRatios.length > 1 || lodRatios[0] != 1.0f;
+    }
+
+    // Short stable identifier for file names
+    public String getKey() {
+        return HexFormat.of().toHexDigits((short) format.getId()) + HexFormat.of().toHexDigits(Arrays.hashCode(lodRatios));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MeshOptions)) return false;
+        MeshOptions other = (MeshOptions) o;
+        return format.equals(other.format) && Arrays.equals(lodRatios, other.lodRatios) && collisionMesh == other.collisionMesh
+                && meshlets == other.meshlets;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * format.hashCode() + Arrays.hashCode(lodRatios)) + Boolean.hashCode(collisionMesh)) + Boolean.hashCode(meshlets);
+    }
+}
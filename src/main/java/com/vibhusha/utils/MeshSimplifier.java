@@ -0,0 +1,375 @@
+package com.vibhusha.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Quadric error metric simplifier (Garland and Heckbert) using half-edge collapses, so every LOD
+// indexes the original vertex buffer. Vertices on open borders, which includes UV and normal seams
+// in an indexed mesh, never move, and collapses that flip a triangle or bend the vertex normal too
+// far are rejected. Each pass collapses an independent set of edges in sorted cost order; the
+// per-edge work runs on a fork-join pool and the result does not depend on the thread count.
+public class MeshSimplifier {
+    private static final int QUADRIC_SIZE = 10;
+    private static final float MIN_NORMAL_DOT = 0.5f;      // ~60 degrees
+    private static final int PARALLEL_THRESHOLD = 1 << 15; // triangles
+
+    public static int[] simplify(MeshData mesh, int[] indices, int targetIndexCount) {
+        return simplify(mesh, indices, targetIndexCount, ForkJoinPool.commonPool());
+    }
+
+    public static int[] simplify(MeshData mesh, int[] indices, int targetIndexCount, ForkJoinPool pool) {
+        return simplify(mesh.getVertices(), mesh.getVertexCount(), indices.clone(), targetIndexCount, pool);
+    }
+
+    // Simplifies current in place; the result is a prefix of it, copied
+    private static int[] simplify(float[] vertices, int vertexCount, int[] current, int targetIndexCount, ForkJoinPool pool) {
+        int triangleCount = current.length / 3;
+        int targetTriangles = targetIndexCount / 3;
+        boolean parallel = triangleCount >= PARALLEL_THRESHOLD;
+
+        boolean[] locked = findBorderVertices(current, vertexCount, parallel);
+        double[] quadrics = computeQuadrics(vertices, vertexCount, current, parallel, pool);
+        int[] remap = new int[vertexCount];
+        boolean[] touched = new boolean[vertexCount];
+
+        while (triangleCount > targetTriangles) {
+            int[] offsets = new int[vertexCount + 1];
+            int[] adjacency = buildAdjacency(current, triangleCount, vertexCount, offsets);
+            long[] edges = uniqueEdges(current, triangleCount, parallel, pool);
+
+            // Cost and direction of every edge, independent of each other
+            float[] costs = new float[edges.length];
+            boolean[] reversed = new boolean[edges.length];
+            run(pool, parallel, edges.length, e -> {
+                int a = (int) (edges[e] >>> 32);
+                int b = (int) edges[e];
+                float ab = locked[a] ? Float.POSITIVE_INFINITY : collapseCost(quadrics, vertices, a, b);
+                float ba = locked[b] ? Float.POSITIVE_INFINITY : collapseCost(quadrics, vertices, b, a);
+                reversed[e] = ba < ab;
+                costs[e] = Math.min(ab, ba);
+            });
+
+            // Sort by cost, ties broken by edge order, so the outcome is deterministic
+            long[] order = new long[edges.length];
+            int candidates = 0;
+            for (int e = 0; e < edges.length; e++) {
+                if (costs[e] != Float.POSITIVE_INFINITY) {
+                    order[candidates++] = (long) Float.floatToIntBits(costs[e]) << 32 | e;
+                }
+            }
+            order = Arrays.copyOf(order, candidates);
+            if (parallel) {
+                Arrays.parallelSort(order);
+            } else {
+                Arrays.sort(order);
+            }
+
+            for (int v = 0; v < vertexCount; v++) {
+                remap[v] = v;
+            }
+            Arrays.fill(touched, false);
+            int removed = 0;
+            int budget = triangleCount - targetTriangles;
+
+            for (int i = 0; i < candidates && removed < budget; i++) {
+                int e = (int) order[i];
+                int source = reversed[e] ? (int) edges[e] : (int) (edges[e] >>> 32);
+                int target = reversed[e] ? (int) (edges[e] >>> 32) : (int) edges[e];
+                if (touched[source] || touched[target]) {
+                    continue;
+                }
+                if (!isCollapseValid(vertices, current, adjacency, offsets, source, target)) {
+                    continue;
+                }
+
+                remap[source] = target;
+                for (int q = 0; q < QUADRIC_SIZE; q++) {
+                    quadrics[target * QUADRIC_SIZE + q] += quadrics[source * QUADRIC_SIZE + q];
+                }
+                // Freeze the neighbourhood so the adjacency stays valid for the rest of this pass
+                for (int a = offsets[source]; a < offsets[source + 1]; a++) {
+                    int t = adjacency[a];
+                    boolean hasTarget = false;
+                    for (int c = 0; c < 3; c++) {
+                        int v = current[t * 3 + c];
+                        touched[v] = true;
+                        hasTarget |= v == target;
+                    }
+                    if (hasTarget) {
+                        removed++;
+                    }
+                }
+            }
+            if (removed == 0) {
+                break;
+            }
+
+            // Apply the collapses and drop triangles that became degenerate
+            int out = 0;
+            for (int t = 0; t < triangleCount; t++) {
+                int a = remap[current[t * 3]];
+                int b = remap[current[t * 3 + 1]];
+                int c = remap[current[t * 3 + 2]];
+                if (a != b && b != c && a != c) {
+                    current[out++] = a;
+                    current[out++] = b;
+                    current[out++] = c;
+                }
+            }
+            triangleCount = out / 3;
+        }
+        return Arrays.copyOf(current, triangleCount * 3);
+    }
+
+    // Builds one index list per ratio (relative to the full mesh) into a single index array.
+    // Each level is simplified from the previous one and reordered for the vertex cache. Submeshes are
+    // simplified separately, so no triangle changes material; vertices shared by two materials sit on
+    // an open border of both and stay locked, which keeps the seam closed.
+    public static MeshData buildLodChain(MeshData mesh, float[] ratios, ForkJoinPool pool) {
+        int[] base = mesh.getIndices();
+        SubmeshTable table = mesh.getSubmeshes();
+        int submeshCount = table.getSubmeshCount();
+        int[] offsets = new int[ratios.length];
+        int[] counts = new int[ratios.length];
+        int[] submeshOffsets = new int[ratios.length * submeshCount];
+        int[] submeshCounts = new int[ratios.length * submeshCount];
+        IntList all = new IntList(base.length * 2);
+        int[][] previous = new int[submeshCount][];
+        int[] localIds = new int[mesh.getVertexCount()];
+        Arrays.fill(localIds, -1);
+        for (int s = 0; s < submeshCount; s++) {
+            int offset = table.getOffset(0, s);
+            previous[s] = Arrays.copyOfRange(base, offset, offset + table.getCount(0, s));
+        }
+
+        for (int i = 0; i < ratios.length; i++) {
+            offsets[i] = all.size();
+            for (int s = 0; s < submeshCount; s++) {
+                int full = table.getCount(0, s);
+                int target = Math.max(3, (int) (full / 3 * ratios[i]) * 3);
+                int[] level = previous[s];
+                if (target < level.length) {
+                    level = simplifySubmesh(mesh.getVertices(), level, target, localIds, pool);
+                }
+                submeshOffsets[i * submeshCount + s] = all.size();
+                submeshCounts[i * submeshCount + s] = level.length;
+                for (int index : level) {
+                    all.add(index);
+                }
+                previous[s] = level;
+            }
+            counts[i] = all.size() - offsets[i];
+        }
+
+        SubmeshTable submeshes = new SubmeshTable(table.getLibraries(), materialNames(table), submeshOffsets, submeshCounts);
+        MeshData result = new MeshData(mesh.getVertices(), all.toArray(), mesh.getVertexCount(), offsets, counts, submeshes);
+        result.setAcmr(mesh.getAcmrBefore(), mesh.getAcmrAfter());
+        return result;
+    }
+
+    // Simplifies and cache-optimizes one submesh over a compact copy of the vertices it references, so
+    // the work and the scratch arrays follow the submesh size, not the whole mesh
+    private static int[] simplifySubmesh(float[] vertices, int[] indices, int target, int[] localIds, ForkJoinPool pool) {
+        int[] local = indices.clone();
+        int[] globals = MeshOptimizer.compactVertices(local, localIds);
+        float[] localVertices = new float[globals.length * MeshData.FLOATS_PER_VERTEX];
+        for (int v = 0; v < globals.length; v++) {
+            System.arraycopy(vertices, globals[v] * MeshData.FLOATS_PER_VERTEX, localVertices, v * MeshData.FLOATS_PER_VERTEX, MeshData.FLOATS_PER_VERTEX);
+        }
+        local = simplify(localVertices, globals.length, local, target, pool);
+        local = MeshOptimizer.optimizeVertexCache(local, globals.length, MeshBuilder.DEFAULT_CACHE_SIZE);
+        for (int i = 0; i < local.length; i++) {
+            local[i] = globals[local[i]];
+        }
+        return local;
+    }
+
+    private static String[] materialNames(SubmeshTable table) {
+        String[] names = new String[table.getSubmeshCount()];
+        for (int s = 0; s < names.length; s++) {
+            names[s] = table.getMaterial(s);
+        }
+        return names;
+    }
+
+    private static boolean[] findBorderVertices(int[] indices, int vertexCount, boolean parallel) {
+        boolean[] border = new boolean[vertexCount];
+
+        // Directed edges sorted by their undirected key; an undirected edge seen once is a border
+        long[] keys = new long[indices.length];
+        for (int t = 0; t < indices.length / 3; t++) {
+            for (int c = 0; c < 3; c++) {
+                keys[t * 3 + c] = edgeKey(indices[t * 3 + c], indices[t * 3 + (c + 1) % 3]);
+            }
+        }
+        if (parallel) {
+            Arrays.parallelSort(keys);
+        } else {
+            Arrays.sort(keys);
+        }
+        for (int i = 0; i < keys.length; ) {
+            int j = i;
+            while (j < keys.length && keys[j] == keys[i]) {
+                j++;
+            }
+            if (j - i == 1) {
+                border[(int) (keys[i] >>> 32)] = true;
+                border[(int) keys[i]] = true;
+            }
+            i = j;
+        }
+        return border;
+    }
+
+    private static double[] computeQuadrics(float[] vertices, int vertexCount, int[] indices, boolean parallel, ForkJoinPool pool) {
+        int triangleCount = indices.length / 3;
+        int[] offsets = new int[vertexCount + 1];
+        int[] adjacency = buildAdjacency(indices, triangleCount, vertexCount, offsets);
+        double[] quadrics = new double[vertexCount * QUADRIC_SIZE];
+
+        // Each vertex sums the area-weighted plane quadrics of its own triangles
+        run(pool, parallel, vertexCount, v -> {
+            for (int a = offsets[v]; a < offsets[v + 1]; a++) {
+                int t = adjacency[a];
+                int i0 = indices[t * 3] * MeshData.FLOATS_PER_VERTEX;
+                int i1 = indices[t * 3 + 1] * MeshData.FLOATS_PER_VERTEX;
+                int i2 = indices[t * 3 + 2] * MeshData.FLOATS_PER_VERTEX;
+                double ux = vertices[i1] - vertices[i0], uy = vertices[i1 + 1] - vertices[i0 + 1], uz = vertices[i1 + 2] - vertices[i0 + 2];
+                double wx = vertices[i2] - vertices[i0], wy = vertices[i2 + 1] - vertices[i0 + 1], wz = vertices[i2 + 2] - vertices[i0 + 2];
+                double nx = uy * wz - uz * wy, ny = uz * wx - ux * wz, nz = ux * wy - uy * wx;
+                double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (length == 0) {
+                    continue;
+                }
+                double area = length * 0.5;
+                nx /= length;
+                ny /= length;
+                nz /= length;
+                double d = -(nx * vertices[i0] + ny * vertices[i0 + 1] + nz * vertices[i0 + 2]);
+                int q = v * QUADRIC_SIZE;
+                quadrics[q] += area * nx * nx;
+                quadrics[q + 1] += area * nx * ny;
+                quadrics[q + 2] += area * nx * nz;
+                quadrics[q + 3] += area * nx * d;
+                quadrics[q + 4] += area * ny * ny;
+                quadrics[q + 5] += area * ny * nz;
+                quadrics[q + 6] += area * ny * d;
+                quadrics[q + 7] += area * nz * nz;
+                quadrics[q + 8] += area * nz * d;
+                quadrics[q + 9] += area * d * d;
+            }
+        });
+        return quadrics;
+    }
+
+    // Error of moving source onto target under the combined quadric
+    private static float collapseCost(double[] quadrics, float[] vertices, int source, int target) {
+        int s = source * QUADRIC_SIZE;
+        int t = target * QUADRIC_SIZE;
+        int p = target * MeshData.FLOATS_PER_VERTEX;
+        double x = vertices[p], y = vertices[p + 1], z = vertices[p + 2];
+        double a2 = quadrics[s] + quadrics[t], ab = quadrics[s + 1] + quadrics[t + 1], ac = quadrics[s + 2] + quadrics[t + 2];
+        double ad = quadrics[s + 3] + quadrics[t + 3], b2 = quadrics[s + 4] + quadrics[t + 4], bc = quadrics[s + 5] + quadrics[t + 5];
+        double bd = quadrics[s + 6] + quadrics[t + 6], c2 = quadrics[s + 7] + quadrics[t + 7], cd = quadrics[s + 8] + quadrics[t + 8];
+        double d2 = quadrics[s + 9] + quadrics[t + 9];
+        double error = a2 * x * x + 2 * ab * x * y + 2 * ac * x * z + 2 * ad * x
+                + b2 * y * y + 2 * bc * y * z + 2 * bd * y
+                + c2 * z * z + 2 * cd * z + d2;
+        return (float) Math.max(error, 0.0);
+    }
+
+    private static boolean isCollapseValid(float[] vertices, int[] indices, int[] adjacency, int[] offsets, int source, int target) {
+        int sn = source * MeshData.FLOATS_PER_VERTEX + 5;
+        int tn = target * MeshData.FLOATS_PER_VERTEX + 5;
+        float normalDot = vertices[sn] * vertices[tn] + vertices[sn + 1] * vertices[tn + 1] + vertices[sn + 2] * vertices[tn + 2];
+        if (normalDot < MIN_NORMAL_DOT) {
+            return false;
+        }
+
+        // Every surviving triangle around source must keep its facing
+        for (int a = offsets[source]; a < offsets[source + 1]; a++) {
+            int t = adjacency[a];
+            int i0 = indices[t * 3], i1 = indices[t * 3 + 1], i2 = indices[t * 3 + 2];
+            if (i0 == target || i1 == target || i2 == target) {
+                continue;
+            }
+            float[] before = normal(vertices, i0, i1, i2, -1, -1);
+            float[] after = normal(vertices, i0, i1, i2, source, target);
+            if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Unnormalized face normal, with vertex 'replace' moved to the position of 'with'
+    private static float[] normal(float[] vertices, int i0, int i1, int i2, int replace, int with) {
+        int p0 = (i0 == replace ? with : i0) * MeshData.FLOATS_PER_VERTEX;
+        int p1 = (i1 == replace ? with : i1) * MeshData.FLOATS_PER_VERTEX;
+        int p2 = (i2 == replace ? with : i2) * MeshData.FLOATS_PER_VERTEX;
+        float ux = vertices[p1] - vertices[p0], uy = vertices[p1 + 1] - vertices[p0 + 1], uz = vertices[p1 + 2] - vertices[p0 + 2];
+        float wx = vertices[p2] - vertices[p0], wy = vertices[p2 + 1] - vertices[p0 + 1], wz = vertices[p2 + 2] - vertices[p0 + 2];
+        return new float[]{uy * wz - uz * wy, uz * wx - ux * wz, ux * wy - uy * wx};
+    }
+
+    // Vertex -> triangle adjacency in CSR form
+    private static int[] buildAdjacency(int[] indices, int triangleCount, int vertexCount, int[] offsets) {
+        for (int i = 0; i < triangleCount * 3; i++) {
+            offsets[indices[i] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, vertexCount);
+        int[] adjacency = new int[triangleCount * 3];
+        for (int i = 0; i < triangleCount * 3; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+        return adjacency;
+    }
+
+    private static long[] uniqueEdges(int[] indices, int triangleCount, boolean parallel, ForkJoinPool pool) {
+        long[] keys = new long[triangleCount * 3];
+        for (int t = 0; t < triangleCount; t++) {
+            for (int c = 0; c < 3; c++) {
+                keys[t * 3 + c] = edgeKey(indices[t * 3 + c], indices[t * 3 + (c + 1) % 3]);
+            }
+        }
+        if (parallel) {
+            Arrays.parallelSort(keys);
+        } else {
+            Arrays.sort(keys);
+        }
+        int unique = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, unique);
+    }
+
+    private static long edgeKey(int a, int b) {
+        return a < b ? (long) a << 32 | b : (long) b << 32 | a;
+    }
+
+    private static void run(ForkJoinPool pool, boolean parallel, int count, IntConsumer body) {
+        if (!parallel) {
+            for (int i = 0; i < count; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        try {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simplifying mesh", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Mesh simplification failed", e.getCause());
+        }
+    }
+}
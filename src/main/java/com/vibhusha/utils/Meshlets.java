@@ -0,0 +1,524 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.opengl.GL11;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// LOD 0 of a mesh split into meshlets: clusters of at most MAX_VERTICES vertices and MAX_TRIANGLES
+// triangles, each with a bounding sphere and a normal cone so whole clusters can be culled against
+// the frustum and by facing. Meshlets never cross submeshes and are stored in submesh order.
+//
+// Each meshlet lists its vertices (mesh vertex numbers) and its triangles as three local vertex
+// numbers; getIndexOffset/getIndexCount give its triangles as a contiguous range of the index list
+// writeIndices produces, which is what multi-draw culling draws from.
+//
+// Building sorts each submesh's triangles along a Morton curve of their centroids and cuts the order
+// into blocks that are clustered as separate fork-join tasks. Within a block, a meshlet grows greedily
+// from a seed triangle by the adjacent triangle adding the fewest new vertices, nearest its centre on
+// ties, until either limit is reached or no adjacent triangle is left.
+public class Meshlets {
+    public static final int MAX_VERTICES = 64;
+    public static final int MAX_TRIANGLES = 124;
+    // Per meshlet: sphere centre xyz and radius, cone axis xyz and cutoff
+    public static final int BOUNDS_FLOATS = 8;
+    private static final int BLOCK_TRIANGLES = 4096;
+    // Cones whose triangles spread further than this (cosine to the axis) are never culled by facing
+    private static final float MIN_CONE_DOT = 0.1f;
+    // A meshlet only takes a triangle it does not touch if its normal is this close to the meshlet's mean (cosine)
+    private static final float MIN_JUMP_FACING = 0.7f;
+
+    private final int[] ranges;       // Per meshlet: vertex offset, vertex count, triangle offset, triangle count
+    private final int[] vertices;
+    private final byte[] triangles;
+    private final float[] bounds;
+    private final int[] submeshStarts;  // First meshlet of each submesh, then the meshlet count
+
+    private Meshlets(int[] ranges, int[] vertices, byte[] triangles, float[] bounds, int[] submeshStarts) {
+        this.ranges = ranges;
+        this.vertices = vertices;
+        this.triangles = triangles;
+        this.bounds = bounds;
+        this.submeshStarts = submeshStarts;
+    }
+
+    // Clusters the LOD 0 range of every submesh of an encoded mesh
+    public static Meshlets fromBuffers(MeshBuffers mesh, ForkJoinPool pool) {
+        SubmeshTable submeshes = mesh.getSubmeshes();
+        int first = mesh.getLodOffsets()[0];
+        int[] offsets = new int[submeshes.getSubmeshCount()];
+        int[] counts = new int[offsets.length];
+        for (int s = 0; s < offsets.length; s++) {
+            offsets[s] = submeshes.getOffset(0, s) - first;
+            counts[s] = submeshes.getCount(0, s);
+        }
+        return build(mesh.decodePositions(), mesh.readIndices(first, mesh.getLodCounts()[0]), offsets, counts, pool);
+    }
+
+    // positions xyz per vertex; submesh s is the triangle list indices[offsets[s] .. offsets[s] + counts[s])
+    public static Meshlets build(float[] positions, int[] indices, int[] offsets, int[] counts, ForkJoinPool pool) {
+        int vertexCount = positions.length / 3;
+        int triangleCount = indices.length / 3;
+
+        // Triangles around each vertex
+        int[] adjacencyStarts = new int[vertexCount + 1];
+        for (int index : indices) {
+            adjacencyStarts[index + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyStarts[v + 1] += adjacencyStarts[v];
+        }
+        int[] adjacency = new int[indices.length];
+        int[] fill = Arrays.copyOf(adjacencyStarts, vertexCount);
+        for (int i = 0; i < indices.length; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+
+        // Morton order of the centroids within each submesh, cut into blocks
+        float[] box = positionBounds(positions);
+        int[] order = new int[triangleCount];
+        int[] blockOf = new int[triangleCount];
+        List<int[]> blocks = new ArrayList<>();  // start, end in order, submesh
+        int cursor = 0;
+        for (int s = 0; s < offsets.length; s++) {
+            int firstTriangle = offsets[s] / 3, submeshTriangles = counts[s] / 3;
+            long[] keys = new long[submeshTriangles];
+            for (int t = 0; t < submeshTriangles; t++) {
+                int triangle = firstTriangle + t;
+                keys[t] = (long) morton(positions, indices, triangle, box) << 32 | triangle;
+            }
+            Arrays.parallelSort(keys);
+            for (int start = 0; start < submeshTriangles; start += BLOCK_TRIANGLES) {
+                int end = Math.min(submeshTriangles, start + BLOCK_TRIANGLES);
+                for (int t = start; t < end; t++) {
+                    order[cursor + t] = (int) keys[t];
+                    blockOf[(int) keys[t]] = blocks.size();
+                }
+                blocks.add(new int[]{cursor + start, cursor + end, s});
+            }
+            cursor += submeshTriangles;
+        }
+
+        Block[] results = new Block[blocks.size()];
+        boolean[] emitted = new boolean[triangleCount];  // Each block only writes its own triangles
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<>();
+                for (int b = 0; b < results.length; b++) {
+                    int block = b;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            Block result = new Block(positions, indices, adjacencyStarts, adjacency, blockOf, emitted, block);
+                            result.cluster(order, blocks.get(block)[0], blocks.get(block)[1]);
+                            results[block] = result;
+                        }
+                    });
+                }
+                invokeAll(tasks);
+            }
+        });
+
+        // Concatenate in block order, which keeps the submeshes in order
+        int meshletCount = 0, vertexTotal = 0, triangleTotal = 0;
+        for (Block block : results) {
+            meshletCount += block.ranges.size() / 4;
+            vertexTotal += block.vertices.size();
+            triangleTotal += block.triangles.size() / 3;
+        }
+        int[] ranges = new int[meshletCount * 4];
+        int[] vertices = new int[vertexTotal];
+        byte[] triangles = new byte[triangleTotal * 3];
+        float[] bounds = new float[meshletCount * BOUNDS_FLOATS];
+        int[] submeshStarts = new int[offsets.length + 1];
+        int meshlet = 0, vertexBase = 0, triangleBase = 0;
+        for (int b = 0; b < results.length; b++) {
+            Block block = results[b];
+            int submesh = blocks.get(b)[2];
+            for (int s = submesh + 1; s <= offsets.length; s++) {
+                submeshStarts[s] = meshlet + block.ranges.size() / 4;
+            }
+            for (int m = 0; m < block.ranges.size() / 4; m++, meshlet++) {
+                ranges[meshlet * 4] = block.ranges.get(m * 4) + vertexBase;
+                ranges[meshlet * 4 + 1] = block.ranges.get(m * 4 + 1);
+                ranges[meshlet * 4 + 2] = block.ranges.get(m * 4 + 2) + triangleBase;
+                ranges[meshlet * 4 + 3] = block.ranges.get(m * 4 + 3);
+            }
+            System.arraycopy(block.vertices.array(), 0, vertices, vertexBase, block.vertices.size());
+            for (int i = 0; i < block.triangles.size(); i++) {
+                triangles[triangleBase * 3 + i] = (byte) block.triangles.get(i);
+            }
+            System.arraycopy(block.bounds.array(), 0, bounds, (meshlet - block.ranges.size() / 4) * BOUNDS_FLOATS, block.bounds.size());
+            vertexBase += block.vertices.size();
+            triangleBase += block.triangles.size() / 3;
+        }
+        return new Meshlets(ranges, vertices, triangles, bounds, submeshStarts);
+    }
+
+    private static float[] positionBounds(float[] positions) {
+        float[] box = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int i = 0; i < positions.length; i++) {
+            box[i % 3] = Math.min(box[i % 3], positions[i]);
+            box[3 + i % 3] = Math.max(box[3 + i % 3], positions[i]);
+        }
+        return box;
+    }
+
+    // 30-bit Morton code of the triangle's centroid within the mesh bounds
+    private static int morton(float[] positions, int[] indices, int triangle, float[] box) {
+        int code = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            float centre = (positions[indices[triangle * 3] * 3 + axis] + positions[indices[triangle * 3 + 1] * 3 + axis]
+                    + positions[indices[triangle * 3 + 2] * 3 + axis]) / 3;
+            float extent = box[3 + axis] - box[axis];
+            int cell = extent > 0 ? Math.min(1023, (int) ((centre - box[axis]) / extent * 1024)) : 0;
+            for (int bit = 0; bit < 10; bit++) {
+                code |= ((cell >>> bit) & 1) << (bit * 3 + axis);
+            }
+        }
+        return code;
+    }
+
+    public int getMeshletCount() {
+        return submeshStarts[submeshStarts.length - 1];
+    }
+
+    public int getSubmeshCount() {
+        return submeshStarts.length - 1;
+    }
+
+    // Meshlets of submesh s are getFirstMeshlet(s) .. getFirstMeshlet(s + 1) - 1
+    public int getFirstMeshlet(int submesh) {
+        return submeshStarts[submesh];
+    }
+
+    public int getVertexOffset(int meshlet) {
+        return ranges[meshlet * 4];
+    }
+
+    public int getVertexCount(int meshlet) {
+        return ranges[meshlet * 4 + 1];
+    }
+
+    public int getTriangleOffset(int meshlet) {
+        return ranges[meshlet * 4 + 2];
+    }
+
+    public int getTriangleCount(int meshlet) {
+        return ranges[meshlet * 4 + 3];
+    }
+
+    // First index of the meshlet in the writeIndices list
+    public int getIndexOffset(int meshlet) {
+        return ranges[meshlet * 4 + 2] * 3;
+    }
+
+    public int getIndexCount(int meshlet) {
+        return ranges[meshlet * 4 + 3] * 3;
+    }
+
+    // Mesh vertex numbers, getVertexCount(m) of them from getVertexOffset(m)
+    public int[] getVertices() {
+        return vertices;
+    }
+
+    // Three local vertex numbers (unsigned) per triangle, getTriangleCount(m) triangles from getTriangleOffset(m)
+    public byte[] getTriangles() {
+        return triangles;
+    }
+
+    // BOUNDS_FLOATS per meshlet, in model space
+    public float[] getBounds() {
+        return bounds;
+    }
+
+    public int getTotalTriangleCount() {
+        return triangles.length / 3;
+    }
+
+    // Every meshlet's triangles as mesh vertex numbers, in meshlet order, from byte offset on
+    public void writeIndices(ByteBuffer target, int offset, int indexType) {
+        int indexSize = indexType == GL11.GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES;
+        for (int meshlet = 0; meshlet < getMeshletCount(); meshlet++) {
+            int vertexOffset = getVertexOffset(meshlet);
+            for (int i = getIndexOffset(meshlet); i < getIndexOffset(meshlet) + getIndexCount(meshlet); i++) {
+                int index = vertices[vertexOffset + (triangles[i] & 0xFF)];
+                if (indexSize == Short.BYTES) {
+                    target.putShort(offset + i * indexSize, (short) index);
+                } else {
+                    target.putInt(offset + i * indexSize, index);
+                }
+            }
+        }
+    }
+
+    public long getByteCount() {
+        return (long) ranges.length * Integer.BYTES + (long) vertices.length * Integer.BYTES + triangles.length
+                + (long) bounds.length * Float.BYTES;
+    }
+
+    // Clusters one block of triangles; the output offsets are relative to the block
+    private static final class Block {
+        private final float[] positions;
+        private final int[] indices;
+        private final int[] adjacencyStarts;
+        private final int[] adjacency;
+        private final int[] blockOf;
+        private final boolean[] emitted;
+        private final int block;
+
+        private final IntList ranges = new IntList();
+        private final IntList vertices = new IntList();
+        private final IntList triangles = new IntList();
+        private final FloatList bounds = new FloatList();
+
+        // The meshlet being grown: its vertices, a small open-addressing map from vertex to local number
+        private final int[] local = new int[MAX_VERTICES];
+        private final int[] slots = new int[MAX_VERTICES * 4];  // vertex + 1, 0 when free
+        private final byte[] slotLocal = new byte[MAX_VERTICES * 4];
+        private int localCount;
+        private final int[] members = new int[MAX_TRIANGLES];
+        private int memberCount;
+        private float sumX, sumY, sumZ;  // Triangle centroids, for the nearest-first tie break
+        private float normalX, normalY, normalZ;  // Sum of unit face normals
+        private final float[] normal = new float[3];
+        private final IntList candidates = new IntList();
+
+        Block(float[] positions, int[] indices, int[] adjacencyStarts, int[] adjacency, int[] blockOf, boolean[] emitted, int block) {
+            this.positions = positions;
+            this.indices = indices;
+            this.adjacencyStarts = adjacencyStarts;
+            this.adjacency = adjacency;
+            this.blockOf = blockOf;
+            this.emitted = emitted;
+            this.block = block;
+        }
+
+        void cluster(int[] order, int start, int end) {
+            int next = start;  // Every triangle of the block before next is emitted
+            while (true) {
+                while (next < end && emitted[order[next]]) {
+                    next++;
+                }
+                if (next == end) {
+                    break;
+                }
+                add(order[next]);
+                while (memberCount < MAX_TRIANGLES) {
+                    int best = -1, bestNew = 4;
+                    float bestDistance = Float.MAX_VALUE;
+                    for (int c = candidates.size() - 1; c >= 0; c--) {
+                        int triangle = candidates.get(c);
+                        if (emitted[triangle]) {
+                            candidates.set(c, candidates.get(candidates.size() - 1));
+                            candidates.setSize(candidates.size() - 1);
+                            continue;
+                        }
+                        int added = newVertices(triangle);
+                        if (added > bestNew) {
+                            continue;
+                        }
+                        float distance = distanceToCentre(triangle);
+                        if (added < bestNew || distance < bestDistance) {
+                            best = triangle;
+                            bestNew = added;
+                            bestDistance = distance;
+                        }
+                    }
+                    if (best < 0) {
+                        // Nothing adjacent left: continue with the next triangle along the curve, which is
+                        // nearby, if it faces roughly the same way so the normal cone stays narrow
+                        while (next < end && emitted[order[next]]) {
+                            next++;
+                        }
+                        if (next == end || facing(order[next]) < MIN_JUMP_FACING) {
+                            break;
+                        }
+                        best = order[next];
+                        bestNew = newVertices(best);
+                    }
+                    if (localCount + bestNew > MAX_VERTICES) {
+                        break;
+                    }
+                    add(best);
+                }
+                finish();
+            }
+        }
+
+        private void add(int triangle) {
+            emitted[triangle] = true;
+            members[memberCount++] = triangle;
+            if (unitNormal(triangle)) {
+                normalX += normal[0];
+                normalY += normal[1];
+                normalZ += normal[2];
+            }
+            for (int k = 0; k < 3; k++) {
+                int vertex = indices[triangle * 3 + k];
+                sumX += positions[vertex * 3] / 3;
+                sumY += positions[vertex * 3 + 1] / 3;
+                sumZ += positions[vertex * 3 + 2] / 3;
+                if (localOf(vertex) >= 0) {
+                    continue;
+                }
+                int slot = slotOf(vertex);
+                slots[slot] = vertex + 1;
+                slotLocal[slot] = (byte) localCount;
+                local[localCount++] = vertex;
+                // Triangles of this block around the new vertex become candidates
+                for (int a = adjacencyStarts[vertex]; a < adjacencyStarts[vertex + 1]; a++) {
+                    int neighbour = adjacency[a];
+                    if (!emitted[neighbour] && blockOf[neighbour] == block) {
+                        candidates.add(neighbour);
+                    }
+                }
+            }
+        }
+
+        // Cosine between the triangle's normal and the meshlet's mean normal, -1 when either is undefined
+        private float facing(int triangle) {
+            float length = (float) Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+            if (length == 0 || !unitNormal(triangle)) {
+                return -1;
+            }
+            return (normal[0] * normalX + normal[1] * normalY + normal[2] * normalZ) / length;
+        }
+
+        // Into normal; false for a degenerate triangle
+        private boolean unitNormal(int triangle) {
+            int a = indices[triangle * 3] * 3, b = indices[triangle * 3 + 1] * 3, c = indices[triangle * 3 + 2] * 3;
+            float ux = positions[b] - positions[a], uy = positions[b + 1] - positions[a + 1], uz = positions[b + 2] - positions[a + 2];
+            float vx = positions[c] - positions[a], vy = positions[c + 1] - positions[a + 1], vz = positions[c + 2] - positions[a + 2];
+            float nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0) {
+                return false;
+            }
+            normal[0] = nx / length;
+            normal[1] = ny / length;
+            normal[2] = nz / length;
+            return true;
+        }
+
+        private int newVertices(int triangle) {
+            int added = 0;
+            for (int k = 0; k < 3; k++) {
+                if (localOf(indices[triangle * 3 + k]) < 0) {
+                    added++;
+                }
+            }
+            return added;
+        }
+
+        private float distanceToCentre(int triangle) {
+            float inverse = 1.0f / memberCount;
+            float dx = -sumX * inverse, dy = -sumY * inverse, dz = -sumZ * inverse;
+            for (int k = 0; k < 3; k++) {
+                int vertex = indices[triangle * 3 + k];
+                dx += positions[vertex * 3] / 3;
+                dy += positions[vertex * 3 + 1] / 3;
+                dz += positions[vertex * 3 + 2] / 3;
+            }
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        private int localOf(int vertex) {
+            int slot = slotOf(vertex);
+            return slots[slot] == 0 ? -1 : slotLocal[slot];
+        }
+
+        // The vertex's slot, or the free slot where it would go
+        private int slotOf(int vertex) {
+            int mask = slots.length - 1;
+            int slot = (vertex * 0x9E3779B1 >>> 16) & mask;
+            while (slots[slot] != 0 && slots[slot] != vertex + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void finish() {
+            ranges.add(vertices.size(), localCount);
+            ranges.add(triangles.size() / 3, memberCount);
+            for (int v = 0; v < localCount; v++) {
+                vertices.add(local[v]);
+            }
+            for (int t = 0; t < memberCount; t++) {
+                for (int k = 0; k < 3; k++) {
+                    triangles.add(localOf(indices[members[t] * 3 + k]));
+                }
+            }
+            addBounds();
+
+            Arrays.fill(slots, 0);
+            localCount = 0;
+            memberCount = 0;
+            sumX = sumY = sumZ = 0;
+            normalX = normalY = normalZ = 0;
+            candidates.clear();
+        }
+
+        // Sphere around the box of the vertices; cone around the mean of the unit face normals
+        private void addBounds() {
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+            for (int v = 0; v < localCount; v++) {
+                int p = local[v] * 3;
+                minX = Math.min(minX, positions[p]);
+                minY = Math.min(minY, positions[p + 1]);
+                minZ = Math.min(minZ, positions[p + 2]);
+                maxX = Math.max(maxX, positions[p]);
+                maxY = Math.max(maxY, positions[p + 1]);
+                maxZ = Math.max(maxZ, positions[p + 2]);
+            }
+            float cx = (minX + maxX) / 2, cy = (minY + maxY) / 2, cz = (minZ + maxZ) / 2;
+            float radiusSquared = 0;
+            for (int v = 0; v < localCount; v++) {
+                int p = local[v] * 3;
+                float dx = positions[p] - cx, dy = positions[p + 1] - cy, dz = positions[p + 2] - cz;
+                radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+            }
+
+            float[] normals = new float[memberCount * 3];
+            float ax = 0, ay = 0, az = 0;
+            int faces = 0;
+            for (int t = 0; t < memberCount; t++) {
+                if (!unitNormal(members[t])) {
+                    continue;  // Degenerate, faces nowhere
+                }
+                normals[faces * 3] = normal[0];
+                normals[faces * 3 + 1] = normal[1];
+                normals[faces * 3 + 2] = normal[2];
+                ax += normals[faces * 3];
+                ay += normals[faces * 3 + 1];
+                az += normals[faces * 3 + 2];
+                faces++;
+            }
+            float axisLength = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+            float cutoff = 1;  // Never culled by facing
+            if (axisLength > 0) {
+                ax /= axisLength;
+                ay /= axisLength;
+                az /= axisLength;
+                float minDot = 1;
+                for (int f = 0; f < faces; f++) {
+                    minDot = Math.min(minDot, normals[f * 3] * ax + normals[f * 3 + 1] * ay + normals[f * 3 + 2] * az);
+                }
+                // Sine of the widest normal's angle to the axis, the cosine of the back-facing cone around it
+                if (minDot > MIN_CONE_DOT) {
+                    cutoff = (float) Math.sqrt(1 - minDot * minDot);
+                }
+            }
+            bounds.add(cx, cy, cz);
+            bounds.add(Math.nextUp((float) Math.sqrt(radiusSquared)));
+            bounds.add(ax, ay, az);
+            bounds.add(cutoff);
+        }
+    }
+}
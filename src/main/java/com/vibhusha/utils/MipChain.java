@@ -0,0 +1,97 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+// Builds the mip chain of an sRGB RGBA8 image on the CPU. Each level is a 2x2 box filter of the one
+// above it, averaged in linear light (colour weighted by alpha so transparent texels do not bleed
+// dark fringes) and converted back to sRGB. Levels depend on each other, so the rows of each level
+// are split across the pool instead.
+public class MipChain {
+    private static final int ROWS_PER_TASK = 32;
+    private static final int PARALLEL_THRESHOLD = 256 * 256;
+    private static final int LINEAR_STEPS = 4095;
+
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+    private static final byte[] LINEAR_TO_SRGB = new byte[LINEAR_STEPS + 1];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            float c = i / 255.0f;
+            SRGB_TO_LINEAR[i] = c <= 0.04045f ? c / 12.92f : (float) Math.pow((c + 0.055f) / 1.055f, 2.4);
+        }
+        for (int i = 0; i <= LINEAR_STEPS; i++) {
+            float c = i / (float) LINEAR_STEPS;
+            float srgb = c <= 0.0031308f ? c * 12.92f : 1.055f * (float) Math.pow(c, 1.0 / 2.4) - 0.055f;
+            LINEAR_TO_SRGB[i] = (byte) Math.round(srgb * 255.0f);
+        }
+    }
+
+    // Levels including the base: 1 + floor(log2(max(width, height)))
+    public static int levelCount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    public static TextureImage[] generate(TextureImage base) {
+        return generate(base, ForkJoinPool.commonPool());
+    }
+
+    // Levels 1..n in off-heap buffers, level 0 is the base image itself
+    public static TextureImage[] generate(TextureImage base, ForkJoinPool pool) {
+        int count = levelCount(base.getWidth(), base.getHeight()) - 1;
+        TextureImage[] levels = new TextureImage[count];
+        TextureImage source = base;
+        for (int i = 0; i < count; i++) {
+            int width = Math.max(1, source.getWidth() / 2);
+            int height = Math.max(1, source.getHeight() / 2);
+            ByteBuffer pixels = MemoryUtil.memAlloc(width * height * 4);
+            downsample(source.getPixels(), source.getWidth(), source.getHeight(), pixels, pool);
+            levels[i] = new TextureImage(width, height, pixels);
+            source = levels[i];
+        }
+        return levels;
+    }
+
+    // dst receives max(1, width / 2) x max(1, height / 2) pixels; an odd last row or column is dropped
+    public static void downsample(ByteBuffer src, int width, int height, ByteBuffer dst, ForkJoinPool pool) {
+        int dstWidth = Math.max(1, width / 2);
+        int dstHeight = Math.max(1, height / 2);
+        int tasks = (dstHeight + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+        TextureConverter.run(pool, (long) width * height >= PARALLEL_THRESHOLD, tasks, task -> {
+            byte[] row = new byte[dstWidth * 4];
+            int end = Math.min(dstHeight, (task + 1) * ROWS_PER_TASK);
+            for (int y = task * ROWS_PER_TASK; y < end; y++) {
+                int row0 = Math.min(2 * y, height - 1) * width * 4;
+                int row1 = Math.min(2 * y + 1, height - 1) * width * 4;
+                for (int x = 0; x < dstWidth; x++) {
+                    int col0 = Math.min(2 * x, width - 1) * 4;
+                    int col1 = Math.min(2 * x + 1, width - 1) * 4;
+                    filter(src, row0 + col0, row0 + col1, row1 + col0, row1 + col1, row, x * 4);
+                }
+                dst.put(y * dstWidth * 4, row, 0, row.length);
+            }
+        });
+    }
+
+    private static void filter(ByteBuffer src, int p0, int p1, int p2, int p3, byte[] out, int o) {
+        float a0 = (src.get(p0 + 3) & 0xFF) / 255.0f;
+        float a1 = (src.get(p1 + 3) & 0xFF) / 255.0f;
+        float a2 = (src.get(p2 + 3) & 0xFF) / 255.0f;
+        float a3 = (src.get(p3 + 3) & 0xFF) / 255.0f;
+        float alphaSum = a0 + a1 + a2 + a3;
+        if (alphaSum == 0) {
+            // Fully transparent, fall back to an unweighted average
+            a0 = a1 = a2 = a3 = 1.0f;
+            alphaSum = 4.0f;
+        }
+        for (int c = 0; c < 3; c++) {
+            float linear = (SRGB_TO_LINEAR[src.get(p0 + c) & 0xFF] * a0 + SRGB_TO_LINEAR[src.get(p1 + c) & 0xFF] * a1
+                    + SRGB_TO_LINEAR[src.get(p2 + c) & 0xFF] * a2 + SRGB_TO_LINEAR[src.get(p3 + c) & 0xFF] * a3) / alphaSum;
+            out[o + c] = LINEAR_TO_SRGB[(int) (linear * LINEAR_STEPS + 0.5f)];
+        }
+        int alpha = (src.get(p0 + 3) & 0xFF) + (src.get(p1 + 3) & 0xFF) + (src.get(p2 + 3) & 0xFF) + (src.get(p3 + 3) & 0xFF);
+        out[o + 3] = (byte) ((alpha + 2) >> 2);
+    }
+}
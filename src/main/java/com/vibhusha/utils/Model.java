@@ -1,44 +1,250 @@
 package com.vibhusha.utils;
 
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Model implements GpuResource {
+    private static final int RENDER_SCOPE = Profiler.scope("Model.render");
 
-public class Model {
     private final int vaoId;
     private final int vboId;
     private final int eboId;
     private final int vertexCount;
+    private final int indexType;
+    private final VertexFormat format;
+    private final float[] decode;
+    private final float[] bounds;
+    private final int[] lodOffsets;
+    private final int[] lodCounts;
+    private final SubmeshTable submeshes;
+    private long byteSize;
+
+    // Per submesh, set when the model was loaded with MTL materials
+    private Texture[] submeshTextures;
+    private float[] submeshColors;  // r, g, b, a
+    private final List<Texture> ownedTextures = new ArrayList<>();
+    private CollisionMesh collisionMesh;
+    private Meshlets meshlets;
+    private long meshletIndexBase;  // Byte offset of the meshlet index list in the index buffer
 
     public Model(int vaoId, int vboId, int eboId, int vertexCount) {
         this.vaoId = vaoId;
         this.vboId = vboId;
         this.eboId = eboId;
         this.vertexCount = vertexCount;
+        this.indexType = GL11.GL_UNSIGNED_INT;
+        this.format = VertexFormat.FULL;
+        this.decode = VertexEncoder.IDENTITY_DECODE;
+        this.bounds = new float[6];
+        this.lodOffsets = new int[]{0};
+        this.lodCounts = new int[]{vertexCount};
+        this.submeshes = SubmeshTable.single(lodOffsets, lodCounts);
+        this.byteSize = 0;  // Unknown, the buffers were filled by the caller
+    }
+
+    // Takes the index type, vertex format, bounds and LOD ranges from the uploaded mesh
+    public Model(int vaoId, int vboId, int eboId, MeshBuffers mesh) {
+        this.vaoId = vaoId;
+        this.vboId = vboId;
+        this.eboId = eboId;
+        this.vertexCount = mesh.getLodCounts()[0];
+        this.indexType = mesh.getIndexType();
+        this.format = mesh.getFormat();
+        this.decode = mesh.getDecode();
+        this.bounds = mesh.getBounds();
+        this.lodOffsets = mesh.getLodOffsets();
+        this.lodCounts = mesh.getLodCounts();
+        this.submeshes = mesh.getSubmeshes();
+        this.byteSize = mesh.getVertexData().remaining() + mesh.getIndexData().remaining();
+    }
+
+    // The model takes ownership of the textures; entries may be null (untextured) and may repeat
+    void setMaterials(MtlMaterial[] materials, Texture[] textures) {
+        int count = submeshes.getSubmeshCount();
+        submeshTextures = textures.clone();
+        submeshColors = new float[count * 4];
+        for (int s = 0; s < count; s++) {
+            MtlMaterial material = materials[s];
+            for (int c = 0; c < 3; c++) {
+                submeshColors[s * 4 + c] = material == null ? 1.0f : material.getDiffuse()[c];
+            }
+            submeshColors[s * 4 + 3] = material == null ? 1.0f : material.getOpacity();
+        }
+        for (Texture texture : textures) {
+            if (texture != null && !ownedTextures.contains(texture)) {
+                ownedTextures.add(texture);
+                byteSize += texture.getByteSize();
+            }
+        }
+    }
+
+    void setCollisionMesh(CollisionMesh collisionMesh) {
+        this.collisionMesh = collisionMesh;
+    }
+
+    // Model-space geometry for picking and collision, null unless loaded with MeshOptions.withCollisionMesh()
+    public CollisionMesh getCollisionMesh() {
+        return collisionMesh;
+    }
+
+    void setMeshlets(Meshlets meshlets, long indexBase, long indexBytes) {
+        this.meshlets = meshlets;
+        this.meshletIndexBase = indexBase;
+        byteSize += indexBytes;
+    }
+
+    // Null unless loaded with MeshOptions.withMeshlets()
+    public Meshlets getMeshlets() {
+        return meshlets;
+    }
+
+    // True when submeshes carry their own textures and colours and must be drawn one by one
+    public boolean hasMaterials() {
+        return submeshColors != null;
+    }
+
+    public int getSubmeshCount() {
+        return submeshes.getSubmeshCount();
+    }
+
+    public SubmeshTable getSubmeshes() {
+        return submeshes;
+    }
+
+    // Null when the submesh has no texture of its own
+    public Texture getSubmeshTexture(int submesh) {
+        return submeshTextures == null ? null : submeshTextures[submesh];
+    }
+
+    // Diffuse colour and opacity from the MTL file, white without materials
+    public float[] getSubmeshColors() {
+        return submeshColors;
+    }
+
+    public int getLodCount() {
+        return lodOffsets.length;
+    }
+
+    // Model-space bounds: minX, minY, minZ, maxX, maxY, maxZ
+    public float[] getBounds() {
+        return bounds;
+    }
+
+    public VertexFormat getFormat() {
+        return format;
+    }
+
+    public VertexLayout getLayout() {
+        return format.createLayout();
+    }
+
+    // Uploads the dequantization parameters vertex.glsl needs for this model's vertex format
+    public void applyDecode(StandardUniforms uniforms) {
+        uniforms.setDecode(decode, format.getNormalEncoding() == VertexFormat.NormalEncoding.OCTAHEDRAL);
     }
 
     public void render() {
+        render(0);
+    }
+
+    public void render(int lod) {
+        Profiler.begin(RENDER_SCOPE);
+        // The VAO already records which attributes are enabled
+        bind();
+
+        // Outside the render queue there is no instance buffer, use an identity model matrix (locations 3-6)
+        for (int column = 0; column < 4; column++) {
+            GL20.glDisableVertexAttribArray(3 + column);
+            GL20.glVertexAttrib4f(3 + column, column == 0 ? 1 : 0, column == 1 ? 1 : 0, column == 2 ? 1 : 0, column == 3 ? 1 : 0);
+        }
+        if (hasMaterials()) {
+            for (int s = 0; s < submeshes.getSubmeshCount(); s++) {
+                if (submeshTextures[s] != null) {
+                    submeshTextures[s].bind();
+                }
+                drawSubmesh(lod, s);
+            }
+        } else {
+            draw(lod);
+        }
+        GL30.glBindVertexArray(0);
+        Profiler.end();
+    }
+
+    public void bind() {
         GL30.glBindVertexArray(vaoId);
+        Profiler.count(Profiler.STATE_CHANGES, 1);
+    }
 
-        // Enable all the attributes (Positions: 0, Textures: 1, Normals: 2)
-        GL20.glEnableVertexAttribArray(0);
-        GL20.glEnableVertexAttribArray(1);
-        GL20.glEnableVertexAttribArray(2);
+    // Draws one LOD with the VAO already bound
+    public void draw(int lod) {
+        int level = Math.min(lod, lodOffsets.length - 1);
+        GL30.glDrawElements(GL30.GL_TRIANGLES, lodCounts[level], indexType, lodOffsets[level] * indexSize());
+        Profiler.count(Profiler.DRAW_CALLS, 1);
+    }
 
-        // Draw the elements
-        GL30.glDrawElements(GL30.GL_TRIANGLES, vertexCount, GL30.GL_UNSIGNED_INT, 0);
+    // Draws instanceCount copies of one LOD with the VAO already bound
+    public void drawInstanced(int lod, int instanceCount) {
+        int level = Math.min(lod, lodOffsets.length - 1);
+        GL31.glDrawElementsInstanced(GL30.GL_TRIANGLES, lodCounts[level], indexType, lodOffsets[level] * indexSize(), instanceCount);
+        Profiler.count(Profiler.DRAW_CALLS, 1);
+    }
 
-        // Disable attributes and unbind
-        GL20.glDisableVertexAttribArray(0);
-        GL20.glDisableVertexAttribArray(1);
-        GL20.glDisableVertexAttribArray(2);
-        GL30.glBindVertexArray(0);
+    // One material range of a LOD with the VAO already bound
+    public void drawSubmesh(int lod, int submesh) {
+        int level = Math.min(lod, lodOffsets.length - 1);
+        GL30.glDrawElements(GL30.GL_TRIANGLES, submeshes.getCount(level, submesh), indexType, submeshes.getOffset(level, submesh) * indexSize());
+        Profiler.count(Profiler.DRAW_CALLS, 1);
+    }
+
+    public void drawSubmeshInstanced(int lod, int submesh, int instanceCount) {
+        int level = Math.min(lod, lodOffsets.length - 1);
+        GL31.glDrawElementsInstanced(GL30.GL_TRIANGLES, submeshes.getCount(level, submesh), indexType,
+                submeshes.getOffset(level, submesh) * indexSize(), instanceCount);
+        Profiler.count(Profiler.DRAW_CALLS, 1);
+    }
+
+    // Draws index ranges of the meshlet index list with the VAO already bound, offsets from getMeshletIndexOffset
+    public void drawMeshlets(IntBuffer counts, PointerBuffer offsets) {
+        GL14.glMultiDrawElements(GL11.GL_TRIANGLES, counts, indexType, offsets);
+        Profiler.count(Profiler.DRAW_CALLS, 1);
+    }
+
+    // Byte offset in the index buffer of meshlet index list position first
+    public long getMeshletIndexOffset(int first) {
+        return meshletIndexBase + first * indexSize();
+    }
+
+    private long indexSize() {
+        return indexType == GL11.GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES;
+    }
+
+    @Override
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    public int getVaoId() {
+        return vaoId;
     }
 
+    @Override
     public void cleanup() {
         // Delete VAO, VBO, and EBO
         GL30.glDeleteVertexArrays(vaoId);
         GL15.glDeleteBuffers(vboId);
         GL15.glDeleteBuffers(eboId);
+        for (Texture texture : ownedTextures) {
+            texture.cleanup();
+        }
     }
 }
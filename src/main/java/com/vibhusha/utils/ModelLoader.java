@@ -1,133 +1,333 @@
 package com.vibhusha.utils;
 
+import lombok.extern.slf4j.Slf4j;
 import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.util.ArrayList;
-import java.util.List;
-
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
+@Slf4j
 public class ModelLoader {
+    // Files at least this large are parsed on all cores
+    private static final long PARALLEL_THRESHOLD = 32L << 20;
 
     public static Model loadOBJ(String filePath) throws IOException {
-        InputStream inputStream = ModelLoader.class.getClassLoader().getResourceAsStream(filePath);
-        if (inputStream == null) {
-            throw new IOException("OBJ file not found: " + filePath);
+        return loadOBJ(filePath, MeshOptions.DEFAULT);
+    }
+
+    public static Model loadOBJ(String filePath, VertexFormat format) throws IOException {
+        return loadOBJ(filePath, new MeshOptions(format));
+    }
+
+    public static Model loadOBJ(String filePath, MeshOptions options) throws IOException {
+        ModelSource source = loadModelSource(filePath, options);
+        try {
+            return createOpenGLModel(source);
+        } finally {
+            source.free();
+        }
+    }
+
+    // Mesh, MTL materials and decoded textures, safe to call off the GL thread. A missing library or
+    // texture is logged and leaves that submesh untextured rather than failing the model.
+    public static ModelSource loadModelSource(String filePath, MeshOptions options) throws IOException {
+        MeshBuffers mesh = loadMeshBuffers(filePath, options);
+        SubmeshTable submeshes = mesh.getSubmeshes();
+        Map<String, MtlMaterial> library = new HashMap<>();
+        for (String name : submeshes.getLibraries()) {
+            String libraryPath = resolveRelative(filePath, name);
+            try {
+                library.putAll(readMTL(libraryPath));
+            } catch (IOException e) {
+                log.warn(String.format("Could not read material library %s: %s", libraryPath, e.getMessage()));
+            }
+        }
+
+        int count = submeshes.getSubmeshCount();
+        MtlMaterial[] materials = new MtlMaterial[count];
+        TextureImage[] images = new TextureImage[count];
+        Map<String, TextureImage> decoded = new HashMap<>();
+        for (int s = 0; s < count; s++) {
+            materials[s] = library.get(submeshes.getMaterial(s));
+            String map = materials[s] == null ? null : materials[s].getDiffuseMap();
+            if (map == null) {
+                continue;
+            }
+            if (!decoded.containsKey(map)) {
+                try {
+                    decoded.put(map, Texture.decode(map));
+                } catch (IOException e) {
+                    log.warn(String.format("Could not load texture %s of material %s: %s", map, materials[s].getName(), e.getMessage()));
+                    decoded.put(map, null);
+                }
+            }
+            images[s] = decoded.get(map);
+        }
+        CollisionMesh collision = null;
+        if (options.keepsCollisionMesh()) {
+            long start = System.nanoTime();
+            collision = CollisionMesh.fromBuffers(mesh, ForkJoinPool.commonPool());
+            log.info(String.format("Built collision BVH for %s: %d triangles, %d nodes, depth %d in %.1f ms", filePath,
+                    collision.getTriangleCount(), collision.getBvh().getNodeCount(), collision.getBvh().getDepth(),
+                    (System.nanoTime() - start) / 1e6));
         }
+        Meshlets meshlets = null;
+        if (options.buildsMeshlets()) {
+            long start = System.nanoTime();
+            meshlets = Meshlets.fromBuffers(mesh, ForkJoinPool.commonPool());
+            log.info(String.format("Split %s into %d meshlets of %.1f triangles on average in %.1f ms", filePath, meshlets.getMeshletCount(),
+                    meshlets.getTotalTriangleCount() / (double) Math.max(1, meshlets.getMeshletCount()), (System.nanoTime() - start) / 1e6));
+        }
+        return new ModelSource(mesh, materials, images, collision, meshlets);
+    }
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        String line;
-
-        List<float[]> vertices = new ArrayList<>();
-        List<float[]> textures = new ArrayList<>();
-        List<float[]> normals = new ArrayList<>();
-        List<int[]> faces = new ArrayList<>();
-
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.split(" ");
-            if (parts.length < 2) continue;
-
-            switch (parts[0]) {
-                case "v": // Vertex position
-                    vertices.add(new float[]{Float.parseFloat(parts[1]), Float.parseFloat(parts[2]), Float.parseFloat(parts[3])});
-                    break;
-                case "vt": // Texture coordinates
-                    textures.add(new float[]{Float.parseFloat(parts[1]), Float.parseFloat(parts[2])});
-                    break;
-                case "vn": // Vertex normals
-                    normals.add(new float[]{Float.parseFloat(parts[1]), Float.parseFloat(parts[2]), Float.parseFloat(parts[3])});
-                    break;
-                case "f": // Face
-                    int[] face = new int[9];
+    // Only the statements the renderer uses: newmtl, Kd, d/Tr and map_Kd
+    public static Map<String, MtlMaterial> readMTL(String filePath) throws IOException {
+        InputStream stream = ModelLoader.class.getClassLoader().getResourceAsStream(filePath);
+        if (stream == null) {
+            throw new IOException("MTL file not found: " + filePath);
+        }
+        Map<String, MtlMaterial> materials = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            MtlMaterial current = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String statement = (comment < 0 ? line : line.substring(0, comment)).trim();
+                String[] tokens = statement.split("\\s+");
+                if (tokens[0].equals("newmtl") && tokens.length > 1) {
+                    current = new MtlMaterial(statement.substring("newmtl".length()).trim());
+                    materials.put(current.getName(), current);
+                } else if (current == null) {
+                    continue;
+                } else if (tokens[0].equals("Kd") && tokens.length >= 4) {
                     for (int i = 0; i < 3; i++) {
-                        String[] vertexData = parts[i + 1].split("/");
-                        face[i * 3] = Integer.parseInt(vertexData[0]) - 1;  // Vertex index
-                        face[i * 3 + 1] = Integer.parseInt(vertexData[1]) - 1;  // Texture index
-                        face[i * 3 + 2] = Integer.parseInt(vertexData[2]) - 1;  // Normal index
+                        current.diffuse[i] = parseMtlFloat(tokens[i + 1], filePath);
                     }
-                    faces.add(face);
-                    break;
+                } else if (tokens[0].equals("d") && tokens.length >= 2) {
+                    current.opacity = parseMtlFloat(tokens[tokens.length - 1], filePath);
+                } else if (tokens[0].equals("Tr") && tokens.length >= 2) {
+                    current.opacity = 1.0f - parseMtlFloat(tokens[tokens.length - 1], filePath);
+                } else if (tokens[0].equals("map_Kd") && tokens.length >= 2) {
+                    // Options such as -s or -bm come first, the file name is last
+                    current.diffuseMap = resolveRelative(filePath, tokens[tokens.length - 1]);
+                }
             }
         }
-        reader.close();
+        return materials;
+    }
 
-        return processModelData(vertices, textures, normals, faces);
+    private static float parseMtlFloat(String token, String filePath) throws IOException {
+        try {
+            return Float.parseFloat(token);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed MTL number '" + token + "' in " + filePath, e);
+        }
     }
 
-    private static Model processModelData(List<float[]> vertices, List<float[]> textures, List<float[]> normals, List<int[]> faces) {
-        List<Float> vertexData = new ArrayList<>();
-        List<Integer> indices = new ArrayList<>();
+    // Resource path of a file named relative to another resource, as mtllib and map_Kd are
+    static String resolveRelative(String resourcePath, String name) {
+        Deque<String> parts = new ArrayDeque<>();
+        String[] base = resourcePath.split("/");
+        for (int i = 0; i < base.length - 1; i++) {
+            parts.addLast(base[i]);
+        }
+        for (String part : name.replace('\\', '/').split("/")) {
+            if (part.equals("..") && !parts.isEmpty()) {
+                parts.removeLast();
+            } else if (!part.isEmpty() && !part.equals(".")) {
+                parts.addLast(part);
+            }
+        }
+        return String.join("/", parts);
+    }
 
-        for (int[] face : faces) {
-            for (int i = 0; i < 3; i++) {
-                int vertexIndex = face[i * 3];
-                int textureIndex = face[i * 3 + 1];
-                int normalIndex = face[i * 3 + 2];
+    // Everything up to the GPU upload, safe to call off the GL thread
+    public static MeshBuffers loadMeshBuffers(String filePath, MeshOptions options) throws IOException {
+        Path file = resolveFile(filePath);
+        MeshCache cache = MeshCache.getDefault();
+        if (file == null || cache == null) {
+            return buildMeshBuffers(readOBJ(filePath), options, filePath);
+        }
+        return loadMeshBuffers(file, filePath, options, cache);
+    }
 
-                float[] vertex = vertices.get(vertexIndex);
-                float[] texture = textures.get(textureIndex);
-                float[] normal = normals.get(normalIndex);
+    static MeshBuffers loadMeshBuffers(Path file, String filePath, MeshOptions options, MeshCache cache) throws IOException {
+        // Precompiled mesh for this exact source content, uploaded straight from the mapping
+        byte[] hash = MeshCache.hash(file);
+        MeshBuffers mesh = cache.load(file, options, hash);
+        if (mesh != null) {
+            log.info("Loaded " + filePath + " from mesh cache");
+            return mesh;
+        }
 
-                vertexData.add(vertex[0]);
-                vertexData.add(vertex[1]);
-                vertexData.add(vertex[2]);
-                vertexData.add(texture[0]);
-                vertexData.add(texture[1]);
-                vertexData.add(normal[0]);
-                vertexData.add(normal[1]);
-                vertexData.add(normal[2]);
+        mesh = buildMeshBuffers(readOBJ(file), options, filePath);
+        try {
+            cache.store(file, options, hash, mesh);
+        } catch (IOException e) {
+            log.warn(String.format("Could not write mesh cache entry for %s: %s", filePath, e));
+        }
+        return mesh;
+    }
 
-                indices.add(indices.size());
+    public static ObjData readOBJ(String filePath) throws IOException {
+        Path file = resolveFile(filePath);
+        if (file != null) {
+            return readOBJ(file);
+        }
+
+        // Not an unpacked file (e.g. inside a jar), stream it
+        URL url = ModelLoader.class.getClassLoader().getResource(filePath);
+        try (ReadableByteChannel channel = Channels.newChannel(url.openStream())) {
+            return ObjParser.parse(channel);
+        }
+    }
+
+    public static ObjData readOBJ(Path file) throws IOException {
+        long startTime = System.nanoTime();
+        long bytes = Files.size(file);
+        int threads = 1;
+        ObjData data;
+
+        if (bytes >= PARALLEL_THRESHOLD) {
+            threads = ForkJoinPool.commonPool().getParallelism();
+            data = ParallelObjParser.parse(file);
+        } else {
+            try (ReadableByteChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                data = ObjParser.parse(channel);
             }
         }
 
-        return createOpenGLModel(vertexData, indices);
+        double millis = (System.nanoTime() - startTime) / 1_000_000.0;
+        log.info(String.format("Parsed %s: %.1f MB in %.1f ms (%.0f MB/s, %d thread(s))",
+                file.getFileName(), bytes / 1048576.0, millis, bytes / 1048576.0 / (millis / 1000.0), threads));
+        return data;
     }
 
-    private static Model createOpenGLModel(List<Float> vertexData, List<Integer> indices) {
-        int vaoId = GL30.glGenVertexArrays();
-        GL30.glBindVertexArray(vaoId);
+    // The resource as a file on disk, or null when it can only be read as a stream
+    static Path resolveFile(String filePath) throws IOException {
+        URL url = ModelLoader.class.getClassLoader().getResource(filePath);
+        if (url == null) {
+            throw new IOException("OBJ file not found: " + filePath);
+        }
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid OBJ resource path: " + filePath, e);
+        }
+    }
 
-        // Convert lists to buffers
-        FloatBuffer vertexBuffer = BufferUtils.createFloatBuffer(vertexData.size());
-        vertexData.forEach(vertexBuffer::put);
-        vertexBuffer.flip();
+    // Indexes, optionally simplifies into a LOD chain, and encodes parsed OBJ data
+    static MeshBuffers buildMeshBuffers(ObjData data, MeshOptions options, String name) throws IOException {
+        MeshData mesh = MeshBuilder.build(data);
+        log.info(String.format("Built indexed mesh %s: %d corners -> %d vertices, ACMR %.3f -> %.3f", name,
+                data.getCornerCount(), mesh.getVertexCount(), mesh.getAcmrBefore(), mesh.getAcmrAfter()));
 
-        IntBuffer indexBuffer = BufferUtils.createIntBuffer(indices.size());
-        indices.forEach(indexBuffer::put);
-        indexBuffer.flip();
+        if (options.hasLods()) {
+            long startTime = System.nanoTime();
+            mesh = MeshSimplifier.buildLodChain(mesh, options.getLodRatios(), ForkJoinPool.commonPool());
+            StringBuilder triangles = new StringBuilder();
+            for (int count : mesh.getLodCounts()) {
+                triangles.append(triangles.length() == 0 ? "" : "/").append(count / 3);
+            }
+            log.info(String.format("Simplified %s into LOD triangles %s in %.1f ms", name, triangles,
+                    (System.nanoTime() - startTime) / 1_000_000.0));
+        }
+
+        VertexFormat format = options.getFormat();
+        MeshBuffers encoded = VertexEncoder.encode(mesh, format);
+        if (!format.equals(VertexFormat.FULL)) {
+            log.info(String.format("Encoded %s as %s (%d -> %d bytes per vertex), max error %s", name, format,
+                    VertexFormat.FULL.getStride(), format.getStride(), VertexEncoder.measureError(mesh, encoded)));
+        }
+        return encoded;
+    }
+
+    static Model createOpenGLModel(MeshBuffers mesh) {
+        return createOpenGLModel(mesh, null);
+    }
+
+    // With meshlets, their index list follows the mesh's own indices in the same index buffer
+    static Model createOpenGLModel(MeshBuffers mesh, Meshlets meshlets) {
+        int vaoId = GL30.glGenVertexArrays();
+        GL30.glBindVertexArray(vaoId);
 
         // Create and bind VBO
         int vboId = GL15.glGenBuffers();
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboId);
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertexBuffer, GL15.GL_STATIC_DRAW);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, mesh.getVertexData(), GL15.GL_STATIC_DRAW);
 
         // Create and bind EBO (index buffer)
         int eboId = GL15.glGenBuffers();
         GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, eboId);
-        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer, GL15.GL_STATIC_DRAW);
+        ByteBuffer meshletIndices = null;
+        if (meshlets == null) {
+            GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, mesh.getIndexData(), GL15.GL_STATIC_DRAW);
+        } else {
+            int indexSize = mesh.getIndexType() == GL11.GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES;
+            meshletIndices = BufferUtils.createByteBuffer(meshlets.getTotalTriangleCount() * 3 * indexSize);
+            meshlets.writeIndices(meshletIndices, 0, mesh.getIndexType());
+            GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, mesh.getIndexData().remaining() + meshletIndices.remaining(), GL15.GL_STATIC_DRAW);
+            GL15.glBufferSubData(GL15.GL_ELEMENT_ARRAY_BUFFER, 0, mesh.getIndexData());
+            GL15.glBufferSubData(GL15.GL_ELEMENT_ARRAY_BUFFER, mesh.getIndexData().remaining(), meshletIndices);
+        }
+        Profiler.count(Profiler.UPLOADED_BYTES, mesh.getVertexData().remaining() + mesh.getIndexData().remaining()
+                + (meshletIndices == null ? 0 : meshletIndices.remaining()));
 
         // Set vertex attribute pointers
-        int stride = 8 * Float.BYTES;
-        GL20.glVertexAttribPointer(0, 3, GL15.GL_FLOAT, false, stride, 0); // Positions
-        GL20.glEnableVertexAttribArray(0);
-        GL20.glVertexAttribPointer(1, 2, GL15.GL_FLOAT, false, stride, 3 * Float.BYTES); // Texture Coords
-        GL20.glEnableVertexAttribArray(1);
-        GL20.glVertexAttribPointer(2, 3, GL15.GL_FLOAT, false, stride, 5 * Float.BYTES); // Normals
-        GL20.glEnableVertexAttribArray(2);
+        mesh.getLayout().apply();
 
         // Unbind buffers
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
         GL30.glBindVertexArray(0);
 
-        return new Model(vaoId, vboId, eboId, indices.size());
+        Model model = new Model(vaoId, vboId, eboId, mesh);
+        if (meshlets != null) {
+            model.setMeshlets(meshlets, mesh.getIndexData().remaining(), meshletIndices.remaining());
+        }
+        return model;
+    }
+
+    // GL thread only. The caller keeps ownership of the source's staging buffers.
+    static Model createOpenGLModel(ModelSource source) {
+        Model model = createOpenGLModel(source.getMesh(), source.getMeshlets());
+        TextureImage[] images = source.getImages();
+        Texture[] textures = new Texture[images.length];
+        Map<TextureImage, Texture> uploaded = new IdentityHashMap<>();
+        for (int s = 0; s < images.length; s++) {
+            if (images[s] != null) {
+                textures[s] = uploaded.computeIfAbsent(images[s], Texture::new);
+            }
+        }
+        model.setMaterials(source.getMaterials(), textures);
+        if (source.getCollisionMesh() != null) {
+            model.setCollisionMesh(source.getCollisionMesh());
+        }
+        return model;
     }
 }
@@ -0,0 +1,71 @@
+package com.vibhusha.utils;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+// A model's mesh plus its MTL materials and their decoded textures, everything up to the GPU upload.
+// Both arrays are indexed by submesh; a texture shared by several materials is decoded once.
+public class ModelSource {
+    private final MeshBuffers mesh;
+    private final MtlMaterial[] materials;
+    private final TextureImage[] images;
+    private final CollisionMesh collisionMesh;
+    private final Meshlets meshlets;
+
+    public ModelSource(MeshBuffers mesh, MtlMaterial[] materials, TextureImage[] images, CollisionMesh collisionMesh, Meshlets meshlets) {
+        this.mesh = mesh;
+        this.materials = materials;
+        this.images = images;
+        this.collisionMesh = collisionMesh;
+        this.meshlets = meshlets;
+    }
+
+    public MeshBuffers getMesh() {
+        return mesh;
+    }
+
+    // Null where the submesh's material is not defined in any MTL library
+    public MtlMaterial[] getMaterials() {
+        return materials;
+    }
+
+    // Null where the submesh is untextured or its texture failed to load
+    public TextureImage[] getImages() {
+        return images;
+    }
+
+    // Null unless the model was loaded with MeshOptions.withCollisionMesh()
+    public CollisionMesh getCollisionMesh() {
+        return collisionMesh;
+    }
+
+    // Null unless the model was loaded with MeshOptions.withMeshlets()
+    public Meshlets getMeshlets() {
+        return meshlets;
+    }
+
+    public long getByteCount() {
+        long bytes = mesh.getVertexData().remaining() + mesh.getIndexData().remaining();
+        for (TextureImage image : distinctImages()) {
+            bytes += image.getByteCount();
+        }
+        return bytes;
+    }
+
+    public void free() {
+        for (TextureImage image : distinctImages()) {
+            image.free();
+        }
+    }
+
+    private Set<TextureImage> distinctImages() {
+        Set<TextureImage> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TextureImage image : images) {
+            if (image != null) {
+                distinct.add(image);
+            }
+        }
+        return distinct;
+    }
+}
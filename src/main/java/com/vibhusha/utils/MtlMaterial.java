@@ -0,0 +1,32 @@
+package com.vibhusha.utils;
+
+// One newmtl entry of an MTL library. Only what the forward shader uses is kept: the diffuse
+// colour, dissolve and the diffuse texture, resolved to a resource path next to the MTL file.
+public class MtlMaterial {
+    private final String name;
+    final float[] diffuse = {1.0f, 1.0f, 1.0f};
+    float opacity = 1.0f;
+    String diffuseMap;
+
+    public MtlMaterial(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // r, g, b
+    public float[] getDiffuse() {
+        return diffuse;
+    }
+
+    public float getOpacity() {
+        return opacity;
+    }
+
+    // Resource path of map_Kd, or null when the material is untextured
+    public String getDiffuseMap() {
+        return diffuseMap;
+    }
+}
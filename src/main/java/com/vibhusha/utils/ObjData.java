@@ -0,0 +1,100 @@
+package com.vibhusha.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Raw OBJ attribute streams as parsed from disk, before any vertex assembly
+public class ObjData {
+    final FloatList positions = new FloatList(1024);  // x, y, z
+    final FloatList texCoords = new FloatList(1024);  // u, v
+    final FloatList normals = new FloatList(1024);    // x, y, z
+
+    // One (v, vt, vn) triple per triangle corner, 0-based, -1 when the attribute is absent
+    final IntList corners = new IntList(4096);
+
+    // mtllib names, and usemtl names in first-use order
+    final List<String> materialLibraries = new ArrayList<>();
+    final List<String> materialNames = new ArrayList<>();
+
+    // (first triangle, material index) per usemtl, triangles before the first one use no material
+    final IntList materialRuns = new IntList(16);
+
+    public int getPositionCount() {
+        return positions.size() / 3;
+    }
+
+    public int getTexCoordCount() {
+        return texCoords.size() / 2;
+    }
+
+    public int getNormalCount() {
+        return normals.size() / 3;
+    }
+
+    public int getCornerCount() {
+        return corners.size() / 3;
+    }
+
+    public int getTriangleCount() {
+        return corners.size() / 9;
+    }
+
+    public FloatList getPositions() {
+        return positions;
+    }
+
+    public FloatList getTexCoords() {
+        return texCoords;
+    }
+
+    public FloatList getNormals() {
+        return normals;
+    }
+
+    public IntList getCorners() {
+        return corners;
+    }
+
+    public List<String> getMaterialLibraries() {
+        return materialLibraries;
+    }
+
+    public List<String> getMaterialNames() {
+        return materialNames;
+    }
+
+    public IntList getMaterialRuns() {
+        return materialRuns;
+    }
+
+    void useMaterial(String name) {
+        addMaterialRun(getTriangleCount(), name);
+    }
+
+    void addMaterialRun(int firstTriangle, String name) {
+        int material = materialNames.indexOf(name);
+        if (material < 0) {
+            material = materialNames.size();
+            materialNames.add(name);
+        }
+        materialRuns.add(firstTriangle, material);
+    }
+
+    void addMaterialLibrary(String name) {
+        if (!materialLibraries.contains(name)) {
+            materialLibraries.add(name);
+        }
+    }
+
+    // Material slot per triangle: 0 for faces before any usemtl, otherwise material index + 1
+    int[] triangleMaterialSlots() {
+        int[] slots = new int[getTriangleCount()];
+        int[] runs = materialRuns.array();
+        for (int r = 0; r < materialRuns.size(); r += 2) {
+            int end = r + 2 < materialRuns.size() ? runs[r + 2] : slots.length;
+            Arrays.fill(slots, runs[r], end, runs[r + 1] + 1);
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,442 @@
+package com.vibhusha.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Byte-level OBJ parser. Reads straight from a channel into primitive arrays without creating
+// per-line or per-vertex objects, so multi-million triangle files do not stress the GC.
+public class ObjParser {
+    private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+    private static final byte END_OF_RANGE = '\n';
+
+    private static final String[] ATTRIBUTE_NAMES = {"position", "texture coordinate", "normal"};
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ObjData data;
+    private ByteBuffer buffer;
+    private int pos;
+    private int end;
+    private long fileOffset;  // File position of buffer index 0, for error messages
+    private int[] faceScratch = new int[4 * 3];
+    private boolean[] relativeScratch = new boolean[4 * 3];
+
+    // Corner slots whose index was negative, set only when parsing one chunk of a larger file.
+    // Those indices are chunk-local until the chunk's global attribute offsets are known.
+    private final IntList relativeSlots;
+
+    // Per attribute (position, texture coordinate, normal): the largest absolute index and, when
+    // chunked, the smallest resolved relative index, with their byte offsets. Absolute indices may
+    // point ahead, so they are range checked once every element is known (checkIndices).
+    private final int[] maxIndex = {-1, -1, -1};
+    private final long[] maxIndexOffset = new long[3];
+    private final int[] minRelative = new int[3];
+    private final long[] minRelativeOffset = new long[3];
+
+    ObjParser(ObjData data) {
+        this(data, false);
+    }
+
+    ObjParser(ObjData data, boolean chunked) {
+        this.data = data;
+        this.relativeSlots = chunked ? new IntList() : null;
+    }
+
+    ObjData getData() {
+        return data;
+    }
+
+    IntList getRelativeSlots() {
+        return relativeSlots;
+    }
+
+    public static ObjData parse(ReadableByteChannel channel) throws IOException {
+        ObjData data = new ObjData();
+        ObjParser parser = new ObjParser(data);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        long consumed = 0;
+        boolean eof = false;
+
+        while (!eof) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+
+            int limit = buffer.position();
+            int lineEnd = eof ? limit : lastLineBreak(buffer, limit) + 1;
+            if (lineEnd == 0 && !eof) {
+                // A single line does not fit, make room for it
+                ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+                continue;
+            }
+
+            parser.parseRange(buffer, 0, lineEnd, consumed);
+
+            // Keep the partial trailing line for the next read
+            buffer.limit(limit).position(lineEnd);
+            buffer.compact();
+            consumed += lineEnd;
+        }
+        parser.checkIndices(data.getPositionCount(), data.getTexCoordCount(), data.getNormalCount());
+        return data;
+    }
+
+    public static ObjData parse(ByteBuffer source) throws IOException {
+        ObjData data = new ObjData();
+        ObjParser parser = new ObjParser(data);
+        parser.parseRange(source, source.position(), source.limit(), -source.position());
+        parser.checkIndices(data.getPositionCount(), data.getTexCoordCount(), data.getNormalCount());
+        return data;
+    }
+
+    private static int lastLineBreak(ByteBuffer buffer, int limit) {
+        for (int i = limit - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // fileOffset is the position in the file of source index 0
+    void parseRange(ByteBuffer source, int from, int to, long fileOffset) throws IOException {
+        buffer = source;
+        pos = from;
+        end = to;
+        this.fileOffset = fileOffset;
+
+        while (pos < end) {
+            skipBlanks();
+            byte c = at(pos);
+            if (c == 'v') {
+                byte next = at(pos + 1);
+                if (isBlank(next)) {
+                    pos += 1;
+                    data.positions.add(readFloat(), readFloat(), readFloat());
+                } else if (next == 't' && isBlank(at(pos + 2))) {
+                    pos += 2;
+                    data.texCoords.add(readFloat(), readOptionalFloat());
+                } else if (next == 'n' && isBlank(at(pos + 2))) {
+                    pos += 2;
+                    data.normals.add(readFloat(), readFloat(), readFloat());
+                }
+            } else if (c == 'f' && isBlank(at(pos + 1))) {
+                pos += 1;
+                readFace();
+            } else if (c == 'u' && matchesKeyword("usemtl")) {
+                data.useMaterial(readRestOfLine());
+            } else if (c == 'm' && matchesKeyword("mtllib")) {
+                for (String library : readRestOfLine().split("\\s+")) {
+                    if (!library.isEmpty()) {
+                        data.addMaterialLibrary(library);
+                    }
+                }
+            }
+            skipLine();
+        }
+    }
+
+    // Consumes the keyword when it is followed by a blank
+    private boolean matchesKeyword(String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (at(pos + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        if (!isBlank(at(pos + keyword.length()))) {
+            return false;
+        }
+        pos += keyword.length();
+        return true;
+    }
+
+    // Material statements are rare, a String per line is fine here
+    private String readRestOfLine() {
+        skipBlanks();
+        int start = pos;
+        while (!isLineEnd(at(pos))) {
+            pos++;
+        }
+        byte[] token = new byte[pos - start];
+        buffer.get(start, token);
+        return new String(token, StandardCharsets.UTF_8).trim();
+    }
+
+    private void readFace() throws IOException {
+        int count = 0;
+        skipBlanks();
+        long faceOffset = fileOffset + pos;
+        while (!isLineEnd(at(pos))) {
+            if ((count + 1) * 3 > faceScratch.length) {
+                faceScratch = Arrays.copyOf(faceScratch, faceScratch.length * 2);
+                relativeScratch = Arrays.copyOf(relativeScratch, relativeScratch.length * 2);
+            }
+            int base = count * 3;
+            readCornerIndex(base, data.getPositionCount());
+            faceScratch[base + 1] = -1;
+            faceScratch[base + 2] = -1;
+            relativeScratch[base + 1] = false;
+            relativeScratch[base + 2] = false;
+
+            // v, v/vt, v//vn or v/vt/vn
+            if (at(pos) == '/') {
+                pos++;
+                if (at(pos) != '/') {
+                    readCornerIndex(base + 1, data.getTexCoordCount());
+                }
+                if (at(pos) == '/') {
+                    pos++;
+                    readCornerIndex(base + 2, data.getNormalCount());
+                }
+            }
+            count++;
+            skipBlanks();
+        }
+
+        if (count < 3) {
+            throw new IOException("Malformed OBJ face with " + count + " vertices near byte " + faceOffset);
+        }
+
+        // Triangulate polygons as a fan around the first corner
+        for (int i = 2; i < count; i++) {
+            emitCorner(0);
+            emitCorner(i - 1);
+            emitCorner(i);
+        }
+    }
+
+    private void emitCorner(int corner) {
+        IntList corners = data.corners;
+        int base = corner * 3;
+        if (relativeSlots != null) {
+            for (int k = 0; k < 3; k++) {
+                if (relativeScratch[base + k]) {
+                    relativeSlots.add(corners.size() + k);
+                }
+            }
+        }
+        corners.add(faceScratch[base], faceScratch[base + 1], faceScratch[base + 2]);
+    }
+
+    private void readCornerIndex(int slot, int currentCount) throws IOException {
+        long offset = fileOffset + pos;
+        int index = readInt();
+        int resolved = resolveIndex(index, currentCount, slot % 3, offset);
+        faceScratch[slot] = resolved;
+        relativeScratch[slot] = index < 0;
+    }
+
+    // OBJ indices are 1-based, negative values count back from the most recent element
+    private int resolveIndex(int index, int currentCount, int attribute, long offset) throws IOException {
+        if (index > 0) {
+            if (index - 1 > maxIndex[attribute]) {
+                maxIndex[attribute] = index - 1;
+                maxIndexOffset[attribute] = offset;
+            }
+            return index - 1;
+        }
+        if (index < 0) {
+            int resolved = currentCount + index;
+            if (resolved < 0) {
+                // A chunk's relative indices may reach into earlier chunks, see checkRelativeIndices
+                if (relativeSlots == null) {
+                    throw new IOException("OBJ " + ATTRIBUTE_NAMES[attribute] + " index " + index + " reaches before the first one near byte " + offset);
+                }
+                if (resolved < minRelative[attribute]) {
+                    minRelative[attribute] = resolved;
+                    minRelativeOffset[attribute] = offset;
+                }
+            }
+            return resolved;
+        }
+        throw new IOException("Invalid OBJ index 0 near byte " + offset);
+    }
+
+    // Once the element counts of the whole file are known
+    void checkIndices(int positionCount, int texCoordCount, int normalCount) throws IOException {
+        int[] counts = {positionCount, texCoordCount, normalCount};
+        for (int k = 0; k < 3; k++) {
+            if (maxIndex[k] >= counts[k]) {
+                throw new IOException("OBJ " + ATTRIBUTE_NAMES[k] + " index " + (maxIndex[k] + 1) + " is out of range, the file has "
+                        + counts[k] + ", near byte " + maxIndexOffset[k]);
+            }
+        }
+    }
+
+    // Chunked parsing: once the number of each element in the chunks before this one is known
+    void checkRelativeIndices(int positionBase, int texCoordBase, int normalBase) throws IOException {
+        int[] bases = {positionBase, texCoordBase, normalBase};
+        for (int k = 0; k < 3; k++) {
+            if (minRelative[k] + bases[k] < 0) {
+                throw new IOException("OBJ relative " + ATTRIBUTE_NAMES[k] + " index reaches before the first one near byte " + minRelativeOffset[k]);
+            }
+        }
+    }
+
+    private int readInt() throws IOException {
+        boolean negative = false;
+        byte c = at(pos);
+        if (c == '-') {
+            negative = true;
+            pos++;
+        } else if (c == '+') {
+            pos++;
+        }
+
+        int start = pos;
+        int value = 0;
+        while ((c = at(pos)) >= '0' && c <= '9') {
+            if (value > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                throw new IOException("OBJ index out of range near byte " + (fileOffset + start));
+            }
+            value = value * 10 + (c - '0');
+            pos++;
+        }
+        if (pos == start) {
+            throw new IOException("Malformed OBJ index near byte " + (fileOffset + pos));
+        }
+        return negative ? -value : value;
+    }
+
+    private float readOptionalFloat() throws IOException {
+        skipBlanks();
+        return isLineEnd(at(pos)) ? 0.0f : readFloat();
+    }
+
+    private float readFloat() throws IOException {
+        skipBlanks();
+        int start = pos;
+        boolean negative = false;
+        byte c = at(pos);
+        if (c == '-') {
+            negative = true;
+            pos++;
+        } else if (c == '+') {
+            pos++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+
+        while ((c = at(pos)) >= '0' && c <= '9') {
+            anyDigits = true;
+            if (significantDigits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) significantDigits++;
+            } else {
+                exponent++;
+            }
+            pos++;
+        }
+        if (c == '.') {
+            pos++;
+            while ((c = at(pos)) >= '0' && c <= '9') {
+                anyDigits = true;
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) significantDigits++;
+                    exponent--;
+                }
+                pos++;
+            }
+        }
+        if (anyDigits && (c == 'e' || c == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            c = at(pos);
+            if (c == '-') {
+                negativeExponent = true;
+                pos++;
+            } else if (c == '+') {
+                pos++;
+            }
+            int exponentStart = pos;
+            int value = 0;
+            while ((c = at(pos)) >= '0' && c <= '9') {
+                if (value < 10_000) value = value * 10 + (c - '0');
+                pos++;
+            }
+            if (pos == exponentStart) {
+                throw new IOException("Malformed OBJ number, exponent without digits near byte " + (fileOffset + start));
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (!anyDigits || !isTokenEnd(c)) {
+            return parseFloatSlow(start);
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0f : 0.0f;
+        }
+
+        // Both operands are exact, so the double result is correctly rounded. Narrowing to float
+        // can only double-round when the double sits exactly on a float midpoint.
+        if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            if ((Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) != 0x10000000L) {
+                float result = (float) value;
+                return negative ? -result : result;
+            }
+        }
+        return parseFloatSlow(start);
+    }
+
+    // Rare path for values the fast path cannot round exactly (or nan/inf)
+    private float parseFloatSlow(int start) throws IOException {
+        pos = start;
+        while (!isTokenEnd(at(pos))) {
+            pos++;
+        }
+        byte[] token = new byte[pos - start];
+        buffer.get(start, token);
+        String text = new String(token, StandardCharsets.US_ASCII);
+        try {
+            return Float.parseFloat(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed OBJ number '" + text + "' near byte " + (fileOffset + start), e);
+        }
+    }
+
+    private byte at(int index) {
+        return index < end ? buffer.get(index) : END_OF_RANGE;
+    }
+
+    private void skipBlanks() {
+        while (pos < end && isBlank(buffer.get(pos))) {
+            pos++;
+        }
+    }
+
+    private void skipLine() {
+        while (pos < end && buffer.get(pos) != '\n') {
+            pos++;
+        }
+        pos++;
+    }
+
+    private static boolean isBlank(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private static boolean isLineEnd(byte c) {
+        return c == '\n' || c == '#';
+    }
+
+    private static boolean isTokenEnd(byte c) {
+        return isBlank(c) || isLineEnd(c) || c == '/';
+    }
+}
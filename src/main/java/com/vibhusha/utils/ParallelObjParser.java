@@ -0,0 +1,172 @@
+package com.vibhusha.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Memory-maps an OBJ file, splits it into line-aligned chunks and parses them on a fork-join pool.
+// The merged result is identical to ObjParser.parse on the same file.
+public class ParallelObjParser {
+    private static final long MIN_CHUNK_SIZE = 4L << 20;
+    private static final long MAX_CHUNK_SIZE = 256L << 20;
+
+    public static ObjData parse(Path path) throws IOException {
+        return parse(path, ForkJoinPool.commonPool());
+    }
+
+    public static ObjData parse(Path path, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L)));
+            long[] bounds = splitAtLines(channel, size, chunkSize);
+            int chunkCount = bounds.length - 1;
+
+            List<Callable<ObjParser>> tasks = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                long start = bounds[i];
+                long length = bounds[i + 1] - start;
+                tasks.add(() -> {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                    ObjParser parser = new ObjParser(new ObjData(), true);
+                    parser.parseRange(mapped, 0, (int) length, start);
+                    return parser;
+                });
+            }
+            ObjParser[] chunks = new ObjParser[chunkCount];
+            List<Future<ObjParser>> parsed = pool.invokeAll(tasks);
+            for (int i = 0; i < chunkCount; i++) {
+                chunks[i] = parsed.get(i).get();
+            }
+            return merge(chunks, pool);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing " + path, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to parse " + path, e.getCause());
+        }
+    }
+
+    // Chunk boundaries, each one just past a newline so no line straddles two chunks
+    private static long[] splitAtLines(FileChannel channel, long size, long chunkSize) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (size - start > chunkSize) {
+            long cut = start + chunkSize;
+            long lineEnd = -1;
+            while (lineEnd < 0 && cut < size) {
+                probe.clear();
+                int read = channel.read(probe, cut);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        lineEnd = cut + i + 1;
+                        break;
+                    }
+                }
+                cut += read;
+            }
+            if (lineEnd < 0 || lineEnd >= size) {
+                break;
+            }
+            bounds.add(lineEnd);
+            start = lineEnd;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Range checks every chunk's indices against the whole file, then concatenates the per-chunk
+    // streams, shifting chunk-local relative indices to global numbering
+    private static ObjData merge(ObjParser[] chunks, ForkJoinPool pool) throws IOException, InterruptedException, ExecutionException {
+        int count = chunks.length;
+        int[] positionOffsets = new int[count + 1];
+        int[] texCoordOffsets = new int[count + 1];
+        int[] normalOffsets = new int[count + 1];
+        int[] cornerOffsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            ObjData chunk = chunks[i].getData();
+            positionOffsets[i + 1] = positionOffsets[i] + chunk.positions.size();
+            texCoordOffsets[i + 1] = texCoordOffsets[i] + chunk.texCoords.size();
+            normalOffsets[i + 1] = normalOffsets[i] + chunk.normals.size();
+            cornerOffsets[i + 1] = cornerOffsets[i] + chunk.corners.size();
+        }
+        for (int i = 0; i < count; i++) {
+            chunks[i].checkRelativeIndices(positionOffsets[i] / 3, texCoordOffsets[i] / 2, normalOffsets[i] / 3);
+            chunks[i].checkIndices(positionOffsets[count] / 3, texCoordOffsets[count] / 2, normalOffsets[count] / 3);
+        }
+
+        ObjData merged = new ObjData();
+        merged.positions.setSize(positionOffsets[count]);
+        merged.texCoords.setSize(texCoordOffsets[count]);
+        merged.normals.setSize(normalOffsets[count]);
+        merged.corners.setSize(cornerOffsets[count]);
+
+        List<Callable<Void>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int chunkIndex = i;
+            tasks.add(() -> {
+                ObjData chunk = chunks[chunkIndex].getData();
+                copy(chunk.positions, merged.positions, positionOffsets[chunkIndex]);
+                copy(chunk.texCoords, merged.texCoords, texCoordOffsets[chunkIndex]);
+                copy(chunk.normals, merged.normals, normalOffsets[chunkIndex]);
+
+                int cornerBase = cornerOffsets[chunkIndex];
+                int[] target = merged.corners.array();
+                System.arraycopy(chunk.corners.array(), 0, target, cornerBase, chunk.corners.size());
+
+                int[] attributeBase = {
+                        positionOffsets[chunkIndex] / 3,
+                        texCoordOffsets[chunkIndex] / 2,
+                        normalOffsets[chunkIndex] / 3
+                };
+                IntList relative = chunks[chunkIndex].getRelativeSlots();
+                for (int r = 0; r < relative.size(); r++) {
+                    int slot = relative.get(r);
+                    target[cornerBase + slot] += attributeBase[slot % 3];
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            future.get();
+        }
+
+        // Material indices are chunk-local too; a chunk without usemtl continues the previous run
+        for (int i = 0; i < count; i++) {
+            ObjData chunk = chunks[i].getData();
+            for (String library : chunk.materialLibraries) {
+                merged.addMaterialLibrary(library);
+            }
+            int triangleBase = cornerOffsets[i] / 9;
+            for (int r = 0; r < chunk.materialRuns.size(); r += 2) {
+                merged.addMaterialRun(triangleBase + chunk.materialRuns.get(r), chunk.materialNames.get(chunk.materialRuns.get(r + 1)));
+            }
+        }
+        return merged;
+    }
+
+    private static void copy(FloatList source, FloatList target, int offset) {
+        System.arraycopy(source.array(), 0, target.array(), offset, source.size());
+    }
+}
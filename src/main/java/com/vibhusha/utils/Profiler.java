@@ -0,0 +1,354 @@
+package com.vibhusha.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Frame profiler for the render thread. Off unless -Dengine.profile=true: every entry point first
+// tests the static final ENABLED, so when it is off the JIT folds the calls away and instrumented
+// code costs nothing. When on:
+//  - begin(scope)/end() time nested scopes into a ring buffer, without allocating. Scope ids come
+//    from scope(name), registered once in a static initializer.
+//  - count(counter, amount) accumulates per-frame counters (draw calls, binds, uniforms, uploads);
+//    heap bytes allocated by the thread are added at the end of each frame.
+//  - -Dengine.profile.gpu=true also times each frame on the GPU (GpuTimer, results a few frames late).
+//  - endFrame() feeds rolling windows (p50/p99 via summary() and writeCsv()) and emits JFR events
+//    (engine.Frame, engine.Scope) whenever a recording has them enabled.
+// Only the thread that calls beginFrame() is profiled; calls from other threads are ignored.
+@Slf4j
+public final class Profiler {
+    public static final boolean ENABLED = Boolean.getBoolean("engine.profile");
+    private static final boolean GPU_TIMING = ENABLED && Boolean.getBoolean("engine.profile.gpu");
+
+    public static final int DRAW_CALLS = 0;
+    public static final int STATE_CHANGES = 1;     // Program, texture and vertex array binds
+    public static final int UNIFORM_UPLOADS = 2;
+    public static final int UPLOADED_BYTES = 3;    // Buffer and texture data sent to the driver
+    public static final int ALLOCATED_BYTES = 4;   // Heap allocated by the profiled thread during the frame
+    private static final String[] COUNTER_NAMES = {"draw calls", "state changes", "uniform uploads", "uploaded bytes", "allocated bytes"};
+
+    private static final int MAX_SCOPES = 64;
+    private static final int MAX_DEPTH = 32;
+    private static final int RING_SIZE = 1 << 12;
+    private static final int WINDOW = 1024;
+
+    private static final String[] scopeNames = new String[MAX_SCOPES];
+    private static int scopeCount;
+
+    // Closed scopes, oldest overwritten first: id, nesting depth, start and end time
+    private static final int[] ringScope = new int[RING_SIZE];
+    private static final int[] ringDepth = new int[RING_SIZE];
+    private static final long[] ringStart = new long[RING_SIZE];
+    private static final long[] ringEnd = new long[RING_SIZE];
+    private static long ringWritten;
+
+    private static final int[] openScope = new int[MAX_DEPTH];
+    private static final long[] openStart = new long[MAX_DEPTH];
+    private static int depth;
+    private static int ignoredDepth;  // Scopes opened beyond MAX_DEPTH, their end() calls are dropped
+
+    private static Thread owner;
+    private static long frameIndex;
+    private static long frameStart;
+    private static long frameFirstRecord;
+    private static long allocatedAtFrameStart;
+    private static final long[] counters = new long[COUNTER_NAMES.length];
+    private static final long[] scopeFrameNanos = new long[MAX_SCOPES];
+    private static final boolean[] scopeRan = new boolean[MAX_SCOPES];
+
+    private static final TimingStats frameTimes = new TimingStats(WINDOW);
+    private static final TimingStats gpuTimes = new TimingStats(WINDOW);
+    private static final TimingStats[] scopeTimes = new TimingStats[MAX_SCOPES];
+    private static final TimingStats[] counterValues = new TimingStats[COUNTER_NAMES.length];
+    private static GpuTimer gpuTimer;
+    private static com.sun.management.ThreadMXBean threads;
+    private static EventType frameEvents;
+    private static EventType scopeEvents;
+
+    static {
+        if (ENABLED) {
+            for (int c = 0; c < counterValues.length; c++) {
+                counterValues[c] = new TimingStats(WINDOW);
+            }
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            frameEvents = EventType.getEventType(FrameEvent.class);
+            scopeEvents = EventType.getEventType(ScopeEvent.class);
+        }
+    }
+
+    private Profiler() {
+    }
+
+    // Id for a named scope; call once per site, e.g. from a static final field
+    public static synchronized int scope(String name) {
+        for (int i = 0; i < scopeCount; i++) {
+            if (scopeNames[i].equals(name)) {
+                return i;
+            }
+        }
+        if (scopeCount == MAX_SCOPES) {
+            throw new IllegalStateException("Profiler supports at most " + MAX_SCOPES + " scopes");
+        }
+        scopeNames[scopeCount] = name;
+        if (ENABLED) {
+            scopeTimes[scopeCount] = new TimingStats(WINDOW);
+        }
+        return scopeCount++;
+    }
+
+    public static void begin(int scope) {
+        if (!ENABLED || Thread.currentThread() != owner) {
+            return;
+        }
+        if (depth == MAX_DEPTH) {
+            ignoredDepth++;
+            return;
+        }
+        openScope[depth] = scope;
+        openStart[depth++] = System.nanoTime();
+    }
+
+    public static void end() {
+        if (!ENABLED || Thread.currentThread() != owner) {
+            return;
+        }
+        if (ignoredDepth > 0) {
+            ignoredDepth--;
+            return;
+        }
+        if (depth == 0) {
+            return;  // Opened before the frame began
+        }
+        long now = System.nanoTime();
+        int scope = openScope[--depth];
+        int slot = (int) (ringWritten++ & (RING_SIZE - 1));
+        ringScope[slot] = scope;
+        ringDepth[slot] = depth;
+        ringStart[slot] = openStart[depth];
+        ringEnd[slot] = now;
+        scopeFrameNanos[scope] += now - openStart[depth];
+        scopeRan[scope] = true;
+    }
+
+    public static void count(int counter, long amount) {
+        if (!ENABLED || Thread.currentThread() != owner) {
+            return;
+        }
+        counters[counter] += amount;
+    }
+
+    public static void beginFrame() {
+        if (!ENABLED) {
+            return;
+        }
+        if (owner == null) {
+            owner = Thread.currentThread();
+            if (GPU_TIMING) {
+                gpuTimer = GpuTimer.create();
+                if (gpuTimer == null) {
+                    log.warn("GPU timer queries are not supported, profiling CPU time only");
+                }
+            }
+        } else if (Thread.currentThread() != owner) {
+            return;
+        }
+        depth = 0;
+        ignoredDepth = 0;
+        frameFirstRecord = ringWritten;
+        allocatedAtFrameStart = threads.getCurrentThreadAllocatedBytes();
+        frameStart = System.nanoTime();
+        if (gpuTimer != null) {
+            gpuTimer.begin();
+        }
+    }
+
+    public static void endFrame() {
+        if (!ENABLED || Thread.currentThread() != owner) {
+            return;
+        }
+        long frameNanos = System.nanoTime() - frameStart;
+        if (gpuTimer != null) {
+            gpuTimer.end();
+            long gpuNanos = gpuTimer.poll();
+            if (gpuNanos >= 0) {
+                gpuTimes.record(gpuNanos);
+            }
+        }
+        counters[ALLOCATED_BYTES] += threads.getCurrentThreadAllocatedBytes() - allocatedAtFrameStart;
+
+        frameTimes.record(frameNanos);
+        for (int s = 0; s < scopeCount; s++) {
+            if (scopeRan[s]) {
+                scopeTimes[s].record(scopeFrameNanos[s]);
+            }
+        }
+        for (int c = 0; c < counters.length; c++) {
+            counterValues[c].record(counters[c]);
+        }
+        emitEvents(frameNanos);
+
+        for (int s = 0; s < scopeCount; s++) {
+            scopeFrameNanos[s] = 0;
+            scopeRan[s] = false;
+        }
+        for (int c = 0; c < counters.length; c++) {
+            counters[c] = 0;
+        }
+        frameIndex++;
+    }
+
+    // Creates event objects only while a JFR recording has the event type enabled
+    private static void emitEvents(long frameNanos) {
+        if (frameEvents.isEnabled()) {
+            FrameEvent frame = new FrameEvent();
+            frame.frame = frameIndex;
+            frame.cpuTime = frameNanos;
+            frame.gpuTime = gpuTimes.getCount() > 0 ? gpuTimer.getLastNanos() : 0;
+            frame.drawCalls = counters[DRAW_CALLS];
+            frame.stateChanges = counters[STATE_CHANGES];
+            frame.uniformUploads = counters[UNIFORM_UPLOADS];
+            frame.uploadedBytes = counters[UPLOADED_BYTES];
+            frame.allocatedBytes = counters[ALLOCATED_BYTES];
+            frame.commit();
+        }
+        if (!scopeEvents.isEnabled()) {
+            return;
+        }
+        // Only the records still in the ring if a frame closed more than RING_SIZE scopes
+        long from = Math.max(frameFirstRecord, ringWritten - RING_SIZE);
+        for (long r = from; r < ringWritten; r++) {
+            int slot = (int) (r & (RING_SIZE - 1));
+            ScopeEvent event = new ScopeEvent();
+            event.frame = frameIndex;
+            event.scope = scopeNames[ringScope[slot]];
+            event.depth = ringDepth[slot];
+            event.offset = ringStart[slot] - frameStart;
+            event.time = ringEnd[slot] - ringStart[slot];
+            event.commit();
+        }
+    }
+
+    // p50/p99 of the frame, GPU, every scope and every counter over the last WINDOW frames
+    public static String summary() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("  %-32s %s%n", "frame", frameTimes.summary()));
+        if (gpuTimes.getCount() > 0) {
+            text.append(String.format("  %-32s %s%n", "gpu", gpuTimes.summary()));
+        }
+        for (int s = 0; s < scopeCount; s++) {
+            if (scopeTimes[s] != null && scopeTimes[s].getCount() > 0) {
+                text.append(String.format("  %-32s %s%n", scopeNames[s], scopeTimes[s].summary()));
+            }
+        }
+        for (int c = 0; c < COUNTER_NAMES.length; c++) {
+            if (counterValues[c] != null) {
+                TimingStats values = counterValues[c];
+                text.append(String.format("  %-32s mean %.1f, p50 %d, p99 %d, max %d per frame%n", COUNTER_NAMES[c],
+                        values.getMean(), values.getPercentile(0.5), values.getPercentile(0.99), values.getMax()));
+            }
+        }
+        return text.toString();
+    }
+
+    // One row per metric: name, unit, samples, mean, p50, p99, max. Times are in milliseconds.
+    public static void writeCsv(Path path) throws IOException {
+        if (!ENABLED) {
+            return;
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("name,unit,samples,mean,p50,p99,max\n");
+            writeTimeRow(writer, "frame", frameTimes);
+            writeTimeRow(writer, "gpu", gpuTimes);
+            for (int s = 0; s < scopeCount; s++) {
+                writeTimeRow(writer, scopeNames[s], scopeTimes[s]);
+            }
+            for (int c = 0; c < COUNTER_NAMES.length; c++) {
+                TimingStats values = counterValues[c];
+                writer.write(String.format(Locale.ROOT, "%s,per frame,%d,%.3f,%d,%d,%d%n", csvName(COUNTER_NAMES[c]), values.getCount(),
+                        values.getMean(), values.getPercentile(0.5), values.getPercentile(0.99), values.getMax()));
+            }
+        }
+        log.info(String.format("Wrote profile of the last %d frames to %s", frameTimes.getCount(), path));
+    }
+
+    private static void writeTimeRow(BufferedWriter writer, String name, TimingStats times) throws IOException {
+        if (times == null || times.getCount() == 0) {
+            return;
+        }
+        writer.write(String.format(Locale.ROOT, "%s,ms,%d,%.4f,%.4f,%.4f,%.4f%n", csvName(name), times.getCount(), times.getMeanMillis(),
+                times.getPercentileMillis(0.5), times.getPercentileMillis(0.99), times.getMaxMillis()));
+    }
+
+    private static String csvName(String name) {
+        return name.indexOf(',') < 0 && name.indexOf('"') < 0 ? name : '"' + name.replace("\"", "\"\"") + '"';
+    }
+
+    public static void cleanup() {
+        if (gpuTimer != null) {
+            gpuTimer.cleanup();
+            gpuTimer = null;
+        }
+    }
+
+    @Name("engine.Frame")
+    @Label("Frame")
+    @Category("Engine")
+    @Description("CPU and GPU time and counters of one rendered frame")
+    static final class FrameEvent extends Event {
+        @Label("Frame")
+        long frame;
+        @Label("CPU Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long cpuTime;
+        @Label("GPU Time")
+        @Description("From the timer query of an earlier frame, 0 without GPU timing")
+        @Timespan(Timespan.NANOSECONDS)
+        long gpuTime;
+        @Label("Draw Calls")
+        long drawCalls;
+        @Label("State Changes")
+        long stateChanges;
+        @Label("Uniform Uploads")
+        long uniformUploads;
+        @Label("Uploaded Bytes")
+        long uploadedBytes;
+        @Label("Allocated Bytes")
+        long allocatedBytes;
+    }
+
+    @Name("engine.Scope")
+    @Label("Profiler Scope")
+    @Category("Engine")
+    @Description("One closed profiler scope, emitted at the end of its frame")
+    static final class ScopeEvent extends Event {
+        @Label("Frame")
+        long frame;
+        @Label("Scope")
+        String scope;
+        @Label("Depth")
+        int depth;
+        @Label("Offset")
+        @Description("Start of the scope relative to the start of the frame")
+        @Timespan(Timespan.NANOSECONDS)
+        long offset;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+}
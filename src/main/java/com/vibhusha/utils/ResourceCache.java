@@ -0,0 +1,235 @@
+package com.vibhusha.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+// Keyed cache of GPU resources with reference counting and LRU eviction under a byte budget.
+// Resources with live strong handles are never evicted; unreferenced ones stay resident until the
+// budget needs their bytes. Loading and cleanup() run on the owner thread (the thread that created
+// the cache, i.e. the GL thread); handles may be released from any thread and the release takes
+// effect at the next trim(). The class itself makes no GL calls.
+public class ResourceCache<V extends GpuResource> {
+    private final Map<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);  // Access order = LRU
+    private final ConcurrentLinkedQueue<Entry<V>> pendingReleases = new ConcurrentLinkedQueue<>();
+    private final Thread owner = Thread.currentThread();
+    private final CacheStats stats = new CacheStats();
+    private long budgetBytes;
+
+    public ResourceCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        stats.budgetBytes = budgetBytes;
+    }
+
+    // Strong handle: the resource stays resident until release()
+    @SuppressWarnings("unchecked")
+    public <T extends V> Handle<T> acquire(String key, Supplier<T> loader) {
+        checkOwner();
+        Entry<V> entry = lookup(key, loader);
+        entry.refCount++;
+        return new Handle<>(this, (Entry<T>) (Entry<?>) entry);
+    }
+
+    // Strong handle to the resource under key when it is resident, otherwise null and nothing is loaded
+    @SuppressWarnings("unchecked")
+    public <T extends V> Handle<T> acquireIfResident(String key) {
+        checkOwner();
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        stats.hits++;
+        entry.refCount++;
+        return new Handle<>(this, (Entry<T>) (Entry<?>) entry);
+    }
+
+    // The resource under key without referencing it, or null. As with WeakHandle.get(), the next
+    // cache operation may evict it, so use it within the frame.
+    @SuppressWarnings("unchecked")
+    public <T extends V> T getIfResident(String key) {
+        checkOwner();
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        stats.hits++;
+        return (T) entry.value;
+    }
+
+    // Adds a resource loaded elsewhere, e.g. streamed in, without referencing it
+    public void put(String key, V value) {
+        checkOwner();
+        if (entries.containsKey(key)) {
+            throw new IllegalStateException(key + " is already resident");
+        }
+        lookup(key, () -> value);
+    }
+
+    // Weak handle: does not keep the resource resident, get() reloads it after an eviction
+    public <T extends V> WeakHandle<T> weak(String key, Supplier<T> loader) {
+        return new WeakHandle<>(this, key, loader);
+    }
+
+    public boolean isResident(String key) {
+        return entries.containsKey(key);
+    }
+
+    // Applies releases made from other threads, then evicts down to the budget. Call once per frame.
+    public void trim() {
+        checkOwner();
+        Entry<V> released;
+        while ((released = pendingReleases.poll()) != null) {
+            released.refCount--;
+        }
+        evict(null);
+    }
+
+    public long getBudget() {
+        return budgetBytes;
+    }
+
+    public void setBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        stats.budgetBytes = budgetBytes;
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    // Cleans up everything, referenced or not
+    public void clear() {
+        checkOwner();
+        for (Entry<V> entry : entries.values()) {
+            entry.value.cleanup();
+        }
+        entries.clear();
+        pendingReleases.clear();
+        stats.residentBytes = 0;
+        stats.entryCount = 0;
+    }
+
+    private Entry<V> lookup(String key, Supplier<? extends V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            stats.hits++;
+            return entry;
+        }
+        stats.misses++;
+        V value = loader.get();
+        entry = new Entry<>(key, value, value.getByteSize());
+        entries.put(key, entry);
+        stats.residentBytes += entry.bytes;
+        stats.entryCount = entries.size();
+        evict(entry);
+        return entry;
+    }
+
+    // Least recently used first, skipping referenced entries and the one just loaded
+    private void evict(Entry<V> keep) {
+        if (stats.residentBytes <= budgetBytes) {
+            return;
+        }
+        List<Entry<V>> victims = new ArrayList<>();
+        long resident = stats.residentBytes;
+        for (Iterator<Entry<V>> it = entries.values().iterator(); it.hasNext() && resident > budgetBytes; ) {
+            Entry<V> entry = it.next();
+            if (entry.refCount == 0 && entry != keep) {
+                victims.add(entry);
+                resident -= entry.bytes;
+                it.remove();
+            }
+        }
+        for (Entry<V> victim : victims) {
+            victim.value.cleanup();
+            victim.value = null;
+            stats.evictions++;
+            stats.evictedBytes += victim.bytes;
+        }
+        stats.residentBytes = resident;
+        stats.entryCount = entries.size();
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("Resource cache used from " + Thread.currentThread().getName() + ", owner is " + owner.getName());
+        }
+    }
+
+    private static final class Entry<V> {
+        private final String key;
+        private final long bytes;
+        private V value;
+        private int refCount;  // Owner thread only
+
+        Entry(String key, V value, long bytes) {
+            this.key = key;
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    public static final class Handle<T extends GpuResource> {
+        private final ResourceCache<?> cache;
+        private final Entry<T> entry;
+        private volatile boolean released;
+
+        private Handle(ResourceCache<?> cache, Entry<T> entry) {
+            this.cache = cache;
+            this.entry = entry;
+        }
+
+        public T get() {
+            if (released) {
+                throw new IllegalStateException("Handle to " + entry.key + " was released");
+            }
+            return entry.value;
+        }
+
+        public String getKey() {
+            return entry.key;
+        }
+
+        // Safe from any thread; releasing twice is a no-op
+        @SuppressWarnings("unchecked")
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            ((ResourceCache<GpuResource>) cache).pendingReleases.add((Entry<GpuResource>) (Entry<?>) entry);
+        }
+    }
+
+    public static final class WeakHandle<T extends GpuResource> {
+        private final ResourceCache<? super T> cache;
+        private final String key;
+        private final Supplier<T> loader;
+        private boolean loaded;
+
+        private WeakHandle(ResourceCache<? super T> cache, String key, Supplier<T> loader) {
+            this.cache = cache;
+            this.key = key;
+            this.loader = loader;
+        }
+
+        // Owner thread only. The result may be evicted by the next cache operation, use it within the frame.
+        @SuppressWarnings("unchecked")
+        public T get() {
+            cache.checkOwner();
+            if (loaded && !cache.isResident(key)) {
+                cache.stats.reloads++;
+            }
+            loaded = true;
+            return (T) ((ResourceCache<GpuResource>) cache).lookup(key, loader).value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+}
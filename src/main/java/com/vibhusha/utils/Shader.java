@@ -1,64 +1,166 @@
 package com.vibhusha.utils;
 
+import lombok.extern.slf4j.Slf4j;
+import org.lwjgl.opengl.ARBGetProgramBinary;
+import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
 import org.lwjgl.system.MemoryStack;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.system.MemoryStack.stackPush;
 
+@Slf4j
 public class Shader {
+    // -Dshader.hotReload=true watches the sources under -Dshader.source.dir and relinks on save
+    private static final boolean HOT_RELOAD = Boolean.getBoolean("shader.hotReload");
+    private static final Path SOURCE_DIRECTORY = Path.of(System.getProperty("shader.source.dir", "src/main/resources"));
+
     private int programId;
+    private String vertexPath;
+    private String fragmentPath;
+    private final ShaderCache cache;
+
+    // Set by ShaderWatcher, consumed on the GL thread by pollReload()
+    private volatile boolean reloadRequested;
+    private ProgramBuild pendingBuild;
+
+    // Active uniforms reflected once per link, so setting a uniform never queries GL by name
+    private final Map<String, Integer> uniformLocations = new HashMap<>();
+    private final Map<String, Integer> uniformTypes = new HashMap<>();
+    private final List<Uniform> handles = new ArrayList<>();
+    private final Set<String> missingUniforms = new HashSet<>();
+    private StandardUniforms standardUniforms;
 
     public Shader(String vertexPath, String fragmentPath) {
-        int vertexShader = loadShader(vertexPath, GL20.GL_VERTEX_SHADER);
-        int fragmentShader = loadShader(fragmentPath, GL20.GL_FRAGMENT_SHADER);
+        this.vertexPath = vertexPath;
+        this.fragmentPath = fragmentPath;
+        this.cache = ShaderCache.getDefault();
+        long start = System.nanoTime();
+        String vertexSource = loadShaderSource(vertexPath);
+        String fragmentSource = loadShaderSource(fragmentPath);
 
-        programId = GL20.glCreateProgram();
-        GL20.glAttachShader(programId, vertexShader);
-        GL20.glAttachShader(programId, fragmentShader);
-        GL20.glLinkProgram(programId);
+        String key = cache == null ? null : cache.key(vertexSource, fragmentSource);
+        programId = key == null ? 0 : cache.load(key);
+        boolean cached = programId != 0;
+        if (!cached) {
+            programId = ProgramBuild.start(vertexSource, fragmentSource, key != null).finish();
+            if (key != null) {
+                cache.store(key, programId);
+            }
+        }
+        reflectUniforms();
+        log.info(String.format("Shader %s + %s ready in %.1f ms (%s)", vertexPath, fragmentPath,
+                (System.nanoTime() - start) / 1e6, cached ? "program binary cache" : "compiled from source"));
 
-        if (GL20.glGetProgrami(programId, GL20.GL_LINK_STATUS) == GL20.GL_FALSE) {
-            throw new RuntimeException("Error linking shader program: " + GL20.glGetProgramInfoLog(programId));
+        if (HOT_RELOAD) {
+            watch(vertexPath);
+            watch(fragmentPath);
         }
+    }
 
-        GL20.glDeleteShader(vertexShader);
-        GL20.glDeleteShader(fragmentShader);
+    // No GL program and every uniform inactive, for tests that record commands without a GL context
+    Shader(String name) {
+        this.vertexPath = name;
+        this.fragmentPath = name;
+        this.cache = null;
     }
 
-    private int loadShader(String filePath, int type) {
-        try {
-            String source = loadShaderSource(filePath);  // Directly load from resources
-            int shaderId = GL20.glCreateShader(type);
-            GL20.glShaderSource(shaderId, source);
-            GL20.glCompileShader(shaderId);
+    private void watch(String filePath) {
+        Path file = SOURCE_DIRECTORY.resolve(filePath);
+        if (Files.isRegularFile(file)) {
+            ShaderWatcher.watch(this, file);
+        } else {
+            log.warn(String.format("Hot reload: %s not found under %s", filePath, SOURCE_DIRECTORY));
+        }
+    }
 
-            if (GL20.glGetShaderi(shaderId, GL20.GL_COMPILE_STATUS) == GL20.GL_FALSE) {
-                throw new RuntimeException("Error compiling shader: " + GL20.glGetShaderInfoLog(shaderId));
+    private void reflectUniforms() {
+        uniformLocations.clear();
+        uniformTypes.clear();
+        missingUniforms.clear();
+        int count = GL20.glGetProgrami(programId, GL20.GL_ACTIVE_UNIFORMS);
+        try (MemoryStack stack = stackPush()) {
+            IntBuffer size = stack.mallocInt(1);
+            IntBuffer type = stack.mallocInt(1);
+            for (int i = 0; i < count; i++) {
+                String name = GL20.glGetActiveUniform(programId, i, size, type);
+                int location = glGetUniformLocation(programId, name);
+                if (location == -1) {
+                    continue;  // Uniform block members have no location
+                }
+                // Arrays report "name[0]", register the bare name too
+                if (name.endsWith("[0]")) {
+                    name = name.substring(0, name.length() - 3);
+                }
+                uniformLocations.put(name, location);
+                uniformTypes.put(name, type.get(0));
             }
+        }
 
-            return shaderId;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load shader file: " + filePath, e);
+        // Existing handles follow the new locations
+        for (Uniform handle : handles) {
+            handle.location = locationOf(handle.getName());
         }
     }
 
-    private String loadShaderSource(String filePath) throws IOException {
-        // Try loading the shader directly from the resources folder
-        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(filePath);
-        if (inputStream == null) {
-            throw new IOException("Shader file not found: " + filePath);
+    private int locationOf(String name) {
+        Integer location = uniformLocations.get(name);
+        return location == null ? -1 : location;
+    }
+
+    // Warns once per name instead of every frame
+    private int requireLocation(String name) {
+        Integer location = uniformLocations.get(name);
+        if (location == null) {
+            if (missingUniforms.add(name)) {
+                log.warn(String.format("Uniform '%s' not found in shader program %s + %s", name, vertexPath, fragmentPath));
+            }
+            return -1;
         }
-        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        return location;
+    }
+
+    private String loadShaderSource(String filePath) {
+        try {
+            // With hot reload on, the editable copy wins over the one baked into the classpath
+            Path file = SOURCE_DIRECTORY.resolve(filePath);
+            if (HOT_RELOAD && Files.isRegularFile(file)) {
+                return Files.readString(file);
+            }
+            try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(filePath)) {
+                if (inputStream == null) {
+                    throw new IOException("Shader file not found: " + filePath);
+                }
+                return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load shader file: " + filePath, e);
+        }
+    }
+
+    public int getProgramId() {
+        return programId;
     }
 
     public void bind() {
         GL20.glUseProgram(programId);
+        Profiler.count(Profiler.STATE_CHANGES, 1);
     }
 
     public void unbind() {
@@ -66,78 +168,231 @@ public class Shader {
     }
 
     public void cleanup() {
+        ShaderWatcher.unwatch(this);
+        if (pendingBuild != null) {
+            pendingBuild.discard();
+            pendingBuild = null;
+        }
         GL20.glDeleteProgram(programId);
     }
 
+    // Uniforms the GLSL compiler optimised away are not active
+    public boolean hasUniform(String name) {
+        return uniformLocations.containsKey(name);
+    }
+
+    // The engine's shared uniforms, resolved on first use and kept across relinks
+    public StandardUniforms getStandardUniforms() {
+        if (standardUniforms == null) {
+            standardUniforms = new StandardUniforms(this);
+        }
+        return standardUniforms;
+    }
+
+    public Uniform.Scalar getScalarUniform(String name) {
+        return register(new Uniform.Scalar(name, locationOf(name)));
+    }
+
+    public Uniform.Vec3 getVec3Uniform(String name) {
+        return register(new Uniform.Vec3(name, locationOf(name)));
+    }
+
+    public Uniform.Vec4 getVec4Uniform(String name) {
+        return register(new Uniform.Vec4(name, locationOf(name)));
+    }
+
+    public Uniform.Mat4 getMat4Uniform(String name) {
+        return register(new Uniform.Mat4(name, locationOf(name)));
+    }
+
+    private <T extends Uniform> T register(T handle) {
+        Integer type = uniformTypes.get(handle.getName());
+        if (type != null && type != handle.glType()) {
+            throw new IllegalArgumentException(String.format("Uniform '%s' has GL type 0x%X, not 0x%X", handle.getName(), type, handle.glType()));
+        }
+        handles.add(handle);
+        return handle;
+    }
+
     // Set a float uniform
     public void setUniform(String name, float value) {
-        int location = glGetUniformLocation(programId, name);
-        if (location == -1) {
-            System.err.println("Warning: uniform '" + name + "' not found in shader program.");
-        }
+        int location = requireLocation(name);
         glUniform1f(location, value);
+        Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
     }
 
     // Set a matrix uniform (4x4 matrix)
     public void setUniform(String name, float[] matrix) {
-        int location = glGetUniformLocation(programId, name);
-        if (location == -1) {
-            System.err.println("Warning: uniform '" + name + "' not found in shader program.");
-        }
+        int location = requireLocation(name);
         glUniformMatrix4fv(location, false, matrix);
+        Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
     }
 
     // Set a 3D vector uniform (x, y, z)
     public void setUniform(String name, float x, float y, float z) {
-        int location = glGetUniformLocation(programId, name);
-        if (location == -1) {
-            System.err.println("Warning: uniform '" + name + "' not found in shader program.");
-        }
+        int location = requireLocation(name);
         glUniform3f(location, x, y, z);
+        Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
     }
 
     // Set a 4D vector uniform (x, y, z, w)
     public void setUniform(String name, float x, float y, float z, float w) {
-        int location = glGetUniformLocation(programId, name);
-        if (location == -1) {
-            System.err.println("Warning: uniform '" + name + "' not found in shader program.");
-        }
+        int location = requireLocation(name);
         glUniform4f(location, x, y, z, w);
+        Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
     }
 
     // Set a matrix uniform using MemoryStack for better performance
     public void setUniformMatrix4f(String name, float[] matrix) {
-        int location = glGetUniformLocation(programId, name);
-        if (location == -1) {
-            System.err.println("Warning: uniform '" + name + "' not found in shader program.");
-        }
+        int location = requireLocation(name);
 
         try (MemoryStack stack = stackPush()) {
             FloatBuffer buffer = stack.mallocFloat(16); // 4x4 matrix
             buffer.put(matrix).flip();
             glUniformMatrix4fv(location, false, buffer);
+            Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
+        }
+    }
+
+    // Called from any thread, the rebuild itself happens in pollReload()
+    public void requestReload() {
+        reloadRequested = true;
+    }
+
+    // Called once per frame on the GL thread. The new program is compiled next to the current one and
+    // only replaces it once it has linked, so a typo in the editor never leaves the scene without a shader.
+    // With KHR_parallel_shader_compile the driver compiles in the background and this never blocks;
+    // otherwise the cost of one compile lands on the frame that noticed the change.
+    // Returns true on the frame the new program was swapped in.
+    public boolean pollReload() {
+        if (pendingBuild == null) {
+            if (!reloadRequested) {
+                return false;
+            }
+            reloadRequested = false;
+            try {
+                pendingBuild = ProgramBuild.start(loadShaderSource(vertexPath), loadShaderSource(fragmentPath), cache != null);
+            } catch (RuntimeException e) {
+                log.error(String.format("Shader reload failed, keeping the current program: %s", e.getMessage()));
+                return false;
+            }
+        }
+        if (!pendingBuild.isComplete()) {
+            return false;
+        }
+        ProgramBuild build = pendingBuild;
+        pendingBuild = null;
+        try {
+            swap(build.finish());
+        } catch (RuntimeException e) {
+            log.error(String.format("Shader reload failed, keeping the current program: %s", e.getMessage()));
+            return false;
+        }
+        if (cache != null) {
+            cache.store(cache.key(build.vertexSource, build.fragmentSource), programId);
+        }
+        log.info(String.format("Reloaded shader %s + %s", vertexPath, fragmentPath));
+        return true;
+    }
+
+    // Reload shaders at runtime, blocking until linked. The current program is kept when the new one fails.
+    public boolean reloadShaders(String vertexPath, String fragmentPath) {
+        int program;
+        try {
+            program = ProgramBuild.start(loadShaderSource(vertexPath), loadShaderSource(fragmentPath), false).finish();
+        } catch (RuntimeException e) {
+            log.error(String.format("Shader reload failed, keeping the current program: %s", e.getMessage()));
+            return false;
         }
+        this.vertexPath = vertexPath;
+        this.fragmentPath = fragmentPath;
+        swap(program);
+        return true;
     }
 
-    // Reload shaders at runtime
-    public void reloadShaders(String vertexPath, String fragmentPath) {
-        int vertexShader = loadShader(vertexPath, GL20.GL_VERTEX_SHADER);
-        int fragmentShader = loadShader(fragmentPath, GL20.GL_FRAGMENT_SHADER);
+    private void swap(int program) {
+        int old = programId;
+        boolean bound = GL20.glGetInteger(GL20.GL_CURRENT_PROGRAM) == old;
+        programId = program;
+        // Uniform handles and the name table follow the new program; values must be set again
+        reflectUniforms();
+        if (bound) {
+            GL20.glUseProgram(programId);
+        }
+        GL20.glDeleteProgram(old);
+    }
 
-        GL20.glDetachShader(programId, vertexShader);
-        GL20.glDetachShader(programId, fragmentShader);
-        GL20.glDeleteShader(vertexShader);
-        GL20.glDeleteShader(fragmentShader);
+    // A program being compiled and linked. Each stage is compiled exactly once; status is only queried
+    // in finish() because asking for it earlier makes the driver wait for the compile.
+    private static final class ProgramBuild {
+        private final String vertexSource;
+        private final String fragmentSource;
+        private final int program;
+        private final int vertexShader;
+        private final int fragmentShader;
 
-        vertexShader = loadShader(vertexPath, GL20.GL_VERTEX_SHADER);
-        fragmentShader = loadShader(fragmentPath, GL20.GL_FRAGMENT_SHADER);
+        private ProgramBuild(String vertexSource, String fragmentSource) {
+            this.vertexSource = vertexSource;
+            this.fragmentSource = fragmentSource;
+            program = GL20.glCreateProgram();
+            vertexShader = compile(vertexSource, GL20.GL_VERTEX_SHADER);
+            fragmentShader = compile(fragmentSource, GL20.GL_FRAGMENT_SHADER);
+        }
 
-        GL20.glAttachShader(programId, vertexShader);
-        GL20.glAttachShader(programId, fragmentShader);
-        GL20.glLinkProgram(programId);
+        static ProgramBuild start(String vertexSource, String fragmentSource, boolean retrievable) {
+            ProgramBuild build = new ProgramBuild(vertexSource, fragmentSource);
+            GL20.glAttachShader(build.program, build.vertexShader);
+            GL20.glAttachShader(build.program, build.fragmentShader);
+            if (retrievable) {
+                ARBGetProgramBinary.glProgramParameteri(build.program, ARBGetProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL20.GL_TRUE);
+            }
+            GL20.glLinkProgram(build.program);
+            return build;
+        }
+
+        private static int compile(String source, int type) {
+            int shaderId = GL20.glCreateShader(type);
+            GL20.glShaderSource(shaderId, source);
+            GL20.glCompileShader(shaderId);
+            return shaderId;
+        }
+
+        boolean isComplete() {
+            GLCapabilities caps = GL.getCapabilities();
+            if (!caps.GL_KHR_parallel_shader_compile && !caps.GL_ARB_parallel_shader_compile) {
+                return true;
+            }
+            return GL20.glGetProgrami(program, KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR) == GL20.GL_TRUE;
+        }
+
+        // The linked program, or RuntimeException with the compiler output
+        int finish() {
+            String error = null;
+            if (GL20.glGetShaderi(vertexShader, GL20.GL_COMPILE_STATUS) == GL20.GL_FALSE) {
+                error = "Error compiling vertex shader: " + GL20.glGetShaderInfoLog(vertexShader);
+            } else if (GL20.glGetShaderi(fragmentShader, GL20.GL_COMPILE_STATUS) == GL20.GL_FALSE) {
+                error = "Error compiling fragment shader: " + GL20.glGetShaderInfoLog(fragmentShader);
+            } else if (GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) == GL20.GL_FALSE) {
+                error = "Error linking shader program: " + GL20.glGetProgramInfoLog(program);
+            }
+            releaseShaders();
+            if (error != null) {
+                GL20.glDeleteProgram(program);
+                throw new RuntimeException(error);
+            }
+            return program;
+        }
+
+        void discard() {
+            releaseShaders();
+            GL20.glDeleteProgram(program);
+        }
 
-        if (GL20.glGetProgrami(programId, GL20.GL_LINK_STATUS) == GL20.GL_FALSE) {
-            throw new RuntimeException("Error linking shader program: " + GL20.glGetProgramInfoLog(programId));
+        private void releaseShaders() {
+            GL20.glDetachShader(program, vertexShader);
+            GL20.glDetachShader(program, fragmentShader);
+            GL20.glDeleteShader(vertexShader);
+            GL20.glDeleteShader(fragmentShader);
         }
     }
 }
@@ -0,0 +1,169 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lwjgl.opengl.ARBGetProgramBinary;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// On-disk cache of linked program binaries (ARB_get_program_binary). Entries are keyed by the SHA-256
+// of both stage sources plus the GL vendor, renderer and version strings, so a driver update or a GPU
+// change is a plain miss. A binary the driver rejects is deleted and the caller compiles from source.
+//
+//   "VPRG" | version | binary format | length | driver binary
+@Slf4j
+public class ShaderCache {
+    public static final String DIRECTORY_PROPERTY = "shader.cache.dir";
+    private static final String DEFAULT_DIRECTORY = ".cache/shaders";
+    private static final int MAGIC = 0x47525056;  // "VPRG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static ShaderCache defaultCache;
+
+    private final Path directory;
+
+    public ShaderCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // Cache configured by -Dshader.cache.dir, or null when the property is empty or the driver
+    // offers no program binary formats (macOS, for one). Needs a current GL context.
+    public static synchronized ShaderCache getDefault() {
+        if (defaultCache == null) {
+            String dir = System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY);
+            if (dir.isEmpty() || !isSupported()) {
+                return null;
+            }
+            defaultCache = new ShaderCache(Path.of(dir));
+        }
+        return defaultCache;
+    }
+
+    private static boolean isSupported() {
+        GLCapabilities caps = GL.getCapabilities();
+        if (!caps.OpenGL41 && !caps.GL_ARB_get_program_binary) {
+            return false;
+        }
+        return GL11.glGetInteger(ARBGetProgramBinary.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+    }
+
+    public String key(String vertexSource, String fragmentSource) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (String part : new String[]{vertexSource, fragmentSource, GL11.glGetString(GL11.GL_VENDOR),
+                GL11.glGetString(GL11.GL_RENDERER), GL11.glGetString(GL11.GL_VERSION)}) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // A linked program created from the cached binary, or 0 on a miss or when the driver rejects it
+    public int load(String key) {
+        Path file = directory.resolve(key + ".bin");
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer data = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getInt(12) != channel.size() - HEADER_SIZE) {
+                discard(file, "unrecognised file");
+                return 0;
+            }
+            int format = header.getInt(8);
+            data = MemoryUtil.memAlloc(header.getInt(12));
+            while (data.hasRemaining() && channel.read(data, HEADER_SIZE + data.position()) > 0) {
+                // Keep reading
+            }
+            data.flip();
+
+            int program = GL20.glCreateProgram();
+            ARBGetProgramBinary.glProgramBinary(program, format, data);
+            if (GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
+                GL20.glDeleteProgram(program);
+                discard(file, "rejected by the driver");
+                return 0;
+            }
+            return program;
+        } catch (IOException e) {
+            log.warn(String.format("Could not read program binary %s: %s", file, e));
+            return 0;
+        } finally {
+            if (data != null) {
+                MemoryUtil.memFree(data);
+            }
+        }
+    }
+
+    // The program must have been linked with GL_PROGRAM_BINARY_RETRIEVABLE_HINT set
+    public void store(String key, int program) {
+        int length = GL20.glGetProgrami(program, ARBGetProgramBinary.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer data = MemoryUtil.memAlloc(HEADER_SIZE + length);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer written = stack.mallocInt(1);
+            IntBuffer format = stack.mallocInt(1);
+            ByteBuffer binary = data.slice(HEADER_SIZE, length);
+            ARBGetProgramBinary.glGetProgramBinary(program, written, format, binary);
+            data.order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(0, MAGIC)
+                    .putInt(4, VERSION)
+                    .putInt(8, format.get(0))
+                    .putInt(12, written.get(0));
+            data.limit(HEADER_SIZE + written.get(0));
+
+            Path file = directory.resolve(key + ".bin");
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Could not write program binary for %s: %s", key, e));
+        } finally {
+            MemoryUtil.memFree(data);
+        }
+    }
+
+    private static void discard(Path file, String reason) {
+        log.info(String.format("Discarding program binary %s: %s", file.getFileName(), reason));
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn(String.format("Could not delete program binary %s: %s", file, e));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Background thread that watches shader source files and flags their Shader for reload.
+// It never touches GL: the render thread picks the flag up in Shader.pollReload().
+@Slf4j
+public class ShaderWatcher implements Runnable {
+    private static ShaderWatcher instance;
+
+    private final WatchService watchService;
+    private final Map<Path, WatchKey> directories = new HashMap<>();  // Guarded by the class
+    private final List<Watched> watched = new CopyOnWriteArrayList<>();
+
+    private ShaderWatcher() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(this, "shader-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized void watch(Shader shader, Path file) {
+        try {
+            if (instance == null) {
+                instance = new ShaderWatcher();
+            }
+            instance.register(shader, file.toAbsolutePath().normalize());
+        } catch (IOException e) {
+            log.warn(String.format("Cannot watch %s for shader hot reload: %s", file, e));
+        }
+    }
+
+    // Stops watching the shader's files, and their directories once no other shader uses them
+    public static synchronized void unwatch(Shader shader) {
+        if (instance != null) {
+            instance.unregister(shader);
+        }
+    }
+
+    private void register(Shader shader, Path file) throws IOException {
+        Path directory = file.getParent();
+        if (!directories.containsKey(directory)) {
+            // Editors often save by replacing the file, so creation counts as a change too
+            directories.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE));
+        }
+        watched.add(new Watched(shader, file));
+    }
+
+    private void unregister(Shader shader) {
+        watched.removeIf(entry -> entry.shader == shader);
+        directories.entrySet().removeIf(directory -> {
+            for (Watched entry : watched) {
+                if (entry.file.getParent().equals(directory.getKey())) {
+                    return false;
+                }
+            }
+            directory.getValue().cancel();
+            return true;
+        });
+    }
+
+    // Number of watched files, for tests
+    static int getWatchedCount() {
+        ShaderWatcher watcher;
+        synchronized (ShaderWatcher.class) {
+            watcher = instance;
+        }
+        return watcher == null ? 0 : watcher.watched.size();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    continue;
+                }
+                Path changed = directory.resolve((Path) event.context());
+                for (Watched entry : watched) {
+                    if (entry.file.equals(changed)) {
+                        entry.shader.requestReload();
+                    }
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private static final class Watched {
+        private final Shader shader;
+        private final Path file;
+
+        Watched(Shader shader, Path file) {
+            this.shader = shader;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.vibhusha.utils;
+
+// Handles to the uniforms the engine's shaders share (vertex.glsl, fragment.glsl and the particle
+// shaders), resolved once per Shader by Shader.getStandardUniforms(). Per-frame code sets these instead
+// of looking uniforms up by name; a shader that does not declare one simply ignores its setter.
+public final class StandardUniforms {
+    private final Uniform.Mat4 viewMatrix;
+    private final Uniform.Mat4 projectionMatrix;
+    private final Uniform.Vec3 positionOffset;
+    private final Uniform.Vec3 positionScale;
+    private final Uniform.Vec4 texCoordTransform;
+    private final Uniform.Scalar octahedralNormals;
+    private final Uniform.Vec4 diffuseColor;
+
+    StandardUniforms(Shader shader) {
+        viewMatrix = shader.getMat4Uniform("viewMatrix");
+        projectionMatrix = shader.getMat4Uniform("projectionMatrix");
+        positionOffset = shader.getVec3Uniform("positionOffset");
+        positionScale = shader.getVec3Uniform("positionScale");
+        texCoordTransform = shader.getVec4Uniform("texCoordTransform");
+        octahedralNormals = shader.getScalarUniform("octahedralNormals");
+        diffuseColor = shader.getVec4Uniform("diffuseColor");
+    }
+
+    // Column-major 4x4 matrices
+    public void setCamera(float[] view, float[] projection) {
+        viewMatrix.set(view);
+        projectionMatrix.set(projection);
+    }
+
+    // Dequantization parameters as VertexEncoder lays them out: position offset, position scale, uv transform
+    public void setDecode(float[] decode, boolean octahedral) {
+        positionOffset.set(decode[0], decode[1], decode[2]);
+        positionScale.set(decode[3], decode[4], decode[5]);
+        texCoordTransform.set(decode[6], decode[7], decode[8], decode[9]);
+        octahedralNormals.set(octahedral ? 1.0f : 0.0f);
+    }
+
+    public void setDiffuseColor(float r, float g, float b, float a) {
+        diffuseColor.set(r, g, b, a);
+    }
+}
@@ -0,0 +1,65 @@
+package com.vibhusha.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Progress and queue counters of an AssetManager. Requested/decoded/failed are updated by worker
+// threads; the upload counters and per-frame figures belong to the GL thread.
+public class StreamingStats {
+    final AtomicInteger requested = new AtomicInteger();
+    final AtomicInteger decoded = new AtomicInteger();
+    final AtomicInteger failed = new AtomicInteger();
+    int uploaded;
+    long bytesUploaded;
+    int queueDepth;
+    int frameUploads;
+    long frameUploadNanos;
+
+    public int getRequested() {
+        return requested.get();
+    }
+
+    public int getDecoded() {
+        return decoded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getUploaded() {
+        return uploaded;
+    }
+
+    public long getBytesUploaded() {
+        return bytesUploaded;
+    }
+
+    // Decoded payloads waiting for the GL thread, as of the last processUploads call
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getFrameUploads() {
+        return frameUploads;
+    }
+
+    public long getFrameUploadNanos() {
+        return frameUploadNanos;
+    }
+
+    // Fraction of requested assets that are uploaded or have failed
+    public float getProgress() {
+        int total = requested.get();
+        return total == 0 ? 1.0f : (uploaded + failed.get()) / (float) total;
+    }
+
+    public boolean isIdle() {
+        return uploaded + failed.get() == requested.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d assets ready, %d failed, %d decoded, queue depth %d, %.1f MB uploaded",
+                uploaded, requested.get(), failed.get(), decoded.get(), queueDepth, bytesUploaded / 1048576.0);
+    }
+}
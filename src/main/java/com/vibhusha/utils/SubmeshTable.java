@@ -0,0 +1,52 @@
+package com.vibhusha.utils;
+
+// Per-material index ranges of a mesh. Within every LOD the submeshes are stored back to back in
+// material order, so submesh s of LOD l is a sub-range of that LOD's range and a pass that ignores
+// materials still draws a whole LOD with one call. Material names refer to the OBJ's MTL libraries;
+// "" is the default material of faces that come before any usemtl.
+public class SubmeshTable {
+    private final String[] libraries;
+    private final String[] materials;
+    private final int[] offsets;  // lod * submeshCount + submesh
+    private final int[] counts;
+
+    public SubmeshTable(String[] libraries, String[] materials, int[] offsets, int[] counts) {
+        if (offsets.length != counts.length || materials.length == 0 || offsets.length % materials.length != 0) {
+            throw new IllegalArgumentException("Submesh ranges do not match " + materials.length + " material(s)");
+        }
+        this.libraries = libraries;
+        this.materials = materials;
+        this.offsets = offsets;
+        this.counts = counts;
+    }
+
+    // One default-material submesh covering each LOD
+    public static SubmeshTable single(int[] lodOffsets, int[] lodCounts) {
+        return new SubmeshTable(new String[0], new String[]{""}, lodOffsets.clone(), lodCounts.clone());
+    }
+
+    public int getSubmeshCount() {
+        return materials.length;
+    }
+
+    public int getLodCount() {
+        return offsets.length / materials.length;
+    }
+
+    // mtllib file names as written in the OBJ, relative to its directory
+    public String[] getLibraries() {
+        return libraries;
+    }
+
+    public String getMaterial(int submesh) {
+        return materials[submesh];
+    }
+
+    public int getOffset(int lod, int submesh) {
+        return offsets[lod * materials.length + submesh];
+    }
+
+    public int getCount(int lod, int submesh) {
+        return counts[lod * materials.length + submesh];
+    }
+}
@@ -3,87 +3,222 @@ package com.vibhusha.utils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.imaging.ImageReadException;
 import org.apache.commons.imaging.Imaging;
+import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
-import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 @Slf4j
-public class Texture {
+public class Texture implements GpuResource {
+    // -Dtexture.compression=auto|bc1|bc3|none; auto picks BC1 for opaque images and BC3 otherwise
+    private static final String COMPRESSION = System.getProperty("texture.compression", "auto");
+
     private int textureId;
     private int width, height;
+    private long byteSize;
 
     public Texture(String resourcePath) {
         try {
-            // Load image using getResourceAsStream
-            InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resourcePath);
+            TextureImage image = decode(resourcePath);
+            System.out.println("Loaded Texture: " + resourcePath + " | Width: " + image.getWidth() + ", Height: " + image.getHeight());
+            upload(image);
+            image.free();
+        } catch (IOException e) {
+            log.error(String.format("There was an error occured while initializing the texture in path %s Error %s", resourcePath, e));
+        }
+    }
+
+    // No GL texture, for tests that record commands without a GL context
+    Texture(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // Uploads already decoded pixels or blocks, the caller keeps ownership of the image
+    public Texture(TextureImage image) {
+        upload(image);
+    }
+
+    // File I/O, decoding and compression only, safe to call off the GL thread. Prefers the compressed
+    // <image>.dds next to the source when it was made from the same content, and writes it otherwise.
+    public static TextureImage decode(String resourcePath) throws IOException {
+        Path source = resolveFile(resourcePath);
+        if (source == null || COMPRESSION.equals("none")) {
+            return decodeImage(resourcePath);
+        }
+
+        Path cached = source.resolveSibling(source.getFileName() + DdsFile.EXTENSION);
+        byte[] hash = cacheKey(MeshCache.hash(source));
+        TextureCompression requested = requestedCompression();
+        if (Files.exists(cached)) {
+            try {
+                TextureImage image = DdsFile.map(cached, hash);
+                if (image != null && (requested == null ? image.getCompression().isCompressed() : image.getCompression() == requested)) {
+                    log.info(String.format("Loaded %s from compressed cache (%s)", resourcePath, image.getCompression()));
+                    return image;
+                }
+                if (image != null) {
+                    log.info(String.format("Texture cache %s holds %s, %s was requested; compressing again", cached, image.getCompression(), COMPRESSION));
+                    image.free();
+                }
+            } catch (IOException e) {
+                log.warn(String.format("Ignoring unreadable texture cache %s: %s", cached, e));
+            }
+        }
+
+        TextureImage image = decodeImage(resourcePath);
+        TextureCompression compression = requested != null ? requested
+                : BlockCompressor.isOpaque(image.getPixels(), image.getWidth(), image.getHeight()) ? TextureCompression.BC1 : TextureCompression.BC3;
+        long startTime = System.nanoTime();
+        TextureImage compressed = BlockCompressor.compress(image, compression);
+        log.info(String.format("Compressed %s to %s in %.1f ms (%d -> %d bytes)", resourcePath, compression,
+                (System.nanoTime() - startTime) / 1_000_000.0, image.getByteCount(), compressed.getByteCount()));
+        image.free();
+        try {
+            DdsFile.write(cached, compressed, hash);
+        } catch (IOException e) {
+            log.warn(String.format("Could not write texture cache %s: %s", cached, e));
+        }
+        return compressed;
+    }
+
+    // BC1 or BC3 when -Dtexture.compression names one, null for auto
+    private static TextureCompression requestedCompression() {
+        return switch (COMPRESSION) {
+            case "bc1" -> TextureCompression.BC1;
+            case "bc3" -> TextureCompression.BC3;
+            default -> null;
+        };
+    }
+
+    // The source hash with the compression mode folded in, so a cache written under another mode
+    // (auto picks per image, so its files cannot be told apart by format alone) no longer matches
+    static byte[] cacheKey(byte[] sourceHash) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(sourceHash);
+            digest.update(COMPRESSION.getBytes(StandardCharsets.US_ASCII));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Decodes to RGBA8 with a full mip chain
+    public static TextureImage decodeImage(String resourcePath) throws IOException {
+        // Load image using getResourceAsStream
+        try (InputStream inputStream = Texture.class.getClassLoader().getResourceAsStream(resourcePath)) {
             if (inputStream == null) {
                 throw new IOException("Texture file not found: " + resourcePath);
             }
 
             // Decode image using Apache Commons Imaging
             BufferedImage image = Imaging.getBufferedImage(inputStream);
-            width = image.getWidth();
-            height = image.getHeight();
 
-            System.out.println("Loaded Texture: " + resourcePath + " | Width: " + width + ", Height: " + height);
+            // Convert BufferedImage to OpenGL-compatible format (RGBA) and build the mip chain
+            TextureImage converted = new TextureImage(image.getWidth(), image.getHeight(), TextureConverter.toRgba(image));
+            converted.setMipmaps(MipChain.generate(converted));
+            return converted;
+        } catch (ImageReadException e) {
+            throw new IOException("Could not decode texture " + resourcePath, e);
+        }
+    }
 
-            // Convert BufferedImage to OpenGL-compatible format (RGBA)
-            ByteBuffer buffer = convertToByteBuffer(image);
+    // The resource as a file on disk, or null when it can only be read as a stream
+    private static Path resolveFile(String resourcePath) throws IOException {
+        URL url = Texture.class.getClassLoader().getResource(resourcePath);
+        if (url == null) {
+            throw new IOException("Texture file not found: " + resourcePath);
+        }
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid texture resource path: " + resourcePath, e);
+        }
+    }
 
-            // OpenGL texture setup
-            textureId = GL11.glGenTextures();
-            if (textureId == 0) {
-                throw new RuntimeException("Failed to generate texture ID. OpenGL context may not be active.");
-            }
+    private void upload(TextureImage image) {
+        if (image.getCompression().isCompressed() && !GL.getCapabilities().GL_EXT_texture_compression_s3tc) {
+            // No S3TC on this driver, expand the blocks again
+            TextureImage decoded = BlockCompressor.decompress(image);
+            upload(decoded);
+            decoded.free();
+            return;
+        }
+        width = image.getWidth();
+        height = image.getHeight();
+        byteSize = image.getByteCount();
+
+        // OpenGL texture setup
+        textureId = GL11.glGenTextures();
+        if (textureId == 0) {
+            throw new RuntimeException("Failed to generate texture ID. OpenGL context may not be active.");
+        }
 
-            GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureId);
-            GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1); // Ensure proper byte alignment
-            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, width, height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buffer);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureId);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1); // Ensure proper byte alignment
+        uploadLevel(0, image);
+        TextureImage[] mipmaps = image.getMipmaps();
+        for (int level = 0; level < mipmaps.length; level++) {
+            uploadLevel(level + 1, mipmaps[level]);
+        }
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MAX_LEVEL, mipmaps.length);
 
-            // Set texture filtering options
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+        // Trilinear filtering when the chain is there
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, mipmaps.length > 0 ? GL11.GL_LINEAR_MIPMAP_LINEAR : GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
 
-            GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+    }
 
-            // Free the buffer
-            MemoryUtil.memFree(buffer);
-            inputStream.close();
-        } catch (IOException | ImageReadException e) {
-            log.error(String.format("There was an error occured while initializing the texture in path %s Error %s", resourcePath, e));
+    private static void uploadLevel(int level, TextureImage image) {
+        TextureCompression compression = image.getCompression();
+        if (compression.isCompressed()) {
+            GL13.glCompressedTexImage2D(GL11.GL_TEXTURE_2D, level, compression.getGlFormat(), image.getWidth(), image.getHeight(), 0, image.getPixels());
+        } else {
+            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, level, GL11.GL_RGBA, image.getWidth(), image.getHeight(), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getPixels());
         }
+        Profiler.count(Profiler.UPLOADED_BYTES, image.getPixels().remaining());
     }
 
-    private ByteBuffer convertToByteBuffer(BufferedImage image) {
-        int[] pixels = new int[width * height];
-        image.getRGB(0, 0, width, height, pixels, 0, width);
-
-        ByteBuffer buffer = MemoryUtil.memAlloc(width * height * 4);
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixel = pixels[y * width + x];
+    public int getWidth() {
+        return width;
+    }
 
-                // Extract RGBA components
-                byte a = (byte) ((pixel >> 24) & 0xFF);
-                byte r = (byte) ((pixel >> 16) & 0xFF);
-                byte g = (byte) ((pixel >> 8) & 0xFF);
-                byte b = (byte) (pixel & 0xFF);
+    public int getHeight() {
+        return height;
+    }
 
-                buffer.put(r).put(g).put(b).put(a);
-            }
-        }
-        buffer.flip();
-        return buffer;
+    public int getTextureId() {
+        return textureId;
     }
 
     public void bind() {
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureId);
+        Profiler.count(Profiler.STATE_CHANGES, 1);
+    }
+
+    // Every uploaded level, at its compressed size when block-compressed
+    @Override
+    public long getByteSize() {
+        return byteSize;
     }
 
+    @Override
     public void cleanup() {
         GL11.glDeleteTextures(textureId);
     }
@@ -0,0 +1,53 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.opengl.EXTTextureCompressionS3TC;
+import org.lwjgl.opengl.GL11;
+
+// Pixel storage of a TextureImage level: plain RGBA8 or a 4x4 block-compressed format
+public enum TextureCompression {
+    NONE(GL11.GL_RGBA, 0, null),
+    BC1(EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT1_EXT, 8, "DXT1"),
+    BC3(EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT5_EXT, 16, "DXT5");
+
+    private final int glFormat;
+    private final int blockBytes;
+    private final String fourCC;
+
+    TextureCompression(int glFormat, int blockBytes, String fourCC) {
+        this.glFormat = glFormat;
+        this.blockBytes = blockBytes;
+        this.fourCC = fourCC;
+    }
+
+    public int getGlFormat() {
+        return glFormat;
+    }
+
+    public boolean isCompressed() {
+        return this != NONE;
+    }
+
+    public int getBlockBytes() {
+        return blockBytes;
+    }
+
+    public String getFourCC() {
+        return fourCC;
+    }
+
+    public int byteCount(int width, int height) {
+        if (this == NONE) {
+            return width * height * 4;
+        }
+        return ((width + 3) / 4) * ((height + 3) / 4) * blockBytes;
+    }
+
+    public static TextureCompression fromFourCC(String fourCC) {
+        for (TextureCompression compression : values()) {
+            if (fourCC.equals(compression.fourCC)) {
+                return compression;
+            }
+        }
+        return null;
+    }
+}
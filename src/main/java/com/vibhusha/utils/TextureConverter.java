@@ -0,0 +1,137 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Converts decoded images to tightly packed RGBA8 rows. Byte and int rasters are read straight from
+// their backing arrays and swizzled a row at a time, with row bands spread across the pool; any
+// other layout falls back to BufferedImage.getRGB, still per band.
+public class TextureConverter {
+    // Rows per parallel task, and images smaller than this many pixels stay on the calling thread
+    private static final int ROWS_PER_TASK = 64;
+    private static final int PARALLEL_THRESHOLD = 256 * 256;
+
+    public static ByteBuffer toRgba(BufferedImage image) {
+        ByteBuffer buffer = MemoryUtil.memAlloc(image.getWidth() * image.getHeight() * 4);
+        convert(image, buffer, ForkJoinPool.commonPool());
+        return buffer;
+    }
+
+    // Writes width * height * 4 bytes at dest[0..], leaving position and limit untouched
+    public static void convert(BufferedImage image, ByteBuffer dest, ForkJoinPool pool) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        RowConverter rows = rowConverter(image);
+        int tasks = (height + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+        run(pool, (long) width * height >= PARALLEL_THRESHOLD, tasks, task -> {
+            byte[] row = new byte[width * 4];
+            int end = Math.min(height, (task + 1) * ROWS_PER_TASK);
+            for (int y = task * ROWS_PER_TASK; y < end; y++) {
+                rows.convert(y, row);
+                dest.put(y * width * 4, row, 0, row.length);
+            }
+        });
+    }
+
+    private interface RowConverter {
+        void convert(int y, byte[] rgba);
+    }
+
+    private static RowConverter rowConverter(BufferedImage image) {
+        Raster raster = image.getRaster();
+        SampleModel model = raster.getSampleModel();
+        DataBuffer data = raster.getDataBuffer();
+        int width = image.getWidth();
+        // Child rasters (sub-images) are translated into their parent's buffer
+        int originX = -raster.getSampleModelTranslateX();
+        int originY = -raster.getSampleModelTranslateY();
+
+        if (data instanceof DataBufferByte && data.getNumBanks() == 1 && model instanceof ComponentSampleModel
+                && image.getColorModel() instanceof ComponentColorModel && image.getColorModel().getColorSpace().isCS_sRGB()
+                && !image.isAlphaPremultiplied() && (model.getNumBands() == 3 || model.getNumBands() == 4)) {
+            ComponentSampleModel components = (ComponentSampleModel) model;
+            byte[] pixels = ((DataBufferByte) data).getData();
+            int[] offsets = components.getBandOffsets();
+            int pixelStride = components.getPixelStride();
+            int scanlineStride = components.getScanlineStride();
+            int base = data.getOffset() + originY * scanlineStride + originX * pixelStride;
+            int r = offsets[0], g = offsets[1], b = offsets[2];
+            boolean hasAlpha = offsets.length == 4;
+            int a = hasAlpha ? offsets[3] : 0;
+            return (y, rgba) -> {
+                int p = base + y * scanlineStride;
+                for (int x = 0, o = 0; x < width; x++, p += pixelStride, o += 4) {
+                    rgba[o] = pixels[p + r];
+                    rgba[o + 1] = pixels[p + g];
+                    rgba[o + 2] = pixels[p + b];
+                    rgba[o + 3] = hasAlpha ? pixels[p + a] : (byte) 0xFF;
+                }
+            };
+        }
+
+        if (data instanceof DataBufferInt && data.getNumBanks() == 1 && model instanceof SinglePixelPackedSampleModel) {
+            int type = image.getType();
+            if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_BGR) {
+                int[] pixels = ((DataBufferInt) data).getData();
+                int scanlineStride = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+                int base = data.getOffset() + originY * scanlineStride + originX;
+                boolean bgr = type == BufferedImage.TYPE_INT_BGR;
+                boolean hasAlpha = type == BufferedImage.TYPE_INT_ARGB;
+                return (y, rgba) -> {
+                    int p = base + y * scanlineStride;
+                    for (int x = 0, o = 0; x < width; x++, o += 4) {
+                        int pixel = pixels[p + x];
+                        int high = pixel >> 16, low = pixel;
+                        rgba[o] = (byte) (bgr ? low : high);
+                        rgba[o + 1] = (byte) (pixel >> 8);
+                        rgba[o + 2] = (byte) (bgr ? high : low);
+                        rgba[o + 3] = hasAlpha ? (byte) (pixel >>> 24) : (byte) 0xFF;
+                    }
+                };
+            }
+        }
+
+        // Anything else (palettes, grey, 16-bit, premultiplied): let AWT convert each row to ARGB
+        return (y, rgba) -> {
+            int[] argb = image.getRGB(0, y, width, 1, null, 0, width);
+            for (int x = 0, o = 0; x < width; x++, o += 4) {
+                int pixel = argb[x];
+                rgba[o] = (byte) (pixel >> 16);
+                rgba[o + 1] = (byte) (pixel >> 8);
+                rgba[o + 2] = (byte) pixel;
+                rgba[o + 3] = (byte) (pixel >>> 24);
+            }
+        };
+    }
+
+    static void run(ForkJoinPool pool, boolean parallel, int count, IntConsumer body) {
+        if (!parallel || count == 1) {
+            for (int i = 0; i < count; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        try {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while converting texture", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Texture conversion failed", e.getCause());
+        }
+    }
+}
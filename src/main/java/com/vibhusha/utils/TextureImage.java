@@ -0,0 +1,73 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+// Decoded RGBA8 pixels or compressed blocks in an off-heap staging buffer, waiting to be uploaded
+// by the GL thread. Buffers allocated with MemoryUtil are owned and freed here; mapped cache files
+// are released by the GC instead.
+public class TextureImage {
+    private final int width;
+    private final int height;
+    private final TextureCompression compression;
+    private final boolean owned;
+    private ByteBuffer pixels;
+    private TextureImage[] mipmaps = new TextureImage[0];
+
+    public TextureImage(int width, int height, ByteBuffer pixels) {
+        this(width, height, pixels, TextureCompression.NONE, true);
+    }
+
+    public TextureImage(int width, int height, ByteBuffer pixels, TextureCompression compression, boolean owned) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        this.compression = compression;
+        this.owned = owned;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public ByteBuffer getPixels() {
+        return pixels;
+    }
+
+    public TextureCompression getCompression() {
+        return compression;
+    }
+
+    // Levels 1..n below this image, empty when the image has no mip chain
+    public TextureImage[] getMipmaps() {
+        return mipmaps;
+    }
+
+    public void setMipmaps(TextureImage[] mipmaps) {
+        this.mipmaps = mipmaps;
+    }
+
+    // Including the mip chain
+    public int getByteCount() {
+        int bytes = compression.byteCount(width, height);
+        for (TextureImage mipmap : mipmaps) {
+            bytes += mipmap.getByteCount();
+        }
+        return bytes;
+    }
+
+    public void free() {
+        if (pixels != null && owned) {
+            MemoryUtil.memFree(pixels);
+        }
+        pixels = null;
+        for (TextureImage mipmap : mipmaps) {
+            mipmap.free();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vibhusha.utils;
+
+import java.util.Arrays;
+
+// Rolling window of nanosecond samples (frame times, tick jitter) with mean, standard deviation, max and
+// percentiles. Also used for per-frame counts, through the unitless getters. Recording never allocates;
+// a single thread records and reads.
+public class TimingStats {
+    private final long[] samples;
+    private final long[] sorted;  // Scratch for percentiles
+    private int count;
+    private int next;
+
+    public TimingStats(int window) {
+        samples = new long[window];
+        sorted = new long[window];
+    }
+
+    public void record(long nanos) {
+        samples[next] = nanos;
+        next = next + 1 == samples.length ? 0 : next + 1;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum / (double) count;
+    }
+
+    public double getMeanMillis() {
+        return getMean() / 1_000_000.0;
+    }
+
+    public double getStdDevMillis() {
+        if (count < 2) {
+            return 0;
+        }
+        double mean = getMeanMillis();
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            double delta = samples[i] / 1_000_000.0 - mean;
+            sum += delta * delta;
+        }
+        return Math.sqrt(sum / (count - 1));
+    }
+
+    public long getMax() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    public double getMaxMillis() {
+        return getMax() / 1_000_000.0;
+    }
+
+    // Nearest-rank percentile of the window, fraction in [0, 1]; sorts a copy, O(window log window)
+    public long getPercentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        System.arraycopy(samples, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        int rank = (int) Math.ceil(fraction * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, rank))];
+    }
+
+    public double getPercentileMillis(double fraction) {
+        return getPercentile(fraction) / 1_000_000.0;
+    }
+
+    public String summary() {
+        return String.format("mean %.3f ms, stddev %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms (%d samples)", getMeanMillis(),
+                getStdDevMillis(), getPercentileMillis(0.5), getPercentileMillis(0.99), getMaxMillis(), count);
+    }
+
+    public void clear() {
+        count = 0;
+        next = 0;
+    }
+}
@@ -0,0 +1,645 @@
+package com.vibhusha.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bounding volume hierarchy over the triangles of a CPU-side mesh, for picking and collision.
+// Built top-down with a binned surface area heuristic; subtrees above PARALLEL_THRESHOLD triangles
+// are built as separate fork-join tasks. Nodes live in flat arrays, the two children of an inner node
+// are adjacent, and the triangles are copied in leaf order in edge form so a leaf reads one
+// contiguous run. Queries keep their state in a caller-owned BvhQuery and allocate nothing.
+public class TriangleBvh {
+    private static final int BIN_COUNT = 16;
+    private static final int MAX_LEAF_SIZE = 16;
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    private static final float TRAVERSAL_COST = 1.0f;
+    private static final float EPSILON = 1e-9f;
+
+    // Per node, NODE_STRIDE floats: minX, minY, minZ, maxX, maxY, maxZ, then as raw int bits the first
+    // triangle in leaf order (leaf) or the left child (inner, the right one follows it), and the
+    // triangle count (0 for inner nodes). One node is read with one cache line.
+    private static final int NODE_STRIDE = 8;
+    private final float[] nodes;
+    private final int nodeTotal;
+    private final int depth;
+
+    // Per triangle in leaf order: v0 xyz, edge v1 - v0, edge v2 - v0
+    private final float[] triangles;
+    private final int[] triangleIds;
+
+    private TriangleBvh(float[] nodes, int nodeTotal, int depth, float[] triangles, int[] triangleIds) {
+        this.nodes = nodes;
+        this.nodeTotal = nodeTotal;
+        this.depth = depth;
+        this.triangles = triangles;
+        this.triangleIds = triangleIds;
+    }
+
+    // positions: xyz per vertex; indices: three per triangle
+    public static TriangleBvh build(float[] positions, int[] indices, ForkJoinPool pool) {
+        int count = indices.length / 3;
+        Builder builder = new Builder(positions, indices, count);
+        if (count >= PARALLEL_THRESHOLD && pool != null) {
+            pool.invoke(builder.task(0, 0, count, 1));
+        } else {
+            builder.build(0, 0, count, 1, new Scratch());
+        }
+
+        float[] ordered = new float[count * 9];
+        for (int i = 0; i < count; i++) {
+            int t = builder.order[i];
+            int i0 = indices[t * 3] * 3, i1 = indices[t * 3 + 1] * 3, i2 = indices[t * 3 + 2] * 3;
+            for (int axis = 0; axis < 3; axis++) {
+                ordered[i * 9 + axis] = positions[i0 + axis];
+                ordered[i * 9 + 3 + axis] = positions[i1 + axis] - positions[i0 + axis];
+                ordered[i * 9 + 6 + axis] = positions[i2 + axis] - positions[i0 + axis];
+            }
+        }
+        int nodes = builder.nodeAllocator.get();
+        return new TriangleBvh(Arrays.copyOf(builder.nodes, nodes * NODE_STRIDE), nodes, builder.maxDepth.get(), ordered, builder.order);
+    }
+
+    public int getNodeCount() {
+        return nodeTotal;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getTriangleCount() {
+        return triangleIds.length;
+    }
+
+    public long getByteCount() {
+        return (long) (nodes.length + triangles.length) * Float.BYTES + (long) triangleIds.length * Integer.BYTES;
+    }
+
+    // Closest hit of origin + t * direction for t in [0, maxDistance], both triangle sides count
+    public boolean raycast(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance, BvhQuery query) {
+        query.ensureStack(depth);
+        query.triangle = -1;
+        float closest = maxDistance;
+        float invX = 1.0f / dx, invY = 1.0f / dy, invZ = 1.0f / dz;
+        int[] stack = query.stack;
+        float[] stackDistance = query.stackDistance;
+        int top = 0;
+
+        float rootEntry = slab(0, ox, oy, oz, invX, invY, invZ, closest, 0.0f);
+        if (rootEntry != Float.POSITIVE_INFINITY) {
+            stack[top] = 0;
+            stackDistance[top++] = rootEntry;
+        }
+        while (top > 0) {
+            int node = stack[--top];
+            if (stackDistance[top] > closest) {
+                continue;
+            }
+            int count = count(node);
+            if (count > 0) {
+                int end = first(node) + count;
+                for (int i = first(node); i < end; i++) {
+                    int base = i * 9;
+                    float e1x = triangles[base + 3], e1y = triangles[base + 4], e1z = triangles[base + 5];
+                    float e2x = triangles[base + 6], e2y = triangles[base + 7], e2z = triangles[base + 8];
+                    float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+                    float det = e1x * px + e1y * py + e1z * pz;
+                    if (det > -EPSILON && det < EPSILON) {
+                        continue;
+                    }
+                    float inv = 1.0f / det;
+                    float sx = ox - triangles[base], sy = oy - triangles[base + 1], sz = oz - triangles[base + 2];
+                    float u = (sx * px + sy * py + sz * pz) * inv;
+                    if (u < 0.0f || u > 1.0f) {
+                        continue;
+                    }
+                    float qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+                    float v = (dx * qx + dy * qy + dz * qz) * inv;
+                    if (v < 0.0f || u + v > 1.0f) {
+                        continue;
+                    }
+                    float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+                    if (t >= 0.0f && t < closest) {
+                        closest = t;
+                        query.triangle = i;
+                        query.u = u;
+                        query.v = v;
+                    }
+                }
+            } else {
+                // Visit the nearer child first so the farther one is usually culled by then
+                int left = first(node);
+                float leftEntry = slab(left, ox, oy, oz, invX, invY, invZ, closest, 0.0f);
+                float rightEntry = slab(left + 1, ox, oy, oz, invX, invY, invZ, closest, 0.0f);
+                if (leftEntry > rightEntry) {
+                    top = push(stack, stackDistance, top, left, leftEntry);
+                    top = push(stack, stackDistance, top, left + 1, rightEntry);
+                } else {
+                    top = push(stack, stackDistance, top, left + 1, rightEntry);
+                    top = push(stack, stackDistance, top, left, leftEntry);
+                }
+            }
+        }
+        return finish(query, closest);
+    }
+
+    // First contact of a sphere moving from origin along direction for t in [0, maxDistance].
+    // A sphere that already touches the mesh reports a hit at 0.
+    public boolean sweepSphere(float ox, float oy, float oz, float dx, float dy, float dz, float radius,
+                               float maxDistance, BvhQuery query) {
+        query.ensureStack(depth);
+        query.triangle = -1;
+        float closest = maxDistance;
+        float invX = 1.0f / dx, invY = 1.0f / dy, invZ = 1.0f / dz;
+        int[] stack = query.stack;
+        float[] stackDistance = query.stackDistance;
+        int top = 0;
+
+        // The swept sphere can only touch nodes that its centre ray enters once they are grown by the radius
+        float rootEntry = slab(0, ox, oy, oz, invX, invY, invZ, closest, radius);
+        if (rootEntry != Float.POSITIVE_INFINITY) {
+            stack[top] = 0;
+            stackDistance[top++] = rootEntry;
+        }
+        while (top > 0) {
+            int node = stack[--top];
+            if (stackDistance[top] > closest) {
+                continue;
+            }
+            int count = count(node);
+            if (count > 0) {
+                int end = first(node) + count;
+                for (int i = first(node); i < end; i++) {
+                    float t = sweepTriangle(i, ox, oy, oz, dx, dy, dz, radius, closest);
+                    if (t < closest) {
+                        closest = t;
+                        query.triangle = i;
+                    }
+                }
+            } else {
+                int left = first(node);
+                float leftEntry = slab(left, ox, oy, oz, invX, invY, invZ, closest, radius);
+                float rightEntry = slab(left + 1, ox, oy, oz, invX, invY, invZ, closest, radius);
+                if (leftEntry > rightEntry) {
+                    top = push(stack, stackDistance, top, left, leftEntry);
+                    top = push(stack, stackDistance, top, left + 1, rightEntry);
+                } else {
+                    top = push(stack, stackDistance, top, left + 1, rightEntry);
+                    top = push(stack, stackDistance, top, left, leftEntry);
+                }
+            }
+        }
+        return finish(query, closest);
+    }
+
+    // Collects every triangle that intersects the box into query.getOverlaps() and returns the count
+    public int overlapBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, BvhQuery query) {
+        query.ensureStack(depth);
+        IntList overlaps = query.overlaps;
+        overlaps.clear();
+        float cx = (minX + maxX) * 0.5f, cy = (minY + maxY) * 0.5f, cz = (minZ + maxZ) * 0.5f;
+        float hx = (maxX - minX) * 0.5f, hy = (maxY - minY) * 0.5f, hz = (maxZ - minZ) * 0.5f;
+        int[] stack = query.stack;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * NODE_STRIDE;
+            if (nodes[b] > maxX || nodes[b + 3] < minX || nodes[b + 1] > maxY || nodes[b + 4] < minY
+                    || nodes[b + 2] > maxZ || nodes[b + 5] < minZ) {
+                continue;
+            }
+            int count = count(node);
+            if (count > 0) {
+                int end = first(node) + count;
+                for (int i = first(node); i < end; i++) {
+                    if (triangleOverlapsBox(i, cx, cy, cz, hx, hy, hz, query.box)) {
+                        overlaps.add(triangleIds[i]);
+                    }
+                }
+            } else {
+                stack[top++] = first(node);
+                stack[top++] = first(node) + 1;
+            }
+        }
+        return overlaps.size();
+    }
+
+    private int first(int node) {
+        return Float.floatToRawIntBits(nodes[node * NODE_STRIDE + 6]);
+    }
+
+    private int count(int node) {
+        return Float.floatToRawIntBits(nodes[node * NODE_STRIDE + 7]);
+    }
+
+    private boolean finish(BvhQuery query, float closest) {
+        if (query.triangle < 0) {
+            return false;
+        }
+        query.distance = closest;
+        query.triangle = triangleIds[query.triangle];
+        return true;
+    }
+
+    private static int push(int[] stack, float[] stackDistance, int top, int node, float entry) {
+        if (entry != Float.POSITIVE_INFINITY) {
+            stack[top] = node;
+            stackDistance[top++] = entry;
+        }
+        return top;
+    }
+
+    // Entry distance of the ray into the node grown by margin, or +inf when it misses within maxDistance
+    private float slab(int node, float ox, float oy, float oz, float invX, float invY, float invZ, float maxDistance, float margin) {
+        int b = node * NODE_STRIDE;
+        float tx1 = (nodes[b] - margin - ox) * invX, tx2 = (nodes[b + 3] + margin - ox) * invX;
+        float ty1 = (nodes[b + 1] - margin - oy) * invY, ty2 = (nodes[b + 4] + margin - oy) * invY;
+        float tz1 = (nodes[b + 2] - margin - oz) * invZ, tz2 = (nodes[b + 5] + margin - oz) * invZ;
+        float near = Math.max(Math.max(Math.min(tx1, tx2), Math.min(ty1, ty2)), Math.max(Math.min(tz1, tz2), 0.0f));
+        float far = Math.min(Math.min(Math.max(tx1, tx2), Math.max(ty1, ty2)), Math.min(Math.max(tz1, tz2), maxDistance));
+        // NaN from 0 * inf (ray in a slab plane) fails both comparisons and counts as a hit, conservatively
+        return near > far ? Float.POSITIVE_INFINITY : near;
+    }
+
+    // Earliest contact with one triangle: the face, then its edges (capsules) and corners (spheres)
+    private float sweepTriangle(int i, float ox, float oy, float oz, float dx, float dy, float dz, float radius, float maxDistance) {
+        int base = i * 9;
+        float ax = triangles[base], ay = triangles[base + 1], az = triangles[base + 2];
+        float e1x = triangles[base + 3], e1y = triangles[base + 4], e1z = triangles[base + 5];
+        float e2x = triangles[base + 6], e2y = triangles[base + 7], e2z = triangles[base + 8];
+        float nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length < EPSILON) {
+            return Float.POSITIVE_INFINITY;  // Degenerate
+        }
+        nx /= length;
+        ny /= length;
+        nz /= length;
+        float distance = nx * (ox - ax) + ny * (oy - ay) + nz * (oz - az);
+        float approach = nx * dx + ny * dy + nz * dz;
+        if (distance < 0.0f) {
+            distance = -distance;
+            approach = -approach;
+            nx = -nx;
+            ny = -ny;
+            nz = -nz;
+        }
+
+        if (distance > radius) {
+            if (approach >= 0.0f) {
+                return Float.POSITIVE_INFINITY;  // Moving away from or along the plane
+            }
+            float t = (radius - distance) / approach;
+            if (t >= maxDistance) {
+                return Float.POSITIVE_INFINITY;  // Touching the plane is the earliest possible contact
+            }
+            float cx = ox + dx * t - nx * radius - ax, cy = oy + dy * t - ny * radius - ay, cz = oz + dz * t - nz * radius - az;
+            if (insideTriangle(cx, cy, cz, e1x, e1y, e1z, e2x, e2y, e2z)) {
+                return t;
+            }
+        } else {
+            // Already within radius of the plane: touching if the projected centre is inside
+            float cx = ox - nx * distance - ax, cy = oy - ny * distance - ay, cz = oz - nz * distance - az;
+            if (insideTriangle(cx, cy, cz, e1x, e1y, e1z, e2x, e2y, e2z)) {
+                return 0.0f;
+            }
+        }
+
+        float bx = ax + e1x, by = ay + e1y, bz = az + e1z;
+        float qx = ax + e2x, qy = ay + e2y, qz = az + e2z;
+        float closest = maxDistance;
+        closest = sweepPoint(ax, ay, az, ox, oy, oz, dx, dy, dz, radius, closest);
+        closest = sweepPoint(bx, by, bz, ox, oy, oz, dx, dy, dz, radius, closest);
+        closest = sweepPoint(qx, qy, qz, ox, oy, oz, dx, dy, dz, radius, closest);
+        closest = sweepEdge(ax, ay, az, bx, by, bz, ox, oy, oz, dx, dy, dz, radius, closest);
+        closest = sweepEdge(bx, by, bz, qx, qy, qz, ox, oy, oz, dx, dy, dz, radius, closest);
+        closest = sweepEdge(qx, qy, qz, ax, ay, az, ox, oy, oz, dx, dy, dz, radius, closest);
+        return closest < maxDistance ? closest : Float.POSITIVE_INFINITY;
+    }
+
+    private static boolean insideTriangle(float px, float py, float pz, float e1x, float e1y, float e1z,
+                                          float e2x, float e2y, float e2z) {
+        float d00 = e1x * e1x + e1y * e1y + e1z * e1z;
+        float d01 = e1x * e2x + e1y * e2y + e1z * e2z;
+        float d11 = e2x * e2x + e2y * e2y + e2z * e2z;
+        float d20 = px * e1x + py * e1y + pz * e1z;
+        float d21 = px * e2x + py * e2y + pz * e2z;
+        float denominator = d00 * d11 - d01 * d01;
+        float v = (d11 * d20 - d01 * d21) / denominator;
+        float w = (d00 * d21 - d01 * d20) / denominator;
+        return v >= 0.0f && w >= 0.0f && v + w <= 1.0f;
+    }
+
+    // |o + d t - p| = r
+    private static float sweepPoint(float px, float py, float pz, float ox, float oy, float oz,
+                                    float dx, float dy, float dz, float radius, float maxDistance) {
+        float mx = ox - px, my = oy - py, mz = oz - pz;
+        float a = dx * dx + dy * dy + dz * dz;
+        float b = 2.0f * (dx * mx + dy * my + dz * mz);
+        float c = mx * mx + my * my + mz * mz - radius * radius;
+        if (c <= 0.0f) {
+            return 0.0f;
+        }
+        float t = lowestRoot(a, b, c, maxDistance);
+        return Math.min(t, maxDistance);
+    }
+
+    // Distance from o + d t to the segment p..q equals r, counted only where the closest point lies inside the segment
+    private static float sweepEdge(float px, float py, float pz, float qx, float qy, float qz, float ox, float oy, float oz,
+                                   float dx, float dy, float dz, float radius, float maxDistance) {
+        float ex = qx - px, ey = qy - py, ez = qz - pz;
+        float bx = px - ox, by = py - oy, bz = pz - oz;
+        float edgeSquared = ex * ex + ey * ey + ez * ez;
+        float edgeDotDirection = ex * dx + ey * dy + ez * dz;
+        float edgeDotBase = ex * bx + ey * by + ez * bz;
+        float a = edgeSquared * -(dx * dx + dy * dy + dz * dz) + edgeDotDirection * edgeDotDirection;
+        float b = edgeSquared * 2.0f * (dx * bx + dy * by + dz * bz) - 2.0f * edgeDotDirection * edgeDotBase;
+        float c = edgeSquared * (radius * radius - (bx * bx + by * by + bz * bz)) + edgeDotBase * edgeDotBase;
+        if (c >= 0.0f) {
+            // Starts inside the infinite cylinder: touching now, or the corner spheres see the first contact
+            float f = -edgeDotBase / edgeSquared;
+            return f >= 0.0f && f <= 1.0f ? 0.0f : maxDistance;
+        }
+        float t = lowestRoot(a, b, c, maxDistance);
+        if (t < maxDistance) {
+            float f = (edgeDotDirection * t - edgeDotBase) / edgeSquared;
+            if (f >= 0.0f && f <= 1.0f) {
+                return t;
+            }
+        }
+        return maxDistance;
+    }
+
+    // Smallest root of a t^2 + b t + c = 0 in [0, maxDistance), or maxDistance
+    private static float lowestRoot(float a, float b, float c, float maxDistance) {
+        float discriminant = b * b - 4.0f * a * c;
+        if (discriminant < 0.0f || a == 0.0f) {
+            return maxDistance;
+        }
+        float root = (float) Math.sqrt(discriminant);
+        float t1 = (-b - root) / (2.0f * a);
+        float t2 = (-b + root) / (2.0f * a);
+        if (t1 > t2) {
+            float swap = t1;
+            t1 = t2;
+            t2 = swap;
+        }
+        if (t1 >= 0.0f && t1 < maxDistance) {
+            return t1;
+        }
+        if (t2 >= 0.0f && t2 < maxDistance) {
+            return t2;
+        }
+        return maxDistance;
+    }
+
+    // Separating axis test (Akenine-Moller): box faces, triangle plane and the nine edge cross products
+    private boolean triangleOverlapsBox(int i, float cx, float cy, float cz, float hx, float hy, float hz, float[] v) {
+        int base = i * 9;
+        v[0] = triangles[base] - cx;
+        v[1] = triangles[base + 1] - cy;
+        v[2] = triangles[base + 2] - cz;
+        for (int axis = 0; axis < 3; axis++) {
+            v[3 + axis] = v[axis] + triangles[base + 3 + axis];
+            v[6 + axis] = v[axis] + triangles[base + 6 + axis];
+        }
+        if (Math.min(v[0], Math.min(v[3], v[6])) > hx || Math.max(v[0], Math.max(v[3], v[6])) < -hx
+                || Math.min(v[1], Math.min(v[4], v[7])) > hy || Math.max(v[1], Math.max(v[4], v[7])) < -hy
+                || Math.min(v[2], Math.min(v[5], v[8])) > hz || Math.max(v[2], Math.max(v[5], v[8])) < -hz) {
+            return false;
+        }
+
+        for (int e = 0; e < 3; e++) {
+            int from = e * 3, to = (e + 1) % 3 * 3;
+            float fx = v[to] - v[from], fy = v[to + 1] - v[from + 1], fz = v[to + 2] - v[from + 2];
+            // Cross products of the edge with the box axes x, y and z
+            if (separated(0, -fz, fy, v, hx, hy, hz) || separated(fz, 0, -fx, v, hx, hy, hz) || separated(-fy, fx, 0, v, hx, hy, hz)) {
+                return false;
+            }
+        }
+        float e0x = v[3] - v[0], e0y = v[4] - v[1], e0z = v[5] - v[2];
+        float e1x = v[6] - v[3], e1y = v[7] - v[4], e1z = v[8] - v[5];
+        float nx = e0y * e1z - e0z * e1y;
+        float ny = e0z * e1x - e0x * e1z;
+        float nz = e0x * e1y - e0y * e1x;
+        return !separated(nx, ny, nz, v, hx, hy, hz);
+    }
+
+    private static boolean separated(float ax, float ay, float az, float[] v, float hx, float hy, float hz) {
+        float p0 = ax * v[0] + ay * v[1] + az * v[2];
+        float p1 = ax * v[3] + ay * v[4] + az * v[5];
+        float p2 = ax * v[6] + ay * v[7] + az * v[8];
+        float r = hx * Math.abs(ax) + hy * Math.abs(ay) + hz * Math.abs(az);
+        return Math.min(p0, Math.min(p1, p2)) > r || Math.max(p0, Math.max(p1, p2)) < -r;
+    }
+
+    private static final class Scratch {
+        final int[] binCounts = new int[3 * BIN_COUNT];
+        final float[] binBounds = new float[3 * BIN_COUNT * 6];
+        final float[] rightArea = new float[BIN_COUNT];
+        final int[] rightCounts = new int[BIN_COUNT];
+        final float[] accumulator = new float[6];
+        final float[] centroidMin = new float[3];
+        final float[] extent = new float[3];
+    }
+
+    private static final class Builder {
+        private final float[] centroids;
+        private final float[] triangleBounds;
+        private final int[] order;
+        private final float[] nodes;
+        private final AtomicInteger nodeAllocator = new AtomicInteger(1);
+        private final AtomicInteger maxDepth = new AtomicInteger(1);
+
+        Builder(float[] positions, int[] indices, int count) {
+            centroids = new float[count * 3];
+            triangleBounds = new float[count * 6];
+            order = new int[count];
+            int maxNodes = Math.max(1, 2 * count - 1);
+            nodes = new float[maxNodes * NODE_STRIDE];
+            for (int t = 0; t < count; t++) {
+                order[t] = t;
+                for (int axis = 0; axis < 3; axis++) {
+                    float a = positions[indices[t * 3] * 3 + axis];
+                    float b = positions[indices[t * 3 + 1] * 3 + axis];
+                    float c = positions[indices[t * 3 + 2] * 3 + axis];
+                    float min = Math.min(a, Math.min(b, c));
+                    float max = Math.max(a, Math.max(b, c));
+                    triangleBounds[t * 6 + axis] = min;
+                    triangleBounds[t * 6 + 3 + axis] = max;
+                    centroids[t * 3 + axis] = (min + max) * 0.5f;
+                }
+            }
+        }
+
+        RecursiveAction task(int node, int start, int count, int level) {
+            return new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    build(node, start, count, level, new Scratch());
+                }
+            };
+        }
+
+        void build(int node, int start, int count, int level, Scratch scratch) {
+            maxDepth.accumulateAndGet(level, Math::max);
+            float cMinX = Float.POSITIVE_INFINITY, cMinY = Float.POSITIVE_INFINITY, cMinZ = Float.POSITIVE_INFINITY;
+            float cMaxX = Float.NEGATIVE_INFINITY, cMaxY = Float.NEGATIVE_INFINITY, cMaxZ = Float.NEGATIVE_INFINITY;
+            int b = node * NODE_STRIDE;
+            nodes[b] = nodes[b + 1] = nodes[b + 2] = Float.POSITIVE_INFINITY;
+            nodes[b + 3] = nodes[b + 4] = nodes[b + 5] = Float.NEGATIVE_INFINITY;
+            for (int i = start; i < start + count; i++) {
+                int t = order[i];
+                for (int k = 0; k < 3; k++) {
+                    nodes[b + k] = Math.min(nodes[b + k], triangleBounds[t * 6 + k]);
+                    nodes[b + 3 + k] = Math.max(nodes[b + 3 + k], triangleBounds[t * 6 + 3 + k]);
+                }
+                float x = centroids[t * 3], y = centroids[t * 3 + 1], z = centroids[t * 3 + 2];
+                cMinX = Math.min(cMinX, x); cMaxX = Math.max(cMaxX, x);
+                cMinY = Math.min(cMinY, y); cMaxY = Math.max(cMaxY, y);
+                cMinZ = Math.min(cMinZ, z); cMaxZ = Math.max(cMaxZ, z);
+            }
+            if (count <= 2) {
+                makeLeaf(node, start, count);
+                return;
+            }
+
+            // Bin centroids along all three axes and sweep for the cheapest split
+            float[] centroidMin = scratch.centroidMin;
+            float[] extent = scratch.extent;
+            centroidMin[0] = cMinX;
+            centroidMin[1] = cMinY;
+            centroidMin[2] = cMinZ;
+            extent[0] = cMaxX - cMinX;
+            extent[1] = cMaxY - cMinY;
+            extent[2] = cMaxZ - cMinZ;
+            int[] binCounts = scratch.binCounts;
+            float[] binBounds = scratch.binBounds;
+            Arrays.fill(binCounts, 0);
+            for (int i = 0; i < 3 * BIN_COUNT; i++) {
+                resetBounds(binBounds, i * 6);
+            }
+            for (int i = start; i < start + count; i++) {
+                int t = order[i];
+                for (int axis = 0; axis < 3; axis++) {
+                    if (extent[axis] <= 0.0f) {
+                        continue;
+                    }
+                    int bin = binOf(centroids[t * 3 + axis], centroidMin[axis], extent[axis]);
+                    int slot = axis * BIN_COUNT + bin;
+                    binCounts[slot]++;
+                    growBounds(binBounds, slot * 6, triangleBounds, t * 6);
+                }
+            }
+
+            float bestCost = Float.POSITIVE_INFINITY;
+            int bestAxis = -1, bestSplit = -1;
+            float[] accumulator = scratch.accumulator;
+            float[] rightArea = scratch.rightArea;
+            int[] rightCounts = scratch.rightCounts;
+            for (int axis = 0; axis < 3; axis++) {
+                if (extent[axis] <= 0.0f) {
+                    continue;
+                }
+                resetBounds(accumulator, 0);
+                int rightCount = 0;
+                for (int bin = BIN_COUNT - 1; bin > 0; bin--) {
+                    int slot = axis * BIN_COUNT + bin;
+                    rightCount += binCounts[slot];
+                    growBounds(accumulator, 0, binBounds, slot * 6);
+                    rightArea[bin] = area(accumulator);
+                    rightCounts[bin] = rightCount;
+                }
+                resetBounds(accumulator, 0);
+                int leftCount = 0;
+                for (int split = 1; split < BIN_COUNT; split++) {
+                    int slot = axis * BIN_COUNT + split - 1;
+                    leftCount += binCounts[slot];
+                    growBounds(accumulator, 0, binBounds, slot * 6);
+                    if (leftCount == 0 || rightCounts[split] == 0) {
+                        continue;
+                    }
+                    float cost = area(accumulator) * leftCount + rightArea[split] * rightCounts[split];
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestAxis = axis;
+                        bestSplit = split;
+                    }
+                }
+            }
+
+            float leafCost = count;
+            float splitCost = TRAVERSAL_COST + bestCost / Math.max(area(nodes, b), Float.MIN_NORMAL);
+            int mid;
+            if (bestAxis >= 0 && (splitCost < leafCost || count > MAX_LEAF_SIZE)) {
+                mid = partition(start, count, bestAxis, bestSplit, centroidMin[bestAxis], extent[bestAxis]);
+            } else if (count > MAX_LEAF_SIZE) {
+                mid = start + count / 2;  // Coincident centroids, any split is as good as another
+            } else {
+                makeLeaf(node, start, count);
+                return;
+            }
+
+            int left = nodeAllocator.getAndAdd(2);
+            setChildren(node, left, 0);
+            int leftCount = mid - start, rightCount = count - leftCount;
+            if (count >= PARALLEL_THRESHOLD) {
+                RecursiveAction.invokeAll(task(left, start, leftCount, level + 1), task(left + 1, mid, rightCount, level + 1));
+            } else {
+                build(left, start, leftCount, level + 1, scratch);
+                build(left + 1, mid, rightCount, level + 1, scratch);
+            }
+        }
+
+        private int partition(int start, int count, int axis, int split, float min, float extent) {
+            int i = start, j = start + count - 1;
+            while (i <= j) {
+                if (binOf(centroids[order[i] * 3 + axis], min, extent) < split) {
+                    i++;
+                } else {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            return i;
+        }
+
+        private void makeLeaf(int node, int start, int count) {
+            setChildren(node, start, count);
+        }
+
+        private void setChildren(int node, int first, int count) {
+            nodes[node * NODE_STRIDE + 6] = Float.intBitsToFloat(first);
+            nodes[node * NODE_STRIDE + 7] = Float.intBitsToFloat(count);
+        }
+
+        private static int binOf(float value, float min, float extent) {
+            return Math.min(BIN_COUNT - 1, (int) ((value - min) / extent * BIN_COUNT));
+        }
+
+        private static void resetBounds(float[] target, int offset) {
+            target[offset] = target[offset + 1] = target[offset + 2] = Float.POSITIVE_INFINITY;
+            target[offset + 3] = target[offset + 4] = target[offset + 5] = Float.NEGATIVE_INFINITY;
+        }
+
+        private static void growBounds(float[] target, int offset, float[] source, int sourceOffset) {
+            for (int k = 0; k < 3; k++) {
+                target[offset + k] = Math.min(target[offset + k], source[sourceOffset + k]);
+                target[offset + 3 + k] = Math.max(target[offset + 3 + k], source[sourceOffset + 3 + k]);
+            }
+        }
+
+        private static float area(float[] box) {
+            return area(box, 0);
+        }
+
+        private static float area(float[] box, int offset) {
+            float x = box[offset + 3] - box[offset], y = box[offset + 4] - box[offset + 1], z = box[offset + 5] - box[offset + 2];
+            return x < 0 ? 0.0f : 2.0f * (x * y + y * z + z * x);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.vibhusha.utils;
+
+import org.joml.Matrix4fc;
+import org.lwjgl.opengl.GL20;
+
+// Typed handle to one uniform of a Shader. The location is resolved when the handle is created and
+// again whenever the program is relinked, so setting a value is a single glUniform call.
+// Uniforms the program does not use have location -1 and their setters do nothing.
+public abstract class Uniform {
+    private final String name;
+    int location;
+
+    Uniform(String name, int location) {
+        this.name = name;
+        this.location = location;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLocation() {
+        return location;
+    }
+
+    public boolean isActive() {
+        return location != -1;
+    }
+
+    // GL type the handle expects, checked against the program's reflected uniform type
+    abstract int glType();
+
+    public static final class Scalar extends Uniform {
+        Scalar(String name, int location) {
+            super(name, location);
+        }
+
+        public void set(float value) {
+            if (location != -1) {
+                GL20.glUniform1f(location, value);
+                Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
+            }
+        }
+
+        @Override
+        int glType() {
+            return GL20.GL_FLOAT;
+        }
+    }
+
+    public static final class Vec3 extends Uniform {
+        Vec3(String name, int location) {
+            super(name, location);
+        }
+
+        public void set(float x, float y, float z) {
+            if (location != -1) {
+                GL20.glUniform3f(location, x, y, z);
+                Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
+            }
+        }
+
+        @Override
+        int glType() {
+            return GL20.GL_FLOAT_VEC3;
+        }
+    }
+
+    public static final class Vec4 extends Uniform {
+        Vec4(String name, int location) {
+            super(name, location);
+        }
+
+        public void set(float x, float y, float z, float w) {
+            if (location != -1) {
+                GL20.glUniform4f(location, x, y, z, w);
+                Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
+            }
+        }
+
+        @Override
+        int glType() {
+            return GL20.GL_FLOAT_VEC4;
+        }
+    }
+
+    public static final class Mat4 extends Uniform {
+        private final float[] scratch = new float[16];
+
+        Mat4(String name, int location) {
+            super(name, location);
+        }
+
+        public void set(Matrix4fc matrix) {
+            if (location != -1) {
+                GL20.glUniformMatrix4fv(location, false, matrix.get(scratch));
+                Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
+            }
+        }
+
+        // Column-major 4x4 matrix
+        public void set(float[] matrix) {
+            if (location != -1) {
+                GL20.glUniformMatrix4fv(location, false, matrix);
+                Profiler.count(Profiler.UNIFORM_UPLOADS, 1);
+            }
+        }
+
+        @Override
+        int glType() {
+            return GL20.GL_FLOAT_MAT4;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+// CPU-side vertex encoder for the formats in VertexFormat. The decode functions mirror vertex.glsl
+// and are used to measure the actual round-trip error of an encoded mesh.
+public class VertexEncoder {
+    // Decode parameters: position offset xyz, position scale xyz, uv offset xy, uv scale xy
+    public static final int DECODE_PARAMETER_COUNT = 10;
+    public static final float[] IDENTITY_DECODE = {0, 0, 0, 1, 1, 1, 0, 0, 1, 1};
+
+    public static MeshBuffers encode(MeshData mesh, VertexFormat format) {
+        float[] vertices = mesh.getVertices();
+        int vertexCount = mesh.getVertexCount();
+        float[] bounds = mesh.computeBounds();
+        float[] decode = computeDecode(mesh, format, bounds);
+        int stride = format.getStride();
+
+        ByteBuffer vertexData = BufferUtils.createByteBuffer(vertexCount * stride);
+        float[] scratch = new float[3];
+        for (int i = 0; i < vertexCount; i++) {
+            int in = i * MeshData.FLOATS_PER_VERTEX;
+            int out = i * stride;
+
+            int positionOut = out + format.getPositionOffset();
+            for (int axis = 0; axis < 3; axis++) {
+                float value = vertices[in + axis];
+                switch (format.getPositionEncoding()) {
+                    case FLOAT:
+                        vertexData.putFloat(positionOut + axis * Float.BYTES, value);
+                        break;
+                    case HALF_FLOAT:
+                        vertexData.putShort(positionOut + axis * Short.BYTES, toHalf(value - decode[axis]));
+                        break;
+                    case UNORM16:
+                        vertexData.putShort(positionOut + axis * Short.BYTES, toUnorm16(value, decode[axis], decode[axis + 3]));
+                        break;
+                }
+            }
+
+            int texCoordOut = out + format.getTexCoordOffset();
+            for (int axis = 0; axis < 2; axis++) {
+                float value = vertices[in + 3 + axis];
+                if (format.getTexCoordEncoding() == VertexFormat.TexCoordEncoding.FLOAT) {
+                    vertexData.putFloat(texCoordOut + axis * Float.BYTES, value);
+                } else {
+                    vertexData.putShort(texCoordOut + axis * Short.BYTES, toUnorm16(value, decode[6 + axis], decode[8 + axis]));
+                }
+            }
+
+            int normalOut = out + format.getNormalOffset();
+            if (format.getNormalEncoding() == VertexFormat.NormalEncoding.FLOAT) {
+                vertexData.putFloat(normalOut, vertices[in + 5]);
+                vertexData.putFloat(normalOut + Float.BYTES, vertices[in + 6]);
+                vertexData.putFloat(normalOut + 2 * Float.BYTES, vertices[in + 7]);
+            } else {
+                int packed = encodeOctahedral(vertices[in + 5], vertices[in + 6], vertices[in + 7], scratch);
+                vertexData.putShort(normalOut, (short) packed);
+                vertexData.putShort(normalOut + Short.BYTES, (short) (packed >> 16));
+            }
+        }
+
+        return new MeshBuffers(vertexData, MeshBuffers.packIndices(mesh), vertexCount, mesh.getIndexCount(),
+                MeshBuffers.indexTypeFor(mesh), format, decode, bounds, mesh.getLodOffsets(), mesh.getLodCounts(), mesh.getSubmeshes());
+    }
+
+    private static float[] computeDecode(MeshData mesh, VertexFormat format, float[] bounds) {
+        float[] decode = IDENTITY_DECODE.clone();
+        switch (format.getPositionEncoding()) {
+            case HALF_FLOAT:
+                // Centre the mesh so half floats spend their precision on the extent, not the offset
+                for (int axis = 0; axis < 3; axis++) {
+                    decode[axis] = (bounds[axis] + bounds[axis + 3]) * 0.5f;
+                }
+                break;
+            case UNORM16:
+                for (int axis = 0; axis < 3; axis++) {
+                    decode[axis] = bounds[axis];
+                    decode[axis + 3] = bounds[axis + 3] - bounds[axis];
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (format.getTexCoordEncoding() == VertexFormat.TexCoordEncoding.UNORM16 && mesh.getVertexCount() > 0) {
+            float[] vertices = mesh.getVertices();
+            float minU = Float.POSITIVE_INFINITY, minV = Float.POSITIVE_INFINITY;
+            float maxU = Float.NEGATIVE_INFINITY, maxV = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < mesh.getVertexCount(); i++) {
+                int base = i * MeshData.FLOATS_PER_VERTEX;
+                minU = Math.min(minU, vertices[base + 3]);
+                maxU = Math.max(maxU, vertices[base + 3]);
+                minV = Math.min(minV, vertices[base + 4]);
+                maxV = Math.max(maxV, vertices[base + 4]);
+            }
+            decode[6] = minU;
+            decode[7] = minV;
+            decode[8] = maxU - minU;
+            decode[9] = maxV - minV;
+        }
+        return decode;
+    }
+
+    // Maximum round-trip error of an encoded mesh against its source
+    public static ErrorBounds measureError(MeshData mesh, MeshBuffers encoded) {
+        VertexFormat format = encoded.getFormat();
+        float[] decode = encoded.getDecode();
+        ByteBuffer data = encoded.getVertexData();
+        float[] vertices = mesh.getVertices();
+        int stride = format.getStride();
+        float[] position = new float[3];
+        float[] normal = new float[3];
+        ErrorBounds error = new ErrorBounds();
+
+        for (int i = 0; i < mesh.getVertexCount(); i++) {
+            int in = i * MeshData.FLOATS_PER_VERTEX;
+            int base = i * stride;
+
+            decodePosition(data, base + format.getPositionOffset(), format, decode, position);
+            for (int axis = 0; axis < 3; axis++) {
+                error.maxPositionError = Math.max(error.maxPositionError, Math.abs(position[axis] - vertices[in + axis]));
+            }
+
+            for (int axis = 0; axis < 2; axis++) {
+                float u = format.getTexCoordEncoding() == VertexFormat.TexCoordEncoding.FLOAT
+                        ? data.getFloat(base + format.getTexCoordOffset() + axis * Float.BYTES)
+                        : decode[6 + axis] + decode[8 + axis] * fromUnorm16(data.getShort(base + format.getTexCoordOffset() + axis * Short.BYTES));
+                error.maxTexCoordError = Math.max(error.maxTexCoordError, Math.abs(u - vertices[in + 3 + axis]));
+            }
+
+            decodeNormal(data, base + format.getNormalOffset(), format, normal);
+            float nx = vertices[in + 5], ny = vertices[in + 6], nz = vertices[in + 7];
+            if (nx != 0 || ny != 0 || nz != 0) {
+                float degrees = (float) Math.toDegrees(angleBetween(normal[0], normal[1], normal[2], nx, ny, nz));
+                error.maxNormalErrorDegrees = Math.max(error.maxNormalErrorDegrees, degrees);
+            }
+        }
+        return error;
+    }
+
+    // In radians, through atan2 in double: a float acos cannot resolve angles below ~0.03 degrees
+    static double angleBetween(double ax, double ay, double az, double bx, double by, double bz) {
+        double cx = ay * bz - az * by, cy = az * bx - ax * bz, cz = ax * by - ay * bx;
+        return Math.atan2(Math.sqrt(cx * cx + cy * cy + cz * cz), ax * bx + ay * by + az * bz);
+    }
+
+    public static void decodePosition(ByteBuffer data, int offset, VertexFormat format, float[] decode, float[] out) {
+        for (int axis = 0; axis < 3; axis++) {
+            switch (format.getPositionEncoding()) {
+                case FLOAT:
+                    out[axis] = data.getFloat(offset + axis * Float.BYTES);
+                    break;
+                case HALF_FLOAT:
+                    out[axis] = decode[axis] + fromHalf(data.getShort(offset + axis * Short.BYTES));
+                    break;
+                case UNORM16:
+                    out[axis] = decode[axis] + decode[axis + 3] * fromUnorm16(data.getShort(offset + axis * Short.BYTES));
+                    break;
+            }
+        }
+    }
+
+    public static void decodeNormal(ByteBuffer data, int offset, VertexFormat format, float[] out) {
+        if (format.getNormalEncoding() == VertexFormat.NormalEncoding.FLOAT) {
+            out[0] = data.getFloat(offset);
+            out[1] = data.getFloat(offset + Float.BYTES);
+            out[2] = data.getFloat(offset + 2 * Float.BYTES);
+        } else {
+            decodeOctahedral(fromSnorm16(data.getShort(offset)), fromSnorm16(data.getShort(offset + Short.BYTES)), out);
+        }
+    }
+
+    static short toUnorm16(float value, float offset, float scale) {
+        if (scale == 0) {
+            return 0;
+        }
+        float normalized = Math.min(1.0f, Math.max(0.0f, (value - offset) / scale));
+        return (short) Math.round(normalized * 65535.0f);
+    }
+
+    static float fromUnorm16(short value) {
+        return (value & 0xFFFF) / 65535.0f;
+    }
+
+    static short toSnorm16(float value) {
+        return (short) Math.round(Math.min(1.0f, Math.max(-1.0f, value)) * 32767.0f);
+    }
+
+    // Same mapping GL uses for normalized GL_SHORT attributes
+    static float fromSnorm16(short value) {
+        return Math.max(value / 32767.0f, -1.0f);
+    }
+
+    // Octahedral normal as two snorm16 values (x in the low half). All four roundings of the projected
+    // point are tried and the one that decodes closest to the input is kept; decoded is scratch space
+    // for the candidates, reused across the vertices of a mesh.
+    static int encodeOctahedral(float x, float y, float z, float[] decoded) {
+        float sum = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if (sum == 0) {
+            return 0;
+        }
+        float u = x / sum;
+        float v = y / sum;
+        if (z < 0) {
+            float wrappedU = (1.0f - Math.abs(v)) * Math.signum(u == 0 ? 1 : u);
+            float wrappedV = (1.0f - Math.abs(u)) * Math.signum(v == 0 ? 1 : v);
+            u = wrappedU;
+            v = wrappedV;
+        }
+
+        float invLength = 1.0f / (float) Math.sqrt(x * x + y * y + z * z);
+        int best = 0;
+        float bestDot = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4; i++) {
+            float su = (i & 1) == 0 ? (float) Math.floor(u * 32767.0f) : (float) Math.ceil(u * 32767.0f);
+            float sv = (i & 2) == 0 ? (float) Math.floor(v * 32767.0f) : (float) Math.ceil(v * 32767.0f);
+            short qu = (short) Math.max(-32767, Math.min(32767, su));
+            short qv = (short) Math.max(-32767, Math.min(32767, sv));
+            decodeOctahedral(fromSnorm16(qu), fromSnorm16(qv), decoded);
+            float dot = (decoded[0] * x + decoded[1] * y + decoded[2] * z) * invLength;
+            if (dot > bestDot) {
+                bestDot = dot;
+                best = (qu & 0xFFFF) | (qv & 0xFFFF) << 16;
+            }
+        }
+        return best;
+    }
+
+    static void decodeOctahedral(float u, float v, float[] out) {
+        float x = u;
+        float y = v;
+        float z = 1.0f - Math.abs(u) - Math.abs(v);
+        float t = Math.max(-z, 0.0f);
+        x += x >= 0 ? -t : t;
+        y += y >= 0 ? -t : t;
+        float invLength = 1.0f / (float) Math.sqrt(x * x + y * y + z * z);
+        out[0] = x * invLength;
+        out[1] = y * invLength;
+        out[2] = z * invLength;
+    }
+
+    // IEEE 754 binary16 with round-to-nearest-even, overflow saturates to infinity
+    static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent == 0xFF) {
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (halfExponent <= 0) {
+            if (halfExponent < -10) {
+                return (short) sign;
+            }
+            // Subnormal half: shift the mantissa including its implicit leading bit
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = halfExponent << 10 | mantissa >> 13;
+        int remainder = mantissa & 0x1FFF;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            half++;  // May carry into the exponent, which is still the correct rounding
+        }
+        return (short) (sign | half);
+    }
+
+    static float fromHalf(short value) {
+        int half = value & 0xFFFF;
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+
+        if (exponent == 0) {
+            float magnitude = mantissa * 0x1.0p-24f;
+            return sign != 0 ? -magnitude : magnitude;
+        }
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | mantissa << 13);
+        }
+        return Float.intBitsToFloat(sign | (exponent - 15 + 127) << 23 | mantissa << 13);
+    }
+
+    public static class ErrorBounds {
+        private float maxPositionError;
+        private float maxTexCoordError;
+        private float maxNormalErrorDegrees;
+
+        public float getMaxPositionError() {
+            return maxPositionError;
+        }
+
+        public float getMaxTexCoordError() {
+            return maxTexCoordError;
+        }
+
+        public float getMaxNormalErrorDegrees() {
+            return maxNormalErrorDegrees;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("position %.3g, uv %.3g, normal %.3f deg", maxPositionError, maxTexCoordError, maxNormalErrorDegrees);
+        }
+    }
+}
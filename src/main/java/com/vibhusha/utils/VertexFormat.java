@@ -0,0 +1,119 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Selects how each vertex attribute is stored on the GPU. Quantized encodings are decoded in
+// vertex.glsl using the per-mesh offsets and scales carried by MeshBuffers and Model.
+public class VertexFormat {
+    public enum PositionEncoding {
+        FLOAT,        // 3 x float32, 12 bytes
+        HALF_FLOAT,   // 3 x float16 relative to the AABB centre, 6 bytes; error up to 2^-11 of the distance to it
+        UNORM16       // 3 x normalized uint16 across the AABB, 6 bytes; error up to half a step, extent / 131070
+    }
+
+    public enum TexCoordEncoding {
+        FLOAT,        // 2 x float32, 8 bytes
+        UNORM16       // 2 x normalized uint16 across the UV bounds, 4 bytes; error up to half a step
+    }
+
+    public enum NormalEncoding {
+        FLOAT,        // 3 x float32, 12 bytes
+        OCTAHEDRAL    // 2 x normalized int16 octahedral map, 4 bytes; error below 0.01 degrees
+    }
+
+    public static final VertexFormat FULL = new VertexFormat(PositionEncoding.FLOAT, TexCoordEncoding.FLOAT, NormalEncoding.FLOAT);
+    public static final VertexFormat COMPACT = new VertexFormat(PositionEncoding.UNORM16, TexCoordEncoding.UNORM16, NormalEncoding.OCTAHEDRAL);
+
+    private final PositionEncoding positionEncoding;
+    private final TexCoordEncoding texCoordEncoding;
+    private final NormalEncoding normalEncoding;
+
+    public VertexFormat(PositionEncoding positionEncoding, TexCoordEncoding texCoordEncoding, NormalEncoding normalEncoding) {
+        this.positionEncoding = positionEncoding;
+        this.texCoordEncoding = texCoordEncoding;
+        this.normalEncoding = normalEncoding;
+    }
+
+    public PositionEncoding getPositionEncoding() {
+        return positionEncoding;
+    }
+
+    public TexCoordEncoding getTexCoordEncoding() {
+        return texCoordEncoding;
+    }
+
+    public NormalEncoding getNormalEncoding() {
+        return normalEncoding;
+    }
+
+    // Stable numeric id, used in cache file headers and names
+    public int getId() {
+        return positionEncoding.ordinal() << 8 | texCoordEncoding.ordinal() << 4 | normalEncoding.ordinal();
+    }
+
+    public static VertexFormat fromId(int id) {
+        return new VertexFormat(PositionEncoding.values()[id >> 8 & 0xF],
+                TexCoordEncoding.values()[id >> 4 & 0xF], NormalEncoding.values()[id & 0xF]);
+    }
+
+    public int getPositionOffset() {
+        return 0;
+    }
+
+    public int getTexCoordOffset() {
+        return positionEncoding == PositionEncoding.FLOAT ? 3 * Float.BYTES : 4 * Short.BYTES;
+    }
+
+    public int getNormalOffset() {
+        return getTexCoordOffset() + (texCoordEncoding == TexCoordEncoding.FLOAT ? 2 * Float.BYTES : 2 * Short.BYTES);
+    }
+
+    public int getStride() {
+        return getNormalOffset() + (normalEncoding == NormalEncoding.FLOAT ? 3 * Float.BYTES : 2 * Short.BYTES);
+    }
+
+    public VertexLayout createLayout() {
+        List<VertexLayout.Attribute> attributes = new ArrayList<>(3);
+        switch (positionEncoding) {
+            case FLOAT:
+                attributes.add(new VertexLayout.Attribute(0, 3, GL11.GL_FLOAT, false, getPositionOffset()));
+                break;
+            case HALF_FLOAT:
+                attributes.add(new VertexLayout.Attribute(0, 3, GL30.GL_HALF_FLOAT, false, getPositionOffset()));
+                break;
+            case UNORM16:
+                attributes.add(new VertexLayout.Attribute(0, 3, GL11.GL_UNSIGNED_SHORT, true, getPositionOffset()));
+                break;
+        }
+        if (texCoordEncoding == TexCoordEncoding.FLOAT) {
+            attributes.add(new VertexLayout.Attribute(1, 2, GL11.GL_FLOAT, false, getTexCoordOffset()));
+        } else {
+            attributes.add(new VertexLayout.Attribute(1, 2, GL11.GL_UNSIGNED_SHORT, true, getTexCoordOffset()));
+        }
+        if (normalEncoding == NormalEncoding.FLOAT) {
+            attributes.add(new VertexLayout.Attribute(2, 3, GL11.GL_FLOAT, false, getNormalOffset()));
+        } else {
+            attributes.add(new VertexLayout.Attribute(2, 2, GL11.GL_SHORT, true, getNormalOffset()));
+        }
+        return new VertexLayout(getStride(), attributes.toArray(new VertexLayout.Attribute[0]));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof VertexFormat && ((VertexFormat) o).getId() == getId();
+    }
+
+    @Override
+    public int hashCode() {
+        return getId();
+    }
+
+    @Override
+    public String toString() {
+        return positionEncoding + "/" + texCoordEncoding + "/" + normalEncoding;
+    }
+}
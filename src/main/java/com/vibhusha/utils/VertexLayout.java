@@ -0,0 +1,99 @@
+package com.vibhusha.utils;
+
+import org.lwjgl.opengl.GL20;
+
+import java.util.Arrays;
+
+// Describes how one interleaved vertex is laid out in a VBO, so attribute pointers are not hard-coded
+public class VertexLayout {
+    private final int stride;
+    private final Attribute[] attributes;
+
+    public VertexLayout(int stride, Attribute... attributes) {
+        this.stride = stride;
+        this.attributes = attributes.clone();
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getAttributeCount() {
+        return attributes.length;
+    }
+
+    public Attribute getAttribute(int index) {
+        return attributes[index];
+    }
+
+    // Sets up attribute pointers for the currently bound VAO and VBO
+    public void apply() {
+        for (Attribute attribute : attributes) {
+            GL20.glVertexAttribPointer(attribute.location, attribute.size, attribute.type, attribute.normalized, stride, attribute.offset);
+            GL20.glEnableVertexAttribArray(attribute.location);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VertexLayout)) return false;
+        VertexLayout other = (VertexLayout) o;
+        return stride == other.stride && Arrays.equals(attributes, other.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * stride + Arrays.hashCode(attributes);
+    }
+
+    public static class Attribute {
+        private final int location;
+        private final int size;
+        private final int type;
+        private final boolean normalized;
+        private final int offset;
+
+        public Attribute(int location, int size, int type, boolean normalized, int offset) {
+            this.location = location;
+            this.size = size;
+            this.type = type;
+            this.normalized = normalized;
+            this.offset = offset;
+        }
+
+        public int getLocation() {
+            return location;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public boolean isNormalized() {
+            return normalized;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Attribute)) return false;
+            Attribute other = (Attribute) o;
+            return location == other.location && size == other.size && type == other.type
+                    && normalized == other.normalized && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((((location * 31 + size) * 31 + type) * 31 + (normalized ? 1 : 0)) * 31) + offset;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.vibhusha.utils;
+
+// An asset that does not keep itself resident. get() returns it while it is in AssetManager's
+// resource cache; after an eviction it streams in again and get() returns the placeholder until then.
+public class WeakAsset<T extends GpuResource> {
+    private final AssetManager manager;
+    private final String key;
+    private final T placeholder;
+    private final Runnable load;
+    private boolean loaded;
+
+    WeakAsset(AssetManager manager, String key, T placeholder, Runnable load) {
+        this.manager = manager;
+        this.key = key;
+        this.placeholder = placeholder;
+        this.load = load;
+    }
+
+    // GL thread. Use the result within the frame, the next trim may evict it.
+    public T get() {
+        T asset = manager.getResources().getIfResident(key);
+        if (asset != null) {
+            loaded = true;
+            return asset;
+        }
+        if (loaded) {
+            manager.getResources().getStats().reloads++;
+            loaded = false;
+        }
+        load.run();  // No-op while it is streaming
+        return placeholder;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
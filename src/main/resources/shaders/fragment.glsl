@@ -3,9 +3,10 @@
 in vec2 fragTexCoord;  // Incoming texture coordinates from the vertex shader
 
 uniform sampler2D textureSampler;  // Texture sampler
+uniform vec4 diffuseColor = vec4(1.0);  // MTL Kd and dissolve of the submesh being drawn
 
 out vec4 fragColor;  // Final color output
 
 void main() {
-    fragColor = texture(textureSampler, fragTexCoord);  // Fetch the texture color
+    fragColor = texture(textureSampler, fragTexCoord) * diffuseColor;  // Fetch the texture color
 }
\ No newline at end of file
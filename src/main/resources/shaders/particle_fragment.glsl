@@ -0,0 +1,14 @@
+#version 330 core
+
+in vec2 fragCorner;  // Position within the quad, [-1, 1]
+in vec4 fragColor;   // Particle colour from the instance record
+
+out vec4 outColor;   // Blended over the scene with src alpha / one minus src alpha
+
+void main() {
+    float falloff = 1.0 - smoothstep(0.5, 1.0, length(fragCorner));  // Soft round sprite
+    if (falloff <= 0.0) {
+        discard;
+    }
+    outColor = vec4(fragColor.rgb, fragColor.a * falloff);
+}
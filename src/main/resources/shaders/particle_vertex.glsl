@@ -0,0 +1,20 @@
+#version 330 core
+
+layout(location = 0) in vec2 corner;        // Quad corner in [-1, 1]
+layout(location = 1) in vec4 positionSize;  // Per instance: world position and half size, written by ParticleSystem
+layout(location = 2) in vec4 color;         // Per instance: RGBA8, alpha faded over the particle's life
+
+uniform mat4 viewMatrix;         // View matrix
+uniform mat4 projectionMatrix;   // Projection matrix
+
+out vec2 fragCorner;             // Corner, for the round falloff
+out vec4 fragColor;
+
+void main() {
+    // Offset in view space, so the quad always faces the camera
+    vec4 viewPosition = viewMatrix * vec4(positionSize.xyz, 1.0);
+    viewPosition.xy += corner * positionSize.w;
+    fragCorner = corner;
+    fragColor = color;
+    gl_Position = projectionMatrix * viewPosition;
+}
@@ -1,14 +1,37 @@
 #version 330 core
 
-layout(location = 0) in vec3 position;  // Vertex position
-layout(location = 1) in vec2 texCoord;  // Texture coordinates
+layout(location = 0) in vec3 position;  // Vertex position (float, half or unorm16, see VertexFormat)
+layout(location = 1) in vec2 texCoord;  // Texture coordinates (float or unorm16)
+layout(location = 2) in vec3 normal;    // Vertex normal (float xyz, or octahedral xy)
+layout(location = 3) in mat4 instanceMatrix;  // Per-instance model matrix (locations 3-6), streamed by RenderQueue
 
 uniform mat4 viewMatrix;         // View matrix
 uniform mat4 projectionMatrix;   // Projection matrix
 
+uniform vec3 positionOffset;     // Dequantization: position = positionOffset + positionScale * encoded
+uniform vec3 positionScale;
+uniform vec4 texCoordTransform;  // Dequantization: uv = xy + zw * encoded
+uniform float octahedralNormals; // 1.0 when normals are octahedral encoded
+
 out vec2 fragTexCoord;           // Output texture coordinates to the fragment shader
+out vec3 fragNormal;             // Output normal to the fragment shader
+
+vec3 octDecode(vec2 e) {
+    vec3 n = vec3(e, 1.0 - abs(e.x) - abs(e.y));
+    float t = max(-n.z, 0.0);
+    n.x += n.x >= 0.0 ? -t : t;
+    n.y += n.y >= 0.0 ? -t : t;
+    return normalize(n);
+}
 
 void main() {
-    fragTexCoord = texCoord;    // Pass texture coordinates to fragment shader
-    gl_Position = projectionMatrix * viewMatrix * vec4(position, 1.0);  // Apply transformations
-}
\ No newline at end of file
+    vec3 localPosition = positionOffset + positionScale * position;
+    fragTexCoord = texCoordTransform.xy + texCoordTransform.zw * texCoord;    // Pass texture coordinates to fragment shader
+    vec3 localNormal = octahedralNormals > 0.5 ? octDecode(normal.xy) : normal;
+    // Normals take the inverse-transpose, which is the cofactor matrix over the determinant. Only the
+    // direction matters, so the division reduces to the determinant's sign (mirrored instances).
+    mat3 m = mat3(instanceMatrix);
+    mat3 cofactor = mat3(cross(m[1], m[2]), cross(m[2], m[0]), cross(m[0], m[1]));
+    fragNormal = normalize(cofactor * localNormal) * sign(dot(m[0], cofactor[0]));
+    gl_Position = projectionMatrix * viewMatrix * instanceMatrix * vec4(localPosition, 1.0);  // Apply transformations
+}
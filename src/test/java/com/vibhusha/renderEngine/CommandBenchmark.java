@@ -0,0 +1,92 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Model;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+// Times render command recording without a GL context. A synthetic frame of sorted render queue keys
+// (models without materials or meshlets, so every batch is one instanced draw) is recorded on one
+// thread and split across pools, and replayed into RecordingCommandBackend; recording and replay are
+// reported per submission. CommandRecorderTest checks the commands of such frames.
+//   java -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.renderEngine.CommandBenchmark [submissions] [shaders] [textures] [models]
+@Slf4j
+public class CommandBenchmark {
+    private static final int RUNS = 5;
+    private static final int FRAMES = 20;
+
+    public static void main(String[] args) {
+        int submissions = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int shaderCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int textureCount = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int modelCount = args.length > 3 ? Integer.parseInt(args[3]) : 512;
+        if (submissions > RenderQueue.MAX_SUBMISSIONS) {
+            throw new IllegalArgumentException("At most " + RenderQueue.MAX_SUBMISSIONS + " submissions");
+        }
+
+        Model[] models = new Model[1 << 10];
+        int[][] submeshTextures = new int[1 << 10][];  // No materials
+        for (int m = 0; m < modelCount; m++) {
+            models[m] = new Model(m + 1, 0, 0, 36);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        float[] transforms = new float[submissions * RenderQueue.MATRIX_FLOATS];
+        for (int f = 0; f < transforms.length; f++) {
+            transforms[f] = f;  // Each float tells which submission and element it is
+        }
+        long[] keys = new long[submissions];
+        for (int i = 0; i < submissions; i++) {
+            // Skewed shaders, one texture per model: batches of about a hundred instances
+            int shader = Math.min(random.nextInt(shaderCount), random.nextInt(shaderCount));
+            int model = random.nextInt(modelCount);
+            int texture = model % textureCount;
+            keys[i] = (long) shader << 56 | (long) texture << 46 | (long) model << 36 | (long) random.nextInt(4) << 33
+                    | (long) random.nextInt(128) << 20 | i;
+        }
+        Arrays.sort(keys);
+        ByteBuffer instances = BufferUtils.createByteBuffer(submissions * RenderQueue.MATRIX_BYTES);
+        Matrix4f viewProjection = new Matrix4f();
+        Vector3f eye = new Vector3f();
+
+        ParallelCommandRecorder recording = new ParallelCommandRecorder();
+        RecordingCommandBackend backend = new RecordingCommandBackend();
+        ForkJoinPool four = new ForkJoinPool(4);
+        ForkJoinPool common = ForkJoinPool.commonPool();
+
+        log.info(String.format("Command benchmark: %,d submissions, %d shaders, %d textures, %d models, %d frames, best of %d runs",
+                submissions, shaderCount, textureCount, modelCount, FRAMES, RUNS));
+        for (ForkJoinPool pool : new ForkJoinPool[]{null, four, common}) {
+            long recordBest = Long.MAX_VALUE, replayBest = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long recordNanos = 0, replayNanos = 0;
+                for (int frame = 0; frame < FRAMES; frame++) {
+                    long start = System.nanoTime();
+                    recording.record(pool, keys, submissions, transforms, models, submeshTextures, instances, viewProjection, eye);
+                    long recorded = System.nanoTime();
+                    backend.reset();
+                    recording.replay(backend);
+                    recordNanos += recorded - start;
+                    replayNanos += System.nanoTime() - recorded;
+                }
+                recordBest = Math.min(recordBest, recordNanos);
+                replayBest = Math.min(replayBest, replayNanos);
+            }
+            int bytes = 0, commands = 0;
+            for (int r = 0; r < recording.getRangeCount(); r++) {
+                bytes += recording.getCommands(r).getByteCount();
+                commands += recording.getCommands(r).getCommandCount();
+            }
+            log.info(String.format("  %-22s %d range(s): record %.2f ms/frame (%.1f ns/submission), replay %.2f ms/frame (%.1f ns/command); %,d commands in %,d bytes",
+                    pool == null ? "calling thread" : pool == common ? "common pool (" + common.getParallelism() + ")" : "pool of 4",
+                    recording.getRangeCount(), recordBest / 1e6 / FRAMES, (double) recordBest / FRAMES / submissions,
+                    replayBest / 1e6 / FRAMES, (double) replayBest / FRAMES / commands, commands, bytes));
+        }
+        four.shutdown();
+    }
+}
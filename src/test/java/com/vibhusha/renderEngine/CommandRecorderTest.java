@@ -0,0 +1,286 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Model;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Records known frames of sorted render queue keys (models without materials or meshlets, so every
+// batch is one instanced draw) on the calling thread and on a pool, and checks the commands replayed.
+class CommandRecorderTest {
+    private final Model[] models = new Model[1 << 10];
+    private final int[][] submeshTextures = new int[1 << 10][];  // No materials
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Vector3f eye = new Vector3f();
+    private final ParallelCommandRecorder recording = new ParallelCommandRecorder();
+
+    CommandRecorderTest() {
+        for (int m = 0; m < 8; m++) {
+            models[m] = new Model(m + 1, 0, 0, 36);
+        }
+    }
+
+    private static long key(int shader, int texture, int model, int lod, int depth, int submission) {
+        return (long) shader << 56 | (long) texture << 46 | (long) model << 36 | (long) lod << 33 | (long) depth << 20 | submission;
+    }
+
+    // Each float tells which submission and element it is
+    private static float[] transforms(int count) {
+        float[] transforms = new float[count * RenderQueue.MATRIX_FLOATS];
+        for (int f = 0; f < transforms.length; f++) {
+            transforms[f] = f;
+        }
+        return transforms;
+    }
+
+    @Test
+    void recordsTheExpectedCommandSequence() {
+        long[] keys = {
+                key(1, 1, 1, 0, 5, 0),
+                key(0, 0, 0, 1, 3, 1),
+                key(0, 0, 0, 0, 9, 2),
+                key(0, 1, 1, 0, 2, 3),
+                key(0, 0, 0, 0, 4, 4)
+        };
+        Arrays.sort(keys);
+        float[] transforms = transforms(keys.length);
+        ByteBuffer instances = BufferUtils.createByteBuffer(keys.length * RenderQueue.MATRIX_BYTES);
+        assertEquals(1, recording.record(null, keys, keys.length, transforms, models, submeshTextures, instances, viewProjection, eye));
+        LoggingBackend backend = new LoggingBackend();
+        recording.replay(backend);
+
+        assertEquals(List.of(
+                "shader 0", "model 0", "texture 0", "color 1.0 1.0 1.0 1.0",
+                "draw lod 0 instances 0+2",  // Submissions 4 and 2, nearest first
+                "draw lod 1 instances 2+1",
+                "model 1", "texture 1",
+                "draw lod 0 instances 3+1",
+                "shader 1", "model 1", "color 1.0 1.0 1.0 1.0",  // Texture 1 is still bound
+                "draw lod 0 instances 4+1"), backend.commands);
+
+        int[] order = {4, 2, 1, 3, 0};
+        for (int i = 0; i < order.length; i++) {
+            for (int f = 0; f < RenderQueue.MATRIX_FLOATS; f++) {
+                assertEquals(transforms[order[i] * RenderQueue.MATRIX_FLOATS + f], instances.getFloat((i * RenderQueue.MATRIX_FLOATS + f) * Float.BYTES));
+            }
+        }
+        RenderStats stats = new RenderStats();
+        recording.addStats(stats);
+        assertEquals(4, stats.getDrawCalls());
+        assertEquals(2, stats.getShaderBinds());
+        assertEquals(2, stats.getTextureBinds());
+        assertEquals(3, stats.getVaoBinds());
+        assertEquals(5, stats.getInstances());
+    }
+
+    @Test
+    void poolRecordsTheSameFrameInRanges() {
+        int count = 4 * ParallelCommandRecorder.MIN_RANGE + 123;
+        SplittableRandom random = new SplittableRandom(42);
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int model = random.nextInt(8);
+            keys[i] = key(random.nextInt(3), model % 5, model, random.nextInt(4), random.nextInt(1 << 13), i);
+        }
+        Arrays.sort(keys);
+        float[] transforms = transforms(count);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ForkJoinPool executor : new ForkJoinPool[]{null, pool}) {
+                ByteBuffer instances = BufferUtils.createByteBuffer(count * RenderQueue.MATRIX_BYTES);
+                int ranges = recording.record(executor, keys, count, transforms, models, submeshTextures, instances, viewProjection, eye);
+                assertEquals(executor == null ? 1 : 4, ranges);
+                RecordingCommandBackend backend = new RecordingCommandBackend();
+                recording.replay(backend);
+                RenderStats stats = new RenderStats();
+                recording.addStats(stats);
+                check(keys, count, ranges, transforms, instances, backend, stats);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Every instance drawn once, in sorted order, under its key's state; one draw per batch and range
+    private static void check(long[] keys, int count, int ranges, float[] transforms, ByteBuffer instances,
+                              RecordingCommandBackend backend, RenderStats stats) {
+        int next = 0;
+        for (int d = 0; d < backend.getDrawCount(); d++) {
+            int first = backend.getDrawFirstInstance(d), instanceCount = backend.getDrawInstanceCount(d);
+            assertEquals(next, first, "Draw " + d);
+            for (int i = first; i < first + instanceCount; i++) {
+                long key = keys[i];
+                assertEquals((int) (key >>> 56), backend.getDrawShader(d), "Shader of instance " + i);
+                assertEquals((int) (key >>> 46) & 0x3FF, backend.getDrawTexture(d), "Texture of instance " + i);
+                assertEquals((int) (key >>> 36) & 0x3FF, backend.getDrawModel(d), "Model of instance " + i);
+                assertEquals((int) (key >>> 33) & 7, backend.getDrawLod(d), "LOD of instance " + i);
+            }
+            next = first + instanceCount;
+        }
+        assertEquals(count, next);
+        assertEquals(count, backend.getInstances());
+
+        // A range binds everything its first batch needs, so bind counts follow from the keys alone
+        int draws = 0, shaderBinds = 0, textureBinds = 0, modelBinds = 0;
+        for (int r = 0; r < ranges; r++) {
+            int start = (int) ((long) count * r / ranges), end = (int) ((long) count * (r + 1) / ranges);
+            for (int i = start; i < end; i++) {
+                long batch = keys[i] >>> RenderQueue.BATCH_SHIFT, previous = i == start ? -1 : keys[i - 1] >>> RenderQueue.BATCH_SHIFT;
+                if (batch == previous) {
+                    continue;
+                }
+                boolean shader = previous < 0 || batch >>> 23 != previous >>> 23;
+                draws++;
+                shaderBinds += shader ? 1 : 0;
+                textureBinds += previous < 0 || (batch >>> 13 & 0x3FF) != (previous >>> 13 & 0x3FF) ? 1 : 0;
+                modelBinds += shader || (batch >>> 3 & 0x3FF) != (previous >>> 3 & 0x3FF) ? 1 : 0;
+            }
+        }
+        assertEquals(draws, backend.getCommandCount(CommandBuffer.DRAW_INSTANCED));
+        assertEquals(shaderBinds, backend.getCommandCount(CommandBuffer.BIND_SHADER));
+        assertEquals(textureBinds, backend.getCommandCount(CommandBuffer.BIND_TEXTURE));
+        assertEquals(modelBinds, backend.getCommandCount(CommandBuffer.BIND_MODEL));
+        assertEquals(shaderBinds, backend.getCommandCount(CommandBuffer.SET_COLOR));  // White once per program
+        assertEquals(draws + shaderBinds + textureBinds + modelBinds + shaderBinds, backend.getCommandCount());
+
+        assertEquals(draws, stats.getDrawCalls());
+        assertEquals(shaderBinds, stats.getShaderBinds());
+        assertEquals(textureBinds, stats.getTextureBinds());
+        assertEquals(modelBinds, stats.getVaoBinds());
+        assertEquals(count, stats.getInstances());
+
+        for (int i = 0; i < count; i++) {
+            int source = (int) (keys[i] & (RenderQueue.MAX_SUBMISSIONS - 1)) * RenderQueue.MATRIX_FLOATS;
+            for (int f = 0; f < RenderQueue.MATRIX_FLOATS; f++) {
+                assertEquals(transforms[source + f], instances.getFloat((i * RenderQueue.MATRIX_FLOATS + f) * Float.BYTES), "Matrix of instance " + i);
+            }
+        }
+    }
+
+    @Test
+    void recordingAllocatesOnlyThePoolsDispatchWrappers() {
+        int count = 4 * ParallelCommandRecorder.MIN_RANGE;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(i % 2, i % 3, i % 8, 0, 0, i);
+        }
+        Arrays.sort(keys);
+        float[] transforms = transforms(count);
+        ByteBuffer instances = BufferUtils.createByteBuffer(count * RenderQueue.MATRIX_BYTES);
+        RecordingCommandBackend backend = new RecordingCommandBackend();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(0, bytesPerFrame(null, keys, count, transforms, instances, backend), "Bytes allocated recording on the calling thread");
+            // ForkJoinPool.execute(Runnable) wraps each worker range in a small task; nothing scales with the keys
+            long allocated = bytesPerFrame(pool, keys, count, transforms, instances, backend);
+            assertTrue(allocated <= 3 * 32, "Bytes allocated on the calling thread dispatching 3 worker ranges: " + allocated);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Calling thread allocation of the last of 200 frames
+    private long bytesPerFrame(ForkJoinPool pool, long[] keys, int count, float[] transforms, ByteBuffer instances,
+                               RecordingCommandBackend backend) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = 0;
+        for (int frame = 0; frame < 200; frame++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            recording.record(pool, keys, count, transforms, models, submeshTextures, instances, viewProjection, eye);
+            backend.reset();
+            recording.replay(backend);
+            allocated = threads.getThreadAllocatedBytes(thread) - before;
+        }
+        long overhead = threads.getThreadAllocatedBytes(thread);  // What reading the counter itself allocates
+        overhead = threads.getThreadAllocatedBytes(thread) - overhead;
+        return allocated - overhead;
+    }
+
+    @Test
+    void reportsWorkerFailures() {
+        int count = 2 * ParallelCommandRecorder.MIN_RANGE;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(0, 0, i < count / 2 ? 0 : 9, 0, 0, i);  // Model 9 was never assigned
+        }
+        ByteBuffer instances = BufferUtils.createByteBuffer(count * RenderQueue.MATRIX_BYTES);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> recording.record(pool, keys, count, transforms(count), models,
+                    submeshTextures, instances, viewProjection, eye));
+            assertEquals(NullPointerException.class, e.getCause().getClass());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Keeps the replayed commands as text, in order
+    private static final class LoggingBackend implements CommandBackend {
+        private final List<String> commands = new ArrayList<>();
+
+        @Override
+        public void uploadInstances(ByteBuffer instances) {
+            commands.add("upload");
+        }
+
+        @Override
+        public void endFrame() {
+            commands.add("end");
+        }
+
+        @Override
+        public void bindShader(int shader) {
+            commands.add("shader " + shader);
+        }
+
+        @Override
+        public void bindTexture(int texture) {
+            commands.add("texture " + texture);
+        }
+
+        @Override
+        public void bindModel(int model) {
+            commands.add("model " + model);
+        }
+
+        @Override
+        public void setColor(float r, float g, float b, float a) {
+            commands.add("color " + r + " " + g + " " + b + " " + a);
+        }
+
+        @Override
+        public void drawInstanced(int lod, int firstInstance, int instanceCount) {
+            commands.add("draw lod " + lod + " instances " + firstInstance + "+" + instanceCount);
+        }
+
+        @Override
+        public void drawSubmeshInstanced(int lod, int submesh, int firstInstance, int instanceCount) {
+            commands.add("draw lod " + lod + " submesh " + submesh + " instances " + firstInstance + "+" + instanceCount);
+        }
+
+        @Override
+        public void addMeshletRange(int firstIndex, int indexCount) {
+            commands.add("meshlets " + firstIndex + "+" + indexCount);
+        }
+
+        @Override
+        public void drawMeshlets(int instance) {
+            commands.add("draw meshlets " + instance);
+        }
+    }
+}
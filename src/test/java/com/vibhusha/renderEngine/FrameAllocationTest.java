@@ -0,0 +1,129 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Camera;
+import com.vibhusha.utils.Frustum;
+import com.vibhusha.utils.IntList;
+import com.vibhusha.utils.LodSelector;
+import com.vibhusha.utils.Material;
+import com.vibhusha.utils.MeshBuffers;
+import com.vibhusha.utils.Model;
+import com.vibhusha.utils.Shader;
+import com.vibhusha.utils.TestResources;
+import com.vibhusha.utils.VertexEncoder;
+import com.vibhusha.utils.VertexFormat;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Drives GameEngine.render's CPU side (camera, frustum, scene cull with refit, transform update, LOD
+// selection, render queue submit, sort, record and replay) against a RecordingCommandBackend, and
+// checks that steady-state frames allocate nothing on the calling thread.
+class FrameAllocationTest {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int OBJECTS = 1500;
+    private static final int WARMUP_FRAMES = 3000;
+    private static final int FRAMES = 2000;
+
+    private final Camera camera = new Camera(0, 2, 0);
+    private final Frustum frustum = new Frustum();
+    private final Scene scene = new Scene();
+    private final EntityRegistry registry = new EntityRegistry();
+    private final TransformPool transforms = new TransformPool(registry);
+    private final RecordingCommandBackend backend = new RecordingCommandBackend();
+    private final RenderQueue renderQueue = new RenderQueue(backend);
+    private final Matrix4f world = new Matrix4f();
+    private final Vector3f forward = new Vector3f(0, 0, -1);
+    private final int[] entities = new int[OBJECTS];
+    private final Material[] materials = new Material[3];
+    private int frame;
+
+    @Test
+    void steadyStateFramesAllocateNothing() {
+        buildScene();
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            renderFrame();
+        }
+        backend.reset();
+
+        long overhead = allocatedBytes();  // What reading the counter itself allocates
+        overhead = allocatedBytes() - overhead;
+        long allocated = allocatedBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            renderFrame();
+        }
+        allocated = allocatedBytes() - allocated - overhead;
+
+        assertEquals(FRAMES, backend.getFrameCount());
+        assertTrue(backend.getInstances() > FRAMES, backend.toString());
+        assertEquals(0, allocated, String.format("%.2f bytes allocated per frame", allocated / (double) FRAMES));
+    }
+
+    private void buildScene() {
+        Shader shader = TestResources.shader("scene");
+        for (int m = 0; m < materials.length; m++) {
+            materials[m] = new Material(shader, TestResources.texture());
+        }
+        Model[] models = new Model[5];
+        for (int m = 0; m < models.length; m++) {
+            float[] bounds = {-0.5f, 0, -0.5f, 0.5f, 1 + m, 0.5f};
+            MeshBuffers mesh = new MeshBuffers(ByteBuffer.allocate(0), ByteBuffer.allocate(0), 0, 0, 0, VertexFormat.FULL,
+                    VertexEncoder.IDENTITY_DECODE, bounds, new int[]{0, 0, 0, 0}, new int[]{0, 0, 0, 0});
+            models[m] = new Model(0, 0, 0, mesh);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < OBJECTS; i++) {
+            int entity = registry.create();
+            transforms.add(entity);
+            float x = (random.nextFloat() - 0.5f) * 200, z = (random.nextFloat() - 0.5f) * 200;
+            transforms.setPosition(entity, x, 0, z);
+            transforms.setScale(entity, 1, 0.5f + random.nextFloat(), 1);
+            entities[i] = entity;
+            Model model = models[i % models.length];
+            float[] b = model.getBounds();
+            int id = scene.add(model, x + b[0], b[1], z + b[2], x + b[3], b[4] * 1.5f, z + b[5]);
+            assertEquals(i, id);
+        }
+    }
+
+    private void renderFrame() {
+        frame++;
+        camera.rotate(0.7f, frame % 200 < 100 ? 0.05f : -0.05f);
+        camera.move(forward, frame % 400 < 200 ? 0.05f : -0.05f);
+
+        // A few objects move every frame: transform update plus a BVH refit
+        for (int k = 0; k < 8; k++) {
+            int i = (frame * 31 + k * 197) % OBJECTS;
+            transforms.getWorldMatrix(entities[i], world);
+            float x = world.m30() + (frame % 2 == 0 ? 0.1f : -0.1f), z = world.m32();
+            transforms.setPosition(entities[i], x, 0, z);
+            float[] b = scene.getModel(i).getBounds();
+            scene.setBounds(i, x + b[0], b[1], z + b[2], x + b[3], b[4] * 1.5f, z + b[5]);
+        }
+        transforms.update(null);
+
+        frustum.update(camera, WIDTH, HEIGHT);
+        IntList visible = scene.cull(frustum);
+        renderQueue.begin(camera, WIDTH, HEIGHT);
+        for (int v = 0; v < visible.size(); v++) {
+            int i = visible.get(v);
+            Model model = scene.getModel(i);
+            transforms.getWorldMatrix(entities[i], world);
+            renderQueue.submit(model, materials[i % materials.length], transforms.getMatrices(), transforms.getSlot(entities[i]),
+                    LodSelector.DEFAULT.select(model, world, camera, HEIGHT));
+        }
+        renderQueue.flush(null);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
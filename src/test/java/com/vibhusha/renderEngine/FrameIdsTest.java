@@ -0,0 +1,44 @@
+package com.vibhusha.renderEngine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FrameIdsTest {
+    @Test
+    void assignsDenseIdsByIdentity() {
+        FrameIds<String> ids = new FrameIds<>(new String[4], "strings");
+        String a = new String("a"), equalToA = new String("a"), b = new String("b");
+        assertEquals(0, ids.idOf(a));
+        assertEquals(1, ids.idOf(b));
+        assertEquals(2, ids.idOf(equalToA));
+        assertEquals(0, ids.idOf(a));
+        assertSame(equalToA, ids.getObjects()[2]);
+        assertEquals(3, ids.getCount());
+    }
+
+    @Test
+    void neverRunsOutAcrossFramesAndDropsReferences() {
+        FrameIds<Object> ids = new FrameIds<>(new Object[8], "objects");
+        for (int frame = 0; frame < 1000; frame++) {
+            for (int i = 0; i < 8; i++) {
+                assertEquals(i, ids.idOf(new Object()));
+            }
+            ids.clear();
+            assertNull(ids.getObjects()[7]);
+        }
+        assertEquals(0, ids.getCount());
+    }
+
+    @Test
+    void limitsDistinctObjectsWithinOneFrame() {
+        FrameIds<Object> ids = new FrameIds<>(new Object[2], "objects");
+        ids.idOf(new Object());
+        ids.idOf(new Object());
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> ids.idOf(new Object()));
+        assertEquals("Render queue sort key supports at most 2 objects per frame", e.getMessage());
+    }
+}
@@ -0,0 +1,123 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Meshlets;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+// Times Meshlets and MeshletCuller on a bumpy sphere, a stand-in for a scanned mesh: building on one
+// thread and on the common pool, then culling from views around and close to the sphere, reporting
+// the triangle reduction and the CPU cost per view. MeshletTest checks the meshlets and the cones.
+//   java -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.renderEngine.MeshletBenchmark [rings]
+@Slf4j
+public class MeshletBenchmark {
+    private static final int RUNS = 5;
+    private static final int VIEWS = 16;
+
+    public static void main(String[] args) {
+        int rings = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int segments = rings * 2;
+        float[] positions = new float[(rings + 1) * (segments + 1) * 3];
+        for (int i = 0; i <= rings; i++) {
+            for (int j = 0; j <= segments; j++) {
+                double theta = Math.PI * i / rings, phi = 2 * Math.PI * j / segments;
+                double radius = 1 + 0.01 * Math.sin(theta * 37) * Math.cos(phi * 23) + 0.002 * Math.sin(phi * 151);
+                int p = (i * (segments + 1) + j) * 3;
+                positions[p] = (float) (radius * Math.sin(theta) * Math.cos(phi));
+                positions[p + 1] = (float) (radius * Math.cos(theta));
+                positions[p + 2] = (float) (radius * Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        int[] indices = new int[rings * segments * 6];
+        int n = 0;
+        for (int i = 0; i < rings; i++) {
+            for (int j = 0; j < segments; j++) {
+                int a = i * (segments + 1) + j, b = a + segments + 1;
+                n = outward(positions, indices, n, a, b, b + 1);
+                n = outward(positions, indices, n, a, b + 1, a + 1);
+            }
+        }
+        int triangleCount = indices.length / 3;
+        int[] offsets = {0}, counts = {indices.length};
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long singleBest = Long.MAX_VALUE, poolBest = Long.MAX_VALUE;
+        Meshlets meshlets = null;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Meshlets.build(positions, indices, offsets, counts, single);
+            singleBest = Math.min(singleBest, System.nanoTime() - start);
+            start = System.nanoTime();
+            meshlets = Meshlets.build(positions, indices, offsets, counts, pool);
+            poolBest = Math.min(poolBest, System.nanoTime() - start);
+        }
+        single.shutdown();
+        int vertexTotal = 0;
+        for (int m = 0; m < meshlets.getMeshletCount(); m++) {
+            vertexTotal += meshlets.getVertexCount(m);
+        }
+        log.info(String.format("Meshlet benchmark: %,d triangles -> %,d meshlets, %.1f triangles and %.1f vertices each; "
+                        + "built in %.1f ms on one thread, %.1f ms on %d threads (best of %d)",
+                triangleCount, meshlets.getMeshletCount(), triangleCount / (double) meshlets.getMeshletCount(),
+                vertexTotal / (double) meshlets.getMeshletCount(), singleBest / 1e6, poolBest / 1e6, pool.getParallelism(), RUNS));
+
+        // Views orbiting at a distance that shows the whole sphere, and close-ups that only see part of it
+        MeshletCuller culler = new MeshletCuller();
+        RenderStats stats = new RenderStats();
+        Matrix4f world = new Matrix4f().translate(0.5f, -0.25f, 2.0f).rotateY(0.7f).scale(3.0f);
+        Matrix4f projection = new Matrix4f().perspective((float) Math.toRadians(45), 16 / 9.0f, 0.1f, 100.0f);
+        Matrix4f viewProjection = new Matrix4f();
+        Vector3f eye = new Vector3f(), centre = world.transformPosition(new Vector3f());
+        long drawn = 0, total = 0, outside = 0, backfacing = 0;
+        long[] viewBest = new long[VIEWS];
+        Arrays.fill(viewBest, Long.MAX_VALUE);
+        for (int view = 0; view < VIEWS; view++) {
+            double angle = 2 * Math.PI * view / VIEWS;
+            float distance = view % 2 == 0 ? 9.0f : 4.0f;
+            eye.set(centre.x + distance * (float) Math.cos(angle), centre.y + 1.5f, centre.z + distance * (float) Math.sin(angle));
+            // Close-ups look past the centre, so part of the sphere leaves the frustum
+            Vector3f target = new Vector3f(centre).add(view % 2 == 0 ? 0 : 2.0f * (float) Math.sin(angle), 0, view % 2 == 0 ? 0 : -2.0f * (float) Math.cos(angle));
+            projection.mul(new Matrix4f().lookAt(eye, target, new Vector3f(0, 1, 0)), viewProjection);
+            for (int run = 0; run < RUNS; run++) {
+                stats.reset();
+                culler.cull(meshlets, 0, meshlets.getMeshletCount(), viewProjection, world, eye, stats);
+                viewBest[view] = Math.min(viewBest[view], stats.getMeshletCullNanos());
+            }
+            drawn += stats.getMeshletTrianglesDrawn();
+            total += stats.getMeshletTriangles();
+            outside += stats.getMeshletsOutside();
+            backfacing += stats.getMeshletsBackfacing();
+        }
+        long cullTotal = 0;
+        for (long nanos : viewBest) {
+            cullTotal += nanos;
+        }
+        log.info(String.format("Culling over %d views: %.1f%% of triangles drawn, %.1f%% of meshlets outside the frustum, %.1f%% back-facing; "
+                        + "%.1f us per view (%.1f ns per meshlet)",
+                VIEWS, 100.0 * drawn / total, 100.0 * outside / (VIEWS * (double) meshlets.getMeshletCount()),
+                100.0 * backfacing / (VIEWS * (double) meshlets.getMeshletCount()), cullTotal / 1e3 / VIEWS,
+                cullTotal / (double) VIEWS / meshlets.getMeshletCount()));
+    }
+
+    // Appends the triangle wound counter-clockwise seen from outside the origin-centred sphere
+    private static int outward(float[] positions, int[] indices, int n, int a, int b, int c) {
+        float[] normal = normal(positions, a, b, c);
+        float dot = normal[0] * (positions[a * 3] + positions[b * 3] + positions[c * 3])
+                + normal[1] * (positions[a * 3 + 1] + positions[b * 3 + 1] + positions[c * 3 + 1])
+                + normal[2] * (positions[a * 3 + 2] + positions[b * 3 + 2] + positions[c * 3 + 2]);
+        indices[n] = a;
+        indices[n + 1] = dot < 0 ? c : b;
+        indices[n + 2] = dot < 0 ? b : c;
+        return n + 3;
+    }
+
+    private static float[] normal(float[] positions, int a, int b, int c) {
+        float ux = positions[b * 3] - positions[a * 3], uy = positions[b * 3 + 1] - positions[a * 3 + 1], uz = positions[b * 3 + 2] - positions[a * 3 + 2];
+        float vx = positions[c * 3] - positions[a * 3], vy = positions[c * 3 + 1] - positions[a * 3 + 1], vz = positions[c * 3 + 2] - positions[a * 3 + 2];
+        return new float[]{uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx};
+    }
+}
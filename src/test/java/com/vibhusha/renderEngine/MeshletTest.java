@@ -0,0 +1,183 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Frustum;
+import com.vibhusha.utils.Meshlets;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Meshlets and MeshletCuller on a small bumpy sphere: the meshlets cover every triangle exactly once
+// with its winding, stay within the limits and have spheres that contain their vertices, and no
+// meshlet is culled by its cone unless every one of its triangles faces away. MeshletBenchmark times
+// the same kind of mesh at scanned-mesh sizes.
+class MeshletTest {
+    private static final int RINGS = 64;
+    private static final int SEGMENTS = RINGS * 2;
+    private static final int VIEWS = 8;
+
+    private final float[] positions = new float[(RINGS + 1) * (SEGMENTS + 1) * 3];
+    private final int[] indices = new int[RINGS * SEGMENTS * 6];
+
+    MeshletTest() {
+        for (int i = 0; i <= RINGS; i++) {
+            for (int j = 0; j <= SEGMENTS; j++) {
+                double theta = Math.PI * i / RINGS, phi = 2 * Math.PI * j / SEGMENTS;
+                double radius = 1 + 0.01 * Math.sin(theta * 37) * Math.cos(phi * 23) + 0.002 * Math.sin(phi * 151);
+                int p = (i * (SEGMENTS + 1) + j) * 3;
+                positions[p] = (float) (radius * Math.sin(theta) * Math.cos(phi));
+                positions[p + 1] = (float) (radius * Math.cos(theta));
+                positions[p + 2] = (float) (radius * Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        int n = 0;
+        for (int i = 0; i < RINGS; i++) {
+            for (int j = 0; j < SEGMENTS; j++) {
+                int a = i * (SEGMENTS + 1) + j, b = a + SEGMENTS + 1;
+                n = outward(n, a, b, b + 1);
+                n = outward(n, a, b + 1, a + 1);
+            }
+        }
+    }
+
+    private Meshlets build(ForkJoinPool pool) {
+        return Meshlets.build(positions, indices, new int[]{0}, new int[]{indices.length}, pool);
+    }
+
+    @Test
+    void buildsTheSameMeshletsOnOneThreadAndOnThePool() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        Meshlets reference;
+        try {
+            reference = build(single);
+        } finally {
+            single.shutdown();
+        }
+        Meshlets meshlets = build(ForkJoinPool.commonPool());
+        assertArrayEquals(reference.getVertices(), meshlets.getVertices());
+        assertArrayEquals(reference.getTriangles(), meshlets.getTriangles());
+        assertArrayEquals(reference.getBounds(), meshlets.getBounds());
+    }
+
+    @Test
+    void coversEveryTriangleOnceWithinTheLimits() {
+        Meshlets meshlets = build(ForkJoinPool.commonPool());
+        long[] expected = new long[indices.length / 3];
+        for (int t = 0; t < expected.length; t++) {
+            expected[t] = triangleKey(indices[t * 3], indices[t * 3 + 1], indices[t * 3 + 2]);
+        }
+        long[] actual = new long[meshlets.getTotalTriangleCount()];
+        int[] vertices = meshlets.getVertices();
+        byte[] triangles = meshlets.getTriangles();
+        float[] bounds = meshlets.getBounds();
+        for (int m = 0; m < meshlets.getMeshletCount(); m++) {
+            int vertexOffset = meshlets.getVertexOffset(m);
+            assertTrue(meshlets.getVertexCount(m) <= Meshlets.MAX_VERTICES, "Meshlet " + m);
+            assertTrue(meshlets.getTriangleCount(m) <= Meshlets.MAX_TRIANGLES, "Meshlet " + m);
+            for (int t = meshlets.getTriangleOffset(m); t < meshlets.getTriangleOffset(m) + meshlets.getTriangleCount(m); t++) {
+                actual[t] = triangleKey(vertices[vertexOffset + (triangles[t * 3] & 0xFF)], vertices[vertexOffset + (triangles[t * 3 + 1] & 0xFF)],
+                        vertices[vertexOffset + (triangles[t * 3 + 2] & 0xFF)]);
+            }
+            int b = m * Meshlets.BOUNDS_FLOATS;
+            for (int v = vertexOffset; v < vertexOffset + meshlets.getVertexCount(m); v++) {
+                float dx = positions[vertices[v] * 3] - bounds[b], dy = positions[vertices[v] * 3 + 1] - bounds[b + 1], dz = positions[vertices[v] * 3 + 2] - bounds[b + 2];
+                assertTrue(dx * dx + dy * dy + dz * dz <= bounds[b + 3] * bounds[b + 3], "Meshlet " + m + " sphere misses a vertex");
+            }
+        }
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void conesOnlyCullMeshletsFacingAway() {
+        Meshlets meshlets = build(ForkJoinPool.commonPool());
+        MeshletCuller culler = new MeshletCuller();
+        RenderStats stats = new RenderStats();
+        Matrix4f world = new Matrix4f().translate(0.5f, -0.25f, 2.0f).rotateY(0.7f).scale(3.0f);
+        Matrix4f projection = new Matrix4f().perspective((float) Math.toRadians(45), 16 / 9.0f, 0.1f, 100.0f);
+        Matrix4f viewProjection = new Matrix4f();
+        Matrix4f inverseWorld = world.invertAffine(new Matrix4f());
+        Vector3f eye = new Vector3f(), localEye = new Vector3f(), centre = world.transformPosition(new Vector3f());
+        int backfacing = 0;
+        for (int view = 0; view < VIEWS; view++) {
+            // Orbiting views that show the whole sphere, and close-ups looking past the centre
+            double angle = 2 * Math.PI * view / VIEWS;
+            float distance = view % 2 == 0 ? 9.0f : 4.0f;
+            eye.set(centre.x + distance * (float) Math.cos(angle), centre.y + 1.5f, centre.z + distance * (float) Math.sin(angle));
+            Vector3f target = new Vector3f(centre).add(view % 2 == 0 ? 0 : 2.0f * (float) Math.sin(angle), 0, view % 2 == 0 ? 0 : -2.0f * (float) Math.cos(angle));
+            projection.mul(new Matrix4f().lookAt(eye, target, new Vector3f(0, 1, 0)), viewProjection);
+            stats.reset();
+            culler.cull(meshlets, 0, meshlets.getMeshletCount(), viewProjection, world, eye, stats);
+            int culled = checkCones(meshlets, viewProjection, world, inverseWorld.transformPosition(eye, localEye));
+            assertEquals(culled, stats.getMeshletsBackfacing(), "View " + view);
+            backfacing += culled;
+        }
+        assertTrue(backfacing > 0);
+    }
+
+    // Recomputes which meshlets survive the frustum but not their cone, failing on any with a front-facing triangle
+    private int checkCones(Meshlets meshlets, Matrix4f viewProjection, Matrix4f world, Vector3f localEye) {
+        Frustum frustum = new Frustum();
+        frustum.update(viewProjection.mul(world, new Matrix4f()));
+        float[] bounds = meshlets.getBounds();
+        int[] vertices = meshlets.getVertices();
+        byte[] triangles = meshlets.getTriangles();
+        int culled = 0;
+        for (int m = 0; m < meshlets.getMeshletCount(); m++) {
+            int b = m * Meshlets.BOUNDS_FLOATS;
+            if (!frustum.intersectsSphere(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3]) || bounds[b + 7] >= 1) {
+                continue;
+            }
+            float dx = bounds[b] - localEye.x, dy = bounds[b + 1] - localEye.y, dz = bounds[b + 2] - localEye.z;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (dx * bounds[b + 4] + dy * bounds[b + 5] + dz * bounds[b + 6] < bounds[b + 7] * distance + bounds[b + 3]) {
+                continue;
+            }
+            culled++;
+            int vertexOffset = meshlets.getVertexOffset(m);
+            for (int t = meshlets.getTriangleOffset(m); t < meshlets.getTriangleOffset(m) + meshlets.getTriangleCount(m); t++) {
+                int a = vertices[vertexOffset + (triangles[t * 3] & 0xFF)];
+                float[] normal = normal(a, vertices[vertexOffset + (triangles[t * 3 + 1] & 0xFF)], vertices[vertexOffset + (triangles[t * 3 + 2] & 0xFF)]);
+                float facing = (localEye.x - positions[a * 3]) * normal[0] + (localEye.y - positions[a * 3 + 1]) * normal[1] + (localEye.z - positions[a * 3 + 2]) * normal[2];
+                assertTrue(facing <= 1e-9f, "Meshlet " + m + " was culled by its cone but has a front-facing triangle");
+            }
+        }
+        return culled;
+    }
+
+    // Appends the triangle wound counter-clockwise seen from outside the origin-centred sphere
+    private int outward(int n, int a, int b, int c) {
+        float[] normal = normal(a, b, c);
+        float dot = normal[0] * (positions[a * 3] + positions[b * 3] + positions[c * 3])
+                + normal[1] * (positions[a * 3 + 1] + positions[b * 3 + 1] + positions[c * 3 + 1])
+                + normal[2] * (positions[a * 3 + 2] + positions[b * 3 + 2] + positions[c * 3 + 2]);
+        indices[n] = a;
+        indices[n + 1] = dot < 0 ? c : b;
+        indices[n + 2] = dot < 0 ? b : c;
+        return n + 3;
+    }
+
+    private float[] normal(int a, int b, int c) {
+        float ux = positions[b * 3] - positions[a * 3], uy = positions[b * 3 + 1] - positions[a * 3 + 1], uz = positions[b * 3 + 2] - positions[a * 3 + 2];
+        float vx = positions[c * 3] - positions[a * 3], vy = positions[c * 3 + 1] - positions[a * 3 + 1], vz = positions[c * 3 + 2] - positions[a * 3 + 2];
+        return new float[]{uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx};
+    }
+
+    // Rotated so the smallest vertex comes first, which keeps the winding
+    private static long triangleKey(int a, int b, int c) {
+        if (b < a && b < c) {
+            return triangleKey(b, c, a);
+        }
+        if (c < a && c < b) {
+            return triangleKey(c, a, b);
+        }
+        return (long) a << 42 | (long) b << 21 | c;
+    }
+}
@@ -0,0 +1,124 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.CollisionMesh;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Matrix4f;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Times OcclusionCuller on an indoor-like scene: a grid of wall boxes as occluders and small boxes
+// scattered between them as occludees, seen from several camera positions. Rasterization is timed
+// with the scalar and the selected kernels, on one thread and on the common pool, then the box
+// tests. OcclusionCullerTest checks the same kind of scene against a reference rasterizer.
+//   java --add-modules jdk.incubator.vector -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.renderEngine.OcclusionBenchmark [wallsPerSide] [boxCount]
+@Slf4j
+public class OcclusionBenchmark {
+    private static final int RUNS = 5;
+    private static final int WIDTH = 320, HEIGHT = 192;
+    private static final int VIEWS = 8;
+    private static int sink;  // Keeps the timed box tests from being optimized away
+
+    public static void main(String[] args) {
+        int wallsPerSide = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int boxCount = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Random random = new Random(42);
+
+        // Walls 4 units long on a 5-unit grid, with gaps between them so some boxes stay visible
+        CollisionMesh[] walls = new CollisionMesh[wallsPerSide * wallsPerSide];
+        for (int i = 0; i < walls.length; i++) {
+            float x = (i % wallsPerSide) * 5.0f, z = (i / wallsPerSide) * 5.0f;
+            boolean alongX = random.nextBoolean();
+            walls[i] = box(x, 0, z, x + (alongX ? 4.0f : 0.2f), 3.0f, z + (alongX ? 0.2f : 4.0f));
+        }
+        float[] boxes = new float[boxCount * 6];
+        float extent = wallsPerSide * 5.0f;
+        for (int i = 0; i < boxCount; i++) {
+            float x = random.nextFloat() * extent, y = random.nextFloat() * 2.5f, z = random.nextFloat() * extent, size = 0.05f + random.nextFloat() * 0.3f;
+            boxes[i * 6] = x;
+            boxes[i * 6 + 1] = y;
+            boxes[i * 6 + 2] = z;
+            boxes[i * 6 + 3] = x + size;
+            boxes[i * 6 + 4] = y + size;
+            boxes[i * 6 + 5] = z + size;
+        }
+
+        OcclusionCuller scalar = new OcclusionCuller(WIDTH, HEIGHT, new ScalarDepthKernels());
+        OcclusionCuller selected = new OcclusionCuller(WIDTH, HEIGHT);
+        log.info(String.format("Occlusion benchmark: %d occluder triangles, %,d boxes, %dx%d, %d thread(s), %s kernels, best of %d runs",
+                walls.length * 12, boxCount, scalar.getWidth(), scalar.getHeight(), pool.getParallelism(), selected.getKernelName(), RUNS));
+
+        Matrix4f identity = new Matrix4f();
+        Matrix4f viewProjection = new Matrix4f();
+        long[] rasterBest = new long[4];
+        long testBest = Long.MAX_VALUE;
+        int hidden = 0;
+        for (int view = 0; view < VIEWS; view++) {
+            float eyeX = random.nextFloat() * extent, eyeZ = random.nextFloat() * extent, angle = random.nextFloat() * 6.28f;
+            viewProjection.setPerspective((float) Math.toRadians(60), (float) WIDTH / HEIGHT, 0.1f, 200.0f)
+                    .lookAt(eyeX, 1.7f, eyeZ, eyeX + (float) Math.cos(angle), 1.6f, eyeZ + (float) Math.sin(angle), 0, 1, 0);
+
+            int configuration = 0;
+            for (OcclusionCuller culler : new OcclusionCuller[]{scalar, selected}) {
+                for (ForkJoinPool executor : new ForkJoinPool[]{null, pool}) {
+                    long best = Long.MAX_VALUE;
+                    for (int run = 0; run < RUNS; run++) {
+                        long start = System.nanoTime();
+                        culler.begin(viewProjection);
+                        for (CollisionMesh wall : walls) {
+                            culler.addOccluder(wall, identity);
+                        }
+                        culler.rasterize(executor);
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    rasterBest[configuration++] += best;
+                }
+            }
+
+            int visible = 0;
+            for (int i = 0; i < boxCount; i++) {
+                int b = i * 6;
+                visible += selected.isVisible(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]) ? 1 : 0;
+            }
+            hidden += boxCount - visible;
+            testBest = Math.min(testBest, timeTests(selected, boxes, boxCount));
+        }
+
+        log.info(String.format("Rasterize per frame: scalar %.3f ms on 1 thread, %.3f ms on the pool; %s %.3f ms on 1 thread, %.3f ms on the pool",
+                rasterBest[0] / 1e6 / VIEWS, rasterBest[1] / 1e6 / VIEWS, selected.getKernelName(), rasterBest[2] / 1e6 / VIEWS, rasterBest[3] / 1e6 / VIEWS));
+        log.info(String.format("Box tests: %.1f ns per box; culled %.1f%% of boxes",
+                testBest / (double) boxCount, 100.0 * hidden / ((long) boxCount * VIEWS)));
+    }
+
+    private static long timeTests(OcclusionCuller culler, float[] boxes, int boxCount) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            int visible = 0;
+            for (int i = 0; i < boxCount; i++) {
+                int b = i * 6;
+                visible += culler.isVisible(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]) ? 1 : 0;
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            sink += visible;
+        }
+        return best;
+    }
+
+    // Closed box, 12 triangles
+    private static CollisionMesh box(float x0, float y0, float z0, float x1, float y1, float z1) {
+        float[] positions = new float[8 * 3];
+        for (int corner = 0; corner < 8; corner++) {
+            positions[corner * 3] = (corner & 1) == 0 ? x0 : x1;
+            positions[corner * 3 + 1] = (corner & 2) == 0 ? y0 : y1;
+            positions[corner * 3 + 2] = (corner & 4) == 0 ? z0 : z1;
+        }
+        int[] indices = {
+                0, 2, 1, 1, 2, 3, 4, 5, 6, 5, 7, 6,  // z0, z1
+                0, 1, 4, 1, 5, 4, 2, 6, 3, 3, 6, 7,  // y0, y1
+                0, 4, 2, 2, 4, 6, 1, 3, 5, 3, 7, 5   // x0, x1
+        };
+        return new CollisionMesh(positions, indices, null);
+    }
+}
@@ -0,0 +1,260 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.CollisionMesh;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// OcclusionCuller on an indoor-like scene (a grid of wall boxes as occluders, small boxes scattered
+// between them as occludees) seen from several camera positions, against a reference rasterizer that
+// walks each triangle's full bounding box in an untiled buffer. OcclusionBenchmark times the same scene.
+class OcclusionCullerTest {
+    private static final int WIDTH = 320, HEIGHT = 192;
+    private static final int WALLS_PER_SIDE = 10;
+    private static final int BOXES = 4000;
+    private static final int VIEWS = 6;
+
+    private static final CollisionMesh[] walls = new CollisionMesh[WALLS_PER_SIDE * WALLS_PER_SIDE];
+    private static final float[] boxes = new float[BOXES * 6];
+    private static final Matrix4f[] views = new Matrix4f[VIEWS];
+    private static final Matrix4f identity = new Matrix4f();
+
+    @BeforeAll
+    static void buildScene() {
+        Random random = new Random(42);
+        // Walls 4 units long on a 5-unit grid, with gaps between them so some boxes stay visible
+        for (int i = 0; i < walls.length; i++) {
+            float x = (i % WALLS_PER_SIDE) * 5.0f, z = (i / WALLS_PER_SIDE) * 5.0f;
+            boolean alongX = random.nextBoolean();
+            walls[i] = box(x, 0, z, x + (alongX ? 4.0f : 0.2f), 3.0f, z + (alongX ? 0.2f : 4.0f));
+        }
+        float extent = WALLS_PER_SIDE * 5.0f;
+        for (int i = 0; i < BOXES; i++) {
+            float x = random.nextFloat() * extent, y = random.nextFloat() * 2.5f, z = random.nextFloat() * extent, size = 0.05f + random.nextFloat() * 0.3f;
+            boxes[i * 6] = x;
+            boxes[i * 6 + 1] = y;
+            boxes[i * 6 + 2] = z;
+            boxes[i * 6 + 3] = x + size;
+            boxes[i * 6 + 4] = y + size;
+            boxes[i * 6 + 5] = z + size;
+        }
+        for (int view = 0; view < VIEWS; view++) {
+            float eyeX = random.nextFloat() * extent, eyeZ = random.nextFloat() * extent, angle = random.nextFloat() * 6.28f;
+            views[view] = new Matrix4f().setPerspective((float) Math.toRadians(60), (float) WIDTH / HEIGHT, 0.1f, 200.0f)
+                    .lookAt(eyeX, 1.7f, eyeZ, eyeX + (float) Math.cos(angle), 1.6f, eyeZ + (float) Math.sin(angle), 0, 1, 0);
+        }
+    }
+
+    private static void rasterize(OcclusionCuller culler, Matrix4f viewProjection, ForkJoinPool executor) {
+        culler.begin(viewProjection);
+        for (CollisionMesh wall : walls) {
+            culler.addOccluder(wall, identity);
+        }
+        culler.rasterize(executor);
+    }
+
+    @Test
+    void depthIsBitIdenticalToTheReference() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (DepthKernels kernels : new DepthKernels[]{new ScalarDepthKernels(), new VectorDepthKernels()}) {
+                OcclusionCuller culler = new OcclusionCuller(WIDTH, HEIGHT, kernels);
+                for (ForkJoinPool executor : new ForkJoinPool[]{null, pool}) {
+                    for (int view = 0; view < VIEWS; view++) {
+                        float[] reference = referenceDepth(walls, views[view], culler.getWidth(), culler.getHeight());
+                        rasterize(culler, views[view], executor);
+                        for (int y = 0; y < culler.getHeight(); y++) {
+                            for (int x = 0; x < culler.getWidth(); x++) {
+                                float expected = reference[y * culler.getWidth() + x];
+                                int bits = Float.floatToIntBits(culler.getDepth(x, y));
+                                if (bits != Float.floatToIntBits(expected)) {
+                                    assertEquals(expected, culler.getDepth(x, y), String.format("%s kernels, %s, view %d: depth at (%d, %d)",
+                                            kernels.getName(), executor == null ? "1 thread" : "pool", view, x, y));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void neverCullsABoxTheReferenceShows() {
+        OcclusionCuller culler = new OcclusionCuller(WIDTH, HEIGHT);
+        int hidden = 0;
+        for (int view = 0; view < VIEWS; view++) {
+            float[] reference = referenceDepth(walls, views[view], culler.getWidth(), culler.getHeight());
+            rasterize(culler, views[view], null);
+            for (int i = 0; i < BOXES; i++) {
+                int b = i * 6;
+                boolean visible = culler.isVisible(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]);
+                if (!visible) {
+                    assertFalse(referenceVisible(reference, culler.getWidth(), culler.getHeight(), views[view], boxes, b),
+                            String.format("View %d: box %d culled but visible in the reference depth buffer", view, i));
+                    hidden++;
+                }
+            }
+        }
+        assertTrue(hidden > 0, "The walls hide no box at all");
+    }
+
+    @Test
+    void scalarAndVectorKernelsAgree() {
+        OcclusionCuller scalar = new OcclusionCuller(WIDTH, HEIGHT, new ScalarDepthKernels());
+        OcclusionCuller vector = new OcclusionCuller(WIDTH, HEIGHT, new VectorDepthKernels());
+        for (int view = 0; view < VIEWS; view++) {
+            rasterize(scalar, views[view], null);
+            rasterize(vector, views[view], null);
+            for (int y = 0; y < scalar.getHeight(); y++) {
+                for (int x = 0; x < scalar.getWidth(); x++) {
+                    if (Float.floatToIntBits(scalar.getDepth(x, y)) != Float.floatToIntBits(vector.getDepth(x, y))) {
+                        assertEquals(scalar.getDepth(x, y), vector.getDepth(x, y), String.format("View %d: depth at (%d, %d)", view, x, y));
+                    }
+                }
+            }
+            for (int i = 0; i < BOXES; i++) {
+                int b = i * 6;
+                boolean expected = scalar.isVisible(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]);
+                assertEquals(expected, vector.isVisible(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]),
+                        String.format("View %d: box %d", view, i));
+            }
+        }
+    }
+
+    // Straightforward rasterizer: same clip, setup and per-pixel expressions as OcclusionCuller, but
+    // no tiling, binning, hierarchy or threads, one pixel at a time over each bounding box
+    private static float[] referenceDepth(CollisionMesh[] meshes, Matrix4f m, int width, int height) {
+        float[] depth = new float[width * height];
+        Arrays.fill(depth, 1.0f);
+        float[] polygon = new float[5 * 4];
+        for (CollisionMesh mesh : meshes) {
+            float[] p = mesh.getPositions();
+            float[] clip = new float[p.length / 3 * 4];
+            for (int v = 0; v < p.length / 3; v++) {
+                float x = p[v * 3], y = p[v * 3 + 1], z = p[v * 3 + 2];
+                clip[v * 4] = m.m00() * x + m.m10() * y + m.m20() * z + m.m30();
+                clip[v * 4 + 1] = m.m01() * x + m.m11() * y + m.m21() * z + m.m31();
+                clip[v * 4 + 2] = m.m02() * x + m.m12() * y + m.m22() * z + m.m32();
+                clip[v * 4 + 3] = m.m03() * x + m.m13() * y + m.m23() * z + m.m33();
+            }
+            int[] indices = mesh.getIndices();
+            for (int t = 0; t < indices.length; t += 3) {
+                int[] corners = {indices[t] * 4, indices[t + 1] * 4, indices[t + 2] * 4};
+                int count = 0;
+                for (int i = 0; i < 3; i++) {
+                    int a = corners[i], b = corners[(i + 1) % 3];
+                    float da = clip[a + 2] + clip[a + 3], db = clip[b + 2] + clip[b + 3];
+                    if (da >= 0) {
+                        System.arraycopy(clip, a, polygon, count++ * 4, 4);
+                    }
+                    if ((da >= 0) != (db >= 0)) {
+                        float s = da / (da - db);
+                        for (int k = 0; k < 4; k++) {
+                            polygon[count * 4 + k] = clip[a + k] + (clip[b + k] - clip[a + k]) * s;
+                        }
+                        count++;
+                    }
+                }
+                for (int v = 1; v + 1 < count; v++) {
+                    referenceTriangle(depth, width, height, polygon, 0, v * 4, (v + 1) * 4);
+                }
+            }
+        }
+        return depth;
+    }
+
+    private static void referenceTriangle(float[] depth, int width, int height, float[] v, int a, int b, int c) {
+        float x0 = (v[a] / v[a + 3] * 0.5f + 0.5f) * width, y0 = (v[a + 1] / v[a + 3] * 0.5f + 0.5f) * height, z0 = v[a + 2] / v[a + 3] * 0.5f + 0.5f;
+        float x1 = (v[b] / v[b + 3] * 0.5f + 0.5f) * width, y1 = (v[b + 1] / v[b + 3] * 0.5f + 0.5f) * height, z1 = v[b + 2] / v[b + 3] * 0.5f + 0.5f;
+        float x2 = (v[c] / v[c + 3] * 0.5f + 0.5f) * width, y2 = (v[c + 1] / v[c + 3] * 0.5f + 0.5f) * height, z2 = v[c + 2] / v[c + 3] * 0.5f + 0.5f;
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if (!(Math.abs(area) > 0)) {
+            return;
+        }
+        float sign = area > 0 ? 1.0f : -1.0f;
+        float[] e = {
+                (y1 - y2) * sign, (x2 - x1) * sign, (x1 * y2 - x2 * y1) * sign,
+                (y2 - y0) * sign, (x0 - x2) * sign, (x2 * y0 - x0 * y2) * sign,
+                (y0 - y1) * sign, (x1 - x0) * sign, (x0 * y1 - x1 * y0) * sign
+        };
+        float zx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) / area;
+        float zy = ((z2 - z0) * (x1 - x0) - (z1 - z0) * (x2 - x0)) / area;
+        float zc = z0 - zx * x0 - zy * y0;
+        float zMin = Math.min(z0, Math.min(z1, z2));
+        int px0 = Math.max(0, (int) Math.ceil(Math.min(x0, Math.min(x1, x2)) - 0.5f));
+        int py0 = Math.max(0, (int) Math.ceil(Math.min(y0, Math.min(y1, y2)) - 0.5f));
+        int px1 = Math.min(width - 1, (int) Math.floor(Math.max(x0, Math.max(x1, x2)) - 0.5f));
+        int py1 = Math.min(height - 1, (int) Math.floor(Math.max(y0, Math.max(y1, y2)) - 0.5f));
+        for (int y = py0; y <= py1; y++) {
+            float py = y + 0.5f;
+            for (int x = px0; x <= px1; x++) {
+                float px = x + 0.5f;
+                if (px * e[0] + (py * e[1] + e[2]) >= 0 && px * e[3] + (py * e[4] + e[5]) >= 0 && px * e[6] + (py * e[7] + e[8]) >= 0) {
+                    float z = Math.max(px * zx + (py * zy + zc), zMin);
+                    depth[y * width + x] = Math.min(depth[y * width + x], z);
+                }
+            }
+        }
+    }
+
+    // Exact per-pixel version of OcclusionCuller.isVisible, without the hierarchy
+    private static boolean referenceVisible(float[] depth, int width, int height, Matrix4f m, float[] boxes, int b) {
+        float sx0 = Float.POSITIVE_INFINITY, sy0 = Float.POSITIVE_INFINITY, sx1 = Float.NEGATIVE_INFINITY, sy1 = Float.NEGATIVE_INFINITY;
+        float nearest = Float.POSITIVE_INFINITY;
+        for (int corner = 0; corner < 8; corner++) {
+            float x = boxes[b + ((corner & 1) == 0 ? 0 : 3)], y = boxes[b + ((corner & 2) == 0 ? 1 : 4)], z = boxes[b + ((corner & 4) == 0 ? 2 : 5)];
+            float cw = m.m03() * x + m.m13() * y + m.m23() * z + m.m33();
+            float cz = m.m02() * x + m.m12() * y + m.m22() * z + m.m32();
+            if (cz < -cw || cw <= 0) {
+                return true;
+            }
+            float inv = 1.0f / cw;
+            float px = ((m.m00() * x + m.m10() * y + m.m20() * z + m.m30()) * inv * 0.5f + 0.5f) * width;
+            float py = ((m.m01() * x + m.m11() * y + m.m21() * z + m.m31()) * inv * 0.5f + 0.5f) * height;
+            sx0 = Math.min(sx0, px);
+            sy0 = Math.min(sy0, py);
+            sx1 = Math.max(sx1, px);
+            sy1 = Math.max(sy1, py);
+            nearest = Math.min(nearest, cz * inv * 0.5f + 0.5f);
+        }
+        int x0 = Math.max(0, (int) Math.floor(sx0)), y0 = Math.max(0, (int) Math.floor(sy0));
+        int x1 = Math.min(width - 1, (int) Math.floor(sx1)), y1 = Math.min(height - 1, (int) Math.floor(sy1));
+        if (x0 > x1 || y0 > y1) {
+            return true;
+        }
+        float farthest = 0.0f;
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                farthest = Math.max(farthest, depth[y * width + x]);
+            }
+        }
+        return nearest <= farthest + 1e-6f;
+    }
+
+    // Closed box, 12 triangles
+    private static CollisionMesh box(float x0, float y0, float z0, float x1, float y1, float z1) {
+        float[] positions = new float[8 * 3];
+        for (int corner = 0; corner < 8; corner++) {
+            positions[corner * 3] = (corner & 1) == 0 ? x0 : x1;
+            positions[corner * 3 + 1] = (corner & 2) == 0 ? y0 : y1;
+            positions[corner * 3 + 2] = (corner & 4) == 0 ? z0 : z1;
+        }
+        int[] indices = {
+                0, 2, 1, 1, 2, 3, 4, 5, 6, 5, 7, 6,  // z0, z1
+                0, 1, 4, 1, 5, 4, 2, 6, 3, 3, 6, 7,  // y0, y1
+                0, 4, 2, 2, 4, 6, 1, 3, 5, 3, 7, 5   // x0, x1
+        };
+        return new CollisionMesh(positions, indices, null);
+    }
+}
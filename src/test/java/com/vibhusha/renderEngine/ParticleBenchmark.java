@@ -0,0 +1,100 @@
+package com.vibhusha.renderEngine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Times ParticleSystem without a GL context. A system at steady state is timed per kernel, with and
+// without instance output and with depth sorting, on one thread and on the common pool, and reported
+// as particles updated per millisecond per core. ParticleSystemTest checks the system against a naive
+// reference and the kernels against each other.
+//   java --add-modules jdk.incubator.vector -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.renderEngine.ParticleBenchmark [particles] [emitters]
+@Slf4j
+public class ParticleBenchmark {
+    private static final int RUNS = 5;
+    private static final int FRAMES = 60;
+    private static final float DT = 1 / 60.0f;
+
+    public static void main(String[] args) {
+        int particles = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int emitterCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<ParticleKernels> kernels = new ArrayList<>();
+        kernels.add(new ScalarParticleKernels());
+        ParticleKernels preferred = ParticleSystem.selectKernels();
+        if (!(preferred instanceof ScalarParticleKernels)) {
+            kernels.add(preferred);
+        }
+
+        log.info(String.format("Particle benchmark: %,d particles in %d emitters, %d frames of %.1f ms, best of %d runs",
+                particles, emitterCount, FRAMES, DT * 1e3, RUNS));
+        for (ParticleKernels kernel : kernels) {
+            ParticleSystem system = new ParticleSystem(kernel);
+            for (ParticleEmitter emitter : createEmitters(emitterCount, particles / emitterCount, 3.0f, 42)) {
+                system.addEmitter(emitter);
+            }
+            ByteBuffer instances = BufferUtils.createByteBuffer(system.getCapacity() * ParticleSystem.INSTANCE_BYTES);
+            // Steady state: every emitter has run for its longest lifetime
+            for (int frame = 0; frame < 4.0f / DT; frame++) {
+                system.update(DT, pool, null);
+            }
+            for (ForkJoinPool threads : new ForkJoinPool[]{null, pool}) {
+                int cores = threads == null ? 1 : threads.getParallelism();
+                time(system, kernel, threads, cores, null, "simulate only");
+                time(system, kernel, threads, cores, instances, "instance records");
+                system.setDepthSort(true);
+                system.setView(new Vector3f(0, 2, 12), new Vector3f(0, 0, -1));
+                time(system, kernel, threads, cores, instances, "depth sorted records");
+                system.setDepthSort(false);
+            }
+        }
+    }
+
+    private static void time(ParticleSystem system, ParticleKernels kernel, ForkJoinPool threads, int cores, ByteBuffer instances, String mode) {
+        long best = Long.MAX_VALUE, sortBest = Long.MAX_VALUE;
+        long updated = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long total = 0, sort = 0;
+            updated = 0;
+            for (int frame = 0; frame < FRAMES; frame++) {
+                system.update(DT, threads, instances);
+                total += system.getStats().getUpdateNanos();
+                sort += system.getStats().getSortNanos();
+                // Everything alive during the step was integrated: the survivors and the ones that died
+                updated += system.getStats().getParticles() + system.getStats().getDied();
+            }
+            if (total < best) {
+                best = total;
+                sortBest = sort;
+            }
+        }
+        double perFrameMs = best / 1e6 / FRAMES;
+        log.info(String.format("  %-20s %-22s %2d thread(s): %.2f ms/frame%s, %,.0f particles/ms/core; %s",
+                kernel.getName(), mode, cores, perFrameMs, sortBest > 0 ? String.format(" (sort %.2f ms)", sortBest / 1e6 / FRAMES) : "",
+                updated / (best / 1e6) / cores, system.getStats()));
+    }
+
+    // Fountains of different sizes and lifetimes; the last one is too small for its rate and drops
+    private static List<ParticleEmitter> createEmitters(int count, int capacity, float maxLife, long seed) {
+        List<ParticleEmitter> emitters = new ArrayList<>();
+        for (int e = 0; e < count; e++) {
+            ParticleEmitter emitter = new ParticleEmitter(capacity, seed + e);
+            emitter.setPosition(e * 2.0f - count, 0, 0);
+            emitter.setVelocity(0.1f * e, 1, 0, 0.4f + 0.1f * e, 3, 6);
+            emitter.setLifetime(maxLife / 3, maxLife);
+            emitter.setSize(0.02f + 0.01f * e);
+            emitter.setColor(1.0f, 0.5f + 0.1f * e, 0.2f, 0.8f);
+            emitter.setDrag(0.2f * e);
+            // Rate for about 95% occupancy at steady state, except the last emitter, which overflows
+            float meanLife = (maxLife / 3 + maxLife) / 2;
+            emitter.setRate(capacity / meanLife * (e == count - 1 && count > 1 ? 1.5f : 0.95f));
+            emitters.add(emitter);
+        }
+        return emitters;
+    }
+}
@@ -0,0 +1,174 @@
+package com.vibhusha.renderEngine;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+// ParticleSystem against a naive reference (whole-pool integration, then ParticlePool.remove for
+// every dead particle) with emitters that span more than one chunk: the live particles and the
+// instance records must match after every step, with depth sorting the records must run far to near,
+// and the scalar and vector kernels must give bit-identical pools. ParticleBenchmark times the same
+// kind of emitters at a million particles.
+class ParticleSystemTest {
+    private static final int STEPS = 45;
+    private static final float DT = 1 / 60.0f;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private static List<ParticleKernels> kernels() {
+        List<ParticleKernels> kernels = new ArrayList<>();
+        kernels.add(new ScalarParticleKernels());
+        ParticleKernels preferred = ParticleSystem.selectKernels();
+        if (!(preferred instanceof ScalarParticleKernels)) {
+            kernels.add(preferred);
+        }
+        return kernels;
+    }
+
+    @Test
+    void matchesTheReference() {
+        for (ParticleKernels kernel : kernels()) {
+            checkAgainstReference(kernel, false);
+        }
+    }
+
+    @Test
+    void matchesTheReferenceWithRecordsSortedFarToNear() {
+        for (ParticleKernels kernel : kernels()) {
+            checkAgainstReference(kernel, true);
+        }
+    }
+
+    @Test
+    void scalarAndVectorKernelsAgreeBitForBit() {
+        List<ParticleKernels> kernels = kernels();
+        assumeFalse(kernels.size() < 2, "No vector kernels on this JVM");
+        ParticleSystem a = new ParticleSystem(kernels.get(0)), b = new ParticleSystem(kernels.get(1));
+        createEmitters(ParticleSystem.CHUNK_SIZE * 2 + 17, 1.0f, 11).forEach(a::addEmitter);
+        createEmitters(ParticleSystem.CHUNK_SIZE * 2 + 17, 1.0f, 11).forEach(b::addEmitter);
+        for (int step = 0; step < STEPS; step++) {
+            a.update(DT, pool, null);
+            b.update(DT, pool, null);
+            for (int e = 0; e < 3; e++) {
+                ParticlePool p = a.getEmitters().get(e).getPool(), q = b.getEmitters().get(e).getPool();
+                String where = "Step " + step + ", emitter " + e;
+                int n = p.getCount();
+                assertEquals(n, q.getCount(), where);
+                assertArrayEquals(Arrays.copyOf(p.px, n), Arrays.copyOf(q.px, n), where);
+                assertArrayEquals(Arrays.copyOf(p.py, n), Arrays.copyOf(q.py, n), where);
+                assertArrayEquals(Arrays.copyOf(p.pz, n), Arrays.copyOf(q.pz, n), where);
+                assertArrayEquals(Arrays.copyOf(p.vx, n), Arrays.copyOf(q.vx, n), where);
+                assertArrayEquals(Arrays.copyOf(p.vy, n), Arrays.copyOf(q.vy, n), where);
+                assertArrayEquals(Arrays.copyOf(p.vz, n), Arrays.copyOf(q.vz, n), where);
+                assertArrayEquals(Arrays.copyOf(p.age, n), Arrays.copyOf(q.age, n), where);
+            }
+        }
+    }
+
+    // Three fountains of different sizes and drag; the last one is too small for its rate and drops
+    private static List<ParticleEmitter> createEmitters(int capacity, float maxLife, long seed) {
+        List<ParticleEmitter> emitters = new ArrayList<>();
+        for (int e = 0; e < 3; e++) {
+            ParticleEmitter emitter = new ParticleEmitter(capacity, seed + e);
+            emitter.setPosition(e * 2.0f - 3, 0, 0);
+            emitter.setVelocity(0.1f * e, 1, 0, 0.4f + 0.1f * e, 3, 6);
+            emitter.setLifetime(maxLife / 3, maxLife);
+            emitter.setSize(0.02f + 0.01f * e);
+            emitter.setColor(1.0f, 0.5f + 0.1f * e, 0.2f, 0.8f);
+            emitter.setDrag(0.2f * e);
+            float meanLife = (maxLife / 3 + maxLife) / 2;
+            emitter.setRate(capacity / meanLife * (e == 2 ? 1.5f : 0.95f));
+            emitters.add(emitter);
+        }
+        return emitters;
+    }
+
+    private void checkAgainstReference(ParticleKernels kernel, boolean depthSort) {
+        int capacity = ParticleSystem.CHUNK_SIZE + 1234;
+        ParticleSystem system = new ParticleSystem(kernel);
+        List<ParticleEmitter> emitters = createEmitters(capacity, 0.5f, 7);
+        List<ParticleEmitter> reference = createEmitters(capacity, 0.5f, 7);
+        emitters.forEach(system::addEmitter);
+        // An emitter that spawns nothing, between the others
+        system.getEmitters().add(1, new ParticleEmitter(100, 1));
+        system.setDepthSort(depthSort);
+        Vector3f eye = new Vector3f(1, 3, 5), forward = new Vector3f(-0.2f, -0.3f, -1).normalize();
+        system.setView(eye, forward);
+        ByteBuffer instances = BufferUtils.createByteBuffer(system.getCapacity() * ParticleSystem.INSTANCE_BYTES);
+
+        for (int step = 0; step < STEPS; step++) {
+            float dt = step % 3 == 0 ? 1 / 30.0f : DT;
+            int count = system.update(dt, pool, instances);
+            int referenceCount = 0;
+            for (int e = 0; e < reference.size(); e++) {
+                ParticleEmitter emitter = reference.get(e);
+                stepNaively(emitter, dt);
+                referenceCount += emitter.getPool().getCount();
+                assertArrayEquals(particleKeys(emitter.getPool()), particleKeys(emitters.get(e).getPool()),
+                        String.format("Step %d, emitter %d, %s kernels", step, e, kernel.getName()));
+            }
+            assertEquals(referenceCount, count, "Step " + step);
+
+            // Records: the same particles, in depth order when sorting
+            long[] recordKeys = new long[count];
+            float previousDepth = Float.POSITIVE_INFINITY;
+            for (int r = 0; r < count; r++) {
+                int offset = r * ParticleSystem.INSTANCE_BYTES;
+                float x = instances.getFloat(offset), y = instances.getFloat(offset + 4), z = instances.getFloat(offset + 8);
+                recordKeys[r] = key(x, y, z);
+                float depth = (x - eye.x) * forward.x + (y - eye.y) * forward.y + (z - eye.z) * forward.z;
+                if (depthSort && depth > previousDepth) {
+                    fail(String.format("Step %d: record %d is farther than the one before it", step, r));
+                }
+                previousDepth = depth;
+            }
+            Arrays.sort(recordKeys);
+            long[] poolKeys = new long[0];
+            for (ParticleEmitter emitter : system.getEmitters()) {
+                long[] keys = particleKeys(emitter.getPool());
+                poolKeys = Arrays.copyOf(poolKeys, poolKeys.length + keys.length);
+                System.arraycopy(keys, 0, poolKeys, poolKeys.length - keys.length, keys.length);
+            }
+            Arrays.sort(poolKeys);
+            assertArrayEquals(poolKeys, recordKeys, "Step " + step);
+        }
+    }
+
+    private static void stepNaively(ParticleEmitter emitter, float dt) {
+        ParticlePool particles = emitter.getPool();
+        emitter.emit(dt);
+        float damping = (float) Math.exp(-emitter.getDrag() * dt);
+        ScalarParticleKernels.integrateTail(particles, 0, particles.getCount(), dt, emitter.getGravity().x() * dt,
+                emitter.getGravity().y() * dt, emitter.getGravity().z() * dt, damping);
+        for (int i = particles.getCount() - 1; i >= 0; i--) {
+            if (particles.getAge(i) >= particles.getLife(i)) {
+                particles.remove(i);
+            }
+        }
+    }
+
+    private static long[] particleKeys(ParticlePool particles) {
+        long[] keys = new long[particles.getCount()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(particles.getX(i), particles.getY(i), particles.getZ(i));
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static long key(float x, float y, float z) {
+        long key = (long) Float.floatToRawIntBits(x) << 32 | (Float.floatToRawIntBits(y) & 0xFFFFFFFFL);
+        return key ^ Float.floatToRawIntBits(z) * 0x9E3779B97F4A7C15L;
+    }
+}
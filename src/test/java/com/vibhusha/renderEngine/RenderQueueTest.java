@@ -0,0 +1,71 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Camera;
+import com.vibhusha.utils.Material;
+import com.vibhusha.utils.MeshBuffers;
+import com.vibhusha.utils.Model;
+import com.vibhusha.utils.MtlMaterial;
+import com.vibhusha.utils.Shader;
+import com.vibhusha.utils.SubmeshTable;
+import com.vibhusha.utils.TestResources;
+import com.vibhusha.utils.Texture;
+import com.vibhusha.utils.VertexEncoder;
+import com.vibhusha.utils.VertexFormat;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RenderQueueTest {
+    private static final int SUBMESHES = 100;
+
+    @Test
+    void drawsEverySubmeshOfAModelWithManyMaterials() {
+        Shader shader = TestResources.shader("scene");
+        Texture fallback = TestResources.texture();
+        Texture mapped = TestResources.texture();
+
+        String[] names = new String[SUBMESHES];
+        int[] offsets = new int[SUBMESHES], counts = new int[SUBMESHES];
+        MtlMaterial[] mtl = new MtlMaterial[SUBMESHES];
+        Texture[] maps = new Texture[SUBMESHES];
+        for (int s = 0; s < SUBMESHES; s++) {
+            names[s] = "m" + s;
+            offsets[s] = s * 3;
+            counts[s] = 3;
+            mtl[s] = new MtlMaterial(names[s]);
+            mtl[s].getDiffuse()[0] = s / (float) SUBMESHES;
+            maps[s] = s % 2 == 0 ? mapped : null;  // Odd submeshes fall back to the Material's texture
+        }
+        MeshBuffers mesh = new MeshBuffers(ByteBuffer.allocate(0), ByteBuffer.allocate(0), 0, SUBMESHES * 3, 0, VertexFormat.FULL,
+                VertexEncoder.IDENTITY_DECODE, new float[]{-1, -1, -1, 1, 1, 1}, new int[]{0}, new int[]{SUBMESHES * 3},
+                new SubmeshTable(new String[0], names, offsets, counts));
+        Model model = new Model(0, 0, 0, mesh);
+        TestResources.setMaterials(model, mtl, maps);
+
+        RecordingCommandBackend backend = new RecordingCommandBackend();
+        RenderQueue queue = new RenderQueue(backend);
+        Material material = new Material(shader, fallback);
+        queue.begin(new Camera(0, 0, 10), 640, 480);
+        for (int i = 0; i < 3; i++) {
+            queue.submit(model, material, new Matrix4f().translation(i, 0, 0), 0);
+        }
+        queue.flush(null);
+
+        // One batch of three instances, drawn once per submesh in order
+        assertEquals(SUBMESHES, backend.getDrawCount(), backend.toString());
+        assertEquals(1, backend.getCommandCount(CommandBuffer.BIND_MODEL));
+        int fallbackId = backend.getDrawTexture(1);
+        int mappedId = backend.getDrawTexture(0);
+        for (int s = 0; s < SUBMESHES; s++) {
+            assertEquals(s, backend.getDrawSubmesh(s));
+            assertEquals(0, backend.getDrawFirstInstance(s));
+            assertEquals(3, backend.getDrawInstanceCount(s));
+            assertEquals(s % 2 == 0 ? mappedId : fallbackId, backend.getDrawTexture(s));
+            assertEquals(s / (float) SUBMESHES, backend.getDrawColor(s, 0));
+        }
+        assertEquals(3 * SUBMESHES, backend.getInstances());
+    }
+}
@@ -0,0 +1,140 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Frustum;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Matrix4f;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+// Times Scene culling at 10K, 100K and 1M objects: small boxes scattered through a 1 km cube, seen
+// from its centre by a 60 degree camera turning through VIEWS directions. Reports the BVH build,
+// the hierarchical cull per frame against a flat loop testing every object, a refit after 1% of the
+// objects moved, and the bytes the cull allocates, which should be zero. SceneTest checks the visible
+// sets against the flat loop.
+//   java -Xmx2g -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.renderEngine.SceneBenchmark [objectCount...]
+@Slf4j
+public class SceneBenchmark {
+    private static final int RUNS = 5;
+    private static final int VIEWS = 16;
+    private static final float WORLD_SIZE = 1000.0f;
+
+    public static void main(String[] args) {
+        int[] counts = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            counts[i] = Integer.parseInt(args[i]);
+        }
+        log.info(String.format("Scene cull benchmark, %d views, best of %d runs", VIEWS, RUNS));
+
+        Frustum[] frusta = new Frustum[VIEWS];
+        Matrix4f projection = new Matrix4f().perspective((float) Math.toRadians(60), 16 / 9.0f, 0.1f, WORLD_SIZE);
+        for (int v = 0; v < VIEWS; v++) {
+            float angle = (float) (2 * Math.PI * v / VIEWS);
+            Matrix4f view = new Matrix4f().lookAt(0, 0, 0, (float) Math.cos(angle), 0.2f * (v % 3 - 1), (float) Math.sin(angle), 0, 1, 0);
+            frusta[v] = new Frustum();
+            frusta[v].update(new Matrix4f(projection).mul(view));
+        }
+
+        for (int count : counts) {
+            Random random = new Random(42);
+            Scene scene = new Scene();
+            float[] bounds = new float[count * 6];
+            for (int i = 0; i < count; i++) {
+                randomBox(random, bounds, i);
+                scene.add(null, bounds[i * 6], bounds[i * 6 + 1], bounds[i * 6 + 2], bounds[i * 6 + 3], bounds[i * 6 + 4], bounds[i * 6 + 5]);
+            }
+
+            long build = best(() -> {
+                scene.rebuild();
+                scene.update();
+            });
+            int[] visible = new int[1];
+            long cull = best(() -> {
+                visible[0] = 0;
+                for (Frustum frustum : frusta) {
+                    visible[0] += scene.cull(frustum).size();
+                }
+            });
+            long overhead = allocatedBytes();  // What reading the counter itself allocates
+            overhead = allocatedBytes() - overhead;
+            long allocated = allocatedBytes();
+            for (Frustum frustum : frusta) {
+                scene.cull(frustum);
+            }
+            allocated = allocatedBytes() - allocated - overhead;
+            CullStats stats = scene.getStats();
+            long flat = best(() -> {
+                for (Frustum frustum : frusta) {
+                    cullFlat(frustum.getPlanes(), bounds, count);
+                }
+            });
+
+            int moved = Math.max(1, count / 100);
+            long refit = best(() -> {
+                for (int m = 0; m < moved; m++) {
+                    int id = random.nextInt(count);
+                    float dx = random.nextFloat() - 0.5f, dz = random.nextFloat() - 0.5f;
+                    int b = id * 6;
+                    bounds[b] += dx;
+                    bounds[b + 3] += dx;
+                    bounds[b + 2] += dz;
+                    bounds[b + 5] += dz;
+                    scene.setBounds(id, bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5]);
+                }
+                scene.update();
+            });
+
+            log.info(String.format("%,d objects: build %.1f ms, cull %.3f ms/frame (flat loop %.3f ms), %.1f%% visible, "
+                            + "last view %,d nodes, %,d tested, %,d accepted untested; 1%% moved + refit %.3f ms; %.1f bytes allocated per cull",
+                    count, build / 1e6, cull / 1e6 / VIEWS, flat / 1e6 / VIEWS, visible[0] * 100.0 / VIEWS / count,
+                    stats.getNodesVisited(), stats.getObjectsTested(), stats.getAcceptedWithoutTest(), refit / 1e6,
+                    allocated / (double) VIEWS));
+        }
+    }
+
+    // Boxes of 0.5 to 5 units, uniformly spread through the world cube centred on the origin
+    private static void randomBox(Random random, float[] bounds, int i) {
+        float x = (random.nextFloat() - 0.5f) * WORLD_SIZE, y = (random.nextFloat() - 0.5f) * WORLD_SIZE * 0.1f, z = (random.nextFloat() - 0.5f) * WORLD_SIZE;
+        float size = 0.25f + random.nextFloat() * 2.25f;
+        int b = i * 6;
+        bounds[b] = x - size;
+        bounds[b + 1] = y - size;
+        bounds[b + 2] = z - size;
+        bounds[b + 3] = x + size;
+        bounds[b + 4] = y + size;
+        bounds[b + 5] = z + size;
+    }
+
+    // Every object against every plane, the same box and sphere test as Scene's leaves
+    private static int cullFlat(float[] planes, float[] bounds, int count) {
+        int visible = 0;
+        for (int i = 0; i < count; i++) {
+            int b = i * 6;
+            float x0 = bounds[b], y0 = bounds[b + 1], z0 = bounds[b + 2], x1 = bounds[b + 3], y1 = bounds[b + 4], z1 = bounds[b + 5];
+            float hx = (x1 - x0) * 0.5f, hy = (y1 - y0) * 0.5f, hz = (z1 - z0) * 0.5f;
+            float cx = x0 + hx, cy = y0 + hy, cz = z0 + hz, r = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+            boolean inside = true;
+            for (int p = 0; p < Frustum.PLANE_COUNT * 4; p += 4) {
+                float nx = planes[p], ny = planes[p + 1], nz = planes[p + 2], d = planes[p + 3];
+                float far = Math.max(nx * x0, nx * x1) + Math.max(ny * y0, ny * y1) + Math.max(nz * z0, nz * z1) + d;
+                inside &= far >= 0 & nx * cx + ny * cy + nz * cz + d + r >= 0;
+            }
+            visible += inside ? 1 : 0;
+        }
+        return visible;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static long best(Runnable body) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            body.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
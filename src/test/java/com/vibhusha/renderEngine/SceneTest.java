@@ -0,0 +1,136 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.Frustum;
+import com.vibhusha.utils.IntList;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Scene's BVH cull against a flat loop testing every live object, after the build, after moves that
+// refit it and after removals and re-adds. SceneBenchmark times the same kind of scene.
+class SceneTest {
+    private static final int OBJECTS = 5000;
+    private static final int VIEWS = 8;
+    private static final float WORLD_SIZE = 200.0f;
+
+    private final Random random = new Random(42);
+    private final Scene scene = new Scene();
+    private final Frustum[] frusta = new Frustum[VIEWS];
+    private float[] bounds = new float[OBJECTS * 6];
+    private boolean[] alive = new boolean[OBJECTS];
+
+    SceneTest() {
+        Matrix4f projection = new Matrix4f().perspective((float) Math.toRadians(60), 16 / 9.0f, 0.1f, WORLD_SIZE);
+        for (int v = 0; v < VIEWS; v++) {
+            float angle = (float) (2 * Math.PI * v / VIEWS);
+            Matrix4f view = new Matrix4f().lookAt(0, 0, 0, (float) Math.cos(angle), 0.2f * (v % 3 - 1), (float) Math.sin(angle), 0, 1, 0);
+            frusta[v] = new Frustum();
+            frusta[v].update(new Matrix4f(projection).mul(view));
+        }
+        for (int i = 0; i < OBJECTS; i++) {
+            add();
+        }
+        scene.update();
+    }
+
+    // A box of 0.5 to 5 units somewhere in the world cube centred on the origin
+    private void add() {
+        float x = (random.nextFloat() - 0.5f) * WORLD_SIZE, y = (random.nextFloat() - 0.5f) * WORLD_SIZE * 0.1f, z = (random.nextFloat() - 0.5f) * WORLD_SIZE;
+        float size = 0.25f + random.nextFloat() * 2.25f;
+        int id = scene.add(null, x - size, y - size, z - size, x + size, y + size, z + size);
+        if (id >= alive.length) {
+            bounds = Arrays.copyOf(bounds, (id + 1) * 6);
+            alive = Arrays.copyOf(alive, id + 1);
+        }
+        int b = id * 6;
+        bounds[b] = x - size;
+        bounds[b + 1] = y - size;
+        bounds[b + 2] = z - size;
+        bounds[b + 3] = x + size;
+        bounds[b + 4] = y + size;
+        bounds[b + 5] = z + size;
+        alive[id] = true;
+    }
+
+    @Test
+    void cullsTheSameObjectsAsAFlatLoop() {
+        checkAllViews();
+    }
+
+    @Test
+    void refitAfterMovesKeepsTheVisibleSets() {
+        for (int frame = 0; frame < 4; frame++) {
+            for (int m = 0; m < OBJECTS / 50; m++) {
+                int id = random.nextInt(OBJECTS);
+                float dx = (random.nextFloat() - 0.5f) * 4, dz = (random.nextFloat() - 0.5f) * 4;
+                int b = id * 6;
+                bounds[b] += dx;
+                bounds[b + 3] += dx;
+                bounds[b + 2] += dz;
+                bounds[b + 5] += dz;
+                scene.setBounds(id, bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5]);
+            }
+            scene.update();
+            checkAllViews();
+        }
+    }
+
+    @Test
+    void neverReturnsRemovedObjects() {
+        for (int id = 0; id < OBJECTS; id += 7) {
+            scene.remove(id);
+            alive[id] = false;
+        }
+        scene.update();
+        checkAllViews();
+
+        // New objects take the freed ids first
+        for (int i = 0; i < OBJECTS / 14; i++) {
+            add();
+        }
+        scene.update();
+        checkAllViews();
+    }
+
+    private void checkAllViews() {
+        int total = 0;
+        for (int v = 0; v < VIEWS; v++) {
+            int[] expected = cullFlat(frusta[v].getPlanes());
+            IntList visible = scene.cull(frusta[v]);
+            int[] actual = Arrays.copyOf(visible.array(), visible.size());
+            Arrays.sort(actual);
+            assertArrayEquals(expected, actual, "View " + v);
+            total += actual.length;
+        }
+        assertTrue(total > 0);
+    }
+
+    // Every live object against every plane, the same box and sphere test as Scene's leaves
+    private int[] cullFlat(float[] planes) {
+        IntList out = new IntList(256);
+        for (int i = 0; i < alive.length; i++) {
+            if (!alive[i]) {
+                continue;
+            }
+            int b = i * 6;
+            float x0 = bounds[b], y0 = bounds[b + 1], z0 = bounds[b + 2], x1 = bounds[b + 3], y1 = bounds[b + 4], z1 = bounds[b + 5];
+            float hx = (x1 - x0) * 0.5f, hy = (y1 - y0) * 0.5f, hz = (z1 - z0) * 0.5f;
+            float cx = x0 + hx, cy = y0 + hy, cz = z0 + hz, r = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+            boolean inside = true;
+            for (int p = 0; p < Frustum.PLANE_COUNT * 4; p += 4) {
+                float nx = planes[p], ny = planes[p + 1], nz = planes[p + 2], d = planes[p + 3];
+                float far = Math.max(nx * x0, nx * x1) + Math.max(ny * y0, ny * y1) + Math.max(nz * z0, nz * z1) + d;
+                inside &= far >= 0 & nx * cx + ny * cy + nz * cz + d + r >= 0;
+            }
+            if (inside) {
+                out.add(i);
+            }
+        }
+        return Arrays.copyOf(out.array(), out.size());
+    }
+}
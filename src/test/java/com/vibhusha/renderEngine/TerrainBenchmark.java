@@ -0,0 +1,132 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.GpuResource;
+import com.vibhusha.utils.HeightmapFile;
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Vector3f;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+// Times TerrainStreamer without a GL context. Generates a fractal heightmap if the file does not
+// exist, then flies a camera across the map in real time at 60 frames/s, once without and once with
+// prefetching, under a budget small enough to force evictions. TerrainSeamTest checks the seams
+// between chunks at different LODs.
+//   java -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.renderEngine.TerrainBenchmark [heightmap.vhgt] [size] [speed] [seconds]
+@Slf4j
+public class TerrainBenchmark {
+    private static final int TILE_SIZE = 64;
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir") + "/terrain-benchmark" + HeightmapFile.EXTENSION);
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        float speed = args.length > 2 ? Float.parseFloat(args[2]) : 150.0f;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        if (!Files.exists(path)) {
+            long start = System.nanoTime();
+            HeightmapFile.write(path, size, size, TILE_SIZE, 1.0f, 0.01f, TerrainBenchmark::fractal);
+            log.info(String.format("Generated %s in %.1f s", path, (System.nanoTime() - start) / 1e9));
+        }
+        HeightmapFile map = HeightmapFile.open(path);
+        log.info(String.format("Terrain benchmark: %dx%d samples, %dx%d chunks of %d, %.1f MB mapped",
+                map.getWidth(), map.getDepth(), map.getTilesX(), map.getTilesZ(), map.getTileSize(), map.getByteCount() / 1048576.0));
+
+        fly(map, speed, seconds, 0.0f);
+        fly(map, speed, seconds, 1.0f);
+    }
+
+    // Value noise, five octaves, up to about 300 units high
+    private static float fractal(int x, int z) {
+        float height = 0, amplitude = 160, frequency = 1 / 512.0f;
+        for (int octave = 0; octave < 5; octave++) {
+            height += amplitude * noise(x * frequency, z * frequency, octave);
+            amplitude *= 0.5f;
+            frequency *= 2;
+        }
+        return height + 160;
+    }
+
+    private static float noise(float x, float z, int seed) {
+        int x0 = (int) Math.floor(x), z0 = (int) Math.floor(z);
+        float fx = x - x0, fz = z - z0;
+        fx = fx * fx * (3 - 2 * fx);
+        fz = fz * fz * (3 - 2 * fz);
+        float a = lattice(x0, z0, seed), b = lattice(x0 + 1, z0, seed);
+        float c = lattice(x0, z0 + 1, seed), d = lattice(x0 + 1, z0 + 1, seed);
+        return a + (b - a) * fx + (c - a) * fz + (a - b - c + d) * fx * fz;
+    }
+
+    // In [-1, 1]
+    private static float lattice(int x, int z, int seed) {
+        int h = x * 374761393 + z * 668265263 + seed * 1442695041;
+        h = (h ^ (h >>> 13)) * 1274126177;
+        return ((h ^ (h >>> 16)) & 0xFFFF) / 32767.5f - 1;
+    }
+
+    // Flies diagonally across the map in real time; the uploader only counts bytes, so the numbers are
+    // the streamer's own: meshing on the workers, bookkeeping on the calling thread
+    private static void fly(HeightmapFile map, float speed, int seconds, float lookahead) {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        long chunkBytes = (long) (map.getTileSize() + 1) * (map.getTileSize() + 1) * TerrainStreamer.VERTEX_BYTES;
+        float viewDistance = 100.0f;
+        // About twice the chunks within the view distance: room for the predicted ones, but a flight keeps evicting
+        int cells = (int) Math.pow(2 * viewDistance / (map.getTileSize() * map.getSpacing()) + 1, 2);
+        long budget = cells * chunkBytes * 2;
+        TerrainStreamer streamer = new TerrainStreamer(map, (lod, vertices) -> new GpuResource() {
+            private final long bytes = vertices.remaining();
+
+            @Override
+            public long getByteSize() {
+                return bytes;
+            }
+
+            @Override
+            public void cleanup() {
+            }
+        }, workers, viewDistance, map.getTileSize() * map.getSpacing() * 2, lookahead, budget);
+
+        float extent = map.getWidth() * map.getSpacing();
+        Vector3f position = new Vector3f(100, 0, 100);
+        // Loads the starting view first, so only the flight counts
+        long loadStart = System.nanoTime();
+        do {
+            LockSupport.parkNanos(FRAME_NANOS);
+            streamer.update(position, System.nanoTime());
+        } while (streamer.getStats().getHoles() > 0 || streamer.getStats().getFallbackChunks() > 0);
+        long loadNanos = System.nanoTime() - loadStart;
+        long hitchesBefore = streamer.getStats().getHitchFrames();
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long next = start;
+        int frames = 0, worstHoles = 0;
+        long worstNanos = 0;
+        while (next < end) {
+            // A gently curving path from one corner towards the other
+            float t = (next - start) / 1e9f;
+            float along = 100 + t * speed;
+            position.set(along, 0, along + 200 * (float) Math.sin(t * 0.5f));
+            position.x = Math.min(position.x, extent - 1);
+            position.z = Math.max(0, Math.min(position.z, extent - 1));
+            streamer.update(position, next);
+            TerrainStats stats = streamer.getStats();
+            worstHoles = Math.max(worstHoles, stats.getHoles());
+            worstNanos = Math.max(worstNanos, stats.getStreamingNanos());
+            frames++;
+            next += FRAME_NANOS;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+        log.info(String.format("%s, %d workers, %.0f units/s after a %.0f ms initial load: %.2f hitches/s in flight, worst frame %d holes, %.2f ms streaming; %s",
+                lookahead > 0 ? String.format("Prefetch %.1f s ahead", lookahead) : "No prefetch", workers, speed, loadNanos / 1e6,
+                (streamer.getStats().getHitchFrames() - hitchesBefore) / (double) seconds, worstHoles, worstNanos / 1e6, streamer.getStats()));
+        streamer.cleanup();
+    }
+}
@@ -0,0 +1,81 @@
+package com.vibhusha.renderEngine;
+
+import com.vibhusha.utils.HeightmapFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Neighbouring terrain chunks at every pair of LODs, across all four edges of a chunk, must agree on
+// their shared edge: the fine chunk's stitched strip only uses edge vertices the coarse neighbour also
+// has, at identical positions and normals. TerrainBenchmark times streaming on a larger map.
+class TerrainSeamTest {
+    private static final int TILE_SIZE = 64;
+    private static final int SIZE = 4 * TILE_SIZE;
+    // Neighbour chunk offset per TerrainTopology edge: MIN_Z, MAX_X, MAX_Z, MIN_X
+    private static final int[] NEIGHBOUR_X = {0, 1, 0, -1};
+    private static final int[] NEIGHBOUR_Z = {-1, 0, 1, 0};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void neighbouringLodsShareTheirEdgeVertices() throws IOException {
+        Path path = directory.resolve("seams" + HeightmapFile.EXTENSION);
+        HeightmapFile.write(path, SIZE, SIZE, TILE_SIZE, 1.0f, 0.01f, (x, z) -> 40 * (float) (Math.sin(x * 0.07) * Math.cos(z * 0.05)) + (x * 31 + z * 17) % 7);
+        HeightmapFile map = HeightmapFile.open(path);
+
+        int lodCount = TerrainStreamer.lodCountFor(map.getTileSize());
+        int cx = map.getTilesX() / 2, cz = map.getTilesZ() / 2;
+        float[] bounds = new float[6];
+        int checked = 0;
+        for (int fine = 0; fine < lodCount; fine++) {
+            TerrainTopology topology = new TerrainTopology(map.getTileSize() >> fine, lodCount - fine);
+            int quads = topology.getQuads();
+            ByteBuffer fineVertices = TerrainStreamer.buildVertices(map, cx, cz, fine, bounds);
+            for (int coarse = fine; coarse < lodCount; coarse++) {
+                int ratio = 1 << (coarse - fine);
+                int coarseQuads = map.getTileSize() >> coarse;
+                for (int edge = 0; edge < TerrainTopology.EDGE_COUNT; edge++) {
+                    ByteBuffer coarseVertices = TerrainStreamer.buildVertices(map, cx + NEIGHBOUR_X[edge], cz + NEIGHBOUR_Z[edge], coarse, bounds);
+                    int offset = topology.getEdgeOffset(edge, coarse - fine);
+                    for (int n = offset; n < offset + topology.getEdgeCount(edge, coarse - fine); n++) {
+                        int index = topology.getIndices()[n];
+                        int i = index % (quads + 1), j = index / (quads + 1);
+                        int neighbour;
+                        int along;
+                        if (edge == TerrainTopology.EDGE_MAX_X || edge == TerrainTopology.EDGE_MIN_X) {
+                            if (i != (edge == TerrainTopology.EDGE_MAX_X ? quads : 0)) {
+                                continue;  // Inner vertex of the strip
+                            }
+                            along = j;
+                            neighbour = (j / ratio) * (coarseQuads + 1) + (edge == TerrainTopology.EDGE_MAX_X ? 0 : coarseQuads);
+                        } else {
+                            if (j != (edge == TerrainTopology.EDGE_MAX_Z ? quads : 0)) {
+                                continue;
+                            }
+                            along = i;
+                            neighbour = (edge == TerrainTopology.EDGE_MAX_Z ? 0 : coarseQuads * (coarseQuads + 1)) + i / ratio;
+                        }
+                        String where = String.format("LOD %d towards LOD %d, edge %d, vertex %d", fine, coarse, edge, along);
+                        assertEquals(0, along % ratio, where + " is missing from the neighbour");
+                        for (int component = 0; component < 8; component++) {
+                            if (component == 3 || component == 4) {
+                                continue;  // Texture coordinates may differ, they do not open cracks
+                            }
+                            assertEquals(fineVertices.getFloat(index * TerrainStreamer.VERTEX_BYTES + component * 4),
+                                    coarseVertices.getFloat(neighbour * TerrainStreamer.VERTEX_BYTES + component * 4), where);
+                        }
+                        checked++;
+                    }
+                }
+            }
+        }
+        assertTrue(checked > 0);
+    }
+}
@@ -0,0 +1,92 @@
+package com.vibhusha.renderEngine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.joml.Quaternionf;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Times TransformPool on forests of 8-entity trees (root, three children, four grandchildren) from
+// 1K up to 1M entities: the hierarchy sort, a full update with every root moved, and a 1% update,
+// each on the calling thread and on the common pool. TransformPoolTest checks the world matrices.
+//   java -Xmx2g -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.renderEngine.TransformBenchmark [entityCount...]
+@Slf4j
+public class TransformBenchmark {
+    private static final int RUNS = 5;
+    private static final int[] PARENT_IN_TREE = {-1, 0, 0, 0, 1, 1, 2, 3};
+
+    public static void main(String[] args) {
+        int[] counts = args.length == 0 ? new int[]{1_000, 10_000, 100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            counts[i] = Integer.parseInt(args[i]);
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        log.info(String.format("Transform update benchmark, %d thread(s), best of %d runs", pool.getParallelism(), RUNS));
+
+        for (int count : counts) {
+            int trees = Math.max(1, count / PARENT_IN_TREE.length);
+            EntityRegistry registry = new EntityRegistry();
+            TransformPool transforms = new TransformPool(registry);
+            int[] entities = createForest(registry, transforms, trees);
+            Random random = new Random(42);
+            for (int entity : entities) {
+                transforms.setPosition(entity, random.nextFloat() * 10, random.nextFloat() * 10, random.nextFloat() * 10);
+                Quaternionf q = new Quaternionf().rotateXYZ(random.nextFloat(), random.nextFloat(), random.nextFloat());
+                transforms.setRotation(entity, q.x, q.y, q.z, q.w);
+                transforms.setScale(entity, 0.5f + random.nextFloat(), 1.0f, 1.0f);
+            }
+
+            long start = System.nanoTime();
+            transforms.update(null);
+            long first = System.nanoTime() - start;
+
+            for (ForkJoinPool executor : new ForkJoinPool[]{null, pool}) {
+                long full = best(() -> {
+                    for (int tree = 0; tree < trees; tree++) {
+                        moveRoot(transforms, entities[tree * PARENT_IN_TREE.length], random);
+                    }
+                    transforms.update(executor);
+                });
+                long partial = best(() -> {
+                    for (int i = 0; i < Math.max(1, trees / 100); i++) {
+                        moveRoot(transforms, entities[random.nextInt(trees) * PARENT_IN_TREE.length], random);
+                    }
+                    transforms.update(executor);
+                });
+                log.info(String.format("%,d entities (%s): sort + first update %.1f ms, all moved %.2f ms (%.1f ns/entity), 1%% moved %.3f ms",
+                        transforms.getCount(), executor == null ? "1 thread" : "pool", first / 1e6, full / 1e6,
+                        full / (double) transforms.getCount(), partial / 1e6));
+            }
+        }
+    }
+
+    // Roots first, then each level across all trees, so creation order is far from depth-first order
+    private static int[] createForest(EntityRegistry registry, TransformPool transforms, int trees) {
+        int[] entities = new int[trees * PARENT_IN_TREE.length];
+        for (int node = 0; node < PARENT_IN_TREE.length; node++) {
+            for (int tree = 0; tree < trees; tree++) {
+                int entity = registry.create();
+                transforms.add(entity);
+                entities[tree * PARENT_IN_TREE.length + node] = entity;
+                if (PARENT_IN_TREE[node] >= 0) {
+                    transforms.setParent(entity, entities[tree * PARENT_IN_TREE.length + PARENT_IN_TREE[node]]);
+                }
+            }
+        }
+        return entities;
+    }
+
+    private static void moveRoot(TransformPool transforms, int root, Random random) {
+        transforms.setPosition(root, random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 100);
+    }
+
+    private static long best(Runnable body) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            body.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,103 @@
+package com.vibhusha.renderEngine;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// TransformPool world matrices against a JOML composition of the local transforms, on forests of
+// 8-entity trees (root, three children, four grandchildren) large enough for the pool to update in
+// parallel. TransformBenchmark times the same forests.
+class TransformPoolTest {
+    private static final int[] PARENT_IN_TREE = {-1, 0, 0, 0, 1, 1, 2, 3};
+    private static final int TREES = 1200;  // 9,600 entities, past the parallel threshold
+
+    private final Random random = new Random(42);
+    private final EntityRegistry registry = new EntityRegistry();
+    private final TransformPool transforms = new TransformPool(registry);
+    private final int[] entities = new int[TREES * PARENT_IN_TREE.length];
+
+    // Roots first, then each level across all trees, so creation order is far from depth-first order
+    TransformPoolTest() {
+        for (int node = 0; node < PARENT_IN_TREE.length; node++) {
+            for (int tree = 0; tree < TREES; tree++) {
+                int entity = registry.create();
+                transforms.add(entity);
+                entities[tree * PARENT_IN_TREE.length + node] = entity;
+                if (PARENT_IN_TREE[node] >= 0) {
+                    transforms.setParent(entity, entities[tree * PARENT_IN_TREE.length + PARENT_IN_TREE[node]]);
+                }
+            }
+        }
+        for (int entity : entities) {
+            transforms.setPosition(entity, random.nextFloat() * 10, random.nextFloat() * 10, random.nextFloat() * 10);
+            Quaternionf q = new Quaternionf().rotateXYZ(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            transforms.setRotation(entity, q.x, q.y, q.z, q.w);
+            transforms.setScale(entity, 0.5f + random.nextFloat(), 1.0f, 1.0f);
+        }
+    }
+
+    @Test
+    void updatesOnTheCallingThread() {
+        checkUpdates(null);
+    }
+
+    @Test
+    void updatesOnAPool() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            checkUpdates(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void checkUpdates(ForkJoinPool executor) {
+        transforms.update(executor);
+        check();
+
+        // Every root moved, then 1% of them
+        for (int tree = 0; tree < TREES; tree++) {
+            moveRoot(tree);
+        }
+        transforms.update(executor);
+        check();
+        for (int i = 0; i < TREES / 100; i++) {
+            moveRoot(random.nextInt(TREES));
+        }
+        transforms.update(executor);
+        check();
+
+        // Grandchildren moved under another tree keep their local transform
+        for (int i = 0; i < TREES / 10; i++) {
+            int child = entities[random.nextInt(TREES) * PARENT_IN_TREE.length + 4 + random.nextInt(4)];
+            transforms.setParent(child, entities[random.nextInt(TREES) * PARENT_IN_TREE.length + 1 + random.nextInt(3)]);
+        }
+        transforms.update(executor);
+        check();
+    }
+
+    private void moveRoot(int tree) {
+        transforms.setPosition(entities[tree * PARENT_IN_TREE.length], random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 100);
+    }
+
+    private void check() {
+        Matrix4f actual = new Matrix4f();
+        for (int entity : entities) {
+            Matrix4f expected = expectedWorld(entity);
+            transforms.getWorldMatrix(entity, actual);
+            assertTrue(actual.equals(expected, 1e-3f), "Entity " + entity + ":\n" + actual + "expected\n" + expected);
+        }
+    }
+
+    // Reads the local transform back from the same pool through a JOML reference composition
+    private Matrix4f expectedWorld(int entity) {
+        Matrix4f local = transforms.getLocalMatrix(entity, new Matrix4f());
+        int parent = transforms.getParent(entity);
+        return parent == EntityRegistry.NULL ? local : expectedWorld(parent).mul(local);
+    }
+}
@@ -0,0 +1,158 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Times TriangleBvh on a displaced sphere of about a million triangles: the build on the calling
+// thread and on the common pool, then coherent rays (a camera grid), incoherent rays (random points
+// on a surrounding sphere), sphere sweeps and box overlaps, with the bytes the query loops allocate,
+// which should be zero. TriangleBvhTest checks the queries against brute force.
+//   java -Xmx2g -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.utils.BvhBenchmark [triangleCount]
+@Slf4j
+public class BvhBenchmark {
+    private static final int RUNS = 5;
+    private static final int QUERIES = 200_000;
+
+    public static void main(String[] args) {
+        int triangleCount = args.length == 0 ? 1_000_000 : Integer.parseInt(args[0]);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        log.info(String.format("Triangle BVH benchmark, %d thread(s), best of %d runs", pool.getParallelism(), RUNS));
+
+        int rings = (int) Math.sqrt(triangleCount / 2.0);
+        float[] positions = displacedSphere(rings);
+        int[] indices = sphereIndices(rings);
+        int triangles = indices.length / 3;
+
+        long sequential = best(() -> TriangleBvh.build(positions, indices, null));
+        long parallel = best(() -> TriangleBvh.build(positions, indices, pool));
+        TriangleBvh bvh = TriangleBvh.build(positions, indices, pool);
+        log.info(String.format("%,d triangles: build %.1f ms on 1 thread, %.1f ms on the pool; %,d nodes, depth %d, %.1f MB",
+                triangles, sequential / 1e6, parallel / 1e6, bvh.getNodeCount(), bvh.getDepth(), bvh.getByteCount() / 1e6));
+
+        Random random = new Random(42);
+        float[] coherent = new float[QUERIES * 6];
+        float[] incoherent = new float[QUERIES * 6];
+        int grid = (int) Math.sqrt(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            // Camera at z = 3 looking down -z through a 2x2 window at z = 2
+            float x = (i % grid) / (float) grid * 2 - 1, y = (i / grid % grid) / (float) grid * 2 - 1;
+            setRay(coherent, i, 0, 0, 3, x, y, -1);
+            float[] from = randomUnit(random), to = randomUnit(random);
+            setRay(incoherent, i, from[0] * 3, from[1] * 3, from[2] * 3, to[0] - from[0] * 3, to[1] - from[1] * 3, to[2] - from[2] * 3);
+        }
+
+        BvhQuery query = new BvhQuery();
+        int[] hits = new int[1];
+        allocatedBytes();  // The first call initializes the management bean
+        for (float[] rays : new float[][]{coherent, incoherent}) {
+            long allocated = allocatedBytes();
+            long time = best(() -> {
+                hits[0] = 0;
+                for (int i = 0; i < QUERIES; i++) {
+                    int r = i * 6;
+                    if (bvh.raycast(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5], Float.POSITIVE_INFINITY, query)) {
+                        hits[0]++;
+                    }
+                }
+            });
+            allocated = allocatedBytes() - allocated;
+            log.info(String.format("%s rays: %.2f M rays/s, %d%% hit, %.3f bytes allocated per ray",
+                    rays == coherent ? "Coherent" : "Incoherent", QUERIES / (time / 1e9) / 1e6, hits[0] * 100 / QUERIES, perQuery(allocated)));
+        }
+
+        long allocated = allocatedBytes();
+        long sweeps = best(() -> {
+            hits[0] = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                int r = i * 6;
+                if (bvh.sweepSphere(incoherent[r], incoherent[r + 1], incoherent[r + 2], incoherent[r + 3], incoherent[r + 4], incoherent[r + 5],
+                        0.01f, 1.0f, query)) {
+                    hits[0]++;
+                }
+            }
+        });
+        log.info(String.format("Sphere sweeps (r = 0.01): %.2f M sweeps/s, %d%% hit, %.3f bytes allocated per sweep",
+                QUERIES / (sweeps / 1e9) / 1e6, hits[0] * 100 / QUERIES, perQuery(allocatedBytes() - allocated)));
+
+        allocated = allocatedBytes();
+        long boxes = best(() -> {
+            hits[0] = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                int r = i * 6;
+                float x = incoherent[r] / 3, y = incoherent[r + 1] / 3, z = incoherent[r + 2] / 3;
+                hits[0] += bvh.overlapBox(x - 0.005f, y - 0.005f, z - 0.005f, x + 0.005f, y + 0.005f, z + 0.005f, query);
+            }
+        });
+        log.info(String.format("Box overlaps (0.01 wide, on the surface): %.2f M queries/s, %.1f triangles each, %.3f bytes allocated per query",
+                QUERIES / (boxes / 1e9) / 1e6, hits[0] / (float) QUERIES, perQuery(allocatedBytes() - allocated)));
+    }
+
+    // Unit sphere with ridges of +-5%, rings x rings quads split in two
+    private static float[] displacedSphere(int rings) {
+        float[] positions = new float[(rings + 1) * (rings + 1) * 3];
+        for (int i = 0; i <= rings; i++) {
+            double theta = Math.PI * i / rings;
+            for (int j = 0; j <= rings; j++) {
+                double phi = 2 * Math.PI * j / rings;
+                double radius = 1.0 + 0.05 * Math.sin(theta * 12) * Math.cos(phi * 9);
+                int v = (i * (rings + 1) + j) * 3;
+                positions[v] = (float) (radius * Math.sin(theta) * Math.cos(phi));
+                positions[v + 1] = (float) (radius * Math.cos(theta));
+                positions[v + 2] = (float) (radius * Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        return positions;
+    }
+
+    private static int[] sphereIndices(int rings) {
+        int[] indices = new int[rings * rings * 6];
+        int n = 0;
+        for (int i = 0; i < rings; i++) {
+            for (int j = 0; j < rings; j++) {
+                int a = i * (rings + 1) + j, b = a + rings + 1;
+                indices[n++] = a;
+                indices[n++] = b;
+                indices[n++] = a + 1;
+                indices[n++] = a + 1;
+                indices[n++] = b;
+                indices[n++] = b + 1;
+            }
+        }
+        return indices;
+    }
+
+    private static void setRay(float[] rays, int i, float ox, float oy, float oz, float dx, float dy, float dz) {
+        rays[i * 6] = ox;
+        rays[i * 6 + 1] = oy;
+        rays[i * 6 + 2] = oz;
+        rays[i * 6 + 3] = dx;
+        rays[i * 6 + 4] = dy;
+        rays[i * 6 + 5] = dz;
+    }
+
+    private static float[] randomUnit(Random random) {
+        double z = random.nextDouble() * 2 - 1, angle = random.nextDouble() * 2 * Math.PI, r = Math.sqrt(1 - z * z);
+        return new float[]{(float) (r * Math.cos(angle)), (float) (r * Math.sin(angle)), (float) z};
+    }
+
+    private static double perQuery(long bytes) {
+        return bytes / ((double) QUERIES * RUNS);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static long best(Runnable body) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            body.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,45 @@
+package com.vibhusha.utils;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LodSelectorTest {
+    private static final int VIEWPORT_HEIGHT = 1000;
+    private static final LodSelector SELECTOR = new LodSelector(300.0f, 120.0f, 50.0f);
+
+    // A unit cube around the origin with four LODs; no GL objects behind it
+    private static Model cube() {
+        float[] bounds = {-0.5f, -0.5f, -0.5f, 0.5f, 0.5f, 0.5f};
+        MeshBuffers mesh = new MeshBuffers(ByteBuffer.allocate(0), ByteBuffer.allocate(0), 0, 0, 0, VertexFormat.FULL,
+                VertexEncoder.IDENTITY_DECODE, bounds, new int[]{0, 0, 0, 0}, new int[]{0, 0, 0, 0});
+        return new Model(0, 0, 0, mesh);
+    }
+
+    @Test
+    void usesTheWorldPositionOfTheBounds() {
+        Model model = cube();
+        Camera camera = new Camera(0, 0, 0);
+        Matrix4f world = new Matrix4f();
+        float near = LodSelector.projectedSize(0, 0, -2, (float) Math.sqrt(3) * 0.5f, camera, VIEWPORT_HEIGHT);
+        assertEquals(SELECTOR.select(0, 0, -2, (float) Math.sqrt(3) * 0.5f, camera, VIEWPORT_HEIGHT),
+                SELECTOR.select(model, world.translation(0, 0, -2), camera, VIEWPORT_HEIGHT));
+        assertEquals(0, SELECTOR.select(model, world, camera, VIEWPORT_HEIGHT), "projected " + near + " px");
+        // The model-space centre would be at the eye; moved far away it is a few pixels tall
+        assertEquals(3, SELECTOR.select(model, world.translation(0, 0, -500), camera, VIEWPORT_HEIGHT));
+    }
+
+    @Test
+    void scalesTheRadiusByTheLargestAxis() {
+        Model model = cube();
+        Camera camera = new Camera(0, 0, 0);
+        Matrix4f world = new Matrix4f().translation(0, 0, -40);
+        assertEquals(2, SELECTOR.select(model, world, camera, VIEWPORT_HEIGHT));
+        // Stretched along one axis only, also when that axis is rotated; the radius follows the longest one
+        assertEquals(0, SELECTOR.select(model, world.scale(1, 1, 20), camera, VIEWPORT_HEIGHT));
+        assertEquals(0, SELECTOR.select(model, new Matrix4f().translation(0, 0, -40).rotateY(1.0f).scale(20, 1, 1), camera, VIEWPORT_HEIGHT));
+    }
+}
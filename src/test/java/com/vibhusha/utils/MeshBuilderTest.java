@@ -0,0 +1,147 @@
+package com.vibhusha.utils;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.opengl.GL11;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeshBuilderTest {
+    private static ObjData parse(String obj) throws IOException {
+        return ObjParser.parse(ByteBuffer.wrap(obj.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    // quads x quads grid with one vt/vn per position; faces in random order within each row, the far
+    // half of the rows under a second material when twoMaterials is set
+    private static String grid(int quads, boolean twoMaterials) {
+        StringBuilder obj = new StringBuilder();
+        for (int i = 0; i <= quads; i++) {
+            for (int j = 0; j <= quads; j++) {
+                obj.append("v ").append(j).append(" 0 ").append(i).append('\n');
+                obj.append("vt ").append(j / (float) quads).append(' ').append(i / (float) quads).append('\n');
+            }
+        }
+        obj.append("vn 0 1 0\n");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < quads; i++) {
+            List<String> faces = new ArrayList<>();
+            for (int j = 0; j < quads; j++) {
+                int a = i * (quads + 1) + j + 1, b = a + quads + 1;
+                faces.add(face(a, b, b + 1));
+                faces.add(face(a, b + 1, a + 1));
+            }
+            Collections.shuffle(faces, new Random(i));
+            rows.add((twoMaterials ? "usemtl " + (i < quads / 2 ? "near" : "far") + "\n" : "") + String.join("", faces));
+        }
+        return obj + String.join("", rows);
+    }
+
+    private static String face(int a, int b, int c) {
+        return "f " + a + "/" + a + "/1 " + b + "/" + b + "/1 " + c + "/" + c + "/1\n";
+    }
+
+    @Test
+    void sharesIdenticalCornersOnly() throws IOException {
+        // Two triangles sharing an edge, plus one corner at a shared position with another texture coordinate
+        MeshData mesh = MeshBuilder.build(parse("v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\nvt 0 0\nvt 1 1\nvn 0 0 1\n"
+                + "f 1/1/1 2/1/1 3/1/1\nf 3/1/1 2/1/1 4/1/1\nf 1/2/1 4/1/1 3/1/1\n"), false);
+        assertEquals(5, mesh.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, 2, 2, 1, 3, 4, 3, 2}, mesh.getIndices());
+        assertEquals(1.0f, mesh.getVertices()[4 * MeshData.FLOATS_PER_VERTEX + 3]);
+    }
+
+    @Test
+    void reorderingLowersAcmrAndKeepsTheTriangles() throws IOException {
+        ObjData data = parse(grid(40, false));
+        MeshData plain = MeshBuilder.build(data, false);
+        MeshData optimized = MeshBuilder.build(data, true);
+        assertEquals(plain.getVertexCount(), optimized.getVertexCount());
+        assertTrue(optimized.getAcmrAfter() < 0.8f * optimized.getAcmrBefore(),
+                optimized.getAcmrBefore() + " -> " + optimized.getAcmrAfter());
+        assertEquals(triangles(plain, 0, plain.getIndexCount()), triangles(optimized, 0, optimized.getIndexCount()));
+    }
+
+    @Test
+    void optimizesEachSubmeshWithinItsRange() throws IOException {
+        ObjData data = parse(grid(30, true));
+        MeshData plain = MeshBuilder.build(data, false);
+        MeshData optimized = MeshBuilder.build(data, true);
+        SubmeshTable submeshes = optimized.getSubmeshes();
+        assertEquals(2, submeshes.getSubmeshCount());
+        for (int s = 0; s < 2; s++) {
+            assertEquals(plain.getSubmeshes().getCount(0, s), submeshes.getCount(0, s));
+            assertEquals(triangles(plain, plain.getSubmeshes().getOffset(0, s), plain.getSubmeshes().getCount(0, s)),
+                    triangles(optimized, submeshes.getOffset(0, s), submeshes.getCount(0, s)));
+        }
+        assertTrue(optimized.getAcmrAfter() < 0.8f * optimized.getAcmrBefore(),
+                optimized.getAcmrBefore() + " -> " + optimized.getAcmrAfter());
+    }
+
+    @Test
+    void simplifiesEachSubmeshOverItsOwnVertices() throws IOException {
+        MeshData mesh = MeshSimplifier.buildLodChain(MeshBuilder.build(parse(grid(30, true))), new float[]{1.0f, 0.5f, 0.25f},
+                ForkJoinPool.commonPool());
+        SubmeshTable submeshes = mesh.getSubmeshes();
+        int[] indices = mesh.getIndices();
+        for (int s = 0; s < 2; s++) {
+            Set<Integer> own = new HashSet<>();
+            for (int i = 0; i < submeshes.getCount(0, s); i++) {
+                own.add(indices[submeshes.getOffset(0, s) + i]);
+            }
+            for (int lod = 1; lod < 3; lod++) {
+                assertTrue(submeshes.getCount(lod, s) < submeshes.getCount(lod - 1, s));
+                for (int i = 0; i < submeshes.getCount(lod, s); i++) {
+                    assertTrue(own.contains(indices[submeshes.getOffset(lod, s) + i]), "LOD " + lod + " of submesh " + s);
+                }
+            }
+        }
+    }
+
+    @Test
+    void picksShortIndicesUpTo65536Vertices() {
+        int[] indices = {0, 1, 0xFFFF};
+        MeshData small = new MeshData(new float[0x10000 * MeshData.FLOATS_PER_VERTEX], indices, 0x10000);
+        assertEquals(GL11.GL_UNSIGNED_SHORT, MeshBuffers.indexTypeFor(small));
+        ByteBuffer packed = MeshBuffers.packIndices(small);
+        assertEquals(indices.length * Short.BYTES, packed.capacity());
+        assertEquals(0xFFFF, Short.toUnsignedInt(packed.getShort(2 * Short.BYTES)));
+
+        MeshData large = new MeshData(new float[0x10001 * MeshData.FLOATS_PER_VERTEX], new int[]{0, 1, 0x10000}, 0x10001);
+        assertEquals(GL11.GL_UNSIGNED_INT, MeshBuffers.indexTypeFor(large));
+        assertEquals(3 * Integer.BYTES, MeshBuffers.packIndices(large).capacity());
+    }
+
+    // The triangles of indices [offset, offset + count) by vertex positions, winding kept, sorted
+    private static List<String> triangles(MeshData mesh, int offset, int count) {
+        float[] vertices = mesh.getVertices();
+        List<String> triangles = new ArrayList<>();
+        int[] indices = mesh.getIndices();
+        for (int t = offset; t < offset + count; t += 3) {
+            String[] corners = new String[3];
+            for (int c = 0; c < 3; c++) {
+                int v = indices[t + c] * MeshData.FLOATS_PER_VERTEX;
+                corners[c] = vertices[v] + "," + vertices[v + 1] + "," + vertices[v + 2];
+            }
+            // Rotate so the smallest corner comes first; rotation keeps the winding
+            int first = 0;
+            for (int c = 1; c < 3; c++) {
+                first = corners[c].compareTo(corners[first]) < 0 ? c : first;
+            }
+            triangles.add(corners[first] + " " + corners[(first + 1) % 3] + " " + corners[(first + 2) % 3]);
+        }
+        Collections.sort(triangles);
+        return triangles;
+    }
+}
@@ -0,0 +1,145 @@
+package com.vibhusha.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeshCacheTest {
+    private static final MeshOptions OPTIONS = new MeshOptions(VertexFormat.FULL);
+
+    @TempDir
+    Path temp;
+
+    // A quads x quads grid, flat in y
+    private Path writeGrid(String name, int quads) throws IOException {
+        StringBuilder obj = new StringBuilder("vt 0 0\nvn 0 1 0\n");
+        for (int i = 0; i <= quads; i++) {
+            for (int j = 0; j <= quads; j++) {
+                obj.append("v ").append(j).append(" 0 ").append(i).append('\n');
+            }
+        }
+        for (int i = 0; i < quads; i++) {
+            for (int j = 0; j < quads; j++) {
+                int a = i * (quads + 1) + j + 1, b = a + quads + 1;
+                obj.append("f ").append(a).append("/1/1 ").append(b).append("/1/1 ").append(b + 1).append("/1/1\n");
+                obj.append("f ").append(a).append("/1/1 ").append(b + 1).append("/1/1 ").append(a + 1).append("/1/1\n");
+            }
+        }
+        Path file = temp.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, obj);
+        return file;
+    }
+
+    private List<Path> cacheFiles(MeshCache cache) throws IOException {
+        try (Stream<Path> files = Files.list(cache.getDirectory())) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void hitsOnTheSameContentAndOptionsOnly() throws IOException {
+        MeshCache cache = new MeshCache(temp.resolve("cache"));
+        Path source = writeGrid("a/grid.obj", 4);
+        byte[] hash = MeshCache.hash(source);
+        assertNull(cache.load(source, OPTIONS, hash));
+
+        assertTrue(MeshConverter.convert(cache, source, OPTIONS));
+        MeshBuffers mesh = cache.load(source, OPTIONS, hash);
+        assertNotNull(mesh);
+        assertEquals(25, mesh.getVertexCount());
+        assertEquals(96, mesh.getIndexCount());
+        assertFalse(MeshConverter.convert(cache, source, OPTIONS));
+        assertNull(cache.load(source, new MeshOptions(VertexFormat.COMPACT), hash));
+
+        // The same content somewhere else is the same entry
+        Path copy = writeGrid("b/grid.obj", 4);
+        assertArrayEquals(hash, MeshCache.hash(copy));
+        assertFalse(MeshConverter.convert(cache, copy, OPTIONS));
+    }
+
+    @Test
+    void editingTheSourceReplacesItsEntry() throws IOException {
+        MeshCache cache = new MeshCache(temp.resolve("cache"));
+        Path source = writeGrid("grid.obj", 4);
+        byte[] before = MeshCache.hash(source);
+        MeshConverter.convert(cache, source, OPTIONS);
+
+        writeGrid("grid.obj", 5);
+        byte[] after = MeshCache.hash(source);
+        assertNull(cache.load(source, OPTIONS, after));
+        assertTrue(MeshConverter.convert(cache, source, OPTIONS));
+        assertEquals(36, cache.load(source, OPTIONS, after).getVertexCount());
+        assertFalse(Files.exists(cache.entryFor(OPTIONS, before)));
+        assertEquals(List.of(cache.entryFor(OPTIONS, after), cache.indexFor(source)), cacheFiles(cache));
+    }
+
+    @Test
+    void keepsAnEntryAnotherSourceStillUses() throws IOException {
+        MeshCache cache = new MeshCache(temp.resolve("cache"));
+        Path first = writeGrid("a/grid.obj", 4);
+        Path second = writeGrid("b/grid.obj", 4);
+        byte[] shared = MeshCache.hash(first);
+        MeshConverter.convert(cache, first, OPTIONS);
+        MeshConverter.convert(cache, second, OPTIONS);
+
+        writeGrid("a/grid.obj", 5);
+        MeshConverter.convert(cache, first, OPTIONS);
+        assertNotNull(cache.load(second, OPTIONS, shared));
+        assertNotNull(cache.load(first, OPTIONS, MeshCache.hash(first)));
+
+        writeGrid("b/grid.obj", 6);
+        MeshConverter.convert(cache, second, OPTIONS);
+        assertFalse(Files.exists(cache.entryFor(OPTIONS, shared)));
+    }
+
+    @Test
+    void missesEntriesFromAnotherFileVersion() throws IOException {
+        MeshCache cache = new MeshCache(temp.resolve("cache"));
+        Path source = writeGrid("grid.obj", 4);
+        byte[] hash = MeshCache.hash(source);
+        MeshConverter.convert(cache, source, OPTIONS);
+
+        // As if written before the last MeshFile.VERSION bump
+        Path entry = cache.entryFor(OPTIONS, hash);
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, MeshFile.VERSION - 1), 4);
+        }
+        assertNull(cache.load(source, OPTIONS, hash));
+        assertTrue(MeshConverter.convert(cache, source, OPTIONS));
+        assertNotNull(cache.load(source, OPTIONS, hash));
+    }
+
+    @Test
+    void modelLoaderUsesTheConvertersDefaultOutput() throws IOException {
+        Path source = writeGrid("grid.obj", 16);
+        Path directory = temp.resolve("cache");
+        MeshConverter.main(new String[]{directory.toString(), source.toString()});
+        MeshCache cache = new MeshCache(directory);
+        List<Path> converted = cacheFiles(cache);
+
+        // The options GameEngine loads with
+        MeshOptions runtime = new MeshOptions(VertexFormat.FULL, MeshOptions.DEFAULT_LOD_RATIOS);
+        MeshBuffers mesh = ModelLoader.loadMeshBuffers(source, "grid.obj", runtime, cache);
+        assertEquals(MeshOptions.DEFAULT_LOD_RATIOS.length, mesh.getLodCounts().length);
+        assertEquals(converted, cacheFiles(cache));  // Nothing was built and stored
+        assertNotNull(cache.load(source, runtime, MeshCache.hash(source)));
+    }
+}
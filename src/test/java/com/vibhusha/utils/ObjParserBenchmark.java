@@ -0,0 +1,186 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lwjgl.BufferUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+// Times OBJ loading on a generated grid (v/vt/vn triangles, single spaces, so the old parser reads
+// it too) written to a temporary file: the split()-based loader this parser replaced, parse plus
+// boxed vertex assembly as it was; ObjParser streaming from a FileChannel; ParallelObjParser over
+// the mapped file; and ObjParser followed by MeshBuilder, the indexed mesh the engine uploads. Both
+// parsers must read the same positions as the old one. Reported as MB/s of OBJ text and bytes
+// allocated on the calling thread (the parallel parser's workers are not counted).
+//   java -Xmx3g -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.utils.ObjParserBenchmark [triangleCount]
+@Slf4j
+public class ObjParserBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int triangleCount = args.length == 0 ? 500_000 : Integer.parseInt(args[0]);
+        int quads = (int) Math.sqrt(triangleCount / 2.0);
+        Path file = Files.createTempFile("grid", ".obj");
+        file.toFile().deleteOnExit();
+        writeGrid(file, quads);
+        double megabytes = Files.size(file) / 1e6;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        log.info(String.format("OBJ benchmark: %,d triangles, %.1f MB, %d thread(s), best of %d runs",
+                quads * quads * 2, megabytes, pool.getParallelism(), RUNS));
+
+        List<float[]> reference = new ArrayList<>();
+        report("split() + boxing (old loader)", megabytes, () -> {
+            reference.clear();
+            reference.add(loadWithSplit(file));
+        });
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            check(reference.get(0), ObjParser.parse(channel), "ObjParser");
+        }
+        check(reference.get(0), ParallelObjParser.parse(file, pool), "ParallelObjParser");
+
+        report("ObjParser (channel)", megabytes, () -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ObjParser.parse(channel);
+            }
+        });
+        report("ParallelObjParser (mapped)", megabytes, () -> ParallelObjParser.parse(file, pool));
+        report("ObjParser + MeshBuilder", megabytes, () -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MeshBuilder.build(ObjParser.parse(channel));
+            }
+        });
+    }
+
+    private interface Load {
+        void run() throws IOException;
+    }
+
+    private static void report(String name, double megabytes, Load load) throws IOException {
+        long best = Long.MAX_VALUE, allocated = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            load.run();
+            long time = System.nanoTime() - start;
+            if (time < best) {
+                best = time;
+                allocated = allocatedBytes() - before;
+            }
+        }
+        log.info(String.format("  %-30s %8.1f ms, %7.1f MB/s, %,.0f MB allocated", name, best / 1e6, megabytes / (best / 1e9), allocated / 1e6));
+    }
+
+    // (quads + 1)^2 vertices, each with a position, texture coordinate and normal, quads^2 * 2 faces
+    private static void writeGrid(Path file, int quads) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (int i = 0; i <= quads; i++) {
+                for (int j = 0; j <= quads; j++) {
+                    float x = j / (float) quads, z = i / (float) quads;
+                    float y = (float) (0.1 * Math.sin(x * 17) * Math.cos(z * 13));
+                    out.write(String.format(Locale.ROOT, "v %.6f %.6f %.6f\n", x, y, z));
+                    out.write(String.format(Locale.ROOT, "vt %.5f %.5f\n", x, z));
+                    out.write(String.format(Locale.ROOT, "vn %.4f %.4f %.4f\n", -0.1f * x, 0.99f, 0.1f * z));
+                }
+            }
+            for (int i = 0; i < quads; i++) {
+                for (int j = 0; j < quads; j++) {
+                    int a = i * (quads + 1) + j + 1, b = a + quads + 1;
+                    out.write("f " + a + "/" + a + "/" + a + " " + b + "/" + b + "/" + b + " " + (b + 1) + "/" + (b + 1) + "/" + (b + 1) + "\n");
+                    out.write("f " + a + "/" + a + "/" + a + " " + (b + 1) + "/" + (b + 1) + "/" + (b + 1) + " " + (a + 1) + "/" + (a + 1) + "/" + (a + 1) + "\n");
+                }
+            }
+        }
+    }
+
+    // ModelLoader.loadOBJ before the streaming parser, up to the FloatBuffer handed to GL; returns the positions
+    private static float[] loadWithSplit(Path file) throws IOException {
+        List<float[]> vertices = new ArrayList<>();
+        List<float[]> textures = new ArrayList<>();
+        List<float[]> normals = new ArrayList<>();
+        List<int[]> faces = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length < 2) continue;
+                switch (parts[0]) {
+                    case "v":
+                        vertices.add(new float[]{Float.parseFloat(parts[1]), Float.parseFloat(parts[2]), Float.parseFloat(parts[3])});
+                        break;
+                    case "vt":
+                        textures.add(new float[]{Float.parseFloat(parts[1]), Float.parseFloat(parts[2])});
+                        break;
+                    case "vn":
+                        normals.add(new float[]{Float.parseFloat(parts[1]), Float.parseFloat(parts[2]), Float.parseFloat(parts[3])});
+                        break;
+                    case "f":
+                        int[] face = new int[9];
+                        for (int i = 0; i < 3; i++) {
+                            String[] vertexData = parts[i + 1].split("/");
+                            face[i * 3] = Integer.parseInt(vertexData[0]) - 1;
+                            face[i * 3 + 1] = Integer.parseInt(vertexData[1]) - 1;
+                            face[i * 3 + 2] = Integer.parseInt(vertexData[2]) - 1;
+                        }
+                        faces.add(face);
+                        break;
+                }
+            }
+        }
+
+        List<Float> vertexData = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        for (int[] face : faces) {
+            for (int i = 0; i < 3; i++) {
+                float[] vertex = vertices.get(face[i * 3]);
+                float[] texture = textures.get(face[i * 3 + 1]);
+                float[] normal = normals.get(face[i * 3 + 2]);
+                vertexData.add(vertex[0]);
+                vertexData.add(vertex[1]);
+                vertexData.add(vertex[2]);
+                vertexData.add(texture[0]);
+                vertexData.add(texture[1]);
+                vertexData.add(normal[0]);
+                vertexData.add(normal[1]);
+                vertexData.add(normal[2]);
+                indices.add(indices.size());
+            }
+        }
+        FloatBuffer vertexBuffer = BufferUtils.createFloatBuffer(vertexData.size());
+        vertexData.forEach(vertexBuffer::put);
+        vertexBuffer.flip();
+
+        float[] positions = new float[vertices.size() * 3];
+        for (int v = 0; v < vertices.size(); v++) {
+            System.arraycopy(vertices.get(v), 0, positions, v * 3, 3);
+        }
+        return positions;
+    }
+
+    private static void check(float[] expected, ObjData data, String parser) {
+        FloatList positions = data.getPositions();
+        if (positions.size() != expected.length || data.getTriangleCount() == 0) {
+            throw new IllegalStateException(String.format("%s read %d position floats, the old loader %d", parser, positions.size(), expected.length));
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (Float.floatToIntBits(positions.get(i)) != Float.floatToIntBits(expected[i])) {
+                throw new IllegalStateException(String.format("%s reads position float %d as %s, Float.parseFloat as %s", parser, i, positions.get(i), expected[i]));
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,132 @@
+package com.vibhusha.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjParserTest {
+    private static final String TRIANGLE = "v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvn 0 0 1\n";
+
+    @TempDir
+    Path directory;
+
+    private static ObjData parse(String obj) throws IOException {
+        return ObjParser.parse(ByteBuffer.wrap(obj.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static void assertMalformed(String obj, String message, long byteOffset) {
+        IOException e = assertThrows(IOException.class, () -> parse(obj));
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+        assertTrue(e.getMessage().endsWith("near byte " + byteOffset), e.getMessage());
+    }
+
+    @Test
+    void readsCornerFormsAndRelativeIndices() throws IOException {
+        ObjData data = parse(TRIANGLE + "f 1 2 3\nf\t1/1  2/1\t3/1\r\nf 1//1 2//1 3//1\nf -3/-1/-1 -2/-1/-1 -1/-1/-1\n");
+        assertEquals(4, data.getTriangleCount());
+        assertArrayEquals(new int[]{0, -1, -1, 1, -1, -1, 2, -1, -1}, Arrays.copyOf(data.getCorners().array(), 9));
+        assertArrayEquals(new int[]{0, 0, 0, 1, 0, 0, 2, 0, 0}, Arrays.copyOfRange(data.getCorners().array(), 27, 36));
+    }
+
+    @Test
+    void rejectsIndexOverflow() {
+        String obj = TRIANGLE + "f 1 2 99999999999\n";
+        assertMalformed(obj, "index out of range", obj.indexOf("99999999999"));
+    }
+
+    @Test
+    void rejectsAbsoluteIndexPastTheEnd() {
+        String obj = TRIANGLE + "f 1 2 4\n";
+        assertMalformed(obj, "position index 4 is out of range", obj.lastIndexOf('4'));
+        String normals = TRIANGLE + "f 1//1 2//1 3//2\n";
+        assertMalformed(normals, "normal index 2 is out of range", normals.lastIndexOf('2'));
+    }
+
+    @Test
+    void acceptsForwardReferences() throws IOException {
+        assertEquals(1, parse("f 1 2 3\n" + TRIANGLE).getTriangleCount());
+    }
+
+    @Test
+    void rejectsRelativeIndexBeforeTheFirst() {
+        String obj = TRIANGLE + "f -1 -2 -4\n";
+        assertMalformed(obj, "reaches before the first one", obj.indexOf("-4"));
+    }
+
+    @Test
+    void rejectsIndexZero() {
+        String obj = TRIANGLE + "f 0 1 2\n";
+        assertMalformed(obj, "Invalid OBJ index 0", obj.lastIndexOf("f 0") + 2);
+    }
+
+    @Test
+    void rejectsExponentWithoutDigits() {
+        String obj = "v 1 2e 3\n";
+        assertMalformed(obj, "exponent without digits", obj.indexOf("2e"));
+        assertThrows(IOException.class, () -> parse("v 1 2 3e+\n"));
+    }
+
+    @Test
+    void readsExponents() throws IOException {
+        ObjData data = parse("v 1e2 -2.5E-1 3e+0\n");
+        assertEquals(100.0f, data.getPositions().get(0));
+        assertEquals(-0.25f, data.getPositions().get(1));
+        assertEquals(3.0f, data.getPositions().get(2));
+    }
+
+    @Test
+    void rejectsShortFaces() {
+        String obj = TRIANGLE + "f 1 2\n";
+        assertMalformed(obj, "face with 2 vertices", obj.lastIndexOf("1 2\n"));
+    }
+
+    @Test
+    void reportsFileOffsetsWhenStreaming() throws IOException {
+        // Larger than the channel parser's first buffer, so the error lies past a refill
+        StringBuilder obj = new StringBuilder();
+        while (obj.length() < 3 << 20) {
+            obj.append(TRIANGLE).append("f 1 2 3\n");
+        }
+        int offset = obj.length() + 4;
+        obj.append("v 1 1e 3\n");
+        Path file = directory.resolve("large.obj");
+        Files.writeString(file, obj);
+        IOException e = assertThrows(IOException.class, () -> ModelLoader.readOBJ(file));
+        assertTrue(e.getMessage().endsWith("near byte " + offset), e.getMessage());
+    }
+
+    @Test
+    void parallelParserChecksIndicesAcrossChunks() throws IOException {
+        // Several chunks; faces reach 10 triangles back, so the first ones of a chunk reach into the one before
+        StringBuilder obj = new StringBuilder(TRIANGLE.repeat(10));
+        while (obj.length() < 12 << 20) {
+            obj.append(TRIANGLE).append("f -30 -29 -28\nf 1 2 3\n");
+        }
+        Path file = directory.resolve("chunks.obj");
+        Files.writeString(file, obj);
+        ObjData serial;
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            serial = ObjParser.parse(channel);
+        }
+        ObjData parallel = ParallelObjParser.parse(file, ForkJoinPool.commonPool());
+        assertArrayEquals(serial.getCorners().toArray(), parallel.getCorners().toArray());
+
+        Files.writeString(file, obj + "f 1 2 " + (serial.getPositionCount() + 1) + "\n");
+        IOException e = assertThrows(IOException.class, () -> ParallelObjParser.parse(file, ForkJoinPool.commonPool()));
+        assertTrue(e.getMessage().contains("position index " + (serial.getPositionCount() + 1) + " is out of range"), e.getMessage());
+        assertTrue(e.getMessage().endsWith("near byte " + (obj.length() + 6)), e.getMessage());
+    }
+}
@@ -0,0 +1,80 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+
+// Cost of the Profiler on a synthetic frame of nested scopes and counters, without a GL context.
+// Run once as is and once with -Dengine.profile=true: the difference per scope is the instrumentation
+// overhead, and the bytes allocated per frame should be zero either way unless a JFR recording has
+// the engine events enabled (-XX:StartFlightRecording).
+//   java [-Dengine.profile=true] -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.utils.ProfilerBenchmark [profile.csv]
+@Slf4j
+public class ProfilerBenchmark {
+    private static final int RUNS = 5;
+    private static final int FRAMES = 1_000;
+    private static final int SCOPES_PER_FRAME = 200;
+
+    private static final int FRAME_SCOPE = Profiler.scope("benchmark.frame");
+    private static final int OUTER_SCOPE = Profiler.scope("benchmark.outer");
+    private static final int INNER_SCOPE = Profiler.scope("benchmark.inner");
+
+    private static float sink;
+
+    public static void main(String[] args) throws IOException {
+        log.info(String.format("Profiler benchmark, profiling %s, best of %d runs", Profiler.ENABLED ? "enabled" : "disabled", RUNS));
+
+        runFrames();  // Warm up
+        long allocated = allocatedBytes();
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            runFrames();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        allocated = allocatedBytes() - allocated;
+
+        long scopes = (long) FRAMES * (SCOPES_PER_FRAME + 1);
+        log.info(String.format("%d frames of %d scopes: %.2f ms, %.1f ns per scope including its counter, %.1f bytes allocated per frame",
+                FRAMES, SCOPES_PER_FRAME + 1, best / 1e6, (double) best / scopes, allocated / (double) (FRAMES * (RUNS + 1))));
+        if (Profiler.ENABLED) {
+            log.info("Profile:\n" + Profiler.summary());
+            if (args.length > 0) {
+                Profiler.writeCsv(Paths.get(args[0]));
+            }
+        }
+    }
+
+    private static void runFrames() {
+        for (int frame = 0; frame < FRAMES; frame++) {
+            Profiler.beginFrame();
+            Profiler.begin(FRAME_SCOPE);
+            for (int i = 0; i < SCOPES_PER_FRAME / 2; i++) {
+                Profiler.begin(OUTER_SCOPE);
+                Profiler.begin(INNER_SCOPE);
+                sink += work(i);
+                Profiler.count(Profiler.DRAW_CALLS, 1);
+                Profiler.end();
+                Profiler.count(Profiler.UNIFORM_UPLOADS, 2);
+                Profiler.end();
+            }
+            Profiler.end();
+            Profiler.endFrame();
+        }
+    }
+
+    // A few nanoseconds of arithmetic so the scopes do not time an empty body
+    private static float work(int seed) {
+        float x = seed;
+        for (int i = 0; i < 8; i++) {
+            x = x * 1.0001f + 0.5f;
+        }
+        return x;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,147 @@
+package com.vibhusha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResourceCacheTest {
+    private static final class FakeResource implements GpuResource {
+        private final long bytes;
+        private boolean cleaned;
+
+        FakeResource(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long getByteSize() {
+            return bytes;
+        }
+
+        @Override
+        public void cleanup() {
+            cleaned = true;
+        }
+    }
+
+    private static ResourceCache.Handle<FakeResource> acquire(ResourceCache<FakeResource> cache, String key, long bytes) {
+        return cache.acquire(key, () -> new FakeResource(bytes));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        ResourceCache<FakeResource> cache = new ResourceCache<>(1000);
+        ResourceCache.Handle<FakeResource> first = acquire(cache, "a", 10);
+        ResourceCache.Handle<FakeResource> second = acquire(cache, "a", 10);
+        assertSame(first.get(), second.get());
+        assertNull(cache.acquireIfResident("b"));
+        assertSame(first.get(), cache.getIfResident("a"));
+        assertEquals(2, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+        assertEquals(1, cache.getStats().getEntryCount());
+        assertEquals(10, cache.getStats().getResidentBytes());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedFirst() {
+        ResourceCache<FakeResource> cache = new ResourceCache<>(30);
+        FakeResource a = new FakeResource(10);
+        cache.put("a", a);
+        FakeResource b = new FakeResource(10);
+        cache.put("b", b);
+        FakeResource c = new FakeResource(10);
+        cache.put("c", c);
+        cache.getIfResident("a");  // b is now the least recently used
+
+        cache.put("d", new FakeResource(10));
+        assertTrue(b.cleaned);
+        assertFalse(a.cleaned || c.cleaned);
+        assertFalse(cache.isResident("b"));
+
+        cache.put("e", new FakeResource(20));
+        assertTrue(c.cleaned && a.cleaned);
+        assertEquals(3, cache.getStats().getEvictions());
+        assertEquals(30, cache.getStats().getEvictedBytes());
+        assertEquals(30, cache.getStats().getResidentBytes());
+        assertThrows(IllegalStateException.class, () -> cache.put("e", new FakeResource(1)));
+    }
+
+    @Test
+    void neverEvictsReferencedResources() {
+        ResourceCache<FakeResource> cache = new ResourceCache<>(10);
+        ResourceCache.Handle<FakeResource> pinned = acquire(cache, "pinned", 10);
+        ResourceCache.Handle<FakeResource> large = acquire(cache, "large", 50);
+        cache.trim();
+        assertFalse(pinned.get().cleaned || large.get().cleaned);
+        assertEquals(60, cache.getStats().getResidentBytes());
+
+        FakeResource largeResource = large.get();
+        large.release();
+        assertThrows(IllegalStateException.class, large::get);
+        cache.trim();
+        assertTrue(largeResource.cleaned);
+        assertFalse(pinned.get().cleaned);
+        assertEquals(10, cache.getStats().getResidentBytes());
+    }
+
+    @Test
+    void appliesReleasesFromOtherThreadsAtTrim() throws InterruptedException, ExecutionException {
+        ResourceCache<FakeResource> cache = new ResourceCache<>(0);
+        ResourceCache.Handle<FakeResource> handle = acquire(cache, "a", 10);
+        FakeResource resource = handle.get();
+        CompletableFuture.runAsync(() -> {
+            handle.release();
+            handle.release();  // Twice is a no-op
+        }).get();
+        assertTrue(cache.isResident("a"));
+        assertFalse(resource.cleaned);
+
+        cache.trim();
+        assertFalse(cache.isResident("a"));
+        assertTrue(resource.cleaned);
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void weakHandleReloadsAfterEviction() {
+        ResourceCache<FakeResource> cache = new ResourceCache<>(10);
+        int[] loads = new int[1];
+        ResourceCache.WeakHandle<FakeResource> weak = cache.weak("a", () -> {
+            loads[0]++;
+            return new FakeResource(10);
+        });
+        FakeResource first = weak.get();
+        assertSame(first, weak.get());
+        assertEquals(1, loads[0]);
+        assertEquals(0, cache.getStats().getReloads());
+
+        cache.put("b", new FakeResource(10));  // The weak handle does not keep "a" resident
+        assertTrue(first.cleaned);
+        FakeResource second = weak.get();
+        assertNotSame(first, second);
+        assertEquals(2, loads[0]);
+        assertEquals(1, cache.getStats().getReloads());
+    }
+
+    @Test
+    void rejectsUseFromOtherThreads() {
+        ResourceCache<FakeResource> cache = new ResourceCache<>(100);
+        ResourceCache.WeakHandle<FakeResource> weak = cache.weak("a", () -> new FakeResource(10));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> CompletableFuture.runAsync(() -> acquire(cache, "a", 10)).get());
+        assertTrue(e.getCause() instanceof IllegalStateException, e.getCause().toString());
+        assertThrows(ExecutionException.class, () -> CompletableFuture.runAsync(cache::trim).get());
+        assertThrows(ExecutionException.class, () -> CompletableFuture.runAsync(weak::get).get());
+        assertThrows(ExecutionException.class, () -> CompletableFuture.runAsync(() -> cache.getIfResident("a")).get());
+        assertFalse(cache.isResident("a"));
+        assertEquals(0, cache.getStats().getMisses());
+    }
+}
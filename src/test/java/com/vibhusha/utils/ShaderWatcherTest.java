@@ -0,0 +1,31 @@
+package com.vibhusha.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShaderWatcherTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void unwatchDropsOnlyThatShadersFiles() {
+        Shader first = new Shader("first");
+        Shader second = new Shader("second");
+
+        int before = ShaderWatcher.getWatchedCount();
+        ShaderWatcher.watch(first, directory.resolve("first.vert"));
+        ShaderWatcher.watch(first, directory.resolve("first.frag"));
+        ShaderWatcher.watch(second, directory.resolve("second.frag"));
+        assertEquals(before + 3, ShaderWatcher.getWatchedCount());
+
+        ShaderWatcher.unwatch(first);
+        assertEquals(before + 1, ShaderWatcher.getWatchedCount());
+        ShaderWatcher.unwatch(first);
+        ShaderWatcher.unwatch(second);
+        assertEquals(before, ShaderWatcher.getWatchedCount());
+    }
+}
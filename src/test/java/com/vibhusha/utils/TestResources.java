@@ -0,0 +1,20 @@
+package com.vibhusha.utils;
+
+// GL-free shaders, textures and materials for tests in other packages that record commands but never
+// reach GL
+public final class TestResources {
+    private TestResources() {
+    }
+
+    public static Shader shader(String name) {
+        return new Shader(name);
+    }
+
+    public static Texture texture() {
+        return new Texture(1, 1);
+    }
+
+    public static void setMaterials(Model model, MtlMaterial[] materials, Texture[] textures) {
+        model.setMaterials(materials, textures);
+    }
+}
@@ -0,0 +1,129 @@
+package com.vibhusha.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Times the old per-pixel getRGB conversion against TextureConverter, mip chain generation, and
+// BC1/BC3 block compression (throughput and PSNR against the source) on synthetic 4K and 8K images.
+//   java -Xmx3g -cp target/test-classes:target/classes:$(cat cp.txt) com.vibhusha.utils.TextureBenchmark [size...]
+@Slf4j
+public class TextureBenchmark {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{4096, 8192} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        log.info(String.format("Texture conversion benchmark, %d thread(s), best of %d runs", pool.getParallelism(), RUNS));
+
+        for (int size : sizes) {
+            for (int type : new int[]{BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB}) {
+                BufferedImage image = createImage(size, type);
+                // Direct buffers, so the benchmark does not need the LWJGL natives
+                ByteBuffer expected = ByteBuffer.allocateDirect(size * size * 4);
+                ByteBuffer actual = ByteBuffer.allocateDirect(size * size * 4);
+
+                long legacy = best(() -> convertPerPixel(image, expected));
+                long fast = best(() -> TextureConverter.convert(image, actual, pool));
+                if (!expected.clear().equals(actual.clear())) {
+                    throw new IllegalStateException("Fast conversion differs from the per-pixel conversion");
+                }
+                String name = type == BufferedImage.TYPE_4BYTE_ABGR ? "4BYTE_ABGR" : "INT_ARGB";
+                log.info(String.format("%dx%d %s: per-pixel %.1f ms, fast %.1f ms (%.1fx)", size, size, name,
+                        legacy / 1e6, fast / 1e6, legacy / (double) fast));
+            }
+
+            ByteBuffer base = ByteBuffer.allocateDirect(size * size * 4);
+            TextureConverter.convert(createImage(size, BufferedImage.TYPE_4BYTE_ABGR), base, pool);
+            long mips = best(() -> {
+                ByteBuffer source = base;
+                for (int width = size; width > 1; width /= 2) {
+                    ByteBuffer level = ByteBuffer.allocateDirect((width / 2) * (width / 2) * 4);
+                    MipChain.downsample(source, width, width, level, pool);
+                    source = level;
+                }
+            });
+            log.info(String.format("%dx%d mip chain (%d levels): %.1f ms", size, size, MipChain.levelCount(size, size) - 1, mips / 1e6));
+
+            // Noise does not compress meaningfully, use smooth content for quality figures
+            ByteBuffer smooth = ByteBuffer.allocateDirect(size * size * 4);
+            TextureConverter.convert(createSmoothImage(size), smooth, pool);
+            ByteBuffer decoded = ByteBuffer.allocateDirect(size * size * 4);
+            for (TextureCompression compression : new TextureCompression[]{TextureCompression.BC1, TextureCompression.BC3}) {
+                ByteBuffer blocks = ByteBuffer.allocateDirect(compression.byteCount(size, size));
+                long start = System.nanoTime();
+                BlockCompressor.encode(smooth, size, size, compression, blocks, pool);
+                long nanos = System.nanoTime() - start;
+                BlockCompressor.decode(blocks, size, size, compression, decoded);
+                boolean alpha = compression == TextureCompression.BC3;
+                log.info(String.format("%dx%d %s: %.1f ms (%.1f Mpixel/s), PSNR %.2f dB (%s), %d -> %d bytes", size, size, compression,
+                        nanos / 1e6, (double) size * size / (nanos / 1e3), BlockCompressor.psnr(smooth, decoded, size, size, alpha),
+                        alpha ? "RGBA" : "RGB", size * size * 4, blocks.capacity()));
+            }
+        }
+    }
+
+    // Gradients and low-frequency waves with a little noise, alpha ramps across the image
+    private static BufferedImage createSmoothImage(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int i = (y * size + x) * 4;
+                data[i] = (byte) (x * 255 / size);
+                data[i + 1] = (byte) (128 + 60 * Math.sin(y * 0.01) + random.nextInt(8));
+                data[i + 2] = (byte) (y * 255 / size);
+                data[i + 3] = (byte) (128 + 100 * Math.sin(x * 0.005) * Math.cos(y * 0.007));
+            }
+        }
+        return image;
+    }
+
+    // The conversion Texture used before: getRGB into an int array, then one put per channel
+    private static void convertPerPixel(BufferedImage image, ByteBuffer buffer) {
+        int width = image.getWidth(), height = image.getHeight();
+        int[] pixels = new int[width * height];
+        image.getRGB(0, 0, width, height, pixels, 0, width);
+        buffer.clear();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[y * width + x];
+                buffer.put((byte) ((pixel >> 16) & 0xFF)).put((byte) ((pixel >> 8) & 0xFF)).put((byte) (pixel & 0xFF)).put((byte) ((pixel >> 24) & 0xFF));
+            }
+        }
+        buffer.flip();
+    }
+
+    private static BufferedImage createImage(int size, int type) {
+        BufferedImage image = new BufferedImage(size, size, type);
+        Random random = new Random(size);
+        if (type == BufferedImage.TYPE_INT_ARGB) {
+            int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < data.length; i++) {
+                data[i] = random.nextInt();
+            }
+        } else {
+            random.nextBytes(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        }
+        return image;
+    }
+
+    private static long best(Runnable task) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
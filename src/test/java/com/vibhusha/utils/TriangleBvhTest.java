@@ -0,0 +1,188 @@
+package com.vibhusha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// TriangleBvh queries on a displaced sphere against testing every triangle. The sphere is large
+// enough that the pool builds subtrees as separate tasks. BvhBenchmark times the same kind of mesh.
+class TriangleBvhTest {
+    private static final int RINGS = 160;  // 51,200 triangles
+    private static final int RAYS = 300;
+
+    private final float[] positions = displacedSphere();
+    private final int[] indices = sphereIndices();
+    private final float[] rays = new float[RAYS * 6];
+
+    TriangleBvhTest() {
+        Random random = new Random(42);
+        for (int i = 0; i < RAYS; i++) {
+            int r = i * 6;
+            if (i % 2 == 0) {
+                // Between two random points on a surrounding sphere
+                float[] from = randomUnit(random), to = randomUnit(random);
+                for (int c = 0; c < 3; c++) {
+                    rays[r + c] = from[c] * 3;
+                    rays[r + 3 + c] = to[c] - from[c] * 3;
+                }
+            } else {
+                // From a camera at z = 3 through a 2x2 window at z = 2, some past the silhouette
+                rays[r + 2] = 3;
+                rays[r + 3] = random.nextFloat() * 2 - 1;
+                rays[r + 4] = random.nextFloat() * 2 - 1;
+                rays[r + 5] = -1;
+            }
+        }
+    }
+
+    @Test
+    void raysFindTheClosestTriangle() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (TriangleBvh bvh : new TriangleBvh[]{TriangleBvh.build(positions, indices, null), TriangleBvh.build(positions, indices, pool)}) {
+                assertEquals(indices.length / 3, bvh.getTriangleCount());
+                BvhQuery query = new BvhQuery();
+                int hits = 0;
+                for (int i = 0; i < RAYS; i++) {
+                    int r = i * 6;
+                    float expected = Float.POSITIVE_INFINITY;
+                    for (int t = 0; t < indices.length / 3; t++) {
+                        expected = Math.min(expected, intersect(t, r));
+                    }
+                    boolean hit = bvh.raycast(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5], Float.POSITIVE_INFINITY, query);
+                    assertEquals(expected != Float.POSITIVE_INFINITY, hit, "Ray " + i);
+                    if (hit) {
+                        float tolerance = 1e-4f * Math.max(1.0f, expected);
+                        assertEquals(expected, query.getDistance(), tolerance, "Ray " + i);
+                        assertEquals(expected, intersect(query.getTriangle(), r), tolerance, "Triangle of ray " + i);
+                        hits++;
+                    }
+                }
+                assertTrue(hits > RAYS / 4 && hits < RAYS, hits + " hits");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sweptSpheresTouchNoLaterThanTheirCentreRay() {
+        TriangleBvh bvh = TriangleBvh.build(positions, indices, null);
+        BvhQuery query = new BvhQuery();
+        for (int i = 0; i < RAYS; i++) {
+            int r = i * 6;
+            boolean rayHit = bvh.raycast(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5], 1.0f, query);
+            float rayDistance = query.getDistance();
+            boolean sweepHit = bvh.sweepSphere(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5], 0.01f, 1.0f, query);
+            if (rayHit) {
+                assertTrue(sweepHit, "Sweep " + i);
+                assertTrue(query.getDistance() <= rayDistance + 1e-5f, "Sweep " + i + " at " + query.getDistance() + ", ray at " + rayDistance);
+            }
+        }
+    }
+
+    @Test
+    void boxesCollectEveryTriangleWithACornerInside() {
+        TriangleBvh bvh = TriangleBvh.build(positions, indices, null);
+        BvhQuery query = new BvhQuery();
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            float[] p = randomUnit(random);
+            float[] box = {p[0] - 0.02f, p[1] - 0.02f, p[2] - 0.02f, p[0] + 0.02f, p[1] + 0.02f, p[2] + 0.02f};
+            int count = bvh.overlapBox(box[0], box[1], box[2], box[3], box[4], box[5], query);
+            Set<Integer> found = new HashSet<>();
+            for (int o = 0; o < count; o++) {
+                found.add(query.getOverlaps().get(o));
+            }
+            assertEquals(count, found.size(), "Box " + i + " reported a triangle twice");
+            for (int t = 0; t < indices.length / 3; t++) {
+                boolean cornerInside = false, boundsOverlap = true;
+                for (int axis = 0; axis < 3; axis++) {
+                    float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+                    for (int c = 0; c < 3; c++) {
+                        float value = positions[indices[t * 3 + c] * 3 + axis];
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                    boundsOverlap &= min <= box[axis + 3] && max >= box[axis];
+                }
+                for (int c = 0; c < 3 && !cornerInside; c++) {
+                    int v = indices[t * 3 + c] * 3;
+                    cornerInside = positions[v] >= box[0] && positions[v] <= box[3] && positions[v + 1] >= box[1] && positions[v + 1] <= box[4]
+                            && positions[v + 2] >= box[2] && positions[v + 2] <= box[5];
+                }
+                if (cornerInside) {
+                    assertTrue(found.contains(t), "Box " + i + " missed triangle " + t);
+                }
+                if (found.contains(t)) {
+                    assertTrue(boundsOverlap, "Box " + i + " reported triangle " + t + " outside it");
+                }
+            }
+        }
+    }
+
+    // Unit sphere with ridges of +-5%, RINGS x RINGS quads split in two
+    private static float[] displacedSphere() {
+        float[] positions = new float[(RINGS + 1) * (RINGS + 1) * 3];
+        for (int i = 0; i <= RINGS; i++) {
+            double theta = Math.PI * i / RINGS;
+            for (int j = 0; j <= RINGS; j++) {
+                double phi = 2 * Math.PI * j / RINGS;
+                double radius = 1.0 + 0.05 * Math.sin(theta * 12) * Math.cos(phi * 9);
+                int v = (i * (RINGS + 1) + j) * 3;
+                positions[v] = (float) (radius * Math.sin(theta) * Math.cos(phi));
+                positions[v + 1] = (float) (radius * Math.cos(theta));
+                positions[v + 2] = (float) (radius * Math.sin(theta) * Math.sin(phi));
+            }
+        }
+        return positions;
+    }
+
+    private static int[] sphereIndices() {
+        int[] indices = new int[RINGS * RINGS * 6];
+        int n = 0;
+        for (int i = 0; i < RINGS; i++) {
+            for (int j = 0; j < RINGS; j++) {
+                int a = i * (RINGS + 1) + j, b = a + RINGS + 1;
+                indices[n++] = a;
+                indices[n++] = b;
+                indices[n++] = a + 1;
+                indices[n++] = a + 1;
+                indices[n++] = b;
+                indices[n++] = b + 1;
+            }
+        }
+        return indices;
+    }
+
+    private static float[] randomUnit(Random random) {
+        double z = random.nextDouble() * 2 - 1, angle = random.nextDouble() * 2 * Math.PI, r = Math.sqrt(1 - z * z);
+        return new float[]{(float) (r * Math.cos(angle)), (float) (r * Math.sin(angle)), (float) z};
+    }
+
+    // Moller-Trumbore distance of ray r to triangle t, both sides, +inf on a miss
+    private float intersect(int t, int r) {
+        float[] p = positions;
+        int a = indices[t * 3] * 3, b = indices[t * 3 + 1] * 3, c = indices[t * 3 + 2] * 3;
+        float e1x = p[b] - p[a], e1y = p[b + 1] - p[a + 1], e1z = p[b + 2] - p[a + 2];
+        float e2x = p[c] - p[a], e2y = p[c + 1] - p[a + 1], e2z = p[c + 2] - p[a + 2];
+        float dx = rays[r + 3], dy = rays[r + 4], dz = rays[r + 5];
+        float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        float det = e1x * px + e1y * py + e1z * pz;
+        if (Math.abs(det) < 1e-9f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float sx = rays[r] - p[a], sy = rays[r + 1] - p[a + 1], sz = rays[r + 2] - p[a + 2];
+        float u = (sx * px + sy * py + sz * pz) / det;
+        float qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        float v = (dx * qx + dy * qy + dz * qz) / det;
+        float distance = (e2x * qx + e2y * qy + e2z * qz) / det;
+        return u < 0 || u > 1 || v < 0 || u + v > 1 || distance < 0 ? Float.POSITIVE_INFINITY : distance;
+    }
+}
@@ -0,0 +1,147 @@
+package com.vibhusha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VertexEncoderTest {
+    private static final int VERTEX_COUNT = 4096;
+    // Away from the origin and uneven per axis, so the AABB offset and scale both matter
+    private static final float[] CENTRE = {120.0f, -35.0f, 8.0f};
+    private static final float[] HALF_EXTENT = {4.0f, 0.5f, 60.0f};
+    // Octahedral snorm16 steps are 3e-5 on the map; the map stretches them by up to ~6x on the sphere
+    private static final float MAX_OCTAHEDRAL_DEGREES = 0.01f;
+
+    private static MeshData randomMesh(long seed) {
+        Random random = new Random(seed);
+        float[] vertices = new float[VERTEX_COUNT * MeshData.FLOATS_PER_VERTEX];
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            int base = i * MeshData.FLOATS_PER_VERTEX;
+            for (int axis = 0; axis < 3; axis++) {
+                vertices[base + axis] = CENTRE[axis] + (random.nextFloat() * 2 - 1) * HALF_EXTENT[axis];
+            }
+            vertices[base + 3] = random.nextFloat() * 3 - 1;  // Tiled UVs outside [0, 1]
+            vertices[base + 4] = random.nextFloat();
+            float x = (float) random.nextGaussian(), y = (float) random.nextGaussian(), z = (float) random.nextGaussian();
+            if (i < 26) {
+                // The axes, edges and corners of the octahedron, where the fold is
+                x = i % 3 - 1;
+                y = i / 3 % 3 - 1;
+                z = i / 9 - 1 + (i >= 13 ? 1 : 0);
+                z = Math.max(-1, Math.min(1, z));
+            }
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length == 0) {
+                z = length = 1;
+            }
+            vertices[base + 5] = x / length;
+            vertices[base + 6] = y / length;
+            vertices[base + 7] = z / length;
+        }
+        int[] indices = new int[VERTEX_COUNT];
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            indices[i] = i;
+        }
+        return new MeshData(vertices, indices, VERTEX_COUNT);
+    }
+
+    @Test
+    void fullRoundTripIsExact() {
+        MeshData mesh = randomMesh(1);
+        MeshBuffers encoded = VertexEncoder.encode(mesh, VertexFormat.FULL);
+        assertEquals(32, encoded.getFormat().getStride());
+        VertexEncoder.ErrorBounds error = VertexEncoder.measureError(mesh, encoded);
+        assertEquals(0.0f, error.getMaxPositionError());
+        assertEquals(0.0f, error.getMaxTexCoordError());
+        assertTrue(error.getMaxNormalErrorDegrees() < 1e-4f, error.toString());
+    }
+
+    @Test
+    void compactRoundTripStaysWithinHalfAStep() {
+        MeshData mesh = randomMesh(2);
+        MeshBuffers encoded = VertexEncoder.encode(mesh, VertexFormat.COMPACT);
+        assertEquals(16, encoded.getFormat().getStride());
+
+        // Decode every vertex the way vertex.glsl does and compare per axis against half a unorm16 step
+        float[] bounds = mesh.computeBounds();
+        float[] vertices = mesh.getVertices();
+        float[] decode = encoded.getDecode();
+        ByteBuffer data = encoded.getVertexData();
+        VertexFormat format = encoded.getFormat();
+        float[] position = new float[3];
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            int base = i * format.getStride();
+            VertexEncoder.decodePosition(data, base, format, decode, position);
+            for (int axis = 0; axis < 3; axis++) {
+                float extent = bounds[axis + 3] - bounds[axis];
+                float tolerance = extent / 65535.0f * 0.5f + Math.ulp(Math.abs(CENTRE[axis]) + HALF_EXTENT[axis]) * 2;
+                float actual = vertices[i * MeshData.FLOATS_PER_VERTEX + axis];
+                assertEquals(actual, position[axis], tolerance, "vertex " + i + " axis " + axis);
+            }
+            for (int axis = 0; axis < 2; axis++) {
+                float u = decode[6 + axis] + decode[8 + axis] * VertexEncoder.fromUnorm16(data.getShort(base + format.getTexCoordOffset() + axis * Short.BYTES));
+                float tolerance = decode[8 + axis] / 65535.0f * 0.5f + 1e-6f;
+                assertEquals(vertices[i * MeshData.FLOATS_PER_VERTEX + 3 + axis], u, tolerance, "vertex " + i + " uv " + axis);
+            }
+        }
+
+        VertexEncoder.ErrorBounds error = VertexEncoder.measureError(mesh, encoded);
+        assertTrue(error.getMaxPositionError() <= 2 * HALF_EXTENT[2] / 65535.0f * 0.5f + 1e-5f, error.toString());
+        assertTrue(error.getMaxTexCoordError() <= 3.0f / 65535.0f * 0.5f + 1e-6f, error.toString());
+        assertTrue(error.getMaxNormalErrorDegrees() <= MAX_OCTAHEDRAL_DEGREES, error.toString());
+    }
+
+    @Test
+    void halfFloatPositionsKeepElevenBitsOfTheCentredValue() {
+        MeshData mesh = randomMesh(3);
+        VertexFormat format = new VertexFormat(VertexFormat.PositionEncoding.HALF_FLOAT,
+                VertexFormat.TexCoordEncoding.FLOAT, VertexFormat.NormalEncoding.OCTAHEDRAL);
+        MeshBuffers encoded = VertexEncoder.encode(mesh, format);
+        float[] vertices = mesh.getVertices();
+        float[] decode = encoded.getDecode();
+        float[] position = new float[3];
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            VertexEncoder.decodePosition(encoded.getVertexData(), i * format.getStride(), format, decode, position);
+            for (int axis = 0; axis < 3; axis++) {
+                float actual = vertices[i * MeshData.FLOATS_PER_VERTEX + axis];
+                float tolerance = Math.abs(actual - decode[axis]) * 0x1.0p-11f + Math.ulp(Math.abs(CENTRE[axis]) + HALF_EXTENT[axis]) * 2;
+                assertEquals(actual, position[axis], tolerance, "vertex " + i + " axis " + axis);
+            }
+        }
+        VertexEncoder.ErrorBounds error = VertexEncoder.measureError(mesh, encoded);
+        assertEquals(0.0f, error.getMaxTexCoordError());
+        assertTrue(error.getMaxNormalErrorDegrees() <= MAX_OCTAHEDRAL_DEGREES, error.toString());
+    }
+
+    @Test
+    void octahedralNormalsRoundTripOnTheFold() {
+        float[] decoded = new float[3];
+        float[] scratch = new float[3];
+        float[][] normals = {{0, 0, 1}, {0, 0, -1}, {1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0},
+                {0.577f, 0.577f, -0.577f}, {-0.577f, 0.577f, -0.577f}, {0.6f, 0, -0.8f}, {0, -0.6f, -0.8f}};
+        for (float[] n : normals) {
+            int packed = VertexEncoder.encodeOctahedral(n[0], n[1], n[2], scratch);
+            VertexEncoder.decodeOctahedral(VertexEncoder.fromSnorm16((short) packed), VertexEncoder.fromSnorm16((short) (packed >> 16)), decoded);
+            double degrees = Math.toDegrees(VertexEncoder.angleBetween(decoded[0], decoded[1], decoded[2], n[0], n[1], n[2]));
+            assertTrue(degrees <= MAX_OCTAHEDRAL_DEGREES, n[0] + ", " + n[1] + ", " + n[2] + ": " + degrees + " deg");
+        }
+    }
+
+    @Test
+    void halfFloatConversionRoundsToNearestEven() {
+        assertEquals((short) 0x3C00, VertexEncoder.toHalf(1.0f));
+        assertEquals((short) 0xC100, VertexEncoder.toHalf(-2.5f));
+        assertEquals((short) 0x7BFF, VertexEncoder.toHalf(65504.0f));
+        assertEquals((short) 0x7C00, VertexEncoder.toHalf(65520.0f));   // Rounds up past the largest half
+        assertEquals((short) 0x0001, VertexEncoder.toHalf(0x1.0p-24f));  // Smallest subnormal
+        assertEquals((short) 0x3C00, VertexEncoder.toHalf(1.0f + 0x1.0p-11f));  // Tie to even
+        assertEquals((short) 0x3C02, VertexEncoder.toHalf(1.0f + 3 * 0x1.0p-11f));
+        for (short half : new short[]{0x0001, 0x03FF, 0x0400, 0x3555, (short) 0xBC00, 0x7BFF}) {
+            assertEquals(half, VertexEncoder.toHalf(VertexEncoder.fromHalf(half)));
+        }
+    }
+}